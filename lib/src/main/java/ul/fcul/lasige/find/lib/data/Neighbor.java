@@ -137,9 +137,9 @@ public class Neighbor implements Comparable<Neighbor> {
      * @param bt The neighbor's Bluetooth address when it was last connected.
      * @param protocols A list of protocols implemented by the neighbor.
      */
-    private Neighbor(long rawId, byte[] neighborId, long timeLastSeen, long timeLastPacket, boolean multicastCapable,
-                     String lastSeenNetwork, Inet4Address ip4, Inet6Address ip6, byte[] bt,
-                     HashSet<ByteBuffer> protocols) {
+    public Neighbor(long rawId, byte[] neighborId, long timeLastSeen, long timeLastPacket, boolean multicastCapable,
+                    String lastSeenNetwork, Inet4Address ip4, Inet6Address ip6, byte[] bt,
+                    HashSet<ByteBuffer> protocols) {
         mRawId = rawId;
         mNodeId = neighborId;
         mTimeLastSeen = timeLastSeen;
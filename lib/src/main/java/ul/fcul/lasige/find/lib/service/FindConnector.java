@@ -410,6 +410,9 @@ public class FindConnector implements Handler.Callback {
      * <p>serialized binary blob of data. How the serialization is done is completely up to the
      * client app - the platform does not need to know anything about the data structure.</p>
      *
+     * <p>Data larger than a datagram (e.g. photos) is sent in fragments, when the platform has fragmentation
+     * enabled. The platform rejects data larger than about 1 MiB with an {@link IllegalArgumentException}.</p>
+     *
      * @param protocolToken Protocol token for the data.
      * @param data Data to be sent.
      */
@@ -442,6 +445,9 @@ public class FindConnector implements Handler.Callback {
      * <p>serialized binary blob of data. How the serialization is done is completely up to the
      * client app - the platform does not need to know anything about the data structure.</p>
      *
+     * <p>Data larger than a datagram (e.g. photos) is sent in fragments, when the platform has fragmentation
+     * enabled. The platform rejects data larger than about 1 MiB with an {@link IllegalArgumentException}.</p>
+     *
      * @param protocolToken Protocol token for the data.
      * @param data Data to be sent.
      * @param nodeId ID of target node.
@@ -9,6 +9,7 @@ import com.google.common.collect.ImmutableSetMultimap;
 
 import java.nio.ByteBuffer;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ul.fcul.lasige.find.data.ClientImplementation;
 import ul.fcul.lasige.find.data.DbController;
@@ -29,6 +30,8 @@ public class ProtocolRegistry {
     private final HashMultimap<ByteBuffer, ClientImplementation> mProtocolMap;
     // database controller
     private final DbController mDbController;
+    // incremented every time the set of registered protocols changes
+    private final AtomicInteger mVersion = new AtomicInteger();
 
     /**
      * Retrieves the singleton instance of {@link ProtocolRegistry}.
@@ -102,6 +105,15 @@ public class ProtocolRegistry {
         return ImmutableSetMultimap.copyOf(mProtocolMap);
     }
 
+    /**
+     * Returns the version of the registered protocols. It changes every time a protocol implementation is
+     * registered, so that callers can cache data derived from {@link #getAllProtocolImplementations()}.
+     * @return Version number.
+     */
+    public int getVersion() {
+        return mVersion.get();
+    }
+
     /**
      * Retrieves the protocol identifier (name) from a
      * {@link ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket TransportPacket}.
@@ -135,7 +147,9 @@ public class ProtocolRegistry {
         ClientImplementation implementation = mDbController.insertImplementation(apiKey, protocolDescription);
 
         if (implementation != null) {
-            mProtocolMap.put(ByteBuffer.wrap(implementation.getProtocolHash()), implementation);
+            if (mProtocolMap.put(ByteBuffer.wrap(implementation.getProtocolHash()), implementation)) {
+                mVersion.incrementAndGet();
+            }
         }
 
         return implementation;
@@ -0,0 +1,302 @@
+package ul.fcul.lasige.find.beaconing;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import ul.fcul.lasige.find.data.DbController;
+import ul.fcul.lasige.find.data.NeighborTable;
+import ul.fcul.lasige.find.lib.data.Neighbor;
+
+/**
+ * Decides when the next beaconing round starts, adapting the policy's {@link Policy.BeaconingInterval} to the
+ * neighborhood. The interval is halved when neighbor churn (neighbors that appeared or disappeared since the
+ * last round) is high, or when there is churn and outgoing packets are waiting; it is doubled when the
+ * neighborhood is stable or empty. Packets are waiting when a current neighbor has not been sent them yet, or,
+ * without current neighbors, when they were enqueued since the last round; packets already sent to everyone
+ * around stay in the outgoing view until their TTL expires, and do not count. It always stays between the interval's
+ * {@link Policy.BeaconingInterval#getMinIntervalMillis() minimum} and
+ * {@link Policy.BeaconingInterval#getMaxIntervalMillis() maximum}.
+ *
+ * <p>Rounds start at multiples of the interval (wall clock), so that neighbors using the same or a multiple
+ * of our interval wake up at the same time. With the {@link Policy.BeaconingInterval#RANDOM RANDOM} interval,
+ * each round is aligned to a random period between half and one and a half times the interval instead, so that
+ * nodes in the same situation do not wake up in lockstep. The last decisions are kept, see
+ * {@link #getDecisionHistory()}.</p>
+ *
+ * <p>It implements the Singleton design pattern and should be accessed through
+ * {@link AdaptiveBeaconingScheduler#getInstance(Context)}.</p>
+ */
+public class AdaptiveBeaconingScheduler {
+    private static final String TAG = AdaptiveBeaconingScheduler.class.getSimpleName();
+
+    // number of decisions kept in the history
+    private static final int MAX_HISTORY_SIZE = 64;
+    // churn (new plus lost neighbors) from which the interval is shortened
+    private static final int HIGH_CHURN = 3;
+    // base interval of the RANDOM beaconing interval
+    private static final int RANDOM_BASE_INTERVAL = 2 * 60 * 1000; // 2 minutes
+
+    // singleton instance
+    private static AdaptiveBeaconingScheduler sInstance;
+
+    // random generator for the periods of the RANDOM beaconing interval
+    private final Random mRandom = new Random();
+    // database controller
+    private final DbController mDbController;
+    // current neighbors
+    private final NeighborTable mNeighborTable;
+
+    // beaconing interval the current state refers to
+    private Policy.BeaconingInterval mBeaconingInterval;
+    // current interval, in milliseconds
+    private long mIntervalMillis;
+    // time of the last decision
+    private long mLastDecisionTime;
+    // neighbors seen before the last decision
+    private Set<ByteBuffer> mLastNeighbors = new HashSet<>();
+    // last decisions, oldest first
+    private final Deque<Decision> mHistory = new ArrayDeque<>();
+
+    /**
+     * Returns the singleton instance.
+     * @param context Application context.
+     * @return {@link AdaptiveBeaconingScheduler} object.
+     */
+    public static synchronized AdaptiveBeaconingScheduler getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AdaptiveBeaconingScheduler(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructor. It is private to enforce the Singleton pattern.
+     * @param context Application context.
+     */
+    private AdaptiveBeaconingScheduler(Context context) {
+        mDbController = new DbController(context);
+        mNeighborTable = NeighborTable.getInstance(context);
+    }
+
+    /**
+     * Decides the start time of the next beaconing round, based on the neighbors seen and the outgoing packets
+     * since the last decision. Throws an {@link IllegalStateException} when beaconing is turned off.
+     * @param policy Current policy.
+     * @return Timestamp, in milliseconds, of the next beaconing round.
+     */
+    public synchronized long getNextBeaconTimeMillis(Policy policy) {
+        final Policy.BeaconingInterval interval = policy.getBeaconingInterval();
+        if (interval.equals(Policy.BeaconingInterval.OFF)) {
+            throw new IllegalStateException("Beaconing is turned off.");
+        }
+
+        final long now = System.currentTimeMillis();
+        if (!interval.equals(mBeaconingInterval)) {
+            // new policy, start from its base interval
+            mBeaconingInterval = interval;
+            mIntervalMillis = getBaseIntervalMillis(interval);
+            mLastDecisionTime = now - mIntervalMillis;
+            mLastNeighbors = new HashSet<>();
+        }
+
+        // neighbors seen since the last decision
+        final Set<ByteBuffer> neighbors = new HashSet<>();
+        for (Neighbor neighbor : mNeighborTable.getNeighbors(mLastDecisionTime / 1000)) {
+            neighbors.add(ByteBuffer.wrap(neighbor.getNodeId()));
+        }
+        int newNeighbors = 0;
+        for (ByteBuffer neighbor : neighbors) {
+            if (!mLastNeighbors.contains(neighbor)) {
+                newNeighbors++;
+            }
+        }
+        int lostNeighbors = 0;
+        for (ByteBuffer neighbor : mLastNeighbors) {
+            if (!neighbors.contains(neighbor)) {
+                lostNeighbors++;
+            }
+        }
+        final int churn = newNeighbors + lostNeighbors;
+        final long pendingPackets = getPendingPacketCount();
+
+        // adapt interval
+        final long previousIntervalMillis = mIntervalMillis;
+        final Reason reason;
+        if (churn >= HIGH_CHURN || (churn > 0 && pendingPackets > 0)) {
+            // the neighborhood is changing, look again soon
+            mIntervalMillis = previousIntervalMillis / 2;
+            reason = Reason.HIGH_CHURN;
+        } else if (churn > 0 || pendingPackets > 0) {
+            // some activity, do not back off
+            mIntervalMillis = Math.min(previousIntervalMillis, getBaseIntervalMillis(interval));
+            reason = (churn > 0 ? Reason.LOW_CHURN : Reason.PENDING_PACKETS);
+        } else {
+            // nothing changed, back off
+            mIntervalMillis = previousIntervalMillis * 2;
+            reason = (neighbors.isEmpty() ? Reason.EMPTY : Reason.STABLE);
+        }
+        mIntervalMillis = Math.max(interval.getMinIntervalMillis(),
+                Math.min(interval.getMaxIntervalMillis(), mIntervalMillis));
+
+        // align with the wall clock, to a random period around the interval when it is random
+        long periodMillis = mIntervalMillis;
+        if (interval.equals(Policy.BeaconingInterval.RANDOM)) {
+            periodMillis = mIntervalMillis / 2 + (long) (mRandom.nextDouble() * mIntervalMillis);
+        }
+        final long nextBeaconTime = ((now / periodMillis) + 1) * periodMillis;
+
+        final Decision decision = new Decision(now, neighbors.size(), newNeighbors, lostNeighbors,
+                pendingPackets, previousIntervalMillis, mIntervalMillis, nextBeaconTime, reason);
+        mHistory.addLast(decision);
+        if (mHistory.size() > MAX_HISTORY_SIZE) {
+            mHistory.removeFirst();
+        }
+        Log.d(TAG, decision.toString());
+
+        mLastDecisionTime = now;
+        mLastNeighbors = neighbors;
+        return nextBeaconTime;
+    }
+
+    /**
+     * Returns the number of outgoing packets still owed to someone: those newer than the time of last packet of
+     * the current neighbor that is furthest behind, or, without current neighbors, those enqueued since the last
+     * decision.
+     * @return Number of packets.
+     */
+    private long getPendingPacketCount() {
+        long sinceTimestamp = Long.MAX_VALUE;
+        for (Neighbor neighbor : mNeighborTable.getCurrentNeighbors()) {
+            sinceTimestamp = Math.min(sinceTimestamp, neighbor.getTimeLastPacket());
+        }
+        if (sinceTimestamp == Long.MAX_VALUE) {
+            sinceTimestamp = mLastDecisionTime / 1000;
+        }
+        return mDbController.getOutgoingPacketCount(sinceTimestamp);
+    }
+
+    /**
+     * Returns the last decisions, oldest first.
+     * @return List of decisions.
+     */
+    public synchronized List<Decision> getDecisionHistory() {
+        return new ArrayList<>(mHistory);
+    }
+
+    /**
+     * Returns the interval used when there is no information about the neighborhood.
+     * @param interval Beaconing interval.
+     * @return Interval in milliseconds.
+     */
+    private static long getBaseIntervalMillis(Policy.BeaconingInterval interval) {
+        return (interval.equals(Policy.BeaconingInterval.RANDOM) ? RANDOM_BASE_INTERVAL : interval.getIntervalMillis());
+    }
+
+    /**
+     * Reason of a scheduling decision.
+     */
+    public enum Reason {
+        /**
+         * Many neighbors appeared or disappeared, or some did while packets are waiting; interval was halved.
+         */
+        HIGH_CHURN,
+        /**
+         * Few neighbors appeared or disappeared; interval was kept, at most at its base value.
+         */
+        LOW_CHURN,
+        /**
+         * Neighborhood did not change, but packets are waiting; interval was kept, at most at its base value.
+         */
+        PENDING_PACKETS,
+        /**
+         * Neighborhood did not change; interval was doubled.
+         */
+        STABLE,
+        /**
+         * No neighbors; interval was doubled.
+         */
+        EMPTY
+    }
+
+    /**
+     * A scheduling decision, with the observations it was based on.
+     */
+    public static final class Decision {
+        private final long mTimestamp;
+        private final int mNeighbors;
+        private final int mNewNeighbors;
+        private final int mLostNeighbors;
+        private final long mPendingPackets;
+        private final long mPreviousIntervalMillis;
+        private final long mIntervalMillis;
+        private final long mNextBeaconTime;
+        private final Reason mReason;
+
+        private Decision(long timestamp, int neighbors, int newNeighbors, int lostNeighbors, long pendingPackets,
+                         long previousIntervalMillis, long intervalMillis, long nextBeaconTime, Reason reason) {
+            mTimestamp = timestamp;
+            mNeighbors = neighbors;
+            mNewNeighbors = newNeighbors;
+            mLostNeighbors = lostNeighbors;
+            mPendingPackets = pendingPackets;
+            mPreviousIntervalMillis = previousIntervalMillis;
+            mIntervalMillis = intervalMillis;
+            mNextBeaconTime = nextBeaconTime;
+            mReason = reason;
+        }
+
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        public int getNeighbors() {
+            return mNeighbors;
+        }
+
+        public int getNewNeighbors() {
+            return mNewNeighbors;
+        }
+
+        public int getLostNeighbors() {
+            return mLostNeighbors;
+        }
+
+        public long getPendingPackets() {
+            return mPendingPackets;
+        }
+
+        public long getPreviousIntervalMillis() {
+            return mPreviousIntervalMillis;
+        }
+
+        public long getIntervalMillis() {
+            return mIntervalMillis;
+        }
+
+        public long getNextBeaconTime() {
+            return mNextBeaconTime;
+        }
+
+        public Reason getReason() {
+            return mReason;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s: %d neighbors (+%d/-%d), %d pending packets, interval %ds -> %ds, next round in %ds",
+                    mReason, mNeighbors, mNewNeighbors, mLostNeighbors, mPendingPackets,
+                    mPreviousIntervalMillis / 1000, mIntervalMillis / 1000, (mNextBeaconTime - mTimestamp) / 1000);
+        }
+    }
+}
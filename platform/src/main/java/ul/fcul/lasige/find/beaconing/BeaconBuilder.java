@@ -1,14 +1,24 @@
 package ul.fcul.lasige.find.beaconing;
 
 import android.annotation.SuppressLint;
+import android.util.Log;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.protobuf.ByteString;
 
+import java.io.ByteArrayOutputStream;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
 import java.nio.ByteBuffer;
 import java.security.SecureRandom;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ul.fcul.lasige.find.lib.data.Neighbor;
 import ul.fcul.lasige.find.network.NetworkManager;
@@ -18,33 +28,110 @@ import ul.fcul.lasige.find.protocolbuffer.FindProtos;
 /**
  * The class provides the functionality to build beacons.
  *
+ * <p>Building a beacon requires the current neighbors, the registered protocols and the WiFi connection,
+ * which rarely change between consecutive beacons. Therefore, the sender and neighbors part of the beacon
+ * is serialized once into a template, and only the header (beacon type, id and creation time) is built
+ * for each beacon. Templates are rebuilt when the protocol set, the neighbor set (see
+ * {@link #invalidateNeighbors()}), the connection or the AP likelihood changes, or when they are older than
+ * {@link #TEMPLATE_MAX_AGE_MILLIS} (neighbors' last seen deltas and the set of current neighbors drift with
+ * time).</p>
+ *
+ * <p>Beacons are kept under {@link #MAX_BEACON_SIZE} bytes, to avoid IP fragmentation. When the full beacon
+ * is larger, a compact format is used instead: the sender's protocols are sent as a Bloom filter
+ * ({@link ProtocolBloomFilter}) and neighbors' node ids are shortened to {@link #COMPACT_NODE_ID_PREFIX_BYTES}
+ * bytes. If neighbors still do not fit, they are spread over several beacons, which are sent in rotation
+ * (the freshest neighbors are included in all of them).</p>
+ *
+ * <p>The class is thread-safe; it may be used concurrently by all senders.</p>
+ *
  * Created by hugonicolau on 13/11/15.
  */
 public class BeaconBuilder {
+    private static final String TAG = BeaconBuilder.class.getSimpleName();
+
+    // maximum age of a beacon template or of the current neighbors snapshot
+    private static final long TEMPLATE_MAX_AGE_MILLIS = 30 * 1000; // 30 seconds
+
+    // maximum size of a beacon, so that it is not fragmented (1500 bytes MTU minus IP/UDP headers and slack)
+    public static final int MAX_BEACON_SIZE = 1400;
+    // maximum size of a beacon's header (type, id and creation time)
+    private static final int MAX_HEADER_SIZE = 16;
+    // number of bytes of a neighbor's node id included in compact beacons
+    public static final int COMPACT_NODE_ID_PREFIX_BYTES = 8;
+
     @SuppressLint("TrulyRandom")
     private static final SecureRandom sRNG = new SecureRandom();
 
     private final BeaconingManager mBM;
-    private final FindProtos.Beacon.Builder mBeaconBuilder = FindProtos.Beacon.newBuilder();
+
+    // incremented every time the set of neighbors changes
+    private final AtomicInteger mNeighborsVersion = new AtomicInteger();
+    // current neighbors snapshot
+    private volatile NeighborsSnapshot mNeighbors;
+    // template for beacons with neighbors information (also used for replies)
+    private volatile BeaconTemplate mNeighborsTemplate;
+    // template for beacons with "access point likelihood", without neighbors
+    private volatile BeaconTemplate mApLikelihoodTemplate;
 
     public BeaconBuilder(BeaconingManager context) {
         mBM = context;
     }
 
+    /**
+     * Signals that the set of neighbors has changed. Beacon templates are rebuilt before the next beacon
+     * is sent.
+     */
+    public void invalidateNeighbors() {
+        mNeighborsVersion.incrementAndGet();
+    }
+
+    /**
+     * Returns the current neighbors, as used to build beacons. The set is only taken from the neighbor table
+     * after {@link #invalidateNeighbors()} is called or when it is older than {@link #TEMPLATE_MAX_AGE_MILLIS}.
+     * @return Set of current neighbors.
+     * @see BeaconingManager#getCurrentTimestamp()
+     */
+    public Set<Neighbor> getCurrentNeighbors() {
+        return getNeighborsSnapshot().mNeighbors;
+    }
+
+    /**
+     * Returns an up to date snapshot of the current neighbors, taking it from the neighbor table if needed.
+     * @return Neighbors snapshot.
+     */
+    private NeighborsSnapshot getNeighborsSnapshot() {
+        final long now = System.currentTimeMillis();
+        final int version = mNeighborsVersion.get();
+
+        NeighborsSnapshot snapshot = mNeighbors;
+        if (snapshot == null || snapshot.mVersion != version
+                || now - snapshot.mTimeCreated > TEMPLATE_MAX_AGE_MILLIS) {
+            // take neighbors
+            snapshot = new NeighborsSnapshot(
+                    mBM.mNeighborTable.getNeighbors(BeaconingManager.getCurrentTimestamp()), version, now);
+            mNeighbors = snapshot;
+        }
+        return snapshot;
+    }
+
     /**
      * Builds a beacon without neighbor information, but with "access point likelihood" value.
      *
      * @param wifiState WiFi state.
      * @param connection Connection.
-     * @param protocols Protocol's hash values.
      * @param apLikelihood AP likelihood.
      * @return Beacon.
      */
     public byte[] buildBeacon(NetworkManager.WifiState wifiState, Optional<WifiConnection> connection,
-                              Set<ByteBuffer> protocols, byte apLikelihood) {
+                              byte apLikelihood) {
+
+        BeaconTemplate template = mApLikelihoodTemplate;
+        if (template == null || !template.matches(connection, protocolsVersion(), -1, apLikelihood)) {
+            template = makeTemplate(connection, Collections.<Neighbor>emptySet(), -1, apLikelihood);
+            mApLikelihoodTemplate = template;
+        }
 
-        return makeBeacon(wifiState, connection, protocols, new HashSet<Neighbor>(), apLikelihood)
-                .build().toByteArray();
+        return makeBeacon(template, FindProtos.Beacon.BeaconType.ORIGINAL);
     }
 
     /**
@@ -52,15 +139,11 @@ public class BeaconBuilder {
      *
      * @param wifiState WiFi state.
      * @param connection Connection.
-     * @param protocols Protocols' hash values.
-     * @param neighbors Neighbors
      * @return Beacon.
+     * @see #getCurrentNeighbors()
      */
-    public byte[] buildBeacon(NetworkManager.WifiState wifiState, Optional<WifiConnection> connection,
-                              Set<ByteBuffer> protocols, Set<Neighbor> neighbors) {
-
-        return makeBeacon(wifiState, connection, protocols, neighbors, null)
-                .build().toByteArray();
+    public byte[] buildBeacon(NetworkManager.WifiState wifiState, Optional<WifiConnection> connection) {
+        return makeBeacon(getNeighborsTemplate(connection), FindProtos.Beacon.BeaconType.ORIGINAL);
     }
 
     /**
@@ -68,41 +151,102 @@ public class BeaconBuilder {
      *
      * @param wifiState WiFi state.
      * @param connection Connection.
-     * @param protocols Protocols' hash values.
-     * @param neighbors Neighbors.
      * @param originalBeacon Original beacon.
      * @return Reply beacon.
+     * @see #getCurrentNeighbors()
      */
     public byte[] buildReply(NetworkManager.WifiState wifiState, Optional<WifiConnection> connection,
-                             Set<ByteBuffer> protocols, Set<Neighbor> neighbors, FindProtos.Beacon originalBeacon) {
+                             FindProtos.Beacon originalBeacon) {
+
+        return makeBeacon(getNeighborsTemplate(connection), FindProtos.Beacon.BeaconType.REPLY);
+    }
+
+    /**
+     * Returns an up to date template for beacons with neighbors information, rebuilding it if needed.
+     * @param connection Connection.
+     * @return Beacon template.
+     */
+    private BeaconTemplate getNeighborsTemplate(Optional<WifiConnection> connection) {
+        // make sure neighbors snapshot is up to date
+        final NeighborsSnapshot snapshot = getNeighborsSnapshot();
+        final Set<Neighbor> neighbors = snapshot.mNeighbors;
+        final int neighborsVersion = snapshot.mVersion;
+
+        BeaconTemplate template = mNeighborsTemplate;
+        if (template == null
+                || !template.matches(connection, protocolsVersion(), neighborsVersion, null)
+                || System.currentTimeMillis() - template.mTimeCreated > TEMPLATE_MAX_AGE_MILLIS) {
+            template = makeTemplate(connection, neighbors, neighborsVersion, null);
+            mNeighborsTemplate = template;
+        }
+        return template;
+    }
+
+    /**
+     * Returns current version of the registered protocols.
+     * @return Protocols version.
+     * @see ul.fcul.lasige.find.apps.ProtocolRegistry#getVersion()
+     */
+    private int protocolsVersion() {
+        return mBM.mProtocolRegistry.getVersion();
+    }
+
+    /**
+     * Builds a beacon from a template, adding a new beacon id and the current time.
+     * @param template Beacon template.
+     * @param beaconType Beacon type.
+     * @return Beacon.
+     */
+    private static byte[] makeBeacon(BeaconTemplate template, FindProtos.Beacon.BeaconType beaconType) {
+        return makeBeacon(template.nextPage(), beaconType, sRNG.nextInt(), System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Builds a beacon from a page (sender and neighbors part) and a header. Also used by the simulator, which
+     * provides its own beacon ids and (simulated) time.
+     * @param body Serialized page, as returned by {@link #makePages(FindProtos.Node.Builder, Set, Collection, String, long)}.
+     * @param beaconType Beacon type.
+     * @param beaconId Beacon id.
+     * @param timeCreatedSeconds Creation time, in seconds.
+     * @return Beacon.
+     */
+    public static byte[] makeBeacon(byte[] body, FindProtos.Beacon.BeaconType beaconType, int beaconId,
+                                    long timeCreatedSeconds) {
+        final FindProtos.Beacon.Builder headerBuilder = FindProtos.Beacon.newBuilder()
+                .setBeaconId(beaconId)
+                .setTimeCreated(timeCreatedSeconds);
+        if (beaconType != FindProtos.Beacon.BeaconType.ORIGINAL) {
+            headerBuilder.setBeaconType(beaconType);
+        }
+        final byte[] header = headerBuilder.build().toByteArray();
 
-        return makeBeacon(wifiState, connection, protocols, neighbors, null)
-                .setBeaconType(FindProtos.Beacon.BeaconType.REPLY)
-                .build().toByteArray();
+        // header fields have lower field numbers than sender and neighbors, so the concatenation is
+        // exactly what serializing the whole beacon at once would produce
+        final byte[] beacon = new byte[header.length + body.length];
+        System.arraycopy(header, 0, beacon, 0, header.length);
+        System.arraycopy(body, 0, beacon, header.length, body.length);
+        return beacon;
     }
 
     /**
-     * Builds a beacon. Used internally.
+     * Builds a beacon template (sender and neighbors). Used internally.
      *
-     * @param wifiState WiFi state.
      * @param wifiConnection Connection.
-     * @param protocols Protocols' hash values.
      * @param neighbors Neighbors.
+     * @param neighborsVersion Version of the neighbors set.
      * @param apLikelihood AP likelihood.
-     * @return Beacon.
+     * @return Beacon template.
      */
-    private FindProtos.Beacon.Builder makeBeacon(NetworkManager.WifiState wifiState, Optional<WifiConnection> wifiConnection,
-                                      Set<ByteBuffer> protocols, Set<Neighbor> neighbors, Byte apLikelihood) {
-        final long timeCreated = System.currentTimeMillis() / 1000;
-
-        // Build basic data
-        mBeaconBuilder.clear()
-                .setTimeCreated(timeCreated)
-                .setBeaconId(sRNG.nextInt());
+    private BeaconTemplate makeTemplate(Optional<WifiConnection> wifiConnection, Set<Neighbor> neighbors,
+                                        int neighborsVersion, Byte apLikelihood) {
+        final long timeCreated = System.currentTimeMillis();
+        final long timeCreatedSeconds = timeCreated / 1000;
+        final int protocolsVersion = protocolsVersion();
+        final Set<ByteBuffer> protocols = mBM.mProtocolRegistry.getAllProtocolImplementations().keySet();
 
         // Build sender information
         final FindProtos.Node.Builder senderBuilder =
-                mBeaconBuilder.getSenderBuilder().setNodeId(ByteString.copyFrom(mBM.mMasterIdentity.getPublicKey()));
+                FindProtos.Node.newBuilder().setNodeId(ByteString.copyFrom(mBM.mMasterIdentity.getPublicKey()));
 
         if (wifiConnection.isPresent()) {
             WifiConnection connection = wifiConnection.get();
@@ -147,12 +291,39 @@ public class BeaconBuilder {
             currentNetwork = wifiConnection.get().getNetworkName().get();
         }
 
-        for (Neighbor neighbor : neighbors) {
-            // The following values are directly added to the main beaconBuilder
-            final FindProtos.Node.Builder neighborBuilder =
-                    mBeaconBuilder.addNeighborsBuilder()
-                            .setNodeId(ByteString.copyFrom(neighbor.getNodeId()))
-                            .setDeltaLastseen((int) (timeCreated - neighbor.getTimeLastSeen()));
+        final byte[][] pages = makePages(senderBuilder, protocols, neighbors, currentNetwork, timeCreatedSeconds);
+        return new BeaconTemplate(pages, wifiConnection,
+                protocolsVersion, neighborsVersion, apLikelihood, timeCreated);
+    }
+
+    /**
+     * Builds the sender and neighbors part of beacons. When the full format does not fit in a single beacon, the
+     * compact format is used instead, spread over several pages. Also used by the simulator.
+     *
+     * @param senderBuilder Sender node, with all its fields but the neighbors.
+     * @param protocols Sender's protocols' hash values.
+     * @param neighbors Neighbors.
+     * @param currentNetwork Name of the current network; neighbors last seen in it do not carry its name.
+     * @param timeCreatedSeconds Creation time, in seconds, used to compute when neighbors were last seen.
+     * @return Serialized pages; each fits in {@link #MAX_BEACON_SIZE} bytes together with a header.
+     */
+    public static byte[][] makePages(FindProtos.Node.Builder senderBuilder, Set<ByteBuffer> protocols,
+                                     Collection<Neighbor> neighbors, String currentNetwork,
+                                     long timeCreatedSeconds) {
+        // freshest neighbors first, they are the most likely to be reachable
+        final List<Neighbor> sortedNeighbors = new ArrayList<>(neighbors);
+        Collections.sort(sortedNeighbors, new Comparator<Neighbor>() {
+            @Override
+            public int compare(Neighbor lhs, Neighbor rhs) {
+                return Long.valueOf(rhs.getTimeLastSeen()).compareTo(lhs.getTimeLastSeen());
+            }
+        });
+
+        final List<FindProtos.Node.Builder> neighborBuilders = new ArrayList<>(sortedNeighbors.size());
+        for (Neighbor neighbor : sortedNeighbors) {
+            final FindProtos.Node.Builder neighborBuilder = FindProtos.Node.newBuilder()
+                    .setNodeId(ByteString.copyFrom(neighbor.getNodeId()))
+                    .setDeltaLastseen((int) (timeCreatedSeconds - neighbor.getTimeLastSeen()));
 
             if (!neighbor.isMulticastCapable()) {
                 neighborBuilder.setMulticastCapable(false);
@@ -177,8 +348,174 @@ public class BeaconBuilder {
                 neighborBuilder.setBtAddress(
                         ByteString.copyFrom(neighbor.getBluetoothAddress()));
             }
+            neighborBuilders.add(neighborBuilder);
+        }
+
+        // try the full format first
+        final FindProtos.Beacon.Builder beaconBuilder = FindProtos.Beacon.newBuilder().setSender(senderBuilder);
+        for (FindProtos.Node.Builder neighborBuilder : neighborBuilders) {
+            beaconBuilder.addNeighbors(neighborBuilder);
+        }
+        final byte[] fullBody = beaconBuilder.build().toByteArray();
+
+        final byte[][] pages;
+        if (fullBody.length <= MAX_BEACON_SIZE - MAX_HEADER_SIZE) {
+            // fits in a single datagram
+            pages = new byte[][] { fullBody };
+        } else {
+            // too big, use compact format
+            pages = makeCompactPages(senderBuilder, protocols, neighborBuilders);
+            Log.v(TAG, String.format(
+                    "Beacon with %d neighbors has %d bytes, using %d compact beacons instead",
+                    neighborBuilders.size(), fullBody.length, pages.length));
+        }
+        return pages;
+    }
+
+    /**
+     * Builds the compact sender and neighbors part of beacons. The sender's protocols are replaced by a
+     * Bloom filter and neighbors' ids by their prefix. When not all neighbors fit in one beacon, the
+     * freshest neighbors (up to half of the available space) are included in every beacon, and the
+     * remaining neighbors are spread over several beacons (pages), which are sent in rotation.
+     *
+     * @param senderBuilder Sender node, in full format.
+     * @param protocols Protocols' hash values.
+     * @param neighborBuilders Neighbor nodes, in full format, sorted by priority.
+     * @return Serialized pages; each fits in {@link #MAX_BEACON_SIZE} bytes together with a header.
+     * @see ProtocolBloomFilter
+     */
+    private static byte[][] makeCompactPages(FindProtos.Node.Builder senderBuilder, Set<ByteBuffer> protocols,
+                                             List<FindProtos.Node.Builder> neighborBuilders) {
+        // compact sender
+        final FindProtos.Node compactSender = senderBuilder.clone()
+                .clearProtocols()
+                .setProtocolsBloom(ProtocolBloomFilter.encode(protocols))
+                .build();
+        final byte[] senderPart = FindProtos.Beacon.newBuilder().setSender(compactSender).build().toByteArray();
+
+        // compact neighbors; each one serialized as a beacon field, so that parts can be concatenated
+        final List<byte[]> neighborParts = new ArrayList<>(neighborBuilders.size());
+        for (FindProtos.Node.Builder neighborBuilder : neighborBuilders) {
+            final FindProtos.Node compactNeighbor = neighborBuilder.clone()
+                    .clearNodeId()
+                    .setNodeIdPrefix(neighborBuilder.getNodeId().substring(
+                            0, Math.min(COMPACT_NODE_ID_PREFIX_BYTES, neighborBuilder.getNodeId().size())))
+                    .build();
+            neighborParts.add(FindProtos.Beacon.newBuilder().addNeighbors(compactNeighbor).build().toByteArray());
+        }
+
+        final int budget = MAX_BEACON_SIZE - MAX_HEADER_SIZE - senderPart.length;
+
+        // neighbors included in every page
+        final ByteArrayOutputStream fixedPart = new ByteArrayOutputStream();
+        int next = 0;
+        while (next < neighborParts.size() && fixedPart.size() + neighborParts.get(next).length <= budget / 2) {
+            fixedPart.write(neighborParts.get(next), 0, neighborParts.get(next).length);
+            next++;
+        }
+
+        // rotating neighbors
+        final List<byte[]> pages = new ArrayList<>();
+        do {
+            final ByteArrayOutputStream page = new ByteArrayOutputStream(MAX_BEACON_SIZE);
+            page.write(senderPart, 0, senderPart.length);
+            page.write(fixedPart.toByteArray(), 0, fixedPart.size());
+
+            final int pageStart = next;
+            while (next < neighborParts.size()
+                    && page.size() - senderPart.length + neighborParts.get(next).length <= budget) {
+                page.write(neighborParts.get(next), 0, neighborParts.get(next).length);
+                next++;
+            }
+            if (next == pageStart && next < neighborParts.size()) {
+                // a single neighbor that does not fit at all, skip it
+                next++;
+            }
+            pages.add(page.toByteArray());
+        } while (next < neighborParts.size());
+
+        return pages.toArray(new byte[pages.size()][]);
+    }
+
+    /**
+     * Immutable snapshot of the current neighbors.
+     */
+    private static final class NeighborsSnapshot {
+        private final Set<Neighbor> mNeighbors;
+        private final int mVersion;
+        private final long mTimeCreated;
+
+        NeighborsSnapshot(Set<Neighbor> neighbors, int version, long timeCreated) {
+            mNeighbors = Collections.unmodifiableSet(neighbors);
+            mVersion = version;
+            mTimeCreated = timeCreated;
+        }
+    }
+
+    /**
+     * Immutable, serialized sender and neighbors part of a beacon, together with the state it was built from.
+     * Compact templates may have several pages, which are used in rotation.
+     */
+    private static final class BeaconTemplate {
+        // serialized beacons with sender and neighbors only
+        private final byte[][] mPages;
+        // next page to use
+        private final AtomicInteger mNextPage = new AtomicInteger();
+        private final Optional<Inet4Address> mIp4Address;
+        private final Optional<Inet6Address> mIp6Address;
+        private final Optional<String> mNetworkName;
+        private final int mProtocolsVersion;
+        private final int mNeighborsVersion;
+        private final Byte mApLikelihood;
+        private final long mTimeCreated;
+
+        BeaconTemplate(byte[][] pages, Optional<WifiConnection> connection, int protocolsVersion,
+                       int neighborsVersion, Byte apLikelihood, long timeCreated) {
+            mPages = pages;
+            mIp4Address = connection.isPresent()
+                    ? connection.get().getIp4Address() : Optional.<Inet4Address>absent();
+            mIp6Address = connection.isPresent()
+                    ? connection.get().getIp6Address() : Optional.<Inet6Address>absent();
+            mNetworkName = connection.isPresent()
+                    ? connection.get().getNetworkName() : Optional.<String>absent();
+            mProtocolsVersion = protocolsVersion;
+            mNeighborsVersion = neighborsVersion;
+            mApLikelihood = apLikelihood;
+            mTimeCreated = timeCreated;
         }
 
-        return mBeaconBuilder;
+        /**
+         * Returns the next page, in rotation.
+         * @return Serialized sender and neighbors part of a beacon.
+         */
+        byte[] nextPage() {
+            if (mPages.length == 1) {
+                return mPages[0];
+            }
+            return mPages[(mNextPage.getAndIncrement() & Integer.MAX_VALUE) % mPages.length];
+        }
+
+        /**
+         * Checks whether the template was built from the given state.
+         * @param connection Connection.
+         * @param protocolsVersion Protocols version.
+         * @param neighborsVersion Neighbors version.
+         * @param apLikelihood AP likelihood (can be null).
+         * @return true if template can be used, false if it must be rebuilt.
+         */
+        boolean matches(Optional<WifiConnection> connection, int protocolsVersion,
+                        int neighborsVersion, Byte apLikelihood) {
+            if (mProtocolsVersion != protocolsVersion || mNeighborsVersion != neighborsVersion
+                    || !Objects.equal(mApLikelihood, apLikelihood)) {
+                return false;
+            }
+            if (!connection.isPresent()) {
+                return !mIp4Address.isPresent() && !mIp6Address.isPresent() && !mNetworkName.isPresent();
+            }
+            final WifiConnection current = connection.get();
+            return mIp4Address.equals(current.getIp4Address())
+                    && mIp6Address.equals(current.getIp6Address())
+                    && mNetworkName.equals(current.getNetworkName());
+        }
     }
 }
@@ -0,0 +1,136 @@
+package ul.fcul.lasige.find.beaconing;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity set of 64-bit keys (beacon fingerprints or beacon ids) with time-based expiry. Used by
+ * {@link BeaconParser} to discard duplicate beacons without keeping every received beacon in memory.
+ *
+ * <p>Keys are stored in a primitive open-addressing table with linear probing. Expired entries are
+ * reused, and when a probe window is full the entry closest to expiring is overwritten. Memory usage
+ * is therefore fixed (16 bytes per slot), regardless of how many beacons are received.</p>
+ */
+public class BeaconDedupCache {
+    private static final String TAG = BeaconDedupCache.class.getSimpleName();
+
+    // maximum number of slots visited when looking up or inserting a key
+    private static final int MAX_PROBES = 8;
+
+    // hash function used to fingerprint raw beacons
+    private static final HashFunction sFingerprintFunction = Hashing.murmur3_128();
+
+    // stored keys
+    private final long[] mKeys;
+    // expiration timestamp (millis) of each slot; 0 means empty
+    private final long[] mExpirations;
+    // mask used to map hashes into slots (capacity - 1)
+    private final int mMask;
+
+    /**
+     * Constructor.
+     * @param capacity Number of slots. Rounded up to the next power of two.
+     */
+    public BeaconDedupCache(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+        mKeys = new long[slots];
+        mExpirations = new long[slots];
+        mMask = slots - 1;
+    }
+
+    /**
+     * Computes the 64-bit fingerprint of a raw beacon.
+     * @param data Raw beacon data.
+     * @return Fingerprint.
+     */
+    public static long fingerprint(byte[] data) {
+        return sFingerprintFunction.hashBytes(data).asLong();
+    }
+
+    /**
+     * Adds a key to the cache, unless it is already there and not yet expired.
+     * @param key Key (e.g. fingerprint or beacon id).
+     * @param nowMillis Current time in milliseconds.
+     * @param ttlMillis Time, in milliseconds, the key is kept in the cache.
+     * @return true if the key was not in the cache, false otherwise.
+     */
+    public synchronized boolean add(long key, long nowMillis, long ttlMillis) {
+        final int start = slotOf(key);
+        int freeSlot = -1;
+        int oldestSlot = start;
+
+        for (int i = 0; i < MAX_PROBES; i++) {
+            final int slot = (start + i) & mMask;
+            final long expiration = mExpirations[slot];
+
+            if (expiration > nowMillis) {
+                if (mKeys[slot] == key) {
+                    // duplicate
+                    return false;
+                }
+                if (expiration < mExpirations[oldestSlot]) {
+                    oldestSlot = slot;
+                }
+            } else if (freeSlot < 0) {
+                // empty or expired slot
+                freeSlot = slot;
+            }
+        }
+
+        // store key, evicting the entry closest to expiring if there is no free slot
+        final int slot = (freeSlot >= 0) ? freeSlot : oldestSlot;
+        mKeys[slot] = key;
+        mExpirations[slot] = nowMillis + Math.max(1, ttlMillis);
+        return true;
+    }
+
+    /**
+     * Checks whether a key is in the cache and not yet expired.
+     * @param key Key.
+     * @param nowMillis Current time in milliseconds.
+     * @return true if key is in the cache, false otherwise.
+     */
+    public synchronized boolean contains(long key, long nowMillis) {
+        final int start = slotOf(key);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            final int slot = (start + i) & mMask;
+            if (mExpirations[slot] > nowMillis && mKeys[slot] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all keys from the cache.
+     */
+    public synchronized void clear() {
+        Arrays.fill(mExpirations, 0);
+    }
+
+    /**
+     * Returns the number of slots of the cache.
+     * @return Capacity.
+     */
+    public int getCapacity() {
+        return mKeys.length;
+    }
+
+    /**
+     * Maps a key into its first slot. Keys are mixed first, since beacon ids are not uniformly distributed
+     * over the lower bits.
+     * @param key Key.
+     * @return Slot index.
+     */
+    private int slotOf(long key) {
+        // murmur3 64-bit finalizer
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mMask;
+    }
+}
@@ -0,0 +1,277 @@
+package ul.fcul.lasige.find.beaconing;
+
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ul.fcul.lasige.find.beaconing.BeaconParser.PossibleBeacon;
+
+/**
+ * Bounded queue of received beacons waiting to be parsed by {@link BeaconParser}. Beacons are kept in two lanes:
+ * a priority lane, for replies and beacons from senders that are not current neighbors, and a regular lane, for
+ * repeated beacons from known peers. The priority lane is always served first.
+ *
+ * <p>When the queue is full, a beacon is dropped according to the {@link DropPolicy}. Beacons in the regular lane
+ * are dropped before beacons in the priority lane, and a regular beacon never replaces a priority one. Queue depth
+ * and number of dropped beacons are kept as counters.</p>
+ */
+public class BeaconIntakeQueue {
+    private static final String TAG = BeaconIntakeQueue.class.getSimpleName();
+
+    /**
+     * Default number of beacons the queue holds.
+     * @see ul.fcul.lasige.find.data.ConfigurationStore#setBeaconQueueCapacity(android.content.Context, int)
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Which beacon is dropped when the queue is full.
+     */
+    public enum DropPolicy {
+        /**
+         * Drop the oldest queued beacon.
+         */
+        OLDEST_FIRST,
+        /**
+         * Drop the oldest queued beacon of the origin with more queued beacons, so that a single chatty (or
+         * flooding) neighbor can not push the beacons of everyone else out of the queue.
+         */
+        PER_ORIGIN_FAIR
+    }
+
+    // maximum number of queued beacons
+    private final int mCapacity;
+    // drop policy
+    private final DropPolicy mDropPolicy;
+
+    // lanes of queued beacons, oldest first
+    private final ArrayDeque<QueuedBeacon> mPriorityLane = new ArrayDeque<>();
+    private final ArrayDeque<QueuedBeacon> mRegularLane = new ArrayDeque<>();
+    // number of queued beacons by origin address
+    private final Map<ByteBuffer, Integer> mQueuedByOrigin = new HashMap<>();
+
+    // statistics
+    private long mEnqueuedCount;
+    private long mDropCount;
+
+    /**
+     * Constructor.
+     * @param capacity Maximum number of queued beacons.
+     * @param dropPolicy Which beacon is dropped when the queue is full.
+     */
+    public BeaconIntakeQueue(int capacity, DropPolicy dropPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        mCapacity = capacity;
+        mDropPolicy = dropPolicy;
+    }
+
+    /**
+     * Adds a beacon to the queue, dropping a queued beacon if the queue is full.
+     * @param beacon Beacon.
+     * @param priority Whether the beacon goes to the priority lane.
+     * @return true if the beacon was queued, false if it was dropped itself.
+     */
+    public synchronized boolean offer(PossibleBeacon beacon, boolean priority) {
+        final QueuedBeacon queued = new QueuedBeacon(beacon, priority);
+
+        if (mPriorityLane.size() + mRegularLane.size() >= mCapacity) {
+            final QueuedBeacon victim = selectVictim(queued);
+            mDropCount++;
+            if (victim == null) {
+                // nothing less important is queued
+                Log.v(TAG, "Queue full, dropped incoming beacon");
+                return false;
+            }
+            remove(victim);
+        }
+
+        (priority ? mPriorityLane : mRegularLane).addLast(queued);
+        mQueuedByOrigin.put(queued.mOrigin, queuedFrom(queued.mOrigin) + 1);
+        mEnqueuedCount++;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Removes the next beacon, waiting until one is available. Beacons in the priority lane come first.
+     * @return Queued beacon.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public synchronized QueuedBeacon take() throws InterruptedException {
+        while (mPriorityLane.isEmpty() && mRegularLane.isEmpty()) {
+            wait();
+        }
+        return poll();
+    }
+
+    /**
+     * Removes queued beacons, without waiting, and adds them to a given list. Beacons in the priority lane
+     * come first.
+     * @param beacons List where beacons are added.
+     * @param maxBeacons Maximum number of beacons to remove.
+     * @return Number of beacons removed.
+     */
+    public synchronized int drainTo(List<QueuedBeacon> beacons, int maxBeacons) {
+        int drained = 0;
+        while (drained < maxBeacons && (!mPriorityLane.isEmpty() || !mRegularLane.isEmpty())) {
+            beacons.add(poll());
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Returns the number of queued beacons.
+     * @return Queue depth.
+     */
+    public synchronized int getDepth() {
+        return mPriorityLane.size() + mRegularLane.size();
+    }
+
+    /**
+     * Returns the number of beacons queued since the queue was created.
+     * @return Number of beacons.
+     */
+    public synchronized long getEnqueuedCount() {
+        return mEnqueuedCount;
+    }
+
+    /**
+     * Returns the number of beacons dropped because the queue was full.
+     * @return Number of beacons.
+     */
+    public synchronized long getDropCount() {
+        return mDropCount;
+    }
+
+    /**
+     * Removes the next beacon. Must be called while holding the lock, with at least one beacon queued.
+     * @return Queued beacon.
+     */
+    private QueuedBeacon poll() {
+        final QueuedBeacon queued = (!mPriorityLane.isEmpty() ? mPriorityLane.pollFirst() : mRegularLane.pollFirst());
+        decrementOrigin(queued.mOrigin);
+        return queued;
+    }
+
+    /**
+     * Chooses which queued beacon is dropped to make room for an incoming one. Must be called while holding
+     * the lock.
+     * @param incoming Incoming beacon.
+     * @return Queued beacon to drop, or null if the incoming beacon should be dropped instead.
+     */
+    private QueuedBeacon selectVictim(QueuedBeacon incoming) {
+        if (mDropPolicy == DropPolicy.PER_ORIGIN_FAIR) {
+            // origin with more queued beacons, counting the incoming one
+            ByteBuffer heaviestOrigin = incoming.mOrigin;
+            int heaviestCount = queuedFrom(incoming.mOrigin) + 1;
+            for (Map.Entry<ByteBuffer, Integer> entry : mQueuedByOrigin.entrySet()) {
+                if (entry.getValue() > heaviestCount) {
+                    heaviestOrigin = entry.getKey();
+                    heaviestCount = entry.getValue();
+                }
+            }
+
+            QueuedBeacon victim = oldestFrom(mRegularLane, heaviestOrigin);
+            if (victim == null && incoming.mPriority) {
+                victim = oldestFrom(mPriorityLane, heaviestOrigin);
+            }
+            if (victim != null || heaviestOrigin.equals(incoming.mOrigin)) {
+                // when the incoming beacon's origin is the heaviest one, it is dropped itself
+                return victim;
+            }
+            // heaviest origin has nothing that can be dropped, fall back to the oldest beacon
+        }
+
+        if (!mRegularLane.isEmpty()) {
+            return mRegularLane.peekFirst();
+        }
+        return (incoming.mPriority ? mPriorityLane.peekFirst() : null);
+    }
+
+    /**
+     * Removes a queued beacon. Must be called while holding the lock.
+     * @param queued Queued beacon.
+     */
+    private void remove(QueuedBeacon queued) {
+        (queued.mPriority ? mPriorityLane : mRegularLane).removeFirstOccurrence(queued);
+        decrementOrigin(queued.mOrigin);
+    }
+
+    /**
+     * Returns the number of queued beacons from a given origin. Must be called while holding the lock.
+     * @param origin Origin address.
+     * @return Number of beacons.
+     */
+    private int queuedFrom(ByteBuffer origin) {
+        final Integer count = mQueuedByOrigin.get(origin);
+        return (count != null ? count : 0);
+    }
+
+    /**
+     * Decrements the number of queued beacons from a given origin. Must be called while holding the lock.
+     * @param origin Origin address.
+     */
+    private void decrementOrigin(ByteBuffer origin) {
+        final int count = queuedFrom(origin);
+        if (count <= 1) {
+            mQueuedByOrigin.remove(origin);
+        } else {
+            mQueuedByOrigin.put(origin, count - 1);
+        }
+    }
+
+    /**
+     * Returns the oldest beacon of a lane from a given origin.
+     * @param lane Lane.
+     * @param origin Origin address.
+     * @return Queued beacon, or null if there is none.
+     */
+    private static QueuedBeacon oldestFrom(ArrayDeque<QueuedBeacon> lane, ByteBuffer origin) {
+        for (QueuedBeacon queued : lane) {
+            if (queued.mOrigin.equals(origin)) {
+                return queued;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A beacon waiting in the queue.
+     */
+    public static final class QueuedBeacon {
+        private final PossibleBeacon mBeacon;
+        private final boolean mPriority;
+        private final ByteBuffer mOrigin;
+        private final long mTimeQueuedNanos;
+
+        private QueuedBeacon(PossibleBeacon beacon, boolean priority) {
+            mBeacon = beacon;
+            mPriority = priority;
+            mOrigin = ByteBuffer.wrap(beacon.getOrigin() != null ? beacon.getOrigin() : new byte[0]);
+            mTimeQueuedNanos = System.nanoTime();
+        }
+
+        /**
+         * Returns the queued beacon.
+         * @return Beacon.
+         */
+        public PossibleBeacon getBeacon() {
+            return mBeacon;
+        }
+
+        /**
+         * Returns the time the beacon was queued, as given by {@link System#nanoTime()}.
+         * @return Time queued, in nanoseconds.
+         */
+        public long getTimeQueuedNanos() {
+            return mTimeQueuedNanos;
+        }
+    }
+}
@@ -3,19 +3,32 @@ package ul.fcul.lasige.find.beaconing;
 import android.content.ContentValues;
 import android.util.Log;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 
+import java.io.IOException;
 import java.net.DatagramPacket;
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
-import java.util.Set;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
-
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ul.fcul.lasige.find.beaconing.BeaconIntakeQueue.QueuedBeacon;
+import ul.fcul.lasige.find.data.ConfigurationStore;
 import ul.fcul.lasige.find.data.Identity;
+import ul.fcul.lasige.find.data.NeighborUpdate;
 import ul.fcul.lasige.find.lib.data.Neighbor;
 import ul.fcul.lasige.find.network.NetworkManager;
 import ul.fcul.lasige.find.protocolbuffer.FindProtos;
@@ -27,6 +40,16 @@ import ul.fcul.lasige.find.data.FullContract.Neighbors;
  * Class that extends from {@link InterruptibleFailsafeRunnable} and is able to parse
  * all beacons (valid and invalid) from neighbors.
  *
+ * <p>Received beacons wait in a bounded {@link BeaconIntakeQueue}. Replies and beacons from senders that are not
+ * current neighbors are parsed before repeated beacons from known peers, and beacons are dropped when the queue
+ * is full. Queue depth, drops and parse latency are exposed as counters.</p>
+ *
+ * <p>The parser's thread only dispatches queued beacons. Beacons are decoded by a small pool of workers, each
+ * a single thread; beacons from the same origin always go to the same worker, so that they are parsed in the
+ * order they were received. Parsed beacons are then handed to a single writer thread, which calls
+ * {@link BeaconingManager#onBeaconParsed(FindProtos.Beacon, PossibleBeacon, long)} for each of them, in order,
+ * and applies their neighbor updates in batches.</p>
+ *
  * @see InterruptibleFailsafeRunnable
  *
  * Created by hugonicolau on 13/11/15.
@@ -34,65 +57,331 @@ import ul.fcul.lasige.find.data.FullContract.Neighbors;
 public class BeaconParser extends InterruptibleFailsafeRunnable {
     public static final String TAG = BeaconParser.class.getSimpleName();
 
+    // maximum number of queued beacons whose neighbors are written in a single transaction
+    private static final int MAX_BEACONS_PER_BATCH = 16;
+    // number of beacons remembered to detect duplicates
+    private static final int DEDUP_CACHE_CAPACITY = 4096;
+    // number of parsing workers
+    private static final int PARSE_WORKERS =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    // time to wait for workers to finish when the parser stops
+    private static final int SHUTDOWN_TIMEOUT_MILLIS = 1000;
+
     // beaconing manager
     private final BeaconingManager mBM;
 
     // queue of beacons to parse
-    private final BlockingDeque<PossibleBeacon> mBeaconsToProcess = new LinkedBlockingDeque<>();
-    // set of known beacons - used to identify repeated beacons
-    private final Set<ByteBuffer> mKnownBeacons = new HashSet<>();
-    // set of beacons that were processed
-    private final Set<Integer> mProcessedBeacons = new HashSet<>();
+    private final BeaconIntakeQueue mBeaconsToProcess;
+    // fingerprints of known beacons - used to identify repeated beacons
+    private final BeaconDedupCache mKnownBeacons = new BeaconDedupCache(DEDUP_CACHE_CAPACITY);
+    // ids of beacons that were processed
+    private final BeaconDedupCache mProcessedBeacons = new BeaconDedupCache(DEDUP_CACHE_CAPACITY);
+
+    // parsing workers, one thread each; created when the parser starts
+    private ExecutorService[] mWorkers;
+    // parsed beacons waiting to be applied by the writer, in the order they were parsed
+    private final BlockingQueue<ParsedBeacon> mParsedBeacons = new LinkedBlockingQueue<>();
+    // thread where parsed beacons are applied, and whether it is already scheduled to do so
+    private ExecutorService mWriter;
+    private final AtomicBoolean mWriteScheduled = new AtomicBoolean(false);
+
+    // statistics; only written by the writer thread
+    private volatile long mParsedCount;
+    private volatile long mTotalParseLatencyNanos;
+    private volatile long mMaxParseLatencyNanos;
+    // beacons ignored because they were already received; written by receive threads
+    private final AtomicLong mDuplicateCount = new AtomicLong();
 
     public BeaconParser(BeaconingManager context) {
         super(TAG);
         mBM = context;
+        mBeaconsToProcess = new BeaconIntakeQueue(
+                ConfigurationStore.getBeaconQueueCapacity(mBM.mContext),
+                ConfigurationStore.getBeaconQueueDropPolicy(mBM.mContext));
     }
 
     /**
-     * Add a beacon to be processed. Duplicate beacons are ignored.
+     * Add a beacon to be processed. Duplicate beacons (received during the last
+     * {@link BeaconingManager#getDedupExpirationMillis()} milliseconds) are ignored. When the queue
+     * is full, a queued beacon (or the new one) is dropped.
      * @param newBeacon Beacon
      */
-    public synchronized void addProcessableBeacon(PossibleBeacon newBeacon) {
-        final ByteBuffer wrappedBeaconData = ByteBuffer.wrap(newBeacon.getRawData());
+    public void addProcessableBeacon(PossibleBeacon newBeacon) {
+        final long fingerprint = BeaconDedupCache.fingerprint(newBeacon.getRawData());
 
-        if (mKnownBeacons.add(wrappedBeaconData)) {
+        if (mKnownBeacons.add(
+                fingerprint, System.currentTimeMillis(), BeaconingManager.getDedupExpirationMillis())) {
             // It's a new beacon
-            mBeaconsToProcess.add(newBeacon);
+            mBeaconsToProcess.offer(newBeacon, isPriorityBeacon(newBeacon.getRawData()));
+        } else {
+            mDuplicateCount.incrementAndGet();
         }
     }
 
+    /**
+     * Returns the number of beacons waiting to be parsed.
+     * @return Queue depth.
+     */
+    public int getQueueDepth() {
+        return mBeaconsToProcess.getDepth();
+    }
+
+    /**
+     * Returns the number of beacons dropped because the queue was full.
+     * @return Number of beacons.
+     */
+    public long getDroppedBeacons() {
+        return mBeaconsToProcess.getDropCount();
+    }
+
+    /**
+     * Returns the number of beacons ignored because the same datagram was already received.
+     * @return Number of beacons.
+     */
+    public long getDuplicateBeacons() {
+        return mDuplicateCount.get();
+    }
+
+    /**
+     * Returns the number of beacons parsed.
+     * @return Number of beacons.
+     */
+    public long getParsedBeacons() {
+        return mParsedCount;
+    }
+
+    /**
+     * Returns the average time between queueing a beacon and finishing parsing it.
+     * @return Average parse latency, in milliseconds.
+     */
+    public double getAverageParseLatencyMillis() {
+        final long parsed = mParsedCount;
+        return (parsed == 0 ? 0 : mTotalParseLatencyNanos / 1e6 / parsed);
+    }
+
+    /**
+     * Returns the longest time between queueing a beacon and finishing parsing it.
+     * @return Maximum parse latency, in milliseconds.
+     */
+    public double getMaxParseLatencyMillis() {
+        return mMaxParseLatencyNanos / 1e6;
+    }
+
     /**
      * Clears all processed beacons.
      */
-    public synchronized void clearProcessedBeacons() {
+    public void clearProcessedBeacons() {
         mProcessedBeacons.clear();
     }
 
     /**
-     * main thread; blocks waiting for beacons to process
+     * main thread; blocks waiting for beacons to process and dispatches them to the parsing workers
      */
     @Override
     protected void execute() {
-        while (!mThread.isInterrupted()) {
-            PossibleBeacon nextBeacon;
+        mWorkers = new ExecutorService[PARSE_WORKERS];
+        for (int i = 0; i < mWorkers.length; i++) {
+            mWorkers[i] = Executors.newSingleThreadExecutor();
+        }
+        mWriter = Executors.newSingleThreadExecutor();
+
+        final List<QueuedBeacon> beacons = new ArrayList<>(MAX_BEACONS_PER_BATCH);
+        try {
+            while (!mThread.isInterrupted()) {
+                try {
+                    beacons.add(mBeaconsToProcess.take());
+                } catch (InterruptedException e) {
+                    // Parser got interrupted
+                    break;
+                }
+                // take whatever else is already queued, so it can be parsed and written together
+                mBeaconsToProcess.drainTo(beacons, MAX_BEACONS_PER_BATCH - 1);
+                dispatch(beacons);
+                beacons.clear();
+            }
+        } finally {
+            // beacons being parsed are still applied; let workers hand them to the writer before stopping it
+            for (ExecutorService worker : mWorkers) {
+                worker.shutdown();
+            }
+            Thread.interrupted();
             try {
-                nextBeacon = mBeaconsToProcess.take();
+                for (ExecutorService worker : mWorkers) {
+                    worker.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                }
             } catch (InterruptedException e) {
-                // Parser got interrupted
-                break;
+                // stop waiting
+            }
+            mWriter.shutdown();
+        }
+    }
+
+    /**
+     * Splits a batch of beacons by worker, according to their origin, and hands each part to its worker.
+     * @param beacons Queued beacons.
+     */
+    private void dispatch(List<QueuedBeacon> beacons) {
+        final ParseBatch[] batches = new ParseBatch[mWorkers.length];
+        for (QueuedBeacon queued : beacons) {
+            final int worker = (Arrays.hashCode(queued.getBeacon().getOrigin()) & 0x7FFFFFFF) % mWorkers.length;
+            if (batches[worker] == null) {
+                batches[worker] = new ParseBatch();
+            }
+            batches[worker].mBeacons.add(queued);
+        }
+
+        for (int i = 0; i < batches.length; i++) {
+            final ParseBatch batch = batches[i];
+            if (batch != null) {
+                mWorkers[i].execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        parseBatch(batch);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Parses a batch of beacons, on a worker thread, and hands the parsed beacons to the writer.
+     * @param batch Batch of beacons from origins assigned to the same worker.
+     */
+    private void parseBatch(ParseBatch batch) {
+        for (QueuedBeacon queued : batch.mBeacons) {
+            final ParsedBeacon parsed;
+            try {
+                parsed = parseSingleBeacon(queued, batch);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to parse beacon:", e);
+                continue;
+            }
+            if (parsed != null) {
+                mParsedBeacons.add(parsed);
+            }
+        }
+
+        if (mWriteScheduled.compareAndSet(false, true)) {
+            try {
+                mWriter.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mWriteScheduled.set(false);
+                        applyParsedBeacons();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // parser stopped meanwhile
+                Log.w(TAG, "Dropped parsed beacons, parser was stopped.");
+            }
+        }
+    }
+
+    /**
+     * Applies all parsed beacons, on the writer thread: notifies the {@link BeaconingManager} of each beacon
+     * and updates their neighbors, in batches.
+     */
+    private void applyParsedBeacons() {
+        final List<ParsedBeacon> parsedBeacons = new ArrayList<>(MAX_BEACONS_PER_BATCH);
+        final List<NeighborUpdate> updates = new ArrayList<>();
+
+        while (mParsedBeacons.drainTo(parsedBeacons, MAX_BEACONS_PER_BATCH) > 0) {
+            for (ParsedBeacon parsed : parsedBeacons) {
+                // beacon was successfully parsed, notify callback
+                mBM.onBeaconParsed(parsed.mBeacon, parsed.mPossibleBeacon, parsed.mReferenceTimestamp);
+                updates.addAll(parsed.mUpdates);
+            }
+
+            // update all neighbors from these beacons (written to the database in the background)
+            try {
+                if (mBM.mNeighborTable.update(updates) > 0) {
+                    // new neighbors, beacons must be rebuilt
+                    mBM.mBeaconBuilder.invalidateNeighbors();
+                }
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Failed to update neighbors:", e);
+            }
+
+            final long now = System.nanoTime();
+            for (ParsedBeacon parsed : parsedBeacons) {
+                recordParseLatency(now - parsed.mTimeQueuedNanos);
             }
+            parsedBeacons.clear();
+            updates.clear();
+        }
+    }
 
-            parseSingleBeacon(nextBeacon);
+    /**
+     * Updates parse latency counters. Only called by the writer thread.
+     * @param latencyNanos Time between queueing and parsing a beacon, in nanoseconds.
+     */
+    private void recordParseLatency(long latencyNanos) {
+        mParsedCount++;
+        mTotalParseLatencyNanos += latencyNanos;
+        if (latencyNanos > mMaxParseLatencyNanos) {
+            mMaxParseLatencyNanos = latencyNanos;
         }
     }
 
     /**
-     * Checks whether it is a valid beacon and parses it.
-     * @param possibleBeacon Beacon
+     * Returns whether a beacon should be parsed before repeated beacons from known peers, i.e. whether it is
+     * a reply or its sender is not a current neighbor. Only the beacon type and the sender's node id are read,
+     * without parsing the whole beacon; these fields come first, since protocol buffers are written in
+     * field order. Beacons that can not be read are not prioritized.
+     * @param rawData Raw beacon data.
+     * @return true if the beacon has priority, false otherwise.
      */
-    private void parseSingleBeacon(PossibleBeacon possibleBeacon) {
+    private boolean isPriorityBeacon(byte[] rawData) {
+        try {
+            final CodedInputStream input = CodedInputStream.newInstance(rawData);
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                final int field = tag >>> 3;
+                if (field == FindProtos.Beacon.BEACON_TYPE_FIELD_NUMBER) {
+                    if (input.readEnum() == FindProtos.Beacon.BeaconType.REPLY_VALUE) {
+                        return true;
+                    }
+                } else if (field == FindProtos.Beacon.SENDER_FIELD_NUMBER) {
+                    final byte[] senderId = readNodeId(input.readBytes().newCodedInput());
+                    return (senderId != null && !mBM.mNeighborTable.isCurrentNeighbor(senderId));
+                } else if (!input.skipField(tag)) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // not a beacon, it will be rejected when parsed
+        }
+        return false;
+    }
+
+    /**
+     * Reads the node id of a serialized {@link FindProtos.Node}, skipping other fields.
+     * @param input Serialized node.
+     * @return Node id, or null if the node has none.
+     * @throws IOException If the node could not be read.
+     */
+    private static byte[] readNodeId(CodedInputStream input) throws IOException {
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if ((tag >>> 3) == FindProtos.Node.NODE_ID_FIELD_NUMBER) {
+                return input.readBytes().toByteArray();
+            } else if (!input.skipField(tag)) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether it is a valid beacon and parses it. The sender and its neighbors are collected as neighbor
+     * updates, to be written to the database afterwards by the writer.
+     * @param queued Queued beacon.
+     * @param batch Batch the beacon belongs to.
+     * @return Parsed beacon, or null if it is not a beacon or was already processed.
+     */
+    private ParsedBeacon parseSingleBeacon(QueuedBeacon queued, ParseBatch batch) {
         Log.d(TAG, "Parsing Beacon");
+        final PossibleBeacon possibleBeacon = queued.getBeacon();
         final byte[] rawData = possibleBeacon.getRawData();
         final byte[] origin = possibleBeacon.getOrigin();
         final byte[] ownNodeId = possibleBeacon.getNodeId();
@@ -109,12 +398,14 @@ public class BeaconParser extends InterruptibleFailsafeRunnable {
                             possibleBeacon.getSocketType().name().toLowerCase(Locale.US),
                             Arrays.toString(origin)),
                     e);
-            return;
+            return null;
         }
 
-        if (mProcessedBeacons.contains(beacon.getBeaconId())) {
+        // check and mark at once, since the same beacon may be parsed by two workers (e.g. through IPv4 and IPv6)
+        if (!mProcessedBeacons.add(
+                beacon.getBeaconId(), System.currentTimeMillis(), BeaconingManager.getDedupExpirationMillis())) {
             // this beacon has already been processed before
-            return;
+            return null;
         }
 
         // it's a meaningful Beacon after all
@@ -122,22 +413,24 @@ public class BeaconParser extends InterruptibleFailsafeRunnable {
         final String networkName = possibleBeacon.getNetworkName();
         final long referenceTimestamp = beacon.getTimeCreated(); // time beacon was originally created (remote time, careful)
 
-        // beacon was successfully parsed, notify callback
-        mBM.onBeaconParsed(beacon, possibleBeacon, referenceTimestamp);
+        // beacon was successfully parsed, the callback is notified by the writer
+        final ParsedBeacon parsed = new ParsedBeacon(beacon, possibleBeacon, referenceTimestamp,
+                queued.getTimeQueuedNanos());
+        final List<NeighborUpdate> updates = parsed.mUpdates;
 
         // register the sender as neighbor
         final FindProtos.Node sender = beacon.getSender();
         final ContentValues senderValues;
         try {
-            senderValues = extractContent(sender, ownNodeId, networkName, referenceTimestamp);
+            senderValues = extractContent(sender, ownNodeId, networkName, referenceTimestamp, batch);
         } catch (EmptyNodeIdException e) {
             Log.w(TAG, "Rejected a beacon with no sender id.");
-            return;
+            return parsed;
         } catch (NodeIsUsException e) {
             // It's a packet from ourself
             Log.w(TAG, "Rejected a beacon from ourself "
                     + "(they should have be filtered out before parsing!).");
-            return;
+            return parsed;
         }
 
         if (!senderIsOrigin(sender, origin)) {
@@ -151,8 +444,24 @@ public class BeaconParser extends InterruptibleFailsafeRunnable {
         // set time last seen with our own local time, otherwise we have no control about sender's clock
         senderValues.put(Neighbors.COLUMN_TIME_LASTSEEN, possibleBeacon.getTimeReceived() /*TODO original - beacon.getTimeCreated()*/);
 
-        // insert neighboor in database
-        mBM.mDbController.insertNeighbor(senderValues, sender.getProtocolsList());
+        // compact beacons only carry a Bloom filter of the sender's protocols; we can only check
+        // the protocols we know about
+        final List<ByteString> senderProtocols;
+        if (sender.hasProtocolsBloom()) {
+            senderProtocols = ProtocolBloomFilter.decode(sender.getProtocolsBloom(),
+                    mBM.mProtocolRegistry.getAllProtocolImplementations().keySet());
+        } else {
+            senderProtocols = sender.getProtocolsList();
+        }
+
+        // the sender may be referred to by its prefix in other beacons of this batch
+        if (batch.mNodeIdsByPrefix != null) {
+            final byte[] senderId = sender.getNodeId().toByteArray();
+            batch.mNodeIdsByPrefix.put(toNodeIdPrefix(senderId), senderId);
+        }
+
+        // queue neighboor for insertion in database
+        updates.add(new NeighborUpdate(senderValues, senderProtocols));
         Log.v(TAG, String.format(
                 "Received a %s beacon (%s, %s bytes) from node %s",
                 possibleBeacon.getSocketType().toString().toLowerCase(Locale.US),
@@ -165,21 +474,21 @@ public class BeaconParser extends InterruptibleFailsafeRunnable {
             final ContentValues otherNeighborValues;
             try {
                 otherNeighborValues = extractContent(
-                        neighbor, ownNodeId, networkName, possibleBeacon.getTimeReceived() /*referenceTimestamp*/);
+                        neighbor, ownNodeId, networkName, possibleBeacon.getTimeReceived() /*referenceTimestamp*/, batch);
             } catch (EmptyNodeIdException e) {
-                Log.w(TAG, "Skipped registering neighbor node with no node id.");
+                Log.w(TAG, "Skipped registering neighbor node with no (known) node id.");
                 continue;
             } catch (NodeIsUsException e) {
                 // It's us!
                 continue;
             }
 
-            // insert sender's neighbors in database
-            mBM.mDbController.insertNeighbor(otherNeighborValues, neighbor.getProtocolsList());
+            // queue sender's neighbors for insertion in database
+            updates.add(new NeighborUpdate(otherNeighborValues, neighbor.getProtocolsList()));
         }
 
         // finished processing beacon
-        mProcessedBeacons.add(beacon.getBeaconId());
+        return parsed;
     }
 
     /**
@@ -234,22 +543,65 @@ public class BeaconParser extends InterruptibleFailsafeRunnable {
         return false;
     }
 
+    /**
+     * Returns the node id of a node. Nodes in compact beacons only have a node id prefix, which is resolved
+     * against known neighbors.
+     * @param node Node.
+     * @param ownNodeId Platform's node id.
+     * @param batch Batch the beacon belongs to.
+     * @return Node id, or an empty array if it is unknown.
+     * @throws NodeIsUsException
+     * @see BeaconBuilder#COMPACT_NODE_ID_PREFIX_BYTES
+     */
+    private byte[] getNodeId(FindProtos.Node node, byte[] ownNodeId, ParseBatch batch) throws NodeIsUsException {
+        if (node.hasNodeId() || !node.hasNodeIdPrefix()) {
+            return node.getNodeId().toByteArray();
+        }
+
+        final ByteString prefix = node.getNodeIdPrefix();
+        if (prefix.equals(toNodeIdPrefix(ownNodeId))) {
+            // it's (most likely) us
+            throw new NodeIsUsException();
+        }
+
+        if (batch.mNodeIdsByPrefix == null) {
+            // first compact node of this batch, load known neighbors
+            batch.mNodeIdsByPrefix = new HashMap<>();
+            for (byte[] nodeId : mBM.mNeighborTable.getNeighborIdentifiers()) {
+                batch.mNodeIdsByPrefix.put(toNodeIdPrefix(nodeId), nodeId);
+            }
+        }
+
+        final byte[] nodeId = batch.mNodeIdsByPrefix.get(prefix);
+        return (nodeId != null ? nodeId : new byte[0]);
+    }
+
+    /**
+     * Returns the prefix of a node id, as sent in compact beacons.
+     * @param nodeId Node id.
+     * @return Node id prefix.
+     */
+    private static ByteString toNodeIdPrefix(byte[] nodeId) {
+        return ByteString.copyFrom(nodeId, 0, Math.min(nodeId.length, BeaconBuilder.COMPACT_NODE_ID_PREFIX_BYTES));
+    }
+
     /**
      * Builds the {@link ContentValues} data structure from a {@link ul.fcul.lasige.find.protocolbuffer.FindProtos.Node}.
      * @param node Node.
      * @param ownNodeId Platform's node id.
      * @param networkName Network name.
      * @param referenceTime remote creation time.
+     * @param batch Batch the beacon belongs to.
      * @return A {@link ContentValues} object.
      * @throws EmptyNodeIdException
      * @throws NodeIsUsException
      * @see ContentValues
      */
     private ContentValues extractContent(FindProtos.Node node, byte[] ownNodeId,
-                                         String networkName, long referenceTime)
+                                         String networkName, long referenceTime, ParseBatch batch)
             throws EmptyNodeIdException, NodeIsUsException {
 
-        final byte[] nodeId = node.getNodeId().toByteArray();
+        final byte[] nodeId = getNodeId(node, ownNodeId, batch);
         if (nodeId.length == 0) {
             // no node id information
             throw new EmptyNodeIdException();
@@ -285,6 +637,37 @@ public class BeaconParser extends InterruptibleFailsafeRunnable {
         return values;
     }
 
+    /**
+     * Beacons parsed together by a worker.
+     */
+    private static final class ParseBatch {
+        // queued beacons, in the order they were received
+        private final List<QueuedBeacon> mBeacons = new ArrayList<>();
+        // full node ids of known nodes, by their prefix - used to resolve neighbors in compact beacons;
+        // built lazily for each batch of beacons
+        private Map<ByteString, byte[]> mNodeIdsByPrefix;
+    }
+
+    /**
+     * A parsed beacon waiting to be applied by the writer.
+     */
+    private static final class ParsedBeacon {
+        private final FindProtos.Beacon mBeacon;
+        private final PossibleBeacon mPossibleBeacon;
+        private final long mReferenceTimestamp;
+        private final long mTimeQueuedNanos;
+        // sender and its neighbors
+        private final List<NeighborUpdate> mUpdates = new ArrayList<>();
+
+        private ParsedBeacon(FindProtos.Beacon beacon, PossibleBeacon possibleBeacon, long referenceTimestamp,
+                             long timeQueuedNanos) {
+            mBeacon = beacon;
+            mPossibleBeacon = possibleBeacon;
+            mReferenceTimestamp = referenceTimestamp;
+            mTimeQueuedNanos = timeQueuedNanos;
+        }
+    }
+
     /**
      * Exception for nodes without ids
      */
@@ -0,0 +1,49 @@
+package ul.fcul.lasige.find.beaconing;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+import ul.fcul.lasige.find.protocolbuffer.FindProtos;
+
+/**
+ * Decides when beacons are sent during a beaconing round, and whether received beacons are replied to.
+ * Implementations are used by {@link BeaconingManager} to run the repeating {@link UdpSender}.
+ *
+ * @see FixedRateSenderScheduler
+ * @see TrickleSenderScheduler
+ */
+public interface BeaconSenderScheduler {
+
+    /**
+     * Starts sending beacons.
+     * @param executor Executor where the sender runs.
+     * @param sender Beacon sender; each run sends one beacon burst.
+     */
+    void start(ScheduledExecutorService executor, Runnable sender);
+
+    /**
+     * Stops sending beacons, interrupting the sender if it is running.
+     */
+    void stop();
+
+    /**
+     * Returns whether beacons are being sent.
+     * @return true if started and not stopped, false otherwise.
+     */
+    boolean isRunning();
+
+    /**
+     * Callback for every parsed beacon.
+     * @param beacon Received beacon.
+     * @param consistent Whether the beacon is consistent with what we know, i.e. it does not carry new
+     *                   information (we know the sender, and the sender knows us).
+     */
+    void onBeaconHeard(FindProtos.Beacon beacon, boolean consistent);
+
+    /**
+     * Returns whether a received original beacon should be replied to.
+     * @param beacon Received beacon.
+     * @param consistent Whether the beacon is consistent with what we know.
+     * @return true if a reply should be sent, false otherwise.
+     */
+    boolean shouldReply(FindProtos.Beacon beacon, boolean consistent);
+}
@@ -113,6 +113,8 @@ public class BeaconingIntervalHandler extends InterruptibleFailsafeRunnable
     private final PowerManager mPowerManager;
     // network manager
     private final NetworkManager mNetManager;
+    // chooses networks to connect to and records how much each visit yields
+    private final NetworkSelector mNetworkSelector;
 
     // broadcast receiver for WiFi scan results
     private ScanResultsReceiver mScanReceiver;
@@ -143,6 +145,8 @@ public class BeaconingIntervalHandler extends InterruptibleFailsafeRunnable
         mPowerManager = beaconingManager.mPowerManager;
         // get network manager
         mNetManager = beaconingManager.mNetManager;
+        // get network selector
+        mNetworkSelector = new NetworkSelector(beaconingManager);
     }
 
     /**
@@ -292,6 +296,9 @@ public class BeaconingIntervalHandler extends InterruptibleFailsafeRunnable
                 // stop sending beacons
                 mBeaconingManager.stopBeaconSenders();
 
+                // store the outcome of the last visit
+                mNetworkSelector.finishVisit();
+
                 // if there are no locks, restore network to previous state
                 if (!mBeaconingManager.isInternetLocked() && !mBeaconingManager.isWifiConnectionLocked()) {
                     restoreNetworks();
@@ -371,31 +378,15 @@ public class BeaconingIntervalHandler extends InterruptibleFailsafeRunnable
     }*/
 
     /**
-     * Returns a connectible network that was not visited in this beaconing period.
-     * If all networks have been visited then it returns the first one.
+     * Returns the connectible network, not visited in this beaconing period, with the best expected yield
+     * of neighbors and packets, according to past visits.
      * @param scanResults WiFi scan results
-     * @return Network to connect to.
+     * @return Network to connect to, or null if all networks have been visited.
      * @see ScanResults#getConnectibleNetworks()
+     * @see NetworkSelector
      */
-    private ScanResult choseRandomNetworkToConnect(ScanResults scanResults) {
-        // get random connectible network we did not visit before
-        ScanResult selectedNetwork = null;
-        for (ScanResult network : scanResults.getConnectibleNetworks()) {
-            if (!mVisitedNetworks.contains(network.SSID)) {
-                selectedNetwork = network;
-                break;
-            }
-        }
-        if (selectedNetwork == null) {
-            // visited all other networks before, so stick to the first one
-            final ScanResult firstNetwork = scanResults.getConnectibleNetworks().get(0);
-            // but only if it's FIND (removed because an open network can have Internet access
-            /*if (NetworkManager.isFindSSID(firstNetwork.SSID)) {
-                selectedNetwork = firstNetwork;
-            }*/
-        }
-
-        return selectedNetwork;
+    private ScanResult choseNetworkToConnect(ScanResults scanResults) {
+        return mNetworkSelector.select(scanResults.getConnectibleNetworks(), mVisitedNetworks);
     }
 
     /**
@@ -408,6 +399,8 @@ public class BeaconingIntervalHandler extends InterruptibleFailsafeRunnable
             mNetManager.createSavepoint();
             // switch to ap mode
             if (mNetManager.setApEnabled(true).or(false)) {
+                // leaving the current network, if any
+                mNetworkSelector.finishVisit();
                 // update beaconing state
                 mWifiBeaconingState = WifiBeaconingState.AP_ENABLING;
                 // stop sending beacons to neighbors, instead waits to receive them
@@ -483,12 +476,13 @@ public class BeaconingIntervalHandler extends InterruptibleFailsafeRunnable
         final ScanResults scanResults = mNetManager.getScanResults();
         if (scanResults.hasConnectibleNetworks()) {
             // get network
-            ScanResult selectedNetwork = choseRandomNetworkToConnect(scanResults);
+            ScanResult selectedNetwork = choseNetworkToConnect(scanResults);
             if (selectedNetwork != null) {
                 // update wifi state
                 mWifiBeaconingState = WifiBeaconingState.CONNECTING;
                 // update attempted networks
                 mAttemptedNetworks.add(selectedNetwork.SSID);
+                mNetworkSelector.onConnectionAttempt(selectedNetwork.SSID);
 
                 // we try to connect to a random network
                 if (!mNetManager.connectToWifi(selectedNetwork)) {
@@ -545,6 +539,8 @@ public class BeaconingIntervalHandler extends InterruptibleFailsafeRunnable
             // we were disconnected
             // stop receivers
             mBeaconingManager.stopWifiReceiver();
+            // store the outcome of the visit
+            mNetworkSelector.finishVisit();
 
             if (NetworkManager.isFindSSID(mVisitedNetworks.peek()) && mBeaconingManager.mIsDesignatedAp
                     && startApModeIfPossible()) {
@@ -595,6 +591,7 @@ public class BeaconingIntervalHandler extends InterruptibleFailsafeRunnable
         mBeaconingManager.startWifiSender(true);
 
         mVisitedNetworks.push(connection.get().getNetworkName().get());
+        mNetworkSelector.onConnected(connection.get().getNetworkName().get());
 
         return true;
     }
@@ -675,7 +672,7 @@ public class BeaconingIntervalHandler extends InterruptibleFailsafeRunnable
             if (lastNetworkName != null) {
                 // get current neighbors (the ones found in this beaconing round)
                 // this is an approximation (heuristic)
-                Set<Neighbor> neighbors = mBeaconingManager.mDbController.getNeighbors(BeaconingManager.getCurrentTimestamp());
+                Set<Neighbor> neighbors = mBeaconingManager.mNeighborTable.getNeighbors(BeaconingManager.getCurrentTimestamp());
                 neighborCount = neighbors.size();
             }
 
@@ -9,10 +9,14 @@ import android.os.PowerManager;
 import android.support.v4.content.LocalBroadcastManager;
 import android.util.Log;
 
+import com.google.common.net.InetAddresses;
+import com.google.protobuf.ByteString;
+
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -20,13 +24,15 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 import ul.fcul.lasige.find.apps.ProtocolRegistry;
+import ul.fcul.lasige.find.data.ConfigurationStore;
 import ul.fcul.lasige.find.data.DbController;
 import ul.fcul.lasige.find.data.FullContract;
 import ul.fcul.lasige.find.data.Identity;
+import ul.fcul.lasige.find.data.NeighborTable;
+import ul.fcul.lasige.find.lib.data.Neighbor;
+import ul.fcul.lasige.find.network.DatagramTraceRecorder;
 import ul.fcul.lasige.find.network.NetworkManager;
 import ul.fcul.lasige.find.network.NetworkStateChangeReceiver;
 import ul.fcul.lasige.find.packetcomm.PacketCommManager;
@@ -61,10 +67,11 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
 
     // port used to listen for beacons
     protected static final int RECEIVER_PORT_UNICAST = 3108;
-    /*protected static final int RECEIVER_PORT_MULTICAST = 5353;
+    // port and groups used to listen for multicast beacons (mDNS, which most APs let through)
+    protected static final int RECEIVER_PORT_MULTICAST = 5353;
     protected static final InetAddress[] MULTICAST_GROUPS = {
             InetAddresses.forString("224.0.0.251"), InetAddresses.forString("ff02::fb")
-    };*/
+    };
 
     protected static final int RECEIVER_SOCKET_TIMEOUT = 5 * 1000; // 5 seconds
     protected static final int RECEIVER_BUFFER_SIZE = 4 * 1024; // 4 KiB
@@ -72,8 +79,8 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
     protected static final String SDP_NAME = "FindBeaconingManager";
     protected static final UUID FIND_UUID = UUID.fromString("35b0a0a8-c92a-4c63-b7d8-d0a55ca18159");
 
-    // TODO we're only using multicast at the moment
-    protected enum SocketType { UNICAST, MULTICAST, RFCOMM }
+    // public, since it is part of BeaconParser.PossibleBeacon
+    public enum SocketType { UNICAST, MULTICAST, RFCOMM }
 
     private static final String TAG = BeaconingManager.class.getSimpleName();
 
@@ -85,8 +92,10 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
     protected final PowerManager mPowerManager;
     protected final NetworkManager mNetManager;
     protected final DbController mDbController;
+    protected final NeighborTable mNeighborTable;
     protected final ProtocolRegistry mProtocolRegistry;
     protected final Identity mMasterIdentity;
+    protected final DatagramTraceRecorder mTraceRecorder; // optional capture of received beacons
 
     // packet manager, handles all message (not beacons) communication with neighbors
     protected final PacketCommManager mPacketCommManager;
@@ -98,13 +107,16 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
 
     // beacon sending/receiving
     protected UdpReceiver mUnicastReceiver; // beacon receiver
-    /*protected UdpReceiver mMulticastReceiver;*/
+    protected NioBeaconReceiver mNioUnicastReceiver; // beacon receiver, when using the NIO receive engine
+    protected UdpReceiver mMulticastReceiver; // multicast beacon receiver, when allowed by the policy
     protected WeakReference<UdpSender> mOneTimeWifiSender; // beacon sender
-    protected ScheduledFuture<?> mRegularWifiSender; // beacon sender
+    protected final BeaconSenderScheduler mRegularWifiSender; // schedules the repeating beacon sender
+    protected final ReplyCoalescer mReplySender; // replies to received beacons
     /*protected RfcommReceiver mBluetoothReceiver;
     protected WeakReference<RfcommSender> mBtSender;
     protected final Map<String, BluetoothSocket> mBluetoothSockets = new HashMap<>();*/
     protected final BeaconBuilder mBeaconBuilder;
+    protected final SubnetSweep mSubnetSweep; // progress of the subnet sweep, kept across beaconing rounds
 
     private int mWifiConnectionLockCount; // used to keep network state
     /*private int mBtConnectionLockCount;*/
@@ -135,9 +147,15 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
         mPowerManager = (PowerManager) mContext.getSystemService(Context.POWER_SERVICE);
         mNetManager = NetworkManager.getInstance(mContext);
         mDbController = new DbController(mContext);
+        mNeighborTable = NeighborTable.getInstance(mContext);
         mProtocolRegistry = ProtocolRegistry.getInstance(mContext);
         mMasterIdentity = mDbController.getMasterIdentity();
+        mTraceRecorder = DatagramTraceRecorder.getInstance(mContext);
         mBeaconBuilder = new BeaconBuilder(this);
+        mSubnetSweep = new SubnetSweep(mContext);
+        mRegularWifiSender = ConfigurationStore.isTrickleBeaconingEnabled(mContext)
+                ? new TrickleSenderScheduler() : new FixedRateSenderScheduler();
+        mReplySender = new ReplyCoalescer(this);
         mPacketCommManager = new PacketCommManager(mContext, this);
         mHasInternet = mNetManager.hasInternetAccess();
     }
@@ -353,19 +371,25 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
     protected void startWifiReceiver() {
         try {
             // start unicast receiver
-            if (mUnicastReceiver == null) {
+            if (ConfigurationStore.isNioReceiveEngineEnabled(mContext)) {
+                // shared selector thread
+                if (mNioUnicastReceiver == null) {
+                    mNioUnicastReceiver = new NioBeaconReceiver(this, SocketType.UNICAST, RECEIVER_PORT_UNICAST);
+                    mNioUnicastReceiver.start();
+                }
+            } else if (mUnicastReceiver == null) {
+                // dedicated thread
                 mUnicastReceiver = new UdpReceiver.UdpUnicastReceiver(this);
                 mThreadPool.execute(mUnicastReceiver);
             }
 
-            // start multicast receiver
-            /*TODO if (mNetManager.getWifiState().equals(NetworkManager.WifiState.STA_ON_PUBLIC_AP)) {
-                // Multicast is only supported on public networks
-                 if (mMulticastReceiver == null) {
-                    mMulticastReceiver = new UdpMulticastReceiver(this);
-                    mThreadPool.execute(mMulticastReceiver);
-                }
-            }*/
+            // start multicast receiver; it always runs in its own thread, since joining groups is not
+            // supported by datagram channels in older Android versions
+            if (isMulticastEnabled() && mMulticastReceiver == null) {
+                mNetManager.acquireMulticastLock();
+                mMulticastReceiver = new UdpReceiver.UdpMulticastReceiver(this);
+                mThreadPool.execute(mMulticastReceiver);
+            }
         } catch (IOException e) {
             Log.e(TAG, "Error while creating WiFi receivers:", e);
         }
@@ -380,12 +404,28 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
             mUnicastReceiver.interrupt();
             mUnicastReceiver = null;
         }
+        if (mNioUnicastReceiver != null) {
+            mNioUnicastReceiver.stop();
+            mNioUnicastReceiver = null;
+        }
 
         // stop multicast receiver
-        /*TODO if (mMulticastReceiver != null) {
+        if (mMulticastReceiver != null) {
             mMulticastReceiver.interrupt();
             mMulticastReceiver = null;
-        }*/
+            mNetManager.releaseMulticastLock();
+        }
+    }
+
+    /**
+     * Checks whether the current policy allows beacons to be sent and received through the subnet broadcast
+     * address and multicast groups.
+     * @return true if multicast beaconing is enabled, false otherwise.
+     * @see Policy.Feature#MULTICAST
+     */
+    protected boolean isMulticastEnabled() {
+        final Policy policy = mPolicy;
+        return policy != null && policy.allows(Policy.Feature.MULTICAST);
     }
 
     /**
@@ -452,10 +492,10 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
 
     /**
      * Starts sending beacon(s). At least it sends one beacon to neighbors.
-     * @param repeating If true, it sends burst of 3 beacons in intervals of 3 seconds.
+     * @param repeating If true, it keeps sending bursts of 3 beacons, as decided by the {@link BeaconSenderScheduler}.
      */
     protected void startWifiSender(boolean repeating) {
-        if (mRegularWifiSender != null && !mRegularWifiSender.isDone()) {
+        if (mRegularWifiSender.isRunning()) {
             // The senders are already running
             Log.v(TAG, "Wifi senders already running");
             return;
@@ -475,10 +515,9 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
         mThreadPool.execute(oneTimeWifiSender);
 
         if (repeating) {
-            // send bursts of 3 beacons every 3 seconds
+            // send bursts of 3 beacons (every 3 seconds, or less often with Trickle)
             UdpSender repeatingWifiSender = new UdpSender(this, false, 3, mCurrentApLikelihood);
-            mRegularWifiSender =
-                    mThreadPool.scheduleAtFixedRate(repeatingWifiSender, 2, 3, TimeUnit.SECONDS);
+            mRegularWifiSender.start(mThreadPool, repeatingWifiSender);
         }
     }
 
@@ -496,10 +535,7 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
         }
 
         // stop repeating beacon sender
-        if (mRegularWifiSender != null) {
-            mRegularWifiSender.cancel(true);
-            mRegularWifiSender = null;
-        }
+        mRegularWifiSender.stop();
     }
 
     /*private void startBluetoothSender(int delay) {
@@ -583,17 +619,24 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
      * @param timeCreated Timestamp the beacon was originally created
      */
     protected void onBeaconParsed(FindProtos.Beacon beacon, BeaconParser.PossibleBeacon rawData, long timeCreated) {
+        // a new neighbor stops the current subnet sweep
+        mSubnetSweep.onBeaconReceived(rawData.getOrigin());
+
+        // redundant beacons may suppress ours
+        final boolean consistent = isConsistentBeacon(beacon);
+        mRegularWifiSender.onBeaconHeard(beacon, consistent);
+
         // if we are currently listening for beacons and this is not a reply beacon
-        if (mState == BeaconingState.PASSIVE && beacon.getBeaconType() == FindProtos.Beacon.BeaconType.ORIGINAL) {
+        if (mState == BeaconingState.PASSIVE && beacon.getBeaconType() == FindProtos.Beacon.BeaconType.ORIGINAL
+                && mRegularWifiSender.shouldReply(beacon, consistent)) {
             // get neighbor
             final byte[] origin = rawData.getOrigin();
             if (origin.length != 6) {
                 // reply to IPv4/IPv6 beacons (bluetooth beacons are always answered directly)
                 try {
                     final InetAddress replyTo = InetAddress.getByAddress(origin);
-                    // send likelihood of we becoming an AP along with our protocols and so forth.
-                    UdpSender replySender = new UdpSender(this, replyTo, beacon, mCurrentApLikelihood);
-                    mThreadPool.execute(replySender);
+                    // send our protocols and so forth, together with other replies received meanwhile
+                    mReplySender.addTarget(replyTo, mThreadPool);
                 } catch (UnknownHostException e) {
                     // should never happen
                 }
@@ -614,6 +657,52 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
         notifyNeighborUris(mContext);
     }
 
+    /**
+     * Checks whether a beacon is consistent with what we know; that is, we already know the sender and the
+     * sender already knows us (or does not tell who it knows).
+     * @param beacon Received beacon.
+     * @return true if the beacon carries no new information, false otherwise.
+     * @see BeaconSenderScheduler#onBeaconHeard(FindProtos.Beacon, boolean)
+     */
+    private boolean isConsistentBeacon(FindProtos.Beacon beacon) {
+        return isConsistentBeacon(beacon, mBeaconBuilder.getCurrentNeighbors(), mMasterIdentity.getPublicKey());
+    }
+
+    /**
+     * Checks whether a beacon is consistent with a given set of current neighbors. Also used by the simulator.
+     * @param beacon Received beacon.
+     * @param currentNeighbors Current neighbors.
+     * @param ownId Platform's node id.
+     * @return true if the beacon carries no new information, false otherwise.
+     */
+    public static boolean isConsistentBeacon(FindProtos.Beacon beacon, Set<Neighbor> currentNeighbors,
+                                             byte[] ownId) {
+        // do we know the sender?
+        final byte[] senderId = beacon.getSender().getNodeId().toByteArray();
+        boolean isKnownSender = false;
+        for (Neighbor neighbor : currentNeighbors) {
+            if (Arrays.equals(neighbor.getNodeId(), senderId)) {
+                isKnownSender = true;
+                break;
+            }
+        }
+        if (!isKnownSender || beacon.getNeighborsCount() == 0) {
+            return isKnownSender;
+        }
+
+        // does the sender know us?
+        final ByteString ownIdPrefix = ByteString.copyFrom(
+                ownId, 0, Math.min(ownId.length, BeaconBuilder.COMPACT_NODE_ID_PREFIX_BYTES));
+        for (FindProtos.Node neighbor : beacon.getNeighborsList()) {
+            if (neighbor.hasNodeIdPrefix()
+                    ? neighbor.getNodeIdPrefix().equals(ownIdPrefix)
+                    : Arrays.equals(neighbor.getNodeId().toByteArray(), ownId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
   /*  protected void onBtDeviceDisconnected(BluetoothDevice btDevice) {
         mBluetoothSockets.remove(btDevice.getAddress());
     }
@@ -966,8 +1055,26 @@ public class BeaconingManager implements NetworkStateChangeReceiver.NetworkChang
      * @return Timestamp of past 20 minutes or 2 times the beaconing interval (whichever is higher).
      */
     public static long getCurrentTimestamp() {
-        final int periodMillis = Math.max(2 * sCurrentBeaconingInterval.getIntervalMillis(), 20 * 60 * 1000); // last 20 minutes (max)
-        return (System.currentTimeMillis() - periodMillis) / 1000;
+        return (System.currentTimeMillis() - getCurrentPeriodMillis()) / 1000;
+    }
+
+    /**
+     * Time, in milliseconds, a neighbor is considered connected after it was last seen.
+     * @return Highest value between 2 times the policy's beaconing interval and 20 minutes.
+     * @see #getCurrentTimestamp()
+     */
+    public static long getCurrentPeriodMillis() {
+        return Math.max(2 * sCurrentBeaconingInterval.getIntervalMillis(), 20 * 60 * 1000); // last 20 minutes (max)
+    }
+
+    /**
+     * Time, in milliseconds, a received beacon is remembered in order to discard duplicates. It is the
+     * highest value between the policy's beaconing interval and 3 minutes (the longest random interval).
+     * @return Expiration time in milliseconds.
+     * @see BeaconDedupCache
+     */
+    public static long getDedupExpirationMillis() {
+        return Math.max(sCurrentBeaconingInterval.getIntervalMillis(), 3 * 60 * 1000);
     }
 
     /**
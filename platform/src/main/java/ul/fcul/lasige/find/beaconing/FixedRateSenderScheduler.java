@@ -0,0 +1,50 @@
+package ul.fcul.lasige.find.beaconing;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import ul.fcul.lasige.find.protocolbuffer.FindProtos;
+
+/**
+ * {@link BeaconSenderScheduler} that sends beacons at a fixed rate and replies to every beacon.
+ */
+public class FixedRateSenderScheduler implements BeaconSenderScheduler {
+    private static final String TAG = FixedRateSenderScheduler.class.getSimpleName();
+
+    // delay before the first beacon
+    private static final int INITIAL_DELAY_SECONDS = 2;
+    // interval between beacons
+    private static final int PERIOD_SECONDS = 3;
+
+    // scheduled sender
+    private ScheduledFuture<?> mSenderFuture;
+
+    @Override
+    public synchronized void start(ScheduledExecutorService executor, Runnable sender) {
+        mSenderFuture = executor.scheduleAtFixedRate(sender, INITIAL_DELAY_SECONDS, PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (mSenderFuture != null) {
+            mSenderFuture.cancel(true);
+            mSenderFuture = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return mSenderFuture != null && !mSenderFuture.isDone();
+    }
+
+    @Override
+    public void onBeaconHeard(FindProtos.Beacon beacon, boolean consistent) {
+        // nothing to do
+    }
+
+    @Override
+    public boolean shouldReply(FindProtos.Beacon beacon, boolean consistent) {
+        return true;
+    }
+}
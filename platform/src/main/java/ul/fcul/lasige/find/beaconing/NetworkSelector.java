@@ -0,0 +1,216 @@
+package ul.fcul.lasige.find.beaconing;
+
+import android.net.wifi.ScanResult;
+import android.util.Log;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import ul.fcul.lasige.find.data.DbController;
+import ul.fcul.lasige.find.data.NetworkYield;
+import ul.fcul.lasige.find.lib.data.Neighbor;
+import ul.fcul.lasige.find.packetcomm.PacketReceiver;
+import ul.fcul.lasige.find.packetcomm.PacketSender;
+
+/**
+ * Chooses which WiFi network to connect to in each beaconing slot, based on the yield of past visits
+ * ({@link NetworkYield}): the neighbors discovered and packets exchanged per minute spent connecting and
+ * connected. It also keeps track of the visits of a beaconing period and stores their outcome.
+ *
+ * <p>Networks are scored as an upper confidence bound (UCB1): the expected yield, smoothed towards a prior so
+ * that a single lucky or unlucky visit does not decide, plus an exploration bonus that is larger for networks
+ * attempted less often. Networks never attempted get the largest bonus, so they are tried first; as
+ * statistics accumulate, the network with the best expected yield is preferred, while the others are
+ * still revisited every now and then.</p>
+ *
+ * <p>It is used by {@link BeaconingIntervalHandler} and accessed only from its thread.</p>
+ */
+public class NetworkSelector {
+    private static final String TAG = NetworkSelector.class.getSimpleName();
+
+    // prior expected yield of a network, in neighbors per minute, and how many minutes it weighs
+    private static final double PRIOR_YIELD_PER_MINUTE = 1;
+    private static final double PRIOR_MINUTES = 0.25;
+    // weight of an exchanged packet relative to a discovered neighbor
+    private static final double PACKET_WEIGHT = 0.5;
+    // weight of the exploration bonus
+    private static final double EXPLORATION = 1;
+
+    private final BeaconingManager mBM;
+    private final DbController mDbController;
+    // statistics of all networks, loaded on first use
+    private Map<String, NetworkYield> mYields;
+
+    // network being connected to, and since when
+    private String mAttemptedNetwork;
+    private long mAttemptStartMillis;
+    // network connected to, since when, how long it took to connect and packets exchanged before
+    private String mConnectedNetwork;
+    private long mConnectedStartMillis;
+    private long mConnectMillis;
+    private long mPacketsAtConnect;
+
+    /**
+     * Constructor.
+     * @param beaconingManager Beaconing manager.
+     */
+    public NetworkSelector(BeaconingManager beaconingManager) {
+        mBM = beaconingManager;
+        mDbController = beaconingManager.mDbController;
+    }
+
+    /**
+     * Returns the network with the highest score among those not visited in this beaconing period. Ties are
+     * broken by the order of the candidates.
+     * @param candidates Connectible networks, sorted by preference.
+     * @param visitedNetworks Networks visited in this beaconing period.
+     * @return Network to connect to, or null if all candidates were visited.
+     */
+    public ScanResult select(List<ScanResult> candidates, Collection<String> visitedNetworks) {
+        final Map<String, NetworkYield> yields = getYields();
+        double totalAttempts = 0;
+        for (NetworkYield yield : yields.values()) {
+            totalAttempts += yield.getAttempts();
+        }
+
+        ScanResult selectedNetwork = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (ScanResult network : candidates) {
+            if (visitedNetworks.contains(network.SSID)) {
+                continue;
+            }
+            final double score = score(yields.get(network.SSID), totalAttempts);
+            if (score > bestScore) {
+                bestScore = score;
+                selectedNetwork = network;
+            }
+        }
+
+        if (selectedNetwork != null) {
+            Log.v(TAG, String.format("Selected network '%s' (score %.2f)", selectedNetwork.SSID, bestScore));
+        }
+        return selectedNetwork;
+    }
+
+    /**
+     * Computes the score of a network: its expected yield per minute plus an exploration bonus.
+     * @param yield Statistics of the network, or null if it was never attempted.
+     * @param totalAttempts Attempts of all networks.
+     * @return Score.
+     */
+    private static double score(NetworkYield yield, double totalAttempts) {
+        double gain = 0;
+        double minutes = 0;
+        double attempts = 0;
+        if (yield != null) {
+            gain = yield.getNeighbors() + PACKET_WEIGHT * yield.getPackets();
+            minutes = (yield.getConnectMillis() + yield.getConnectedMillis()) / (60 * 1000);
+            attempts = yield.getAttempts();
+        }
+
+        final double expectedYield = (gain + PRIOR_YIELD_PER_MINUTE * PRIOR_MINUTES) / (minutes + PRIOR_MINUTES);
+        final double bonus = EXPLORATION * Math.sqrt(Math.log(1 + totalAttempts) / (1 + attempts));
+        return expectedYield + bonus;
+    }
+
+    /**
+     * Records that a connection to a network was initiated. The previous visit or attempt, if any, ends.
+     * @param network Network name.
+     */
+    public void onConnectionAttempt(String network) {
+        if (network.equals(mConnectedNetwork)) {
+            // staying on the same network
+            return;
+        }
+        finishVisit();
+        mAttemptedNetwork = network;
+        mAttemptStartMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Records that a network is connected. If it was not attempted in this beaconing period (i.e. we were
+     * connected before), its connection time is not counted.
+     * @param network Network name.
+     */
+    public void onConnected(String network) {
+        if (network.equals(mConnectedNetwork)) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final long connectMillis = (network.equals(mAttemptedNetwork) ? now - mAttemptStartMillis : 0);
+        mAttemptedNetwork = null;
+        finishVisit();
+
+        mConnectedNetwork = network;
+        mConnectedStartMillis = now;
+        mConnectMillis = connectMillis;
+        mPacketsAtConnect = getExchangedPackets();
+    }
+
+    /**
+     * Ends the current visit or attempt, if any, and stores its outcome: a visit if the network was connected,
+     * a failure if it was still being connected to.
+     */
+    public void finishVisit() {
+        final long now = System.currentTimeMillis();
+        final long nowSeconds = now / 1000;
+
+        if (mConnectedNetwork != null) {
+            // neighbors seen on this network since we connected
+            int neighbors = 0;
+            for (Neighbor neighbor : mBM.mNeighborTable.getNeighbors(mConnectedStartMillis / 1000)) {
+                if (mConnectedNetwork.equals(neighbor.getLastSeenNetwork())) {
+                    neighbors++;
+                }
+            }
+            final long packets = Math.max(0, getExchangedPackets() - mPacketsAtConnect);
+
+            final NetworkYield yield = getYield(mConnectedNetwork);
+            yield.recordVisit(mConnectMillis, now - mConnectedStartMillis, neighbors, packets, nowSeconds);
+            mDbController.saveNetworkYield(yield);
+            Log.v(TAG, "Visit finished, " + yield);
+            mConnectedNetwork = null;
+        } else if (mAttemptedNetwork != null) {
+            final NetworkYield yield = getYield(mAttemptedNetwork);
+            yield.recordFailure(now - mAttemptStartMillis, nowSeconds);
+            mDbController.saveNetworkYield(yield);
+            Log.v(TAG, "Could not connect, " + yield);
+        }
+        mAttemptedNetwork = null;
+    }
+
+    /**
+     * Returns the statistics of all networks, loading them from the database on first use.
+     * @return Map of network names to statistics.
+     */
+    private Map<String, NetworkYield> getYields() {
+        if (mYields == null) {
+            mYields = mDbController.getNetworkYields();
+        }
+        return mYields;
+    }
+
+    /**
+     * Returns the statistics of a network, creating them if it was never attempted.
+     * @param network Network name.
+     * @return Statistics.
+     */
+    private NetworkYield getYield(String network) {
+        NetworkYield yield = getYields().get(network);
+        if (yield == null) {
+            yield = new NetworkYield(network);
+            mYields.put(network, yield);
+        }
+        return yield;
+    }
+
+    /**
+     * Returns the number of packets sent and received since the platform started.
+     * @return Number of packets.
+     */
+    private long getExchangedPackets() {
+        final PacketReceiver receiver = mBM.mPacketCommManager.getPacketReceiver();
+        return PacketSender.getSentPackets() + (receiver != null ? receiver.getRegisteredPackets() : 0);
+    }
+}
@@ -0,0 +1,98 @@
+package ul.fcul.lasige.find.beaconing;
+
+import android.util.Log;
+
+import com.google.common.base.Optional;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import ul.fcul.lasige.find.beaconing.BeaconParser.PossibleBeacon;
+import ul.fcul.lasige.find.network.UdpReceiveEngine;
+import ul.fcul.lasige.find.network.WifiConnection;
+
+/**
+ * Receives beacons from neighbors through the shared {@link UdpReceiveEngine}, instead of a dedicated
+ * thread and blocking socket as {@link UdpReceiver} does. Received beacons are handed to
+ * {@link BeaconingManager#onBeaconReceived(PossibleBeacon)}.
+ */
+public class NioBeaconReceiver implements UdpReceiveEngine.DatagramHandler {
+    private static final String TAG = NioBeaconReceiver.class.getSimpleName();
+
+    // beaconing manager
+    private final BeaconingManager mBM;
+    // socket type
+    private final BeaconingManager.SocketType mSocketType;
+    // port where beacons are received
+    private final int mPort;
+
+    /**
+     * Constructor.
+     * @param context Beaconing manager.
+     * @param socketType Socket type.
+     * @param port Port where beacons are received.
+     */
+    public NioBeaconReceiver(BeaconingManager context, BeaconingManager.SocketType socketType, int port) {
+        mBM = context;
+        mSocketType = socketType;
+        mPort = port;
+    }
+
+    /**
+     * Starts receiving beacons.
+     * @throws IOException If the port could not be bound.
+     */
+    public void start() throws IOException {
+        UdpReceiveEngine.getInstance().register(mPort, BeaconingManager.RECEIVER_BUFFER_SIZE, this);
+    }
+
+    /**
+     * Stops receiving beacons.
+     */
+    public void stop() {
+        UdpReceiveEngine.getInstance().unregister(mPort);
+    }
+
+    /**
+     * Callback triggered by {@link UdpReceiveEngine} for each received datagram.
+     * @param data Datagram data.
+     * @param sender Sender's address.
+     */
+    @Override
+    public void onDatagramReceived(ByteBuffer data, InetSocketAddress sender) {
+        // check time
+        final long timeReceived = System.currentTimeMillis() / 1000;
+
+        // get current connection, from the snapshot kept by the network manager
+        final Optional<WifiConnection> conn = mBM.mNetManager.getConnectionSnapshot().getConnection();
+        if (!conn.isPresent()) {
+            // the wifi is disconnected, the receiver will be stopped by the beaconing manager
+            return;
+        }
+        final WifiConnection wifiConnection = conn.get();
+
+        final byte[] rawData = new byte[data.remaining()];
+        data.get(rawData);
+
+        // capture everything that arrived, if enabled
+        mBM.mTraceRecorder.record(UdpReceiver.getTraceKind(mSocketType), sender.getAddress(),
+                UdpReceiver.getInterfaceName(wifiConnection), rawData, 0, rawData.length);
+
+        // skip if packet is empty, from ourselves or real mDNS
+        if (rawData.length == 0
+                || UdpReceiver.isOwnPacket(sender.getAddress(), wifiConnection)
+                || UdpReceiver.isMdnsPacket(rawData, rawData.length)) {
+            Log.d(TAG, "packet is empty or is my own packet");
+            return;
+        }
+
+        // it is a possible beacon
+        final PossibleBeacon possibleBeacon = new PossibleBeacon(
+                rawData, sender.getAddress().getAddress(), timeReceived,
+                wifiConnection.getNetworkName().get(), mSocketType, mBM.mMasterIdentity.getPublicKey());
+
+        // notify callback, which will add it to BeaconParser queue
+        mBM.onBeaconReceived(possibleBeacon);
+    }
+}
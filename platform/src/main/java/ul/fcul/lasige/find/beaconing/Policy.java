@@ -9,7 +9,6 @@ import android.support.v4.content.LocalBroadcastManager;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
 
 import ul.fcul.lasige.find.data.ConfigurationStore;
@@ -46,7 +45,8 @@ public enum Policy {
      */
     HIGH_CONNECTIVITY(BeaconingInterval.MEDIUM,
             Feature.WIFI_CLIENT,
-            Feature.WIFI_AP),
+            Feature.WIFI_AP,
+            Feature.MULTICAST),
     /**
      * This policy uses all available features to maximize the likelihood of finding neighbors as
      * fast as possible. It also drains the battery the fastest, and therefore it should only be
@@ -61,14 +61,16 @@ public enum Policy {
      */
     LISTENER (BeaconingInterval.FAST,
               Feature.FOREGROUND,
-              Feature.WIFI_AP),
+              Feature.WIFI_AP,
+              Feature.MULTICAST),
 
     /**
      * This policy uses all available features to ONLY search for neighbors by never going into AP mode.
      */
     SEEKER(BeaconingInterval.FAST,
               Feature.WIFI_CLIENT,
-              Feature.FOREGROUND);
+              Feature.FOREGROUND,
+              Feature.MULTICAST);
 
 
     // Policy variables
@@ -195,30 +197,35 @@ public enum Policy {
          * No periodic beaconing. Beacons are only sent upon network changes or answering to other
          * beacons.
          */
-        OFF(-1),
+        OFF(-1, -1, -1),
         /**
          * Periodic beaconing every 10 minutes. Lets the platform sleep the longest, therefore
          * saving the most power.
          */
-        SLOW(10),
+        SLOW(10, 5, 40),
         /**
          * Periodic beaconing every 5 minutes. Trades power consumption for connectivity.
          */
-        MEDIUM(5),
+        MEDIUM(5, 2, 20),
         /**
          * Periodic beaconing every 2 minutes. Platform will rarely be able to sleep.
          */
-        FAST(1),
+        FAST(1, 1, 4),
         /**
          * Periodic beaconing is every 1-3 minutes. Platform will be able to sleep between 1-5 minutes.
          */
-        RANDOM(-2);
+        RANDOM(-2, 1, 8);
 
         // beaconing interval
         private final int mInterval;
+        // bounds of the adaptive interval
+        private final int mMinInterval;
+        private final int mMaxInterval;
 
-        BeaconingInterval(int minutes) {
+        BeaconingInterval(int minutes, int minMinutes, int maxMinutes) {
             mInterval = Math.max(-2, minutes * 60 * 1000); //-2 is a random interval; -1 is off
+            mMinInterval = minMinutes * 60 * 1000;
+            mMaxInterval = maxMinutes * 60 * 1000;
         }
 
         public int getIntervalMillis() {
@@ -226,24 +233,19 @@ public enum Policy {
         }
 
         /**
-         * Calculates the start timestamp for the next beaconing period.
-         * Throws an {@link IllegalStateException} when beaconing is turned off.
-         *
-         * @return a long indicating the timestamp in milliseconds when to schedule the next round
-         *         of beaconing
+         * Returns the shortest interval the {@link AdaptiveBeaconingScheduler} may use.
+         * @return Interval in milliseconds; negative if beaconing is turned off.
          */
-        public long getNextBeaconTimeMillis() {
-            final long currentTime = System.currentTimeMillis();
-            if (mInterval > 0) {
-                return ((currentTime / mInterval) + 1) * mInterval;
-            }
-            else if(mInterval == -2) {
-                Random r = new Random();
-                int randomInterval = r.nextInt(3) + 1; // generates int between 1 (inclusive) and 4 (exclusive)
-                randomInterval = randomInterval * 60 * 1000; // convert o millis
-                return ((currentTime / randomInterval) + 1) * randomInterval;
-            }
-            throw new IllegalStateException("Beaconing is turned off.");
+        public int getMinIntervalMillis() {
+            return mMinInterval;
+        }
+
+        /**
+         * Returns the longest interval the {@link AdaptiveBeaconingScheduler} may use.
+         * @return Interval in milliseconds; negative if beaconing is turned off.
+         */
+        public int getMaxIntervalMillis() {
+            return mMaxInterval;
         }
     }
 
@@ -276,6 +278,15 @@ public enum Policy {
          * (hence the screen is on), he usually relies on a stable WLAN connection, which the
          * platform normally can not guarantee.
          */
-        FOREGROUND
+        FOREGROUND,
+        /**
+         * Allows the platform to send beacons once to the subnet broadcast address and the multicast
+         * groups, instead of once to every known neighbor, and to listen for multicast beacons. This
+         * reaches neighbors we have never heard of and saves airtime in crowded networks, at the cost
+         * of holding the WiFi multicast lock while beaconing. Not allowed by the battery saving
+         * policies ({@link Policy#PASSIVE} and {@link Policy#LOW_POWER}), which beacon to known
+         * neighbors only.
+         */
+        MULTICAST
     }
 }
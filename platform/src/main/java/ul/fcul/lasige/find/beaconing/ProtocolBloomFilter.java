@@ -0,0 +1,99 @@
+package ul.fcul.lasige.find.beaconing;
+
+import com.google.protobuf.ByteString;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Utility class to encode a set of protocol hashes into a Bloom filter, as sent in compact beacons
+ * (see {@link BeaconBuilder}), and to test which known protocols a received filter contains.
+ *
+ * <p>Protocol hashes are already uniformly distributed (SHA-1), so the filter's bit positions are taken
+ * directly from consecutive pairs of bytes of the hash.</p>
+ */
+public class ProtocolBloomFilter {
+    private static final String TAG = ProtocolBloomFilter.class.getSimpleName();
+
+    // filter size, in bytes
+    public static final int FILTER_BYTES = 16;
+    // number of bits set per protocol
+    private static final int HASH_COUNT = 4;
+
+    /**
+     * Constructor. It is private to prevent instantiation. All class' methods are static.
+     */
+    private ProtocolBloomFilter() {
+        // prevent instantiation
+    }
+
+    /**
+     * Builds a Bloom filter containing all given protocols.
+     * @param protocols Protocols' hash values.
+     * @return Bloom filter.
+     */
+    public static ByteString encode(Collection<ByteBuffer> protocols) {
+        final byte[] filter = new byte[FILTER_BYTES];
+        for (ByteBuffer protocol : protocols) {
+            final byte[] hash = protocol.array();
+            for (int i = 0; i < HASH_COUNT; i++) {
+                final int bit = bitIndex(hash, i, FILTER_BYTES * 8);
+                filter[bit >>> 3] |= (1 << (bit & 7));
+            }
+        }
+        return ByteString.copyFrom(filter);
+    }
+
+    /**
+     * Checks whether a protocol may be contained in a Bloom filter. False positives are possible, but
+     * false negatives are not.
+     * @param filter Bloom filter.
+     * @param protocol Protocol's hash value.
+     * @return true if protocol may be in the filter, false if it is definitely not.
+     */
+    public static boolean mightContain(ByteString filter, byte[] protocol) {
+        final int bits = filter.size() * 8;
+        if (bits == 0) {
+            return false;
+        }
+        for (int i = 0; i < HASH_COUNT; i++) {
+            final int bit = bitIndex(protocol, i, bits);
+            if ((filter.byteAt(bit >>> 3) & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns which of the given known protocols may be contained in a Bloom filter.
+     * @param filter Bloom filter.
+     * @param knownProtocols Protocols' hash values to test.
+     * @return List of protocols' hash values that may be in the filter.
+     */
+    public static List<ByteString> decode(ByteString filter, Collection<ByteBuffer> knownProtocols) {
+        final List<ByteString> protocols = new ArrayList<>();
+        for (ByteBuffer protocol : knownProtocols) {
+            final byte[] hash = protocol.array();
+            if (mightContain(filter, hash)) {
+                protocols.add(ByteString.copyFrom(hash));
+            }
+        }
+        return protocols;
+    }
+
+    /**
+     * Computes the i-th bit position of a protocol hash.
+     * @param hash Protocol's hash value.
+     * @param i Hash function index.
+     * @param bits Filter size, in bits.
+     * @return Bit position.
+     */
+    private static int bitIndex(byte[] hash, int i, int bits) {
+        final int offset = (2 * i) % (hash.length - 1);
+        final int value = ((hash[offset] & 0xFF) << 8) | (hash[offset + 1] & 0xFF);
+        return value % bits;
+    }
+}
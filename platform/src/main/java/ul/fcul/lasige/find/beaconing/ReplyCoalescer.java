@@ -0,0 +1,152 @@
+package ul.fcul.lasige.find.beaconing;
+
+import android.util.Log;
+
+import com.google.common.base.Optional;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import ul.fcul.lasige.find.network.ConnectionSnapshot;
+import ul.fcul.lasige.find.network.NetworkManager;
+import ul.fcul.lasige.find.network.SenderSocketPool;
+import ul.fcul.lasige.find.network.WifiConnection;
+
+/**
+ * Collects the addresses of neighbors whose beacons must be replied to, and replies to all of them at once
+ * after a short window. The reply is built once per window and sent through the shared beacon socket of the
+ * {@link SenderSocketPool}.
+ *
+ * <p>Counters of sent replies and flushes are kept, so that the effect of coalescing can be measured
+ * (see {@link #getRepliesSent()} and {@link #getFlushCount()}).</p>
+ */
+public class ReplyCoalescer {
+    private static final String TAG = ReplyCoalescer.class.getSimpleName();
+
+    // time during which reply targets are collected
+    public static final int COALESCE_WINDOW_MILLIS = 250;
+
+    // beaconing manager
+    private final BeaconingManager mBM;
+
+    // addresses waiting for a reply
+    private final Set<InetAddress> mPendingTargets = new LinkedHashSet<>();
+    // whether a flush is scheduled
+    private boolean mFlushScheduled;
+
+    // statistics
+    private volatile long mRepliesSent;
+    private volatile long mFlushCount;
+
+    /**
+     * Constructor.
+     * @param context Beaconing manager.
+     */
+    public ReplyCoalescer(BeaconingManager context) {
+        mBM = context;
+    }
+
+    /**
+     * Queues a reply to a neighbor. The reply is sent within {@link #COALESCE_WINDOW_MILLIS} milliseconds,
+     * together with all other replies queued meanwhile.
+     * @param replyTo Neighbor's address.
+     * @param executor Executor where replies are sent.
+     */
+    public synchronized void addTarget(InetAddress replyTo, ScheduledExecutorService executor) {
+        mPendingTargets.add(replyTo);
+        if (mFlushScheduled) {
+            return;
+        }
+
+        try {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, COALESCE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+            mFlushScheduled = true;
+        } catch (RejectedExecutionException e) {
+            // executor is shutting down, drop replies
+            mPendingTargets.clear();
+        }
+    }
+
+    /**
+     * Returns the number of replies sent.
+     * @return Number of replies.
+     */
+    public long getRepliesSent() {
+        return mRepliesSent;
+    }
+
+    /**
+     * Returns the number of times pending replies were sent.
+     * @return Number of flushes.
+     */
+    public long getFlushCount() {
+        return mFlushCount;
+    }
+
+    /**
+     * Builds the reply and sends it to all pending targets.
+     */
+    private void flush() {
+        final List<InetAddress> targets;
+        synchronized (this) {
+            targets = new ArrayList<>(mPendingTargets);
+            mPendingTargets.clear();
+            mFlushScheduled = false;
+        }
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        // check WiFi state and connection
+        final ConnectionSnapshot snapshot = mBM.mNetManager.getConnectionSnapshot();
+        final NetworkManager.WifiState wifiState = snapshot.getWifiState();
+        final Optional<WifiConnection> wifiConnection = snapshot.getConnection();
+        if (!snapshot.isConnected()) {
+            return;
+        }
+
+        // build reply once for all targets
+        final byte[] replyData = mBM.mBeaconBuilder.buildReply(wifiState, wifiConnection, null);
+        final DatagramPacket packet = new DatagramPacket(replyData, replyData.length);
+
+        final MulticastSocket socket;
+        try {
+            socket = mBM.mNetManager.getSenderSocketPool().getSocket(
+                    SenderSocketPool.Purpose.BEACON, wifiConnection.get().getWifiInterface());
+        } catch (IOException e) {
+            Log.e(TAG, "Could not create socket to send replies:", e);
+            return;
+        }
+
+        int sent = 0;
+        for (InetAddress target : targets) {
+            packet.setSocketAddress(new InetSocketAddress(target, BeaconingManager.RECEIVER_PORT_UNICAST));
+            try {
+                socket.send(packet);
+                sent++;
+            } catch (IOException e) {
+                Log.e(TAG, "Could not send reply to " + target);
+            }
+        }
+        synchronized (this) {
+            mRepliesSent += sent;
+            mFlushCount++;
+        }
+        Log.v(TAG, String.format("Sent %d replies (size: %d bytes)", sent, replyData.length));
+    }
+}
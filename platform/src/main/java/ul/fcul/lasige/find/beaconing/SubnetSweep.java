@@ -0,0 +1,212 @@
+package ul.fcul.lasige.find.beaconing;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.common.base.Optional;
+import com.google.common.net.InetAddresses;
+import com.google.common.primitives.Ints;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import ul.fcul.lasige.find.data.ConfigurationStore;
+
+/**
+ * Keeps track of the sweep of the IPv4 subnet, which sends beacons to every address of the subnet in order
+ * to find neighbors in networks that filter broadcast and multicast packets.
+ *
+ * <p>The subnet is swept incrementally: each beaconing round probes at most
+ * {@link #MAX_ADDRESSES_PER_ROUND} addresses, and the position where it stopped is stored (see
+ * {@link ConfigurationStore#saveSweepPosition(Context, String, int)}), so that the next round continues
+ * from there, even after a restart. Addresses of known neighbors are skipped, and a round stops as soon as
+ * an unknown node replies.</p>
+ */
+public class SubnetSweep {
+    private static final String TAG = SubnetSweep.class.getSimpleName();
+
+    /**
+     * Default maximum number of sweep beacons sent per second.
+     * @see ConfigurationStore#setSweepPacketsPerSecond(Context, int)
+     */
+    public static final int DEFAULT_PACKETS_PER_SECOND = 50;
+
+    // maximum number of addresses probed in a single beaconing round
+    private static final int MAX_ADDRESSES_PER_ROUND = 256;
+    // maximum number of host addresses swept; in larger subnets only the block around our own address is swept
+    private static final int MAX_SWEEP_HOSTS = 1024; // a /22 network
+
+    // application context
+    private final Context mContext;
+    // round that is currently running, if any
+    private volatile Round mCurrentRound;
+
+    /**
+     * Constructor.
+     * @param context Application context.
+     */
+    public SubnetSweep(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Returns the maximum number of sweep beacons sent per second.
+     * @return Packets per second.
+     */
+    public int getPacketsPerSecond() {
+        return Math.max(1, ConfigurationStore.getSweepPacketsPerSecond(mContext, DEFAULT_PACKETS_PER_SECOND));
+    }
+
+    /**
+     * Starts a new sweep round in the current subnet. The round continues where the previous round in the same
+     * network stopped.
+     * @param networkName Name of the current network.
+     * @param ownAddress Our IPv4 address.
+     * @param netmask Subnet mask, in network byte order.
+     * @param knownAddresses Addresses of known neighbors, which are skipped.
+     * @return The new round, or absent if the subnet cannot be swept.
+     */
+    public synchronized Optional<Round> startRound(String networkName, Inet4Address ownAddress, int netmask,
+                                                   Set<InetAddress> knownAddresses) {
+        final int own = InetAddresses.coerceToInteger(ownAddress);
+
+        // restrict large subnets to the block around our own address
+        final int mask = netmask | ~(MAX_SWEEP_HOSTS - 1);
+        final int networkAddress = own & mask;
+        final int hostCount = ~mask - 1; // skip network and broadcast addresses
+        if (hostCount <= 1) {
+            // nobody else fits in this subnet
+            return Optional.absent();
+        }
+
+        final String networkKey = String.format(
+                "%s/%s/%d", networkName, InetAddresses.fromInteger(networkAddress).getHostAddress(), hostCount);
+        int position = ConfigurationStore.getSweepPosition(mContext, networkKey);
+        if (position < 0 || position >= hostCount) {
+            // new network, start next to our own address (DHCP servers usually lease contiguous addresses)
+            position = (own - networkAddress) % hostCount;
+        }
+
+        final Round round = new Round(networkKey, networkAddress + 1, hostCount, own, position, knownAddresses);
+        mCurrentRound = round;
+        return Optional.of(round);
+    }
+
+    /**
+     * Finishes a sweep round and stores its position, so that the next round continues from there.
+     * @param round Sweep round.
+     */
+    public synchronized void finishRound(Round round) {
+        ConfigurationStore.saveSweepPosition(mContext, round.mNetworkKey, round.mPosition);
+        if (mCurrentRound == round) {
+            mCurrentRound = null;
+        }
+        Log.v(TAG, String.format("Swept %d addresses of %s%s", round.mProbed, round.mNetworkKey,
+                round.isPeerFound() ? ", stopped because a new neighbor replied" : ""));
+    }
+
+    /**
+     * Callback for every parsed beacon. If it was sent from an unknown address while a round is running, the
+     * round stops early.
+     * @param origin Address the beacon was received from.
+     */
+    public void onBeaconReceived(byte[] origin) {
+        final Round round = mCurrentRound;
+        if (round != null) {
+            round.onBeaconReceived(origin);
+        }
+    }
+
+    /**
+     * A single sweep round, used by a {@link UdpSender}.
+     */
+    public static final class Round {
+        // identifies the swept network
+        private final String mNetworkKey;
+        // first host address and number of host addresses
+        private final int mFirstHost;
+        private final int mHostCount;
+        // our own address
+        private final int mOwnAddress;
+        // addresses of known neighbors
+        private final Set<InetAddress> mKnownAddresses;
+
+        // offset of the next address to probe
+        private int mPosition;
+        // number of addresses probed and visited in this round
+        private int mProbed;
+        private int mVisited;
+        // whether an unknown node replied
+        private volatile boolean mPeerFound;
+
+        private Round(String networkKey, int firstHost, int hostCount, int ownAddress, int position,
+                      Set<InetAddress> knownAddresses) {
+            mNetworkKey = networkKey;
+            mFirstHost = firstHost;
+            mHostCount = hostCount;
+            mOwnAddress = ownAddress;
+            mPosition = position;
+            mKnownAddresses = knownAddresses;
+        }
+
+        /**
+         * Returns whether there are more addresses to probe in this round.
+         * @return true if the round has not finished, false otherwise.
+         */
+        public boolean hasNext() {
+            return !mPeerFound && mProbed < MAX_ADDRESSES_PER_ROUND && mVisited < mHostCount;
+        }
+
+        /**
+         * Returns the next addresses to probe, skipping our own address and known neighbors.
+         * @param maxSize Maximum number of addresses.
+         * @return List of addresses; empty if the round has finished.
+         */
+        public List<InetAddress> nextBatch(int maxSize) {
+            final List<InetAddress> batch = new ArrayList<>(maxSize);
+            while (batch.size() < maxSize && hasNext()) {
+                final int address = mFirstHost + mPosition;
+                mPosition = (mPosition + 1) % mHostCount;
+                mVisited++;
+
+                if (address == mOwnAddress) {
+                    continue;
+                }
+                final InetAddress inetAddress = InetAddresses.fromInteger(address);
+                if (mKnownAddresses.contains(inetAddress)) {
+                    // we already know this neighbor
+                    continue;
+                }
+                batch.add(inetAddress);
+                mProbed++;
+            }
+            return batch;
+        }
+
+        /**
+         * Returns whether an unknown node replied during this round.
+         * @return true if a new neighbor was found, false otherwise.
+         */
+        public boolean isPeerFound() {
+            return mPeerFound;
+        }
+
+        /**
+         * Checks whether a beacon was received from an unknown address in the swept block.
+         * @param origin Address the beacon was received from.
+         */
+        private void onBeaconReceived(byte[] origin) {
+            if (origin.length != 4) {
+                return;
+            }
+            final int address = Ints.fromByteArray(origin);
+            if (address - mFirstHost >= 0 && address - mFirstHost < mHostCount
+                    && !mKnownAddresses.contains(InetAddresses.fromInteger(address))) {
+                mPeerFound = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ul.fcul.lasige.find.beaconing;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.common.base.Optional;
+
+import java.io.File;
+import java.io.IOException;
+
+import ul.fcul.lasige.find.apps.ProtocolRegistry;
+import ul.fcul.lasige.find.network.DatagramTrace;
+import ul.fcul.lasige.find.network.DatagramTraceRecorder;
+import ul.fcul.lasige.find.network.WifiConnection;
+import ul.fcul.lasige.find.packetcomm.PacketReceiver;
+import ul.fcul.lasige.find.packetcomm.PacketRegistry;
+
+/**
+ * Replays a {@link DatagramTrace} captured by {@link DatagramTraceRecorder}: beacons are fed to
+ * {@link BeaconingManager#onBeaconReceived(BeaconParser.PossibleBeacon)} and packets to
+ * {@link PacketReceiver#onPacketReceived(byte[])}, which registers them in the {@link PacketRegistry}, as if they
+ * had just been received. Records are replayed at their original pace, or faster, so that field load can be
+ * reproduced on a device or in benchmarks.
+ *
+ * <p>Replay runs on the calling thread, which must not be the main thread.</p>
+ */
+public class TraceReplayer {
+    private static final String TAG = TraceReplayer.class.getSimpleName();
+
+    // network name of replayed beacons when not connected
+    private static final String REPLAY_NETWORK_NAME = "replay";
+
+    private final BeaconingManager mBM;
+    private final PacketReceiver mPacketReceiver;
+
+    /**
+     * Constructor.
+     * @param context Application context.
+     */
+    public TraceReplayer(Context context) {
+        mBM = BeaconingManager.getInstance(context);
+        // replayed packets are not captured again
+        mPacketReceiver = new PacketReceiver(PacketRegistry.getInstance(context), mBM.mMasterIdentity,
+                ProtocolRegistry.getInstance(context));
+    }
+
+    /**
+     * Replays a trace.
+     * @param trace Trace file.
+     * @param speedup How much faster than the original the trace is replayed (1 for the original pace); 0 or
+     *                less replays it as fast as possible.
+     * @return Number of records replayed; fewer than the trace holds if the thread was interrupted.
+     * @throws IOException If the trace could not be read.
+     * @throws IllegalStateException If the platform is not running.
+     */
+    public int replay(File trace, double speedup) throws IOException {
+        if (mBM.mState == BeaconingManager.BeaconingState.STOPPED) {
+            // beacons would have no parser
+            throw new IllegalStateException("Platform is not running");
+        }
+
+        int replayed = 0;
+        final DatagramTrace.Reader reader = new DatagramTrace.Reader(trace);
+        try {
+            final long replayStart = System.currentTimeMillis();
+            DatagramTrace.Record record;
+            while ((record = reader.next()) != null) {
+                if (speedup > 0) {
+                    // wait until the record's time, relative to the start of the capture
+                    final long due = replayStart
+                            + (long) ((record.getTimeMillis() - reader.getStartTimeMillis()) / speedup);
+                    final long wait = due - System.currentTimeMillis();
+                    if (wait > 0) {
+                        try {
+                            Thread.sleep(wait);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                }
+
+                if (record.getKind() == DatagramTrace.Kind.PACKET) {
+                    mPacketReceiver.onPacketReceived(record.getData());
+                } else {
+                    replayBeacon(record);
+                }
+                replayed++;
+            }
+        } finally {
+            reader.close();
+        }
+        Log.d(TAG, "Replayed " + replayed + " datagrams from " + trace);
+        return replayed;
+    }
+
+    /**
+     * Feeds a captured beacon to the beaconing manager, skipping what the receivers skip.
+     * @param record Beacon record.
+     */
+    private void replayBeacon(DatagramTrace.Record record) {
+        final byte[] data = record.getData();
+        if (data.length == 0 || UdpReceiver.isMdnsPacket(data, data.length)) {
+            return;
+        }
+
+        final Optional<WifiConnection> connection = mBM.mNetManager.getConnectionSnapshot().getConnection();
+        final String networkName = (connection.isPresent() && connection.get().hasNetworkName()
+                ? connection.get().getNetworkName().get() : REPLAY_NETWORK_NAME);
+        final BeaconingManager.SocketType socketType = (record.getKind() == DatagramTrace.Kind.BEACON_MULTICAST
+                ? BeaconingManager.SocketType.MULTICAST : BeaconingManager.SocketType.UNICAST);
+
+        // beacons are replayed as received now, so neighbors are current
+        mBM.onBeaconReceived(new BeaconParser.PossibleBeacon(data, record.getOrigin(),
+                System.currentTimeMillis() / 1000, networkName, socketType, mBM.mMasterIdentity.getPublicKey()));
+    }
+}
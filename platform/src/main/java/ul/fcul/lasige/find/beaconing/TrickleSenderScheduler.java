@@ -0,0 +1,167 @@
+package ul.fcul.lasige.find.beaconing;
+
+import android.util.Log;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import ul.fcul.lasige.find.protocolbuffer.FindProtos;
+
+/**
+ * {@link BeaconSenderScheduler} based on the Trickle algorithm (RFC 6206), which avoids beacon storms when
+ * many nodes share the same network.
+ *
+ * <p>Each interval I starts at {@link #MIN_INTERVAL_MILLIS} and doubles, up to {@link #MAX_INTERVAL_MILLIS},
+ * while the beacons heard are consistent. A beacon is scheduled at a random time in the second half of each
+ * interval, and it is suppressed if {@link #REDUNDANCY_CONSTANT} consistent beacons were already heard in that
+ * interval. An inconsistent beacon (e.g. from a new neighbor) resets the interval to its minimum. Beacons are
+ * only replied to when they are inconsistent, since otherwise the sender already knows about us.</p>
+ */
+public class TrickleSenderScheduler implements BeaconSenderScheduler {
+    private static final String TAG = TrickleSenderScheduler.class.getSimpleName();
+
+    // minimum interval (Imin)
+    private static final long MIN_INTERVAL_MILLIS = 3 * 1000; // 3 seconds
+    // maximum interval (Imin * 2^Imax)
+    private static final long MAX_INTERVAL_MILLIS = MIN_INTERVAL_MILLIS << 4; // 48 seconds
+    // number of consistent beacons that suppress ours (k)
+    private static final int REDUNDANCY_CONSTANT = 2;
+
+    private final Random mRandom;
+
+    // executor and sender, while running
+    private ScheduledExecutorService mExecutor;
+    private Runnable mSender;
+    // current interval
+    private long mIntervalMillis;
+    // consistent beacons heard in the current interval (c)
+    private int mCounter;
+    // scheduled transmission and end of the current interval
+    private ScheduledFuture<?> mTransmitFuture;
+    private ScheduledFuture<?> mIntervalFuture;
+
+    public TrickleSenderScheduler() {
+        this(new Random());
+    }
+
+    /**
+     * Constructor with a given source of randomness, so that transmission times can be reproduced (e.g. by the
+     * simulator).
+     * @param random Source of randomness.
+     */
+    public TrickleSenderScheduler(Random random) {
+        mRandom = random;
+    }
+
+    @Override
+    public synchronized void start(ScheduledExecutorService executor, Runnable sender) {
+        mExecutor = executor;
+        mSender = sender;
+        mIntervalMillis = MIN_INTERVAL_MILLIS;
+        startInterval();
+    }
+
+    @Override
+    public synchronized void stop() {
+        cancelInterval(true);
+        mExecutor = null;
+        mSender = null;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return mExecutor != null;
+    }
+
+    @Override
+    public synchronized void onBeaconHeard(FindProtos.Beacon beacon, boolean consistent) {
+        if (!isRunning()) {
+            return;
+        }
+
+        if (consistent) {
+            mCounter++;
+        } else if (mIntervalMillis > MIN_INTERVAL_MILLIS) {
+            // new information, spread it quickly
+            mIntervalMillis = MIN_INTERVAL_MILLIS;
+            startInterval();
+        }
+    }
+
+    @Override
+    public boolean shouldReply(FindProtos.Beacon beacon, boolean consistent) {
+        return !consistent;
+    }
+
+    /**
+     * Starts a new interval, scheduling a transmission at a random time in its second half.
+     */
+    private void startInterval() {
+        // a beacon still being sent from the previous interval is not interrupted
+        cancelInterval(false);
+        mCounter = 0;
+
+        final long half = mIntervalMillis / 2;
+        final long transmitDelay = half + (long) (mRandom.nextDouble() * half);
+        mTransmitFuture = mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                onTransmitTime();
+            }
+        }, transmitDelay, TimeUnit.MILLISECONDS);
+        mIntervalFuture = mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                onIntervalEnd();
+            }
+        }, mIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels the scheduled transmission and end of the current interval.
+     * @param interruptSender Whether to interrupt the sender, if it is running.
+     */
+    private void cancelInterval(boolean interruptSender) {
+        if (mTransmitFuture != null) {
+            mTransmitFuture.cancel(interruptSender);
+            mTransmitFuture = null;
+        }
+        if (mIntervalFuture != null) {
+            mIntervalFuture.cancel(false);
+            mIntervalFuture = null;
+        }
+    }
+
+    /**
+     * Sends a beacon, unless enough consistent beacons were heard in the current interval.
+     */
+    private void onTransmitTime() {
+        final Runnable sender;
+        synchronized (this) {
+            if (!isRunning()) {
+                return;
+            }
+            if (mCounter >= REDUNDANCY_CONSTANT) {
+                Log.v(TAG, String.format("Suppressed beacon, heard %d consistent beacons in %d ms",
+                        mCounter, mIntervalMillis));
+                return;
+            }
+            sender = mSender;
+        }
+        // send outside the lock, so that received beacons are not blocked
+        sender.run();
+    }
+
+    /**
+     * Doubles the interval, up to its maximum, and starts a new one.
+     */
+    private synchronized void onIntervalEnd() {
+        if (!isRunning()) {
+            return;
+        }
+        mIntervalMillis = Math.min(2 * mIntervalMillis, MAX_INTERVAL_MILLIS);
+        startInterval();
+    }
+}
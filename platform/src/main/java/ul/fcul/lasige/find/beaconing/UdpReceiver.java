@@ -14,6 +14,7 @@ import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
 import java.net.SocketTimeoutException;
 
+import ul.fcul.lasige.find.network.DatagramTrace;
 import ul.fcul.lasige.find.network.WifiConnection;
 import ul.fcul.lasige.find.utils.InterruptibleFailsafeRunnable;
 import ul.fcul.lasige.find.beaconing.BeaconParser.PossibleBeacon;
@@ -58,13 +59,11 @@ public abstract class UdpReceiver extends InterruptibleFailsafeRunnable {
 
     /**
      * Checks whether packet is ours
-     * @param packet Datagram packet
+     * @param senderAddress Address of the packet's sender
      * @param connection WiFi connection
      * @return true if packet was sent by us, false otherwise.
      */
-    private boolean isOwnPacket(DatagramPacket packet, WifiConnection connection) {
-        // get packet address
-        final InetAddress senderAddress = packet.getAddress();
+    static boolean isOwnPacket(InetAddress senderAddress, WifiConnection connection) {
         if (senderAddress instanceof Inet4Address && connection.hasIp4Address()) {
             // it is an ipv4 address
             return senderAddress.equals(connection.getIp4Address().get());
@@ -76,6 +75,35 @@ public abstract class UdpReceiver extends InterruptibleFailsafeRunnable {
         return false;
     }
 
+    /**
+     * Checks whether packet is an actual mDNS packet (and not a beacon).
+     * @param data Packet data
+     * @param length Packet length
+     * @return true if packet starts with the mDNS header, false otherwise.
+     */
+    static boolean isMdnsPacket(byte[] data, int length) {
+        return length >= MDNS_HEAD.length && data[0] == MDNS_HEAD[0] && data[1] == MDNS_HEAD[1];
+    }
+
+    /**
+     * Returns the kind of trace record of beacons received on a given socket type.
+     * @param socketType Socket type.
+     * @return {@link DatagramTrace.Kind} object.
+     */
+    static DatagramTrace.Kind getTraceKind(BeaconingManager.SocketType socketType) {
+        return (socketType == BeaconingManager.SocketType.MULTICAST
+                ? DatagramTrace.Kind.BEACON_MULTICAST : DatagramTrace.Kind.BEACON_UNICAST);
+    }
+
+    /**
+     * Returns the name of a connection's interface, for trace records.
+     * @param connection WiFi connection.
+     * @return Interface name, or null if unknown.
+     */
+    static String getInterfaceName(WifiConnection connection) {
+        return (connection.getWifiInterface() != null ? connection.getWifiInterface().getName() : null);
+    }
+
     /**
      * Main thread that listens for beacons.
      */
@@ -101,8 +129,8 @@ public abstract class UdpReceiver extends InterruptibleFailsafeRunnable {
 
                 // we received a datagram packet!
 
-                // get current connection
-                Optional<WifiConnection> conn = mBM.mNetManager.getCurrentConnection();
+                // get current connection, from the snapshot kept by the network manager
+                Optional<WifiConnection> conn = mBM.mNetManager.getConnectionSnapshot().getConnection();
                 if (!conn.isPresent()) {
                     // the wifi is disconnected, stop listening
                     break;
@@ -118,10 +146,14 @@ public abstract class UdpReceiver extends InterruptibleFailsafeRunnable {
             // check time
             final long timeReceived = System.currentTimeMillis() / 1000;
 
+            // capture everything that arrived, if enabled
+            mBM.mTraceRecorder.record(getTraceKind(mSocketType), packet.getAddress(),
+                    getInterfaceName(wifiConnection), packet.getData(), packet.getOffset(), packet.getLength());
+
             // skip if packet is empty, from ourselves or real mDNS
             if (packet.getLength() == 0
-                    || isOwnPacket(packet, wifiConnection)
-                    || (packet.getData()[0] == MDNS_HEAD[0] && packet.getData()[1] == MDNS_HEAD[1])) {
+                    || isOwnPacket(packet.getAddress(), wifiConnection)
+                    || isMdnsPacket(packet.getData(), packet.getLength())) {
                 Log.d(TAG, "packet is empty or is my own packet");
                 continue;
             }
@@ -140,11 +172,22 @@ public abstract class UdpReceiver extends InterruptibleFailsafeRunnable {
     }
 
     // IMPLEMENTATIONS
-    /*TODO public static class UdpMulticastReceiver extends UdpReceiver {
+    /**
+     * Implementation of a UDP multicast receiver, which extends {@link UdpReceiver}. It listens for beacons
+     * sent to the {@link BeaconingManager#MULTICAST_GROUPS multicast groups}.
+     */
+    public static class UdpMulticastReceiver extends UdpReceiver {
         public UdpMulticastReceiver(BeaconingManager context) throws IOException {
             super(context, BeaconingManager.SocketType.MULTICAST);
         }
 
+        /**
+         * Creates a {@link MulticastSocket} at port {@link BeaconingManager#RECEIVER_PORT_MULTICAST} with
+         * {@link BeaconingManager#RECEIVER_SOCKET_TIMEOUT} timeout, and joins all multicast groups. Groups
+         * that cannot be joined (e.g. IPv6 groups on IPv4-only networks) are skipped.
+         * @return A {@link MulticastSocket}.
+         * @throws IOException If the socket could not be bound or no group could be joined.
+         */
         @Override
         protected DatagramSocket createSocket() throws IOException {
             MulticastSocket socket = new MulticastSocket(null);
@@ -152,12 +195,25 @@ public abstract class UdpReceiver extends InterruptibleFailsafeRunnable {
             socket.setReuseAddress(true);
             socket.bind(new InetSocketAddress(BeaconingManager.RECEIVER_PORT_MULTICAST));
 
+            IOException lastError = null;
+            int joinedGroups = 0;
             for (InetAddress multicastGroup : BeaconingManager.MULTICAST_GROUPS) {
-                socket.joinGroup(multicastGroup);
+                try {
+                    socket.joinGroup(multicastGroup);
+                    joinedGroups++;
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not join multicast group " + multicastGroup.getHostAddress());
+                    lastError = e;
+                }
+            }
+
+            if (joinedGroups == 0) {
+                socket.close();
+                throw lastError;
             }
             return socket;
         }
-    }*/
+    }
 
     /**
      * Implementation of a UDP unicast receiver, which extends {@link UdpReceiver}. It contains a
@@ -7,19 +7,19 @@ import com.google.common.base.Optional;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MulticastSocket;
-import java.net.NetworkInterface;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import ul.fcul.lasige.find.lib.data.Neighbor;
+import ul.fcul.lasige.find.network.ConnectionSnapshot;
 import ul.fcul.lasige.find.network.NetworkManager;
+import ul.fcul.lasige.find.network.SenderSocketPool;
 import ul.fcul.lasige.find.network.WifiConnection;
-import ul.fcul.lasige.find.protocolbuffer.FindProtos;
 import ul.fcul.lasige.find.utils.InterruptibleFailsafeRunnable;
 
 /**
@@ -30,42 +30,21 @@ import ul.fcul.lasige.find.utils.InterruptibleFailsafeRunnable;
 public class UdpSender extends InterruptibleFailsafeRunnable {
     public static final String TAG = UdpSender.class.getSimpleName();
 
+    // interval between two batches of sweep beacons
+    private static final int SWEEP_BATCH_INTERVAL_MILLIS = 100;
+
     // beaconing manager
     private final BeaconingManager mBM;
-    //TODO private final boolean mPerformSubnetSweep;
+    // whether to sweep the subnet after sending the beacon
+    private final boolean mPerformSubnetSweep;
     // burst size
     private final int mBurstSize;
     // AP likelihood
     private final byte mApLikelihood;
 
-    // address to reply to (can be null)
-    private final InetAddress mReplyTo;
-    // received beacon; it's not null when we are replying
-    private final FindProtos.Beacon mReceivedBeacon;
-
-    // sender's socket
+    // sender's socket, shared with other senders (do not close)
     private DatagramSocket mSocket;
 
-    /**
-     * Constructor to reply to a neighbor beacon.
-     * @param context {@link BeaconingManager} object.
-     * @param replyTo Address to reply to.
-     * @param receivedBeacon Received beacon
-     * @param apLikelihood AP likelihood
-     */
-    public UdpSender(BeaconingManager context, InetAddress replyTo,
-                     FindProtos.Beacon receivedBeacon, int apLikelihood) {
-
-        super(TAG);
-        mBM = context;
-        //TODO mPerformSubnetSweep = false;
-        mBurstSize = 1;
-        mApLikelihood = (byte) (apLikelihood & 0xFF);
-
-        mReplyTo = replyTo;
-        mReceivedBeacon = receivedBeacon;
-    }
-
     /**
      * Constructor to send a beacon.
      * @param context {@link BeaconingManager} object.
@@ -76,12 +55,9 @@ public class UdpSender extends InterruptibleFailsafeRunnable {
     public UdpSender(BeaconingManager context, boolean subnetSweep, int burstSize, int apLikelihood) {
         super(TAG);
         mBM = context;
-        //TODO mPerformSubnetSweep = subnetSweep;
+        mPerformSubnetSweep = subnetSweep;
         mBurstSize = burstSize;
         mApLikelihood = (byte) (apLikelihood & 0xFF);
-
-        mReplyTo = null;
-        mReceivedBeacon = null;
     }
 
     /**
@@ -90,9 +66,10 @@ public class UdpSender extends InterruptibleFailsafeRunnable {
     @Override
     public void execute() {
         // check WiFi state and connection
-        final NetworkManager.WifiState wifiState = mBM.mNetManager.getWifiState();
-        final Optional<WifiConnection> wifiConnection = mBM.mNetManager.getCurrentConnection();
-        if (wifiState.equals(NetworkManager.WifiState.DISCONNECTED) || !wifiConnection.isPresent()) {
+        final ConnectionSnapshot snapshot = mBM.mNetManager.getConnectionSnapshot();
+        final NetworkManager.WifiState wifiState = snapshot.getWifiState();
+        final Optional<WifiConnection> wifiConnection = snapshot.getConnection();
+        if (!snapshot.isConnected()) {
             return;
         }
 
@@ -100,42 +77,33 @@ public class UdpSender extends InterruptibleFailsafeRunnable {
         final WifiConnection connection = wifiConnection.get();
 
         // build receiver list
-        final List<InetSocketAddress> receivers = new ArrayList<>();
+        final List<InetSocketAddress> receivers;
         // get list of current neighbors
-        final Set<Neighbor> neighbors = mBM.mDbController.getNeighbors(BeaconingManager.getCurrentTimestamp());
+        final Set<Neighbor> neighbors = mBM.mBeaconBuilder.getCurrentNeighbors();
 
-        if (mReplyTo != null) {
-            // reply to previously received beacon
-            receivers.add(new InetSocketAddress(mReplyTo, BeaconingManager.RECEIVER_PORT_UNICAST));
-        }
-        else {
-            // it's not a reply, the list of neighbors depends on our network state
-            switch (wifiState) {
-                case FIND_AP: {
-                    // we are AP -> send beacon to all neighbors (using unicast)
-                    addNeighborsAsUnicastTargets(receivers, neighbors);
-                    break;
-                }
-                case STA_ON_FIND_AP: {
-                    // we are connected to an AP -> send beacon to access point node (using unicast), but nobody else
-                    receivers.add(new InetSocketAddress(
-                            connection.getApAddress().get(),
-                            BeaconingManager.RECEIVER_PORT_UNICAST));
-                    break;
-                }
-                case STA_ON_PUBLIC_AP: {
-                    // we are on a public network -> send beacon to all neighbors (using unicast) and all multicast groups
-                    addNeighborsAsUnicastTargets(receivers, neighbors);
-                    /*addMulticastTargets(receivers);
-                    TODO if (mPerformSubnetSweep) {
-                        addUnicastSweepTargets(receivers);
-                    }*/
-                    break;
-                }
-                default: {
-                    // no receivers!
-                    return;
-                }
+        // the list of neighbors depends on our network state
+        switch (wifiState) {
+            case FIND_AP: {
+                // we are AP -> send beacon to all neighbors
+                receivers = getNeighborTargets(neighbors, connection, mBM.isMulticastEnabled());
+                break;
+            }
+            case STA_ON_FIND_AP: {
+                // we are connected to an AP -> send beacon to access point node (using unicast), but nobody else
+                receivers = new ArrayList<>();
+                receivers.add(new InetSocketAddress(
+                        connection.getApAddress().get(),
+                        BeaconingManager.RECEIVER_PORT_UNICAST));
+                break;
+            }
+            case STA_ON_PUBLIC_AP: {
+                // we are on a public network -> send beacon to all neighbors
+                receivers = getNeighborTargets(neighbors, connection, mBM.isMulticastEnabled());
+                break;
+            }
+            default: {
+                // no receivers!
+                return;
             }
         }
 
@@ -144,29 +112,21 @@ public class UdpSender extends InterruptibleFailsafeRunnable {
             return;
         }
 
-        // Build beacon
-        // get protocols' hash values
-        final Set<ByteBuffer> protocols = mBM.mProtocolRegistry.getAllProtocolImplementations().keySet();
-
         // build beacon's data
         final byte[] beaconData;
-        if (mReplyTo != null) {
-            // reply data
-            beaconData = mBM.mBeaconBuilder.buildReply(wifiState, wifiConnection, protocols, neighbors, mReceivedBeacon);
-        }
-        else if (wifiState.equals(NetworkManager.WifiState.STA_ON_FIND_AP)) {
+        if (wifiState.equals(NetworkManager.WifiState.STA_ON_FIND_AP)) {
             // data to send to FIND AP (no neighbor information)
-            beaconData = mBM.mBeaconBuilder.buildBeacon(wifiState, wifiConnection, protocols, mApLikelihood);
+            beaconData = mBM.mBeaconBuilder.buildBeacon(wifiState, wifiConnection, mApLikelihood);
         }
         else {
             // data to send to all neighbors, we are a FIND AP or on a network
-            beaconData = mBM.mBeaconBuilder.buildBeacon(wifiState, wifiConnection, protocols, neighbors);
+            beaconData = mBM.mBeaconBuilder.buildBeacon(wifiState, wifiConnection);
         }
 
-        // create socket and send data
+        // get socket and send data
         try {
-            // create
-            mSocket = createSocket(connection.getWifiInterface());
+            mSocket = mBM.mNetManager.getSenderSocketPool().getSocket(
+                    SenderSocketPool.Purpose.BEACON, connection.getWifiInterface());
         } catch (IOException e) {
             Log.e(TAG, "Could not create socket to send beacon:", e);
             return;
@@ -192,41 +152,106 @@ public class UdpSender extends InterruptibleFailsafeRunnable {
             }
         }
 
-        // close socket
-        mSocket.close();
         Log.v(TAG, String.format(
                 "Tried to send %d beacons (size: %d bytes) to %d receivers",
                 mBurstSize, beaconData.length, receivers.size()));
+
+        // on public networks, look for neighbors that group beacons may not reach
+        if (mPerformSubnetSweep && wifiState.equals(NetworkManager.WifiState.STA_ON_PUBLIC_AP)
+                && connection.hasIp4Address()) {
+            sweepSubnet(packet, connection, neighbors);
+        }
+    }
+
+    /**
+     * Sends the beacon to the next addresses of the subnet, in batches paced by the sweep budget (packets per
+     * second). Stops when the round's addresses are exhausted, when a new neighbor replies, or when the sender
+     * is interrupted.
+     * @param packet Datagram packet with the beacon.
+     * @param connection Current WiFi connection.
+     * @param neighbors Current neighbors, whose addresses are skipped.
+     * @see SubnetSweep
+     */
+    private void sweepSubnet(DatagramPacket packet, WifiConnection connection, Set<Neighbor> neighbors) {
+        // known addresses
+        final Set<InetAddress> knownAddresses = new HashSet<>();
+        for (Neighbor neighbor : neighbors) {
+            if (neighbor.hasIp4Address()) {
+                knownAddresses.add(neighbor.getIp4Address());
+            }
+        }
+
+        final Optional<SubnetSweep.Round> sweepRound = mBM.mSubnetSweep.startRound(
+                connection.getNetworkName().get(), connection.getIp4Address().get(),
+                mBM.mNetManager.getIp4Netmask(), knownAddresses);
+        if (!sweepRound.isPresent()) {
+            return;
+        }
+        final SubnetSweep.Round round = sweepRound.get();
+
+        // one batch every SWEEP_BATCH_INTERVAL_MILLIS
+        final int batchSize = Math.max(1, mBM.mSubnetSweep.getPacketsPerSecond() * SWEEP_BATCH_INTERVAL_MILLIS / 1000);
+        final long batchInterval = (1000L * batchSize) / mBM.mSubnetSweep.getPacketsPerSecond();
+        try {
+            while (round.hasNext() && !mThread.isInterrupted()) {
+                for (InetAddress address : round.nextBatch(batchSize)) {
+                    packet.setSocketAddress(new InetSocketAddress(address, BeaconingManager.RECEIVER_PORT_UNICAST));
+                    try {
+                        mSocket.send(packet);
+                    } catch (IOException e) {
+                        Log.e(TAG, "Could not send sweep beacon to " + address);
+                    }
+                }
+                Thread.sleep(batchInterval);
+            }
+        } catch (InterruptedException e) {
+            // sender was stopped, the sweep continues in the next round
+        } finally {
+            mBM.mSubnetSweep.finishRound(round);
+        }
     }
 
     /**
-     * Create socket for a given network interface and with a 5 second timeout. Notice that a {@link MulticastSocket} also works for Unicast.
-     * @param wifiInterface WiFi interface.
-     * @return A {@link MulticastSocket} object.
-     * @throws IOException
+     * Returns the receivers that reach all neighbors in the current network. In multicast mode, the subnet
+     * broadcast address and multicast groups are used, and only neighbors that may miss those (i.e., not
+     * multicast capable) are added individually. Otherwise, all neighbors are added individually. Also used by
+     * the beacon mode benchmark.
+     * @param neighbors Set of neighbors.
+     * @param connection Current WiFi connection.
+     * @param multicast Whether the policy allows group beacons.
+     * @return List of addresses, each of which gets a burst of beacons.
+     * @see Policy.Feature#MULTICAST
      */
-    private MulticastSocket createSocket(NetworkInterface wifiInterface) throws IOException {
-        final MulticastSocket socket = new MulticastSocket(null);
-        // set timeout
-        socket.setSoTimeout(5000);
-        socket.setReuseAddress(true);
-        socket.setLoopbackMode(true);
-        socket.setBroadcast(true);
-        socket.setNetworkInterface(wifiInterface);
-        return socket;
+    public static List<InetSocketAddress> getNeighborTargets(
+            Set<Neighbor> neighbors, WifiConnection connection, boolean multicast) {
+
+        final List<InetSocketAddress> receivers = new ArrayList<>();
+        if (multicast) {
+            // a single beacon reaches everyone in the network, including unknown neighbors
+            addGroupTargets(receivers, connection);
+            addNeighborsAsUnicastTargets(receivers, neighbors, true);
+        } else {
+            addNeighborsAsUnicastTargets(receivers, neighbors, false);
+        }
+        return receivers;
     }
 
     /**
      * Add set of neighbors to a given list of addresses.
      * @param receivers List of addresses.
      * @param neighbors Set of neighbors
+     * @param onlyMulticastIncapable Whether to skip neighbors that receive multicast beacons.
      * @see InetSocketAddress
      * @see Neighbor
      */
-    private void addNeighborsAsUnicastTargets(
-            List<InetSocketAddress> receivers, Set<Neighbor> neighbors) {
+    private static void addNeighborsAsUnicastTargets(
+            List<InetSocketAddress> receivers, Set<Neighbor> neighbors, boolean onlyMulticastIncapable) {
 
         for (Neighbor neighbor : neighbors) {
+            if (onlyMulticastIncapable && neighbor.isMulticastCapable()) {
+                // it will receive the group beacon
+                continue;
+            }
             if (neighbor.hasAnyIpAddress()) {
                 receivers.add(new InetSocketAddress(
                         neighbor.getAnyIpAddress(), BeaconingManager.RECEIVER_PORT_UNICAST));
@@ -235,20 +260,25 @@ public class UdpSender extends InterruptibleFailsafeRunnable {
     }
 
     /**
-     * Add udp receivers for IPv4 range to a list of receivers.
+     * Add the IPv4 subnet broadcast address and the multicast groups to a list of receivers. Beacons sent
+     * to the broadcast address are received by the unicast receiver of every neighbor, while multicast
+     * groups get through networks that filter broadcasts and reach IPv6-only neighbors.
      * @param receivers List to where receivers will be added.
-     * @see NetworkManager#getIp4SweepRange()
+     * @param connection Current WiFi connection.
+     * @see BeaconingManager#MULTICAST_GROUPS
      */
-    private void addUnicastSweepTargets(List<InetSocketAddress> receivers) {
-        for (InetAddress addr : mBM.mNetManager.getIp4SweepRange()) {
-            receivers.add(new InetSocketAddress(addr, BeaconingManager.RECEIVER_PORT_UNICAST));
+    private static void addGroupTargets(List<InetSocketAddress> receivers, WifiConnection connection) {
+        if (connection.hasIp4BroadcastAddress()) {
+            receivers.add(new InetSocketAddress(
+                    connection.getIp4BroadcastAddress().get(), BeaconingManager.RECEIVER_PORT_UNICAST));
         }
-    }
 
-    /*private void addMulticastTargets(List<InetSocketAddress> receivers) {
         for (InetAddress multicastGroup : BeaconingManager.MULTICAST_GROUPS) {
-            receivers.add(new InetSocketAddress(
-                    multicastGroup, BeaconingManager.RECEIVER_PORT_MULTICAST));
+            final boolean isIp4Group = (multicastGroup instanceof Inet4Address);
+            if ((isIp4Group && connection.hasIp4Address()) || (!isIp4Group && connection.hasIp6Address())) {
+                receivers.add(new InetSocketAddress(
+                        multicastGroup, BeaconingManager.RECEIVER_PORT_MULTICAST));
+            }
         }
-    }*/
+    }
 }
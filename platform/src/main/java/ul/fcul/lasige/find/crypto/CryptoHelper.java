@@ -82,12 +82,23 @@ public class CryptoHelper {
      * @return Ciphered data.
      */
     public static byte[] encrypt(Context context, byte[] plaintext, byte[] receiverPublicKey) {
+        // get own private Curve25519 key
+        return encrypt(ConfigurationStore.getMasterEncryptionKey(context), plaintext, receiverPublicKey);
+    }
+
+    /**
+     * Encrypt data with receiver's public key, using a previously loaded private key. Throws
+     * {@link RuntimeException} in case of error.
+     * @param senderSecretKey Own private Curve25519 key.
+     * @param plaintext Data.
+     * @param receiverPublicKey Receiver's public key.
+     * @return Ciphered data.
+     * @see ConfigurationStore#getMasterEncryptionKey(Context)
+     */
+    public static byte[] encrypt(PrivateKey senderSecretKey, byte[] plaintext, byte[] receiverPublicKey) {
         // convert receiver's public key to Curve25519 format
         final byte[] receiverPublicCurveKey = convertEdPublicKeyToCurve(receiverPublicKey);
 
-        // get own private Curve25519 key
-        PrivateKey senderSecretKey = ConfigurationStore.getMasterEncryptionKey(context);
-
         // encrypt message inside NaCl box
         final int ciphertextLength = plaintext.length + BOX_MACBYTES;
         final byte[] ciphertext = new byte[ciphertextLength + NONCE_BYTES];
@@ -132,7 +143,17 @@ public class CryptoHelper {
      * @return Signed data.
      */
     public static byte[] sign(Context context, byte[] data) {
-        final SigningKey signingKey = ConfigurationStore.getMasterSigningKey(context);
+        return sign(ConfigurationStore.getMasterSigningKey(context), data);
+    }
+
+    /**
+     * Sign data with a previously loaded signing key.
+     * @param signingKey Platform's signing key.
+     * @param data Data.
+     * @return Signed data.
+     * @see ConfigurationStore#getMasterSigningKey(Context)
+     */
+    public static byte[] sign(SigningKey signingKey, byte[] data) {
         return signingKey.sign(data);
     }
 
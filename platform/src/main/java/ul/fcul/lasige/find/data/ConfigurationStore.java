@@ -7,6 +7,7 @@ import org.abstractj.kalium.encoders.Encoder;
 import org.abstractj.kalium.keys.PrivateKey;
 import org.abstractj.kalium.keys.SigningKey;
 
+import ul.fcul.lasige.find.beaconing.BeaconIntakeQueue;
 import ul.fcul.lasige.find.beaconing.Policy;
 import ul.fcul.lasige.find.service.SupervisorService;
 
@@ -32,6 +33,26 @@ public class ConfigurationStore {
     private static final String KEY_SUPERVISOR_STATE = "supervisor_state";
     // current policy
     private static final String KEY_CURRENT_POLICY = "current_policy";
+    // whether beacons and packets are received through the shared NIO receive engine
+    private static final String KEY_NIO_RECEIVE_ENGINE = "nio_receive_engine";
+    // whether repeating beacons are scheduled with the Trickle algorithm
+    private static final String KEY_TRICKLE_BEACONING = "trickle_beaconing";
+    // maximum number of subnet sweep beacons sent per second
+    private static final String KEY_SWEEP_PACKETS_PER_SECOND = "sweep_packets_per_second";
+    // network whose subnet is being swept, and position where the sweep continues
+    private static final String KEY_SWEEP_NETWORK = "sweep_network";
+    private static final String KEY_SWEEP_POSITION = "sweep_position";
+    // capacity and drop policy of the queue of received beacons
+    private static final String KEY_BEACON_QUEUE_CAPACITY = "beacon_queue_capacity";
+    private static final String KEY_BEACON_QUEUE_DROP_POLICY = "beacon_queue_drop_policy";
+    // whether received datagrams are captured to a trace file
+    private static final String KEY_TRACE_CAPTURE = "trace_capture";
+    // whether packets sent to a neighbor together are bundled into fewer datagrams
+    private static final String KEY_PACKET_BUNDLING = "packet_bundling";
+    // whether packets are sent in reliable transfers, with acknowledgments and retransmissions
+    private static final String KEY_RELIABLE_TRANSFER = "reliable_transfer";
+    // whether packets larger than a datagram are sent as fragments
+    private static final String KEY_PACKET_FRAGMENTATION = "packet_fragmentation";
 
     /**
      * Constructor. It is private to prevent instantiation. All class' methods are static.
@@ -173,4 +194,251 @@ public class ConfigurationStore {
                 .putString(KEY_CURRENT_POLICY, policy.name())
                 .apply();
     }
+
+    // RECEIVE ENGINE
+    /**
+     * Returns whether beacons and packets should be received through the shared
+     * {@link ul.fcul.lasige.find.network.UdpReceiveEngine UdpReceiveEngine} instead of one blocking thread per port.
+     * @param context Application context.
+     * @return true if the NIO receive engine is enabled, false otherwise (default).
+     */
+    public static boolean isNioReceiveEngineEnabled(Context context) {
+        return getSharedPreferences(context).getBoolean(KEY_NIO_RECEIVE_ENGINE, false);
+    }
+
+    /**
+     * Enables or disables the shared NIO receive engine. Takes effect the next time receivers are started.
+     * @param context Application context.
+     * @param enabled true to enable the NIO receive engine, false otherwise.
+     */
+    public static void setNioReceiveEngineEnabled(Context context, boolean enabled) {
+        getSharedPreferences(context)
+                .edit()
+                .putBoolean(KEY_NIO_RECEIVE_ENGINE, enabled)
+                .apply();
+    }
+
+    // BEACON SCHEDULING
+    /**
+     * Returns whether repeating beacons are scheduled with the
+     * {@link ul.fcul.lasige.find.beaconing.TrickleSenderScheduler Trickle algorithm}, instead of at a fixed rate.
+     * @param context Application context.
+     * @return true if Trickle is enabled (default), false otherwise.
+     */
+    public static boolean isTrickleBeaconingEnabled(Context context) {
+        return getSharedPreferences(context).getBoolean(KEY_TRICKLE_BEACONING, true);
+    }
+
+    /**
+     * Enables or disables Trickle beacon scheduling. Takes effect the next time the platform starts.
+     * @param context Application context.
+     * @param enabled true to enable Trickle, false to send beacons at a fixed rate.
+     */
+    public static void setTrickleBeaconingEnabled(Context context, boolean enabled) {
+        getSharedPreferences(context)
+                .edit()
+                .putBoolean(KEY_TRICKLE_BEACONING, enabled)
+                .apply();
+    }
+
+    // SUBNET SWEEP
+    /**
+     * Returns the maximum number of beacons per second sent while sweeping the subnet.
+     * @param context Application context.
+     * @param defaultValue Value returned if none was set.
+     * @return Packets per second.
+     * @see ul.fcul.lasige.find.beaconing.SubnetSweep
+     */
+    public static int getSweepPacketsPerSecond(Context context, int defaultValue) {
+        return getSharedPreferences(context).getInt(KEY_SWEEP_PACKETS_PER_SECOND, defaultValue);
+    }
+
+    /**
+     * Sets the maximum number of beacons per second sent while sweeping the subnet.
+     * @param context Application context.
+     * @param packetsPerSecond Packets per second.
+     */
+    public static void setSweepPacketsPerSecond(Context context, int packetsPerSecond) {
+        getSharedPreferences(context)
+                .edit()
+                .putInt(KEY_SWEEP_PACKETS_PER_SECOND, packetsPerSecond)
+                .apply();
+    }
+
+    /**
+     * Returns the position where the sweep of a given network continues.
+     * @param context Application context.
+     * @param network Network identifier.
+     * @return Sweep position; -1 if the network was not being swept.
+     */
+    public static int getSweepPosition(Context context, String network) {
+        final SharedPreferences config = getSharedPreferences(context);
+        if (!network.equals(config.getString(KEY_SWEEP_NETWORK, null))) {
+            return -1;
+        }
+        return config.getInt(KEY_SWEEP_POSITION, -1);
+    }
+
+    /**
+     * Stores the position where the sweep of a given network continues. Only the last swept network is
+     * remembered.
+     * @param context Application context.
+     * @param network Network identifier.
+     * @param position Sweep position.
+     */
+    public static void saveSweepPosition(Context context, String network, int position) {
+        getSharedPreferences(context)
+                .edit()
+                .putString(KEY_SWEEP_NETWORK, network)
+                .putInt(KEY_SWEEP_POSITION, position)
+                .apply();
+    }
+
+    // BEACON INTAKE QUEUE
+    /**
+     * Returns the maximum number of received beacons waiting to be parsed.
+     * @param context Application context.
+     * @return Queue capacity; {@link BeaconIntakeQueue#DEFAULT_CAPACITY} if none was set.
+     */
+    public static int getBeaconQueueCapacity(Context context) {
+        return getSharedPreferences(context).getInt(KEY_BEACON_QUEUE_CAPACITY, BeaconIntakeQueue.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Sets the maximum number of received beacons waiting to be parsed. Takes effect the next time the
+     * platform starts.
+     * @param context Application context.
+     * @param capacity Queue capacity.
+     */
+    public static void setBeaconQueueCapacity(Context context, int capacity) {
+        getSharedPreferences(context)
+                .edit()
+                .putInt(KEY_BEACON_QUEUE_CAPACITY, capacity)
+                .apply();
+    }
+
+    /**
+     * Returns which received beacon is dropped when the queue of beacons waiting to be parsed is full.
+     * @param context Application context.
+     * @return {@link BeaconIntakeQueue.DropPolicy}; if none was set, then returns
+     * {@link BeaconIntakeQueue.DropPolicy#PER_ORIGIN_FAIR PER_ORIGIN_FAIR}.
+     */
+    public static BeaconIntakeQueue.DropPolicy getBeaconQueueDropPolicy(Context context) {
+        final String dropPolicy = getSharedPreferences(context).getString(KEY_BEACON_QUEUE_DROP_POLICY, null);
+        return (dropPolicy == null
+                ? BeaconIntakeQueue.DropPolicy.PER_ORIGIN_FAIR : BeaconIntakeQueue.DropPolicy.valueOf(dropPolicy));
+    }
+
+    /**
+     * Sets which received beacon is dropped when the queue of beacons waiting to be parsed is full. Takes effect
+     * the next time the platform starts.
+     * @param context Application context.
+     * @param dropPolicy {@link BeaconIntakeQueue.DropPolicy} object.
+     */
+    public static void setBeaconQueueDropPolicy(Context context, BeaconIntakeQueue.DropPolicy dropPolicy) {
+        getSharedPreferences(context)
+                .edit()
+                .putString(KEY_BEACON_QUEUE_DROP_POLICY, dropPolicy.name())
+                .apply();
+    }
+
+    // TRACE CAPTURE
+    /**
+     * Returns whether datagrams received on the beaconing and packet ports are captured to a trace file.
+     * @param context Application context.
+     * @return true if capture is enabled, false otherwise (default).
+     * @see ul.fcul.lasige.find.network.DatagramTraceRecorder
+     */
+    public static boolean isTraceCaptureEnabled(Context context) {
+        return getSharedPreferences(context).getBoolean(KEY_TRACE_CAPTURE, false);
+    }
+
+    /**
+     * Enables or disables the capture of received datagrams.
+     * @param context Application context.
+     * @param enabled true to capture datagrams, false otherwise.
+     */
+    public static void setTraceCaptureEnabled(Context context, boolean enabled) {
+        getSharedPreferences(context)
+                .edit()
+                .putBoolean(KEY_TRACE_CAPTURE, enabled)
+                .apply();
+    }
+
+    // PACKET BUNDLING
+    /**
+     * Returns whether packets sent to a neighbor in the same session are packed into
+     * {@link ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle}s. Neighbors running a platform
+     * version without bundles would drop the packets in them, so it is only worth enabling when all devices run a
+     * version with bundles.
+     * @param context Application context.
+     * @return true if bundling is enabled, false to send one packet per datagram (default).
+     * @see ul.fcul.lasige.find.packetcomm.TransportBundler
+     */
+    public static boolean isPacketBundlingEnabled(Context context) {
+        return getSharedPreferences(context).getBoolean(KEY_PACKET_BUNDLING, false);
+    }
+
+    /**
+     * Enables or disables bundling of sent packets. Takes effect the next time the platform starts.
+     * @param context Application context.
+     * @param enabled true to bundle packets, false to send one packet per datagram.
+     */
+    public static void setPacketBundlingEnabled(Context context, boolean enabled) {
+        getSharedPreferences(context)
+                .edit()
+                .putBoolean(KEY_PACKET_BUNDLING, enabled)
+                .apply();
+    }
+
+    // RELIABLE TRANSFER
+    /**
+     * Returns whether packets are sent to neighbors in reliable transfers, which are acknowledged and
+     * retransmitted, instead of fire-and-forget datagrams. A neighbor's delivery state is then only advanced
+     * for acknowledged packets. Neighbors running a platform version without reliable transfers cannot read them.
+     * @param context Application context.
+     * @return true if reliable transfers are enabled, false otherwise (default).
+     * @see ul.fcul.lasige.find.packetcomm.ReliableSender
+     */
+    public static boolean isReliableTransferEnabled(Context context) {
+        return getSharedPreferences(context).getBoolean(KEY_RELIABLE_TRANSFER, false);
+    }
+
+    /**
+     * Enables or disables reliable transfers. Takes effect the next time the platform starts.
+     * @param context Application context.
+     * @param enabled true to send packets in reliable transfers, false to send datagrams without acknowledgments.
+     */
+    public static void setReliableTransferEnabled(Context context, boolean enabled) {
+        getSharedPreferences(context)
+                .edit()
+                .putBoolean(KEY_RELIABLE_TRANSFER, enabled)
+                .apply();
+    }
+
+    // PACKET FRAGMENTATION
+    /**
+     * Returns whether packets larger than a datagram are sent as
+     * {@link ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment}s, each in its own datagram, instead
+     * of a single datagram fragmented by IP. Neighbors running a platform version without fragments cannot
+     * reassemble them, so it is only worth enabling when all devices run a version with fragments.
+     * @param context Application context.
+     * @return true if fragmentation is enabled, false to send each packet in a single datagram (default).
+     * @see ul.fcul.lasige.find.packetcomm.PacketFragmenter
+     */
+    public static boolean isPacketFragmentationEnabled(Context context) {
+        return getSharedPreferences(context).getBoolean(KEY_PACKET_FRAGMENTATION, false);
+    }
+
+    /**
+     * Enables or disables fragmentation of large packets. Takes effect the next time the platform starts.
+     * @param context Application context.
+     * @param enabled true to send large packets as fragments, false to send each packet in a single datagram.
+     */
+    public static void setPacketFragmentationEnabled(Context context, boolean enabled) {
+        getSharedPreferences(context)
+                .edit()
+                .putBoolean(KEY_PACKET_FRAGMENTATION, enabled)
+                .apply();
+    }
 }
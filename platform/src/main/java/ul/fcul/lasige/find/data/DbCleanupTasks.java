@@ -48,7 +48,7 @@ public class DbCleanupTasks {
 
             // reset timestamp of last packet sent to all neighbors in order to force
             // re-send of all packets when neighbor is reachable
-            dbController.resetNeighborsTimeLastPacket();
+            NeighborTable.getInstance(mContext).resetNeighborsTimeLastPacket();
         }
     }
 }
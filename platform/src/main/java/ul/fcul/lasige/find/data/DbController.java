@@ -4,6 +4,7 @@ import android.annotation.TargetApi;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDoneException;
@@ -16,14 +17,22 @@ import android.util.Log;
 
 import com.google.protobuf.ByteString;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import ul.fcul.lasige.find.apps.ProtocolRegistry;
 import ul.fcul.lasige.find.apps.TokenGenerator;
 import ul.fcul.lasige.find.lib.data.Neighbor;
 import ul.fcul.lasige.find.lib.data.Packet;
+import ul.fcul.lasige.find.packetcomm.OutgoingPacket;
+import ul.fcul.lasige.find.packetcomm.PacketFragmenter;
 import ul.fcul.lasige.find.packetcomm.TransportPacketFactory;
 import ul.fcul.lasige.find.crypto.CryptoHelper;
 import ul.fcul.lasige.find.data.FullContract.ClientImplementations;
@@ -44,6 +53,8 @@ import ul.fcul.lasige.find.utils.ByteUtils;
  */
 public class DbController {
     private static final String TAG = DbController.class.getSimpleName();
+    // maximum number of arguments of a single query (SQLite allows 999)
+    private static final int MAX_QUERY_ARGUMENTS = 500;
 
     // context
     private final Context mContext;
@@ -561,6 +572,73 @@ public class DbController {
         }
     }
 
+    /**
+     * Retrieves several packets at once, for sending. Packets that do not exist anymore are skipped.
+     * @param packetIds Packet ids.
+     * @return Packets, oldest first.
+     * @see OutgoingPacket
+     */
+    public List<OutgoingPacket> getPacketsForSending(Collection<Long> packetIds) {
+        final SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        final List<OutgoingPacket> packets = new ArrayList<>(packetIds.size());
+
+        // query in chunks, as SQLite limits the number of arguments
+        final List<Long> ids = new ArrayList<>(packetIds);
+        for (int start = 0; start < ids.size(); start += MAX_QUERY_ARGUMENTS) {
+            final List<Long> chunk = ids.subList(start, Math.min(ids.size(), start + MAX_QUERY_ARGUMENTS));
+            final String[] args = new String[chunk.size()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = String.valueOf(chunk.get(i));
+            }
+
+            final Cursor packetCursor = db.query(
+                    Packets.VIEW_NAME_ALL,
+                    Packets.PROJECTION_DEFAULT,
+                    Packets._ID + " in (" + TextUtils.join(", ", Collections.nCopies(args.length, "?")) + ")",
+                    args,
+                    null, null, null);
+            try {
+                final int idColumn = packetCursor.getColumnIndexOrThrow(Packets._ID);
+                final int timeColumn = packetCursor.getColumnIndexOrThrow(Packets.COLUMN_TIME_RECEIVED);
+                while (packetCursor.moveToNext()) {
+                    packets.add(new OutgoingPacket(packetCursor.getLong(idColumn), packetCursor.getLong(timeColumn),
+                            TransportPacketFactory.fromCursor(packetCursor)));
+                }
+            } finally {
+                packetCursor.close();
+            }
+        }
+
+        // oldest first, as they were sent before
+        Collections.sort(packets, new Comparator<OutgoingPacket>() {
+            @Override
+            public int compare(OutgoingPacket lhs, OutgoingPacket rhs) {
+                return (lhs.getTimeReceived() < rhs.getTimeReceived() ? -1
+                        : (lhs.getTimeReceived() == rhs.getTimeReceived() ? 0 : 1));
+            }
+        });
+        return packets;
+    }
+
+    /**
+     * Returns the time the oldest outgoing packet inserted since a given timestamp was inserted.
+     * @param sinceTimestamp Timestamp (inclusive).
+     * @return Timestamp, in seconds; -1 if there are no such packets.
+     */
+    public long getOldestOutgoingPacketTime(long sinceTimestamp) {
+        final SQLiteDatabase db = mDbHelper.getReadableDatabase();
+
+        final Cursor cursor = db.rawQuery(
+                "select min(" + Packets.COLUMN_TIME_RECEIVED + ") from " + Packets.VIEW_NAME_OUTGOING
+                        + " where " + String.format(Packets.WHERE_CLAUSE_TIME_RECEIVED, sinceTimestamp),
+                null);
+        try {
+            return (cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : -1);
+        } finally {
+            cursor.close();
+        }
+    }
+
     /**
      * Retrieves a data cursor with all outgoing packets.
      * @return A data cursor.
@@ -576,6 +654,18 @@ public class DbController {
                 Packets.SORT_ORDER_DEFAULT);
     }
 
+    /**
+     * Returns the number of outgoing packets that were inserted since a given timestamp.
+     * @param sinceTimestamp Timestamp, in seconds.
+     * @return Number of outgoing packets.
+     */
+    public long getOutgoingPacketCount(long sinceTimestamp) {
+        final SQLiteDatabase db = mDbHelper.getReadableDatabase();
+
+        return DatabaseUtils.longForQuery(db, "select count(*) from " + Packets.VIEW_NAME_OUTGOING
+                + " where " + String.format(Packets.WHERE_CLAUSE_TIME_RECEIVED, sinceTimestamp), null);
+    }
+
     /**
      * Retrieves a data cursor with all outgoing packets that were inserted since a given timestamp.
      * @param sinceTimestamp Timestamp.
@@ -615,19 +705,91 @@ public class DbController {
      * Insert incoming packet in DB.
      * @param packet Packet.
      * @param queues Queues where to insert packet.
-     * @return The id of the newly created row, or 0 if an error occurred.
+     * @return The id of the newly created row, 0 if an error occurred, or -1 if the packet was rejected.
      * @see TransportPacket
      * @see PacketQueues
      */
     public long insertIncomingPacket(TransportPacket packet, PacketQueues[] queues) {
-        // build values structure
-        final ContentValues data = TransportPacketFactory.toContentValues(packet);
+        return insertIncomingPackets(Collections.singletonList(packet), Collections.singletonList(queues))[0];
+    }
+
+    /**
+     * Insert several incoming packets in DB, in a single transaction. Listeners are notified once.
+     * @param packets Packets.
+     * @param queues Queues where to insert each packet, in the same order as the packets.
+     * @return For each packet, the id of the newly created row, 0 if an error occurred (e.g. the packet
+     * already exists), or -1 if the packet was rejected.
+     * @see #insertIncomingPacket(TransportPacket, PacketQueues[])
+     */
+    public long[] insertIncomingPackets(List<TransportPacket> packets, List<PacketQueues[]> queues) {
+        final long[] rowIds = new long[packets.size()];
+        final ContentValues[] data = new ContentValues[packets.size()];
+        final List<Set<ClientImplementation>> implementations = new ArrayList<>(packets.size());
 
         // get protocol registry
         final ProtocolRegistry protocolRegistry = ProtocolRegistry.getInstance(mContext);
-        // get client implements that use the protocol
-        final Set<ClientImplementation> implementations =
-                protocolRegistry.getProtocolImplementations(packet.getProtocol().toByteArray());
+
+        // decrypt and check packets before opening the transaction
+        for (int i = 0; i < packets.size(); i++) {
+            final TransportPacket packet = packets.get(i);
+            // get client implements that use the protocol
+            final Set<ClientImplementation> packetImplementations =
+                    protocolRegistry.getProtocolImplementations(packet.getProtocol().toByteArray());
+            implementations.add(packetImplementations);
+
+            data[i] = toIncomingContentValues(packet, packetImplementations);
+            if (data[i] == null) {
+                rowIds[i] = -1;
+            }
+        }
+
+        // insert packets
+        boolean inserted = false;
+        final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < packets.size(); i++) {
+                if (data[i] != null) {
+                    rowIds[i] = insertPacket(db, data[i], queues.get(i));
+                    inserted |= (rowIds[i] > 0);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (inserted) {
+            // notify content resolvers
+            mContext.getContentResolver().notifyChange(Packets.URI_ALL, null);
+            mContext.getContentResolver().notifyChange(Packets.URI_OUTGOING, null);
+
+            // Notify listeners that packets arrived, once per protocol implementation
+            final Set<Uri> notifyUris = new HashSet<>();
+            for (int i = 0; i < packets.size(); i++) {
+                if (rowIds[i] > 0) {
+                    for (ClientImplementation impl : implementations.get(i)) {
+                        notifyUris.add(FindContract.buildProtocolUri(Packets.URI_INCOMING, impl.getToken()));
+                    }
+                }
+            }
+            for (Uri notifyUri : notifyUris) {
+                mContext.getContentResolver().notifyChange(notifyUri, null);
+                Log.v(TAG, "Notified URI " + notifyUri);
+            }
+        }
+        return rowIds;
+    }
+
+    /**
+     * Builds the values of an incoming packet, decrypting its data if necessary.
+     * @param packet Packet.
+     * @param implementations Client implementations of the packet's protocol.
+     * @return Values structure, or null if the packet is rejected.
+     */
+    private ContentValues toIncomingContentValues(TransportPacket packet, Set<ClientImplementation> implementations) {
+        // build values structure
+        final ContentValues data = TransportPacketFactory.toContentValues(packet);
 
         if (!implementations.isEmpty()) {
             // There is an app for this protocol
@@ -637,7 +799,7 @@ public class DbController {
             // additionally make sure that there really was a MAC if the protocol requires it.
             if (impl.isSigned() && !packet.hasMac()) {
                 Log.w(TAG, "Rejecting packet: Protocol " + impl.getProtocolName() + " requires signed data.");
-                return -1;
+                return null;
             }
 
             // Decrypt the data if the packet is targeted at us (otherwise it would just be an outgoing/forwarding packet)
@@ -652,29 +814,19 @@ public class DbController {
                             mContext, packet.getData().toByteArray(), senderPublicKey);
                 } catch (RuntimeException e) {
                     Log.w(TAG, "Rejecting packet: " + e.getLocalizedMessage());
-                    return -1;
+                    return null;
                 }
 
                 // add decrypted data to values structure
                 data.put(Packets.COLUMN_DATA, plaintext);
             }
         }
-
-        // insert packet
-        final long rowId = insertPacket(data, queues);
-        if (rowId > 0) {
-            // Notify listeners that a packet arrived
-            for (ClientImplementation impl : implementations) {
-                final Uri notifyUri = FindContract.buildProtocolUri(Packets.URI_INCOMING, impl.getToken());
-                mContext.getContentResolver().notifyChange(notifyUri, null);
-                Log.v(TAG, "Notified URI " + notifyUri);
-            }
-        }
-        return rowId;
+        return data;
     }
 
     /**
-     * Insert an outgoing packet into the DB. Data needs to be encrypted beforehand.
+     * Insert an outgoing packet into the DB. Data needs to be encrypted beforehand. Packet data is limited to
+     * {@link PacketFragmenter#MAX_DATA_SIZE} bytes, so that receivers can reassemble the packet.
      * @param implementation {@link ClientImplementation}.
      * @param data Data
      * @return The id of the newly created row, or 0 if an error occurred.
@@ -686,6 +838,11 @@ public class DbController {
         if (!data.containsKey(Packets.COLUMN_DATA)) {
             throw new IllegalArgumentException("Packet must contain data");
         }
+        final byte[] packetData = data.getAsByteArray(Packets.COLUMN_DATA);
+        if (packetData != null && packetData.length > PacketFragmenter.MAX_DATA_SIZE) {
+            throw new IllegalArgumentException(
+                    "Packet data must be at most " + PacketFragmenter.MAX_DATA_SIZE + " bytes");
+        }
 
         // set time received in minutes
         data.put(Packets.COLUMN_TIME_RECEIVED, System.currentTimeMillis() / 1000);
@@ -736,23 +893,8 @@ public class DbController {
         db.beginTransaction();
 
         try {
-            long rowId = 0;
-            try {
-                // insert packet
-                rowId = db.insertOrThrow(Packets.TABLE_NAME, null, packet);
-            } catch (SQLiteConstraintException e) {
-                // Packet already exists in database, skip adding it again
-            }
-
+            final long rowId = insertPacket(db, packet, queues);
             if (rowId > 0) {
-                // Packet inserted successfully, now add it to the appropriate queues
-                for (final PacketQueues queue : queues) {
-                    final ContentValues values = new ContentValues();
-                    values.put(PacketQueues.COLUMN_QUEUE, queue.ordinal());
-                    values.put(PacketQueues.COLUMN_PACKET_ID, rowId);
-                    db.insert(PacketQueues.TABLE_NAME, null, values);
-                }
-
                 db.setTransactionSuccessful();
 
                 // notify content resolvers
@@ -768,6 +910,35 @@ public class DbController {
         return 0;
     }
 
+    /**
+     * Insert packet in given packet queues, within a transaction opened by the caller. Content resolvers
+     * are not notified.
+     * @param db Writable database.
+     * @param packet Packet.
+     * @param queues Queues.
+     * @return The id of the newly created row, or 0 if the packet already exists.
+     */
+    private long insertPacket(SQLiteDatabase db, ContentValues packet, PacketQueues[] queues) {
+        long rowId = 0;
+        try {
+            // insert packet
+            rowId = db.insertOrThrow(Packets.TABLE_NAME, null, packet);
+        } catch (SQLiteConstraintException e) {
+            // Packet already exists in database, skip adding it again
+        }
+
+        if (rowId > 0) {
+            // Packet inserted successfully, now add it to the appropriate queues
+            for (final PacketQueues queue : queues) {
+                final ContentValues values = new ContentValues();
+                values.put(PacketQueues.COLUMN_QUEUE, queue.ordinal());
+                values.put(PacketQueues.COLUMN_PACKET_ID, rowId);
+                db.insert(PacketQueues.TABLE_NAME, null, values);
+            }
+        }
+        return rowId;
+    }
+
     /**
      * Delete packets where TTL is lower than a given timestamp.
      * @param expirationTimestamp Timestamp
@@ -863,6 +1034,29 @@ public class DbController {
         return neighbors;
     }
 
+    /**
+     * Returns the node ids of all known neighbors.
+     * @return List of node ids.
+     */
+    public List<byte[]> getNeighborIdentifiers() {
+        final SQLiteDatabase db = mDbHelper.getReadableDatabase();
+
+        final Cursor idsCursor = db.query(
+                Neighbors.TABLE_NAME,
+                new String[] { Neighbors.COLUMN_IDENTIFIER },
+                null, null, null, null, null);
+
+        final List<byte[]> ids = new ArrayList<>(idsCursor.getCount());
+        try {
+            while (idsCursor.moveToNext()) {
+                ids.add(idsCursor.getBlob(0));
+            }
+        } finally {
+            idsCursor.close();
+        }
+        return ids;
+    }
+
     /**
      * Insert neighbor with a list of supported protocols into the DB. Throws an {@link IllegalArgumentException} if
      * values structure does not contain a {@link Neighbors#COLUMN_IDENTIFIER COLUMN_IDENTIFIER}.
@@ -871,41 +1065,82 @@ public class DbController {
      * @param values Values data structure.
      * @param protocols List of protocols' hash values.
      * @see FullContract
+     * @see #insertNeighbors(List)
      */
     public void insertNeighbor(ContentValues values, List<ByteString> protocols) {
+        insertNeighbors(Collections.singletonList(new NeighborUpdate(values, protocols)));
+    }
+
+    /**
+     * Insert a batch of neighbors, each with a list of supported protocols, into the DB. All neighbors are written
+     * in a single transaction, SQL statements are compiled once per batch, and content resolvers are notified once
+     * at the end (instead of once per neighbor). Throws an {@link IllegalArgumentException} if any values structure
+     * does not contain a {@link Neighbors#COLUMN_IDENTIFIER COLUMN_IDENTIFIER}; in that case nothing is written.
+     * <p>Neighbors whose stored {@link Neighbors#COLUMN_TIME_LASTSEEN COLUMN_TIME_LASTSEEN} is not older than the
+     * new one are left untouched.</p>
+     * <p>Notifies the following content resolvers' uri's: {@link Neighbors#URI_ALL}, {@link NeighborProtocols#URI_ALL},
+     * {@link NeighborProtocols#URI_CURRENT}, {@link ProtocolNeighbors#URI_ITEM}.</p>
+     * @param updates List of neighbor updates.
+     * @return Number of neighbors that were seen for the first time.
+     * @see NeighborUpdate
+     * @see FullContract
+     */
+    public int insertNeighbors(List<NeighborUpdate> updates) {
+        if (updates.isEmpty()) {
+            return 0;
+        }
+
+        // make sure every neighbor has an identifier before writing anything
+        for (final NeighborUpdate update : updates) {
+            if (update.getValues().getAsByteArray(Neighbors.COLUMN_IDENTIFIER) == null) {
+                throw new IllegalArgumentException("Can not insert node with no node id!");
+            }
+        }
+
         // get write access
         final SQLiteDatabase db = mDbHelper.getWritableDatabase();
         db.beginTransaction();
 
-        // get identifier
-        final byte[] neighborId = values.getAsByteArray(Neighbors.COLUMN_IDENTIFIER);
-        if (neighborId == null) {
-            throw new IllegalArgumentException("Can not insert node with no node id!");
-        }
-
+        // statements are shared by all neighbors in this batch
+        final NeighborStatements statements = new NeighborStatements(db);
+        int changedNeighbors = 0;
+        int newNeighbors = 0;
         try {
-            // insert neighbor
-            final long rawNeighborId = upsertRawNeighbor(neighborId, values);
+            for (final NeighborUpdate update : updates) {
+                final byte[] neighborId = update.getValues().getAsByteArray(Neighbors.COLUMN_IDENTIFIER);
 
-            if (rawNeighborId > 0) {
-                // success!
-                if (!protocols.isEmpty()) {
-                    // insert neighbor's protocols
-                    insertRemoteProtocols(rawNeighborId, protocols);
+                // insert or update neighbor
+                final long rawNeighborId = upsertRawNeighbor(statements, neighborId, update.getValues());
+                if (rawNeighborId <= 0) {
+                    // stale information, nothing changed
+                    continue;
+                }
+                if (statements.wasInserted()) {
+                    newNeighbors++;
                 }
 
-                // success!
-                db.setTransactionSuccessful();
-
-                // notify content resolvers
-                mContext.getContentResolver().notifyChange(Neighbors.URI_ALL, null);
-                mContext.getContentResolver().notifyChange(NeighborProtocols.URI_ALL, null);
-                mContext.getContentResolver().notifyChange(NeighborProtocols.URI_CURRENT, null);
-                mContext.getContentResolver().notifyChange(ProtocolNeighbors.URI_ITEM, null);
+                if (!update.getProtocols().isEmpty()) {
+                    // insert neighbor's protocols
+                    insertRemoteProtocols(statements, rawNeighborId, update.getProtocols());
+                }
+                changedNeighbors++;
             }
+
+            // success!
+            db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
+            statements.close();
         }
+
+        if (changedNeighbors > 0) {
+            // notify content resolvers, once per batch
+            mContext.getContentResolver().notifyChange(Neighbors.URI_ALL, null);
+            mContext.getContentResolver().notifyChange(NeighborProtocols.URI_ALL, null);
+            mContext.getContentResolver().notifyChange(NeighborProtocols.URI_CURRENT, null);
+            mContext.getContentResolver().notifyChange(ProtocolNeighbors.URI_ITEM, null);
+        }
+        return newNeighbors;
     }
 
     /**
@@ -1019,80 +1254,77 @@ public class DbController {
 
     /**
      * Insert neighbor with given {@link Neighbors#COLUMN_IDENTIFIER COLUMN_IDENTIFIER}. When neighbor already exists,
-     * it is updated with the new values.
+     * it is updated with the new values. Must be called within a transaction.
+     * @param statements Compiled statements of the current batch.
      * @param neighborId {@link Neighbors#COLUMN_IDENTIFIER COLUMN_IDENTIFIER}.
      * @param values Values data structure
-     * @return Id of the newly inserted or updated row.
+     * @return Id of the newly inserted or updated row, or -1 if nothing was written.
      * @see ContentValues
      * @see Neighbors
      */
-    private long upsertRawNeighbor(byte[] neighborId, ContentValues values) {
-        final SQLiteDatabase db = mDbHelper.getWritableDatabase();
-        db.beginTransaction();
+    private long upsertRawNeighbor(NeighborStatements statements, byte[] neighborId, ContentValues values) {
+        // select neighbor
+        final SQLiteStatement selectStmt = statements.getSelectStatement();
+        selectStmt.clearBindings();
+        selectStmt.bindBlob(1, neighborId);
 
+        long neighborRowId;
         try {
-            // select neighbor
-            final SQLiteStatement selectStmt = db.compileStatement(
-                    "select " + Neighbors._ID
-                            + " from " + Neighbors.TABLE_NAME
-                            + " where " + Neighbors.COLUMN_IDENTIFIER + " = ?");
-            selectStmt.bindBlob(1, neighborId);
-
-            long neighborRowId;
-            try {
-                neighborRowId = selectStmt.simpleQueryForLong();
-            } catch (SQLiteDoneException e) {
-                neighborRowId = -1;
-            }
-
-            // get values to insert
-            final long timeLastSeen = values.getAsLong(Neighbors.COLUMN_TIME_LASTSEEN);
-            final boolean multicastCapable = values.getAsBoolean(Neighbors.COLUMN_MULTICAST_CAPABLE);
-            final int multicastCapableAsInt = (multicastCapable ? 1 : 0);
-            final long timeLastPacket = values.getAsLong(Neighbors.COLUMN_TIME_LASTPACKET);
-            final String networkName = values.getAsString(Neighbors.COLUMN_NETWORK);
-
-            final byte[] ip4Address = values.getAsByteArray(Neighbors.COLUMN_IP4);
-            assert (ip4Address == null || ip4Address.length == 4);
-            final byte[] ip6Address = values.getAsByteArray(Neighbors.COLUMN_IP6);
-            assert (ip6Address == null || ip6Address.length == 16);
-            final byte[] btAddress = values.getAsByteArray(Neighbors.COLUMN_BLUETOOTH);
-            assert (btAddress == null || btAddress.length == 6);
+            neighborRowId = selectStmt.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            neighborRowId = -1;
+        }
 
-            boolean success;
-            if (neighborRowId <= 0) {
-                // neighbor has never been seen before -> INSERT
-                neighborRowId = insertRawNeighbor(
-                        neighborId, timeLastSeen, multicastCapableAsInt, timeLastPacket,
+        // get values to insert
+        final long timeLastSeen = values.getAsLong(Neighbors.COLUMN_TIME_LASTSEEN);
+        final boolean multicastCapable = values.getAsBoolean(Neighbors.COLUMN_MULTICAST_CAPABLE);
+        final int multicastCapableAsInt = (multicastCapable ? 1 : 0);
+        final long timeLastPacket = values.getAsLong(Neighbors.COLUMN_TIME_LASTPACKET);
+        final String networkName = values.getAsString(Neighbors.COLUMN_NETWORK);
+
+        final byte[] ip4Address = values.getAsByteArray(Neighbors.COLUMN_IP4);
+        assert (ip4Address == null || ip4Address.length == 4);
+        final byte[] ip6Address = values.getAsByteArray(Neighbors.COLUMN_IP6);
+        assert (ip6Address == null || ip6Address.length == 16);
+        final byte[] btAddress = values.getAsByteArray(Neighbors.COLUMN_BLUETOOTH);
+        assert (btAddress == null || btAddress.length == 6);
+
+        // raw id assigned by the caller, if any (see NeighborTable)
+        final Long rawId = values.getAsLong(Neighbors._ID);
+
+        boolean success;
+        if (neighborRowId <= 0) {
+            // neighbor has never been seen before -> INSERT
+            neighborRowId = insertRawNeighbor(
+                    statements.getInsertStatement(),
+                    rawId, neighborId, timeLastSeen, multicastCapableAsInt, timeLastPacket,
+                    networkName, ip4Address, ip6Address, btAddress);
+            success = (neighborRowId > 0);
+            statements.setInserted(success);
+        } else {
+            // Neighbor already registered -> UPDATE
+            statements.setInserted(false);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                // newer versions of android
+                success = updateRawNeighbor_postSDK11(
+                        statements.getUpdateStatement(),
+                        neighborRowId, timeLastSeen, multicastCapableAsInt,
                         networkName, ip4Address, ip6Address, btAddress);
-                success = (neighborRowId > 0);
             } else {
-                // Neighbor already registered -> UPDATE
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-                    // newer versions of android
-                    success = updateRawNeighbor_postSDK11(
-                            neighborRowId, timeLastSeen, multicastCapableAsInt,
-                            networkName, ip4Address, ip6Address, btAddress);
-                } else {
-                    // older versions of android
-                    success = updateRawNeighbor_preSDK11(
-                            neighborRowId, timeLastSeen, multicastCapableAsInt,
-                            networkName, ip4Address, ip6Address, btAddress);
-                }
-            }
-
-            if (success && neighborRowId > 0) {
-                // if update/insertion was successful
-                db.setTransactionSuccessful();
+                // older versions of android
+                success = updateRawNeighbor_preSDK11(
+                        neighborRowId, timeLastSeen, multicastCapableAsInt,
+                        networkName, ip4Address, ip6Address, btAddress);
             }
-            return neighborRowId;
-        } finally {
-            db.endTransaction();
         }
+
+        return (success ? neighborRowId : -1);
     }
 
     /**
      * Insert neighbor into DB with given values.
+     * @param insertStmt Compiled insert statement (see {@link NeighborStatements#getInsertStatement()}).
+     * @param rawId Neighbor's {@link Neighbors#_ID}, or null to let the database assign it.
      * @param neighborId Neighbor's {@link Neighbors#COLUMN_IDENTIFIER}.
      * @param timeLastSeen Neighbor's {@link Neighbors#COLUMN_TIME_LASTSEEN}.
      * @param multicastCapable Neighbor's {@link Neighbors#COLUMN_MULTICAST_CAPABLE}.
@@ -1105,51 +1337,43 @@ public class DbController {
      * @see Neighbors
      */
     private long insertRawNeighbor(
+            SQLiteStatement insertStmt, Long rawId,
             byte[] neighborId, long timeLastSeen, int multicastCapable, long timeLastPacket,
             String networkName, byte[] ip4Address, byte[] ip6Address, byte[] btAddress) {
-        final SQLiteDatabase db = mDbHelper.getWritableDatabase();
-
-        // insert statement
-        final SQLiteStatement insertStmt = db.compileStatement(
-                "insert into " + Neighbors.TABLE_NAME + " ("
-                        + Neighbors.COLUMN_IDENTIFIER + ", "
-                        + Neighbors.COLUMN_TIME_LASTSEEN + ", "
-                        + Neighbors.COLUMN_MULTICAST_CAPABLE + ", "
-                        + Neighbors.COLUMN_TIME_LASTPACKET + ", "
-                        + Neighbors.COLUMN_NETWORK + ", "
-                        + Neighbors.COLUMN_IP4 + ", "
-                        + Neighbors.COLUMN_IP6 + ", "
-                        + Neighbors.COLUMN_BLUETOOTH
-                        + ") values (?, ?, ?, ?, ?, ?, ?, ?)");
-
         // bind values with statement
-        insertStmt.bindBlob(1, neighborId);
-        insertStmt.bindLong(2, timeLastSeen);
-        insertStmt.bindLong(3, multicastCapable);
-        insertStmt.bindLong(4, timeLastPacket);
+        insertStmt.clearBindings();
+        if (rawId == null) {
+            insertStmt.bindNull(1);
+        } else {
+            insertStmt.bindLong(1, rawId);
+        }
+        insertStmt.bindBlob(2, neighborId);
+        insertStmt.bindLong(3, timeLastSeen);
+        insertStmt.bindLong(4, multicastCapable);
+        insertStmt.bindLong(5, timeLastPacket);
 
         if (networkName == null) {
-            insertStmt.bindNull(5);
+            insertStmt.bindNull(6);
         } else {
-            insertStmt.bindString(5, networkName);
+            insertStmt.bindString(6, networkName);
         }
 
         if (ip4Address == null) {
-            insertStmt.bindNull(6);
+            insertStmt.bindNull(7);
         } else {
-            insertStmt.bindBlob(6, ip4Address);
+            insertStmt.bindBlob(7, ip4Address);
         }
 
         if (ip6Address == null) {
-            insertStmt.bindNull(7);
+            insertStmt.bindNull(8);
         } else {
-            insertStmt.bindBlob(7, ip6Address);
+            insertStmt.bindBlob(8, ip6Address);
         }
 
         if (btAddress == null) {
-            insertStmt.bindNull(8);
+            insertStmt.bindNull(9);
         } else {
-            insertStmt.bindBlob(8, btAddress);
+            insertStmt.bindBlob(9, btAddress);
         }
 
         // insert
@@ -1160,6 +1384,7 @@ public class DbController {
      * Update neighbor with given id ({@link Neighbors#_ID neighborRowId}) that was last seen before a give timestamp
      * ({@link Neighbors#COLUMN_TIME_LASTSEEN} timeLastSeen).
      * <p>This method is to be used when Android SDK is higher or equal than 11.</p>
+     * @param updateStmt Compiled update statement (see {@link NeighborStatements#getUpdateStatement()}).
      * @param neighborRowId Neighbor's {@link Neighbors#_ID}.
      * @param timeLastSeen Neighbor's {@link Neighbors#COLUMN_TIME_LASTSEEN}.
      * @param multicastCapable Neighbor's {@link Neighbors#COLUMN_MULTICAST_CAPABLE}.
@@ -1171,22 +1396,11 @@ public class DbController {
      */
     @TargetApi(Build.VERSION_CODES.HONEYCOMB)
     private boolean updateRawNeighbor_postSDK11(
+            SQLiteStatement updateStmt,
             long neighborRowId, long timeLastSeen, int multicastCapable,
             String networkName, byte[] ip4Address, byte[] ip6Address, byte[] btAddress) {
-        final SQLiteDatabase db = mDbHelper.getWritableDatabase();
-
-        final SQLiteStatement updateStmt = db.compileStatement(
-                "update " + Neighbors.TABLE_NAME + " set "
-                        + Neighbors.COLUMN_TIME_LASTSEEN + " = ?,"
-                        + Neighbors.COLUMN_MULTICAST_CAPABLE + " = ?,"
-                        + Neighbors.COLUMN_NETWORK + " = ?,"
-                        + Neighbors.COLUMN_IP4 + " = ?,"
-                        + Neighbors.COLUMN_IP6 + " = ?,"
-                        + Neighbors.COLUMN_BLUETOOTH + " = ?"
-                        + " where " + Neighbors._ID + " = ?"
-                        + " and " + Neighbors.COLUMN_TIME_LASTSEEN + " < ?");
-
         // Bind updated values
+        updateStmt.clearBindings();
         updateStmt.bindLong(1, timeLastSeen);
         updateStmt.bindLong(2, multicastCapable);
 
@@ -1327,46 +1541,221 @@ public class DbController {
      */
 
     /**
-     * Insert neighbors protocol's in DB. Existing protocols for the neighbor are deleted.
+     * Insert neighbors protocol's in DB. Existing protocols for the neighbor are deleted. Must be called within
+     * a transaction.
+     * @param statements Compiled statements of the current batch.
      * @param neighborRowId Neighbor's DB id.
      * @param protocols List of protocols' hash values.
      */
-    private void insertRemoteProtocols(long neighborRowId, List<ByteString> protocols) {
-        final SQLiteDatabase db = mDbHelper.getWritableDatabase();
-        db.beginTransaction();
+    private void insertRemoteProtocols(NeighborStatements statements, long neighborRowId, List<ByteString> protocols) {
+        // remove previously stored RemoteProtocols
+        final SQLiteStatement deleteStmt = statements.getDeleteProtocolsStatement();
+        deleteStmt.clearBindings();
+        deleteStmt.bindLong(1, neighborRowId);
+        deleteStmt.execute();
+
+        // insert each protocol, reusing the same prepared statement for speed.
+        final SQLiteStatement insertStmt = statements.getInsertProtocolStatement();
+        for (final ByteString protocol : protocols) {
+            if (protocol.size() != 20) {
+                Log.w(TAG, "Protocol hash must be of length 20, not " + protocol.size());
+                continue;
+            }
+
+            insertStmt.clearBindings();
+            insertStmt.bindNull(1);
+            insertStmt.bindLong(2, neighborRowId);
+            insertStmt.bindBlob(3, protocol.toByteArray());
 
+            final long rowId = insertStmt.executeInsert();
+            if (rowId < 0) {
+                Log.w(TAG, String.format(
+                        "Error while inserting RemoteProtocol %s for neighbor %d",
+                        ByteUtils.bytesToHex(protocol), neighborRowId));
+            }
+        }
+    }
+
+    /*
+     * Network statistics
+     */
+
+    /**
+     * Returns the statistics of all networks attempted before.
+     * @return Map of network names (SSIDs) to their statistics.
+     */
+    public Map<String, NetworkYield> getNetworkYields() {
+        final SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        final Cursor cursor = db.query(
+                FullContract.NetworkStatistics.TABLE_NAME,
+                FullContract.NetworkStatistics.PROJECTION_DEFAULT,
+                null, null, null, null, null);
+
+        final Map<String, NetworkYield> yields = new HashMap<>();
         try {
-            // remove previously stored RemoteProtocols
-            db.delete(
-                    RemoteProtocols.TABLE_NAME,
-                    RemoteProtocols.COLUMN_NEIGHBOR_ID + " = " + neighborRowId,
-                    null);
-
-            // insert each protocol, reusing the same prepared statement for speed.
-            final SQLiteStatement insertStmt = db.compileStatement(
-                    "insert into " + RemoteProtocols.TABLE_NAME + " values (?, ?, ?)");
-            for (final ByteString protocol : protocols) {
-                if (protocol.size() != 20) {
-                    Log.w(TAG, "Protocol hash must be of length 20, not " + protocol.size());
-                    continue;
-                }
+            while (cursor.moveToNext()) {
+                final NetworkYield yield = NetworkYield.fromCursor(cursor);
+                yields.put(yield.getNetwork(), yield);
+            }
+        } finally {
+            cursor.close();
+        }
+        return yields;
+    }
 
-                insertStmt.clearBindings();
-                insertStmt.bindNull(1);
-                insertStmt.bindLong(2, neighborRowId);
-                insertStmt.bindBlob(3, protocol.toByteArray());
+    /**
+     * Inserts or replaces the statistics of a network.
+     * @param yield Network statistics.
+     */
+    public void saveNetworkYield(NetworkYield yield) {
+        final SQLiteDatabase db = mDbHelper.getWritableDatabase();
 
-                final long rowId = insertStmt.executeInsert();
-                if (rowId < 0) {
-                    Log.w(TAG, String.format(
-                            "Error while inserting RemoteProtocol %s for neighbor %d",
-                            ByteUtils.bytesToHex(protocol), neighborRowId));
-                }
+        final ContentValues values = new ContentValues();
+        values.put(FullContract.NetworkStatistics.COLUMN_NETWORK, yield.getNetwork());
+        values.put(FullContract.NetworkStatistics.COLUMN_VISITS, yield.getVisits());
+        values.put(FullContract.NetworkStatistics.COLUMN_FAILURES, yield.getFailures());
+        values.put(FullContract.NetworkStatistics.COLUMN_CONNECT_TIME, yield.getConnectMillis());
+        values.put(FullContract.NetworkStatistics.COLUMN_CONNECTED_TIME, yield.getConnectedMillis());
+        values.put(FullContract.NetworkStatistics.COLUMN_NEIGHBORS, yield.getNeighbors());
+        values.put(FullContract.NetworkStatistics.COLUMN_PACKETS, yield.getPackets());
+        values.put(FullContract.NetworkStatistics.COLUMN_TIME_LASTVISIT, yield.getTimeLastVisit());
+
+        // network name is unique, so this replaces previous statistics
+        db.insertWithOnConflict(FullContract.NetworkStatistics.TABLE_NAME, null, values,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Lazily compiled statements used to write a batch of neighbors. Each statement is compiled at most once
+     * per batch and must be released with {@link #close()} when the batch is finished.
+     */
+    private static final class NeighborStatements {
+        // database with an open transaction
+        private final SQLiteDatabase mDb;
+
+        private SQLiteStatement mSelectStmt;
+        private SQLiteStatement mInsertStmt;
+        private SQLiteStatement mUpdateStmt;
+        private SQLiteStatement mDeleteProtocolsStmt;
+        private SQLiteStatement mInsertProtocolStmt;
+        // whether the last upserted neighbor was inserted (seen for the first time)
+        private boolean mInserted;
+
+        /**
+         * Constructor.
+         * @param db Writable database.
+         */
+        NeighborStatements(SQLiteDatabase db) {
+            mDb = db;
+        }
+
+        /**
+         * Returns statement that selects a neighbor's row id by its identifier.
+         * @return Compiled statement.
+         */
+        SQLiteStatement getSelectStatement() {
+            if (mSelectStmt == null) {
+                mSelectStmt = mDb.compileStatement(
+                        "select " + Neighbors._ID
+                                + " from " + Neighbors.TABLE_NAME
+                                + " where " + Neighbors.COLUMN_IDENTIFIER + " = ?");
+            }
+            return mSelectStmt;
+        }
+
+        /**
+         * Returns statement that inserts a new neighbor.
+         * @return Compiled statement.
+         */
+        SQLiteStatement getInsertStatement() {
+            if (mInsertStmt == null) {
+                mInsertStmt = mDb.compileStatement(
+                        "insert into " + Neighbors.TABLE_NAME + " ("
+                                + Neighbors._ID + ", "
+                                + Neighbors.COLUMN_IDENTIFIER + ", "
+                                + Neighbors.COLUMN_TIME_LASTSEEN + ", "
+                                + Neighbors.COLUMN_MULTICAST_CAPABLE + ", "
+                                + Neighbors.COLUMN_TIME_LASTPACKET + ", "
+                                + Neighbors.COLUMN_NETWORK + ", "
+                                + Neighbors.COLUMN_IP4 + ", "
+                                + Neighbors.COLUMN_IP6 + ", "
+                                + Neighbors.COLUMN_BLUETOOTH
+                                + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?)");
             }
+            return mInsertStmt;
+        }
 
-            db.setTransactionSuccessful();
-        } finally {
-            db.endTransaction();
+        /**
+         * Returns statement that updates a neighbor last seen before a given timestamp.
+         * @return Compiled statement.
+         */
+        SQLiteStatement getUpdateStatement() {
+            if (mUpdateStmt == null) {
+                mUpdateStmt = mDb.compileStatement(
+                        "update " + Neighbors.TABLE_NAME + " set "
+                                + Neighbors.COLUMN_TIME_LASTSEEN + " = ?,"
+                                + Neighbors.COLUMN_MULTICAST_CAPABLE + " = ?,"
+                                + Neighbors.COLUMN_NETWORK + " = ?,"
+                                + Neighbors.COLUMN_IP4 + " = ?,"
+                                + Neighbors.COLUMN_IP6 + " = ?,"
+                                + Neighbors.COLUMN_BLUETOOTH + " = ?"
+                                + " where " + Neighbors._ID + " = ?"
+                                + " and " + Neighbors.COLUMN_TIME_LASTSEEN + " < ?");
+            }
+            return mUpdateStmt;
+        }
+
+        /**
+         * Returns statement that deletes all protocols of a neighbor.
+         * @return Compiled statement.
+         */
+        SQLiteStatement getDeleteProtocolsStatement() {
+            if (mDeleteProtocolsStmt == null) {
+                mDeleteProtocolsStmt = mDb.compileStatement(
+                        "delete from " + RemoteProtocols.TABLE_NAME
+                                + " where " + RemoteProtocols.COLUMN_NEIGHBOR_ID + " = ?");
+            }
+            return mDeleteProtocolsStmt;
+        }
+
+        /**
+         * Returns statement that inserts a neighbor's protocol.
+         * @return Compiled statement.
+         */
+        SQLiteStatement getInsertProtocolStatement() {
+            if (mInsertProtocolStmt == null) {
+                mInsertProtocolStmt = mDb.compileStatement(
+                        "insert into " + RemoteProtocols.TABLE_NAME + " values (?, ?, ?)");
+            }
+            return mInsertProtocolStmt;
+        }
+
+        /**
+         * Records whether the last upserted neighbor was inserted.
+         * @param inserted true if neighbor was inserted, false if it was updated.
+         */
+        void setInserted(boolean inserted) {
+            mInserted = inserted;
+        }
+
+        /**
+         * Returns whether the last upserted neighbor was inserted.
+         * @return true if neighbor was inserted, false if it was updated.
+         */
+        boolean wasInserted() {
+            return mInserted;
+        }
+
+        /**
+         * Releases all compiled statements.
+         */
+        void close() {
+            for (SQLiteStatement stmt : new SQLiteStatement[] {
+                    mSelectStmt, mInsertStmt, mUpdateStmt, mDeleteProtocolsStmt, mInsertProtocolStmt }) {
+                if (stmt != null) {
+                    stmt.close();
+                }
+            }
         }
     }
 }
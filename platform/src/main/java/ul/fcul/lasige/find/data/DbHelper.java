@@ -17,7 +17,7 @@ import android.util.Log;
  */
 public class DbHelper extends SQLiteOpenHelper {
     private static final String TAG = DbHelper.class.getSimpleName();
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 2;
     // db name
     protected static final String DATABASE_NAME = "find";
     // singleton instance
@@ -88,6 +88,9 @@ public class DbHelper extends SQLiteOpenHelper {
             db.execSQL(FullContract.Packets.SQL_CREATE_VIEW_INCOMING);
             db.execSQL(FullContract.Packets.SQL_CREATE_VIEW_OUTGOING);
 
+            // create NetworkStatistics table
+            db.execSQL(FullContract.NetworkStatistics.SQL_CREATE_TABLE);
+
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
@@ -97,7 +100,10 @@ public class DbHelper extends SQLiteOpenHelper {
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // behavior not defined so far
+        if (oldVersion < 2) {
+            // version 2 added network statistics, used to choose which network to connect to
+            db.execSQL(FullContract.NetworkStatistics.SQL_CREATE_TABLE);
+        }
     }
 
     @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
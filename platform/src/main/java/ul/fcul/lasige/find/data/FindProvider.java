@@ -224,6 +224,17 @@ public class FindProvider extends ContentProvider {
             return null;
         }
 
+        if ((match == UriMatch.NEIGHBOR_LIST_CURRENT || match == UriMatch.NEIGHBOR_PROTOCOLS_LIST_CURRENT)
+                && projection == null && selection == null && sortOrder == null) {
+            // current neighbors are kept in memory, no need to query the database; queries with a projection,
+            // selection or sort order are answered from the database view below, which may lag a couple of seconds
+            // behind the table
+            final Cursor result = NeighborTable.getInstance(getContext()).getNeighborsCursor(
+                    BeaconingManager.getCurrentTimestamp(), match == UriMatch.NEIGHBOR_PROTOCOLS_LIST_CURRENT);
+            result.setNotificationUri(getContext().getContentResolver(), uri);
+            return result;
+        }
+
         SQLiteDatabase db = sDbHelper.getReadableDatabase();
         String table;
         String where = null;
@@ -1061,4 +1061,97 @@ public class FullContract {
         public static final String QUERY_PARAM_FILTER_TIME = "filter";
     }
 
+    /**
+     * Constants for the NetworkStatistics table. It holds, for each WiFi network (SSID), how much was gained
+     * from connecting to it in past beaconing periods; it is used to choose which network to connect to. Counts
+     * are decayed on every update, so recent visits weigh more than old ones. This table is internal to the
+     * platform and not exposed by the content provider.
+     */
+    public static final class NetworkStatistics implements BaseColumns {
+        /**
+         * The name of the network statistics table in the database.
+         */
+        public static final String TABLE_NAME = "NetworkStatistics";
+
+        /**
+         * The network name (SSID).
+         * <p>
+         * Type: TEXT
+         */
+        public static final String COLUMN_NETWORK = "network";
+
+        /**
+         * The (decayed) number of successful connections to the network.
+         * <p>
+         * Type: REAL
+         */
+        public static final String COLUMN_VISITS = "visits";
+
+        /**
+         * The (decayed) number of connection attempts that did not succeed.
+         * <p>
+         * Type: REAL
+         */
+        public static final String COLUMN_FAILURES = "failures";
+
+        /**
+         * The (decayed) time spent connecting to the network, including failed attempts, in milliseconds.
+         * <p>
+         * Type: REAL
+         */
+        public static final String COLUMN_CONNECT_TIME = "connect_time";
+
+        /**
+         * The (decayed) time spent connected to the network, in milliseconds.
+         * <p>
+         * Type: REAL
+         */
+        public static final String COLUMN_CONNECTED_TIME = "connected_time";
+
+        /**
+         * The (decayed) number of neighbors discovered while connected to the network.
+         * <p>
+         * Type: REAL
+         */
+        public static final String COLUMN_NEIGHBORS = "neighbors";
+
+        /**
+         * The (decayed) number of packets sent and received while connected to the network.
+         * <p>
+         * Type: REAL
+         */
+        public static final String COLUMN_PACKETS = "packets";
+
+        /**
+         * The last time the network was attempted, as timestamp in UTC.
+         * <p>
+         * Type: INTEGER
+         */
+        public static final String COLUMN_TIME_LASTVISIT = "time_lastvisit";
+
+        /**
+         * The SQL statement to create this table.
+         */
+        public static final String SQL_CREATE_TABLE =
+                "create table " + TABLE_NAME + " ("
+                        + _ID + " integer primary key, "
+                        + COLUMN_NETWORK + " text unique not null, "
+                        + COLUMN_VISITS + " real not null default 0, "
+                        + COLUMN_FAILURES + " real not null default 0, "
+                        + COLUMN_CONNECT_TIME + " real not null default 0, "
+                        + COLUMN_CONNECTED_TIME + " real not null default 0, "
+                        + COLUMN_NEIGHBORS + " real not null default 0, "
+                        + COLUMN_PACKETS + " real not null default 0, "
+                        + COLUMN_TIME_LASTVISIT + " integer not null " + DEFAULT_NOW + ")";
+
+        /**
+         * A projection of the default columns in the network statistics table.
+         */
+        public static final String[] PROJECTION_DEFAULT =
+                {
+                        _ID, COLUMN_NETWORK, COLUMN_VISITS, COLUMN_FAILURES, COLUMN_CONNECT_TIME,
+                        COLUMN_CONNECTED_TIME, COLUMN_NEIGHBORS, COLUMN_PACKETS, COLUMN_TIME_LASTVISIT
+                };
+    }
+
 }
@@ -0,0 +1,670 @@
+package ul.fcul.lasige.find.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.protobuf.ByteString;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import ul.fcul.lasige.find.beaconing.BeaconingManager;
+import ul.fcul.lasige.find.data.FullContract.NeighborProtocols;
+import ul.fcul.lasige.find.data.FullContract.Neighbors;
+import ul.fcul.lasige.find.lib.data.Neighbor;
+import ul.fcul.lasige.find.lib.data.NeighborObserver;
+import ul.fcul.lasige.find.utils.HashedWheelTimer;
+
+/**
+ * In-memory table of neighbors, keyed by node id. It is authoritative for neighbor information: reads are served
+ * from memory without querying SQLite, and changes are written to the {@link Neighbors} and
+ * {@link FullContract.RemoteProtocols} tables in the background, in batches (write-behind). Raw ids are assigned
+ * by the table when a neighbor is first seen, so that they can be handed out before the neighbor is written.
+ *
+ * <p>A neighbor is current while it was seen within {@link BeaconingManager#getCurrentPeriodMillis()}. Its expiry
+ * is scheduled in a {@link HashedWheelTimer} whenever it is seen, so that callbacks registered with
+ * {@link #registerCallback(NeighborObserver.NeighborCallback)} learn about disconnections when they happen,
+ * without querying the neighbors again. Callbacks run on the main thread.</p>
+ *
+ * <p>All neighbors are loaded from the database the first time the table is accessed. It implements the
+ * Singleton design pattern and should be accessed through {@link NeighborTable#getInstance(Context)}.</p>
+ */
+public class NeighborTable {
+    private static final String TAG = NeighborTable.class.getSimpleName();
+
+    // delay between the first change and writing all changes to the database
+    private static final int WRITE_BEHIND_DELAY_MILLIS = 2000;
+    // resolution of neighbor expiry
+    private static final int EXPIRY_TICK_MILLIS = 1000;
+    // buckets in the expiry wheel (one revolution is about 8.5 minutes)
+    private static final int EXPIRY_WHEEL_SIZE = 512;
+
+    // singleton instance
+    private static NeighborTable sInstance;
+
+    // application context
+    private final Context mContext;
+    // database controller
+    private final DbController mDbController;
+
+    // neighbors, by node id and by raw id
+    private final ConcurrentMap<ByteBuffer, Neighbor> mNeighbors = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Neighbor> mNeighborsByRawId = new ConcurrentHashMap<>();
+    // next raw id to assign
+    private long mNextRawId;
+
+    // neighbors changed since the last write
+    private final Set<ByteBuffer> mDirtyNeighbors = new HashSet<>();
+    // time of last packet changed since the last write
+    private final Map<ByteBuffer, Long> mDirtyLastPackets = new HashMap<>();
+    // thread where changes are written
+    private final ScheduledExecutorService mWriter = Executors.newSingleThreadScheduledExecutor();
+    // whether a write is scheduled
+    private boolean mWriteScheduled;
+    // incremented when times of last packet are reset, so that writes started before do not restore them
+    private long mLastPacketGeneration;
+
+    // expiry of current neighbors; a neighbor is current while it has a pending expiry
+    private final HashedWheelTimer mExpiryTimer =
+            new HashedWheelTimer("NeighborExpiry", EXPIRY_TICK_MILLIS, EXPIRY_WHEEL_SIZE);
+    private final Map<ByteBuffer, NeighborExpiry> mExpiries = new HashMap<>();
+    // callbacks for connected and disconnected neighbors, called on the main thread
+    private final Set<NeighborObserver.NeighborCallback> mCallbacks = new CopyOnWriteArraySet<>();
+    private final Handler mCallbackHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Returns the singleton instance, loading all neighbors from the database on first access.
+     * @param context Application context.
+     * @return {@link NeighborTable} object.
+     */
+    public static synchronized NeighborTable getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NeighborTable(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructor. It is private to enforce the Singleton pattern.
+     * @param context Application context.
+     */
+    private NeighborTable(Context context) {
+        mContext = context;
+        mDbController = new DbController(context);
+
+        // load neighbors
+        long maxRawId = 0;
+        for (Neighbor neighbor : mDbController.getNeighbors(0)) {
+            put(neighbor);
+            scheduleExpiry(neighbor);
+            maxRawId = Math.max(maxRawId, neighbor.getRawId());
+        }
+        mNextRawId = maxRawId + 1;
+        Log.v(TAG, String.format("Loaded %d neighbors", mNeighbors.size()));
+    }
+
+    /*
+     * CALLBACKS
+     */
+
+    /**
+     * Registers a callback for connected and disconnected neighbors. The callback is told about the current
+     * neighbors right away, as if they had just connected.
+     * @param callback Callback.
+     */
+    public void registerCallback(final NeighborObserver.NeighborCallback callback) {
+        mCallbacks.add(callback);
+        final Set<Neighbor> currentNeighbors = getCurrentNeighbors();
+        mCallbackHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Neighbor neighbor : currentNeighbors) {
+                    callback.onNeighborConnected(neighbor);
+                }
+                callback.onNeighborsChanged(currentNeighbors);
+            }
+        });
+    }
+
+    /**
+     * Unregisters a callback.
+     * @param callback Callback.
+     */
+    public void unregisterCallback(NeighborObserver.NeighborCallback callback) {
+        mCallbacks.remove(callback);
+    }
+
+    /**
+     * Tells callbacks about connected and disconnected neighbors, on the main thread.
+     * @param connected Neighbors that connected.
+     * @param disconnected Neighbors that disconnected.
+     */
+    private void dispatchChanges(final List<Neighbor> connected, final List<Neighbor> disconnected) {
+        if (mCallbacks.isEmpty()) {
+            return;
+        }
+        final Set<Neighbor> currentNeighbors = getCurrentNeighbors();
+        mCallbackHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (NeighborObserver.NeighborCallback callback : mCallbacks) {
+                    for (Neighbor neighbor : disconnected) {
+                        callback.onNeighborDisconnected(neighbor);
+                    }
+                    for (Neighbor neighbor : connected) {
+                        callback.onNeighborConnected(neighbor);
+                    }
+                    callback.onNeighborsChanged(currentNeighbors);
+                }
+            }
+        });
+    }
+
+    /*
+     * READS
+     */
+
+    /**
+     * Returns {@link Neighbor} object given its raw id. Throws an {@link IllegalArgumentException} when
+     * neighbor id does not exist.
+     * @param rawId Raw id.
+     * @return A {@link Neighbor} object.
+     * @see DbController#getNeighbor(long)
+     */
+    public Neighbor getNeighbor(long rawId) {
+        final Neighbor neighbor = mNeighborsByRawId.get(rawId);
+        if (neighbor == null) {
+            throw new IllegalArgumentException("No neighbor with ID " + rawId);
+        }
+        return neighbor;
+    }
+
+    /**
+     * Returns a set of {@link Neighbor} objects seen after a given timestamp (inclusive).
+     * @param timeLastSeen Timestamp, in seconds.
+     * @return Set of {@link Neighbor} objects.
+     * @see DbController#getNeighbors(long)
+     */
+    public Set<Neighbor> getNeighbors(long timeLastSeen) {
+        final Set<Neighbor> neighbors = new HashSet<>();
+        for (Neighbor neighbor : mNeighbors.values()) {
+            if (neighbor.getTimeLastSeen() >= timeLastSeen) {
+                neighbors.add(neighbor);
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * Returns the current neighbors, i.e. the ones whose expiry is pending.
+     * @return Set of {@link Neighbor} objects.
+     */
+    public Set<Neighbor> getCurrentNeighbors() {
+        final Set<Neighbor> neighbors = new HashSet<>();
+        synchronized (this) {
+            for (ByteBuffer key : mExpiries.keySet()) {
+                neighbors.add(mNeighbors.get(key));
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * Returns whether a neighbor is current, i.e. its expiry is pending.
+     * @param nodeId Node id.
+     * @return true if the neighbor is current, false otherwise.
+     */
+    public synchronized boolean isCurrentNeighbor(byte[] nodeId) {
+        return mExpiries.containsKey(ByteBuffer.wrap(nodeId));
+    }
+
+    /**
+     * Returns the node ids of all known neighbors.
+     * @return List of node ids.
+     * @see DbController#getNeighborIdentifiers()
+     */
+    public List<byte[]> getNeighborIdentifiers() {
+        final List<byte[]> ids = new ArrayList<>(mNeighbors.size());
+        for (Neighbor neighbor : mNeighbors.values()) {
+            ids.add(neighbor.getNodeId());
+        }
+        return ids;
+    }
+
+    /**
+     * Returns a cursor with the neighbors seen after a given timestamp (inclusive), sorted by
+     * {@link Neighbors#SORT_ORDER_DEFAULT}. It has the same columns as a query to the {@link Neighbors} table,
+     * or to the {@link NeighborProtocols} view, in which case there is one row per supported protocol.
+     * @param timeLastSeen Timestamp, in seconds.
+     * @param withProtocols Whether to include the neighbors' protocols.
+     * @return Data cursor.
+     */
+    public Cursor getNeighborsCursor(long timeLastSeen, boolean withProtocols) {
+        final List<Neighbor> neighbors = new ArrayList<>(getNeighbors(timeLastSeen));
+        // most recently seen first; rows of the same neighbor must be contiguous
+        Collections.sort(neighbors);
+
+        final MatrixCursor cursor = new MatrixCursor(
+                withProtocols ? NeighborProtocols.PROJECTION_DEFAULT : Neighbors.PROJECTION_DEFAULT);
+        for (Neighbor neighbor : neighbors) {
+            final Object[] row = new Object[] {
+                    neighbor.getRawId(),
+                    neighbor.getNodeId(),
+                    neighbor.getTimeLastSeen(),
+                    (neighbor.isMulticastCapable() ? 1 : 0),
+                    neighbor.getTimeLastPacket(),
+                    neighbor.getLastSeenNetwork(),
+                    (neighbor.hasIp4Address() ? neighbor.getIp4Address().getAddress() : null),
+                    (neighbor.hasIp6Address() ? neighbor.getIp6Address().getAddress() : null),
+                    neighbor.getBluetoothAddress()
+            };
+
+            if (!withProtocols) {
+                cursor.addRow(row);
+            } else if (neighbor.getSupportedProtocols().isEmpty()) {
+                cursor.addRow(withProtocol(row, null));
+            } else {
+                for (ByteBuffer protocol : neighbor.getSupportedProtocols()) {
+                    cursor.addRow(withProtocol(row, toByteArray(protocol)));
+                }
+            }
+        }
+        return cursor;
+    }
+
+    /*
+     * WRITES
+     */
+
+    /**
+     * Applies a batch of neighbor updates. Neighbors whose time last seen is not older than the new one are left
+     * untouched, and protocols are only replaced when the update has any. Changes are visible immediately and
+     * written to the database later. Throws an {@link IllegalArgumentException} if any values structure does not
+     * contain a {@link Neighbors#COLUMN_IDENTIFIER COLUMN_IDENTIFIER}; in that case nothing is changed.
+     * @param updates List of neighbor updates.
+     * @return Number of neighbors that were seen for the first time.
+     * @see DbController#insertNeighbors(List)
+     */
+    public int update(List<NeighborUpdate> updates) {
+        // make sure every neighbor has an identifier before changing anything
+        for (final NeighborUpdate update : updates) {
+            if (update.getValues().getAsByteArray(Neighbors.COLUMN_IDENTIFIER) == null) {
+                throw new IllegalArgumentException("Can not insert node with no node id!");
+            }
+        }
+
+        int changedNeighbors = 0;
+        int newNeighbors = 0;
+        final List<Neighbor> connected = new ArrayList<>();
+        synchronized (this) {
+            for (final NeighborUpdate update : updates) {
+                final ContentValues values = update.getValues();
+                final byte[] nodeId = values.getAsByteArray(Neighbors.COLUMN_IDENTIFIER);
+                final ByteBuffer key = ByteBuffer.wrap(nodeId);
+                final Long timeLastSeenValue = values.getAsLong(Neighbors.COLUMN_TIME_LASTSEEN);
+                final long timeLastSeen = (timeLastSeenValue != null ? timeLastSeenValue : 0);
+
+                final Neighbor current = mNeighbors.get(key);
+                if (current != null && current.getTimeLastSeen() >= timeLastSeen) {
+                    // stale information
+                    continue;
+                }
+
+                // keep known protocols if the update has none
+                final HashSet<ByteBuffer> protocols = new HashSet<>();
+                if (!update.getProtocols().isEmpty()) {
+                    for (ByteString protocol : update.getProtocols()) {
+                        protocols.add(ByteBuffer.wrap(protocol.toByteArray()));
+                    }
+                } else if (current != null) {
+                    protocols.addAll(current.getSupportedProtocols());
+                }
+
+                final long rawId;
+                final long timeLastPacket;
+                if (current == null) {
+                    rawId = mNextRawId++;
+                    final Long timeLastPacketValue = values.getAsLong(Neighbors.COLUMN_TIME_LASTPACKET);
+                    timeLastPacket = (timeLastPacketValue != null ? timeLastPacketValue : 0);
+                    newNeighbors++;
+                } else {
+                    rawId = current.getRawId();
+                    timeLastPacket = current.getTimeLastPacket();
+                }
+
+                final Boolean multicastCapable = values.getAsBoolean(Neighbors.COLUMN_MULTICAST_CAPABLE);
+                final Neighbor neighbor = new Neighbor(rawId, nodeId, timeLastSeen, timeLastPacket,
+                        (multicastCapable != null && multicastCapable),
+                        values.getAsString(Neighbors.COLUMN_NETWORK),
+                        toInetAddress(values.getAsByteArray(Neighbors.COLUMN_IP4), Inet4Address.class),
+                        toInetAddress(values.getAsByteArray(Neighbors.COLUMN_IP6), Inet6Address.class),
+                        values.getAsByteArray(Neighbors.COLUMN_BLUETOOTH),
+                        protocols);
+                put(neighbor);
+
+                // (re)schedule expiry
+                final boolean wasCurrent = mExpiries.containsKey(key);
+                if (scheduleExpiry(neighbor) && !wasCurrent) {
+                    connected.add(neighbor);
+                }
+                mDirtyNeighbors.add(key);
+                changedNeighbors++;
+            }
+
+            if (changedNeighbors > 0) {
+                scheduleWrite();
+            }
+        }
+
+        if (changedNeighbors > 0) {
+            // current neighbors are answered from this table, observers can query them right away
+            mContext.getContentResolver().notifyChange(Neighbors.URI_CURRENT, null);
+            mContext.getContentResolver().notifyChange(NeighborProtocols.URI_CURRENT, null);
+            dispatchChanges(connected, Collections.<Neighbor>emptyList());
+        }
+        return newNeighbors;
+    }
+
+    /**
+     * Updates the time we last sent a packet to a neighbor.
+     * @param nodeId Neighbor's node id.
+     * @param timeLastPacket New timestamp, in seconds.
+     * @return true if neighbor was updated, false otherwise.
+     * @see DbController#updateNeighborLastPacket(byte[], long)
+     */
+    public synchronized boolean updateNeighborLastPacket(byte[] nodeId, long timeLastPacket) {
+        final ByteBuffer key = ByteBuffer.wrap(nodeId);
+        final Neighbor current = mNeighbors.get(key);
+        if (current == null) {
+            return false;
+        }
+
+        put(withTimeLastPacket(current, timeLastPacket));
+        mDirtyLastPackets.put(key, timeLastPacket);
+        scheduleWrite();
+        return true;
+    }
+
+    /**
+     * Resets all timestamps for last time we sent a packet to neighbors, in memory and in the database. The
+     * database is reset on the thread where changes are written, after any write in progress, so that timestamps
+     * written before the reset do not survive it.
+     * @return true if successful, false otherwise.
+     * @see DbController#resetNeighborsTimeLastPacket()
+     */
+    public boolean resetNeighborsTimeLastPacket() {
+        synchronized (this) {
+            for (Neighbor neighbor : mNeighbors.values()) {
+                if (neighbor.getTimeLastPacket() != 0) {
+                    put(withTimeLastPacket(neighbor, 0));
+                }
+            }
+            mDirtyLastPackets.clear();
+            mLastPacketGeneration++;
+        }
+
+        final Future<Boolean> reset = mWriter.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mDbController.resetNeighborsTimeLastPacket();
+            }
+        });
+        try {
+            return reset.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Could not reset time of last packet of neighbors:", e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Schedules the expiry of a neighbor, replacing a pending one. Must be called while holding the lock.
+     * @param neighbor Neighbor.
+     * @return true if the neighbor is current, false if it has already expired.
+     */
+    private boolean scheduleExpiry(Neighbor neighbor) {
+        final ByteBuffer key = ByteBuffer.wrap(neighbor.getNodeId());
+        final NeighborExpiry previous = mExpiries.remove(key);
+        if (previous != null) {
+            previous.mTimeout.cancel();
+        }
+
+        final long delayMillis = neighbor.getTimeLastSeen() * 1000
+                + BeaconingManager.getCurrentPeriodMillis() - System.currentTimeMillis();
+        if (delayMillis <= 0) {
+            // not seen recently
+            return false;
+        }
+        final NeighborExpiry expiry = new NeighborExpiry(key);
+        expiry.mTimeout = mExpiryTimer.schedule(expiry, delayMillis);
+        mExpiries.put(key, expiry);
+        return true;
+    }
+
+    /**
+     * Called when a neighbor's expiry is due. If it was not seen meanwhile, callbacks and observers of current
+     * neighbors are told that it disconnected.
+     * @param expiry Expiry.
+     */
+    private void onExpiry(NeighborExpiry expiry) {
+        final Neighbor neighbor;
+        synchronized (this) {
+            if (mExpiries.get(expiry.mKey) != expiry) {
+                // rescheduled meanwhile
+                return;
+            }
+            mExpiries.remove(expiry.mKey);
+            neighbor = mNeighbors.get(expiry.mKey);
+            if (scheduleExpiry(neighbor)) {
+                // the period grew since the expiry was scheduled
+                return;
+            }
+        }
+
+        Log.v(TAG, "Neighbor disconnected: " + neighbor);
+        mContext.getContentResolver().notifyChange(Neighbors.URI_CURRENT, null);
+        mContext.getContentResolver().notifyChange(NeighborProtocols.URI_CURRENT, null);
+        dispatchChanges(Collections.<Neighbor>emptyList(), Collections.singletonList(neighbor));
+    }
+
+    /**
+     * Writes all pending changes to the database, in a single batch.
+     */
+    private void write() {
+        final List<NeighborUpdate> updates = new ArrayList<>();
+        final Map<ByteBuffer, Long> lastPackets;
+        final long lastPacketGeneration;
+        synchronized (this) {
+            for (ByteBuffer key : mDirtyNeighbors) {
+                updates.add(toNeighborUpdate(mNeighbors.get(key)));
+            }
+            lastPackets = new HashMap<>(mDirtyLastPackets);
+            lastPacketGeneration = mLastPacketGeneration;
+            mDirtyNeighbors.clear();
+            mDirtyLastPackets.clear();
+            mWriteScheduled = false;
+        }
+
+        try {
+            mDbController.insertNeighbors(updates);
+            for (Map.Entry<ByteBuffer, Long> lastPacket : lastPackets.entrySet()) {
+                mDbController.updateNeighborLastPacket(lastPacket.getKey().array(), lastPacket.getValue());
+            }
+        } catch (RuntimeException e) {
+            // the table is still up to date, try again later
+            Log.e(TAG, "Could not write neighbors to database:", e);
+            synchronized (this) {
+                for (NeighborUpdate update : updates) {
+                    mDirtyNeighbors.add(ByteBuffer.wrap(update.getValues().getAsByteArray(Neighbors.COLUMN_IDENTIFIER)));
+                }
+                // timestamps reset meanwhile must not be restored
+                if (lastPacketGeneration == mLastPacketGeneration) {
+                    for (Map.Entry<ByteBuffer, Long> lastPacket : lastPackets.entrySet()) {
+                        if (!mDirtyLastPackets.containsKey(lastPacket.getKey())) {
+                            mDirtyLastPackets.put(lastPacket.getKey(), lastPacket.getValue());
+                        }
+                    }
+                }
+                scheduleWrite();
+            }
+            return;
+        }
+        Log.v(TAG, String.format("Wrote %d neighbors and %d packet timestamps", updates.size(), lastPackets.size()));
+    }
+
+    /**
+     * Schedules a write of pending changes, unless one is already scheduled. Must be called while holding the lock.
+     */
+    private void scheduleWrite() {
+        if (mWriteScheduled) {
+            return;
+        }
+        mWriter.schedule(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, WRITE_BEHIND_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        mWriteScheduled = true;
+    }
+
+    /**
+     * Stores a neighbor in the table, replacing a previous version.
+     * @param neighbor Neighbor.
+     */
+    private void put(Neighbor neighbor) {
+        mNeighbors.put(ByteBuffer.wrap(neighbor.getNodeId()), neighbor);
+        mNeighborsByRawId.put(neighbor.getRawId(), neighbor);
+    }
+
+    /**
+     * Returns a copy of a neighbor with a different time of last packet.
+     * @param neighbor Neighbor.
+     * @param timeLastPacket Timestamp, in seconds.
+     * @return A {@link Neighbor} object.
+     */
+    private static Neighbor withTimeLastPacket(Neighbor neighbor, long timeLastPacket) {
+        return new Neighbor(neighbor.getRawId(), neighbor.getNodeId(), neighbor.getTimeLastSeen(), timeLastPacket,
+                neighbor.isMulticastCapable(), neighbor.getLastSeenNetwork(), neighbor.getIp4Address(),
+                neighbor.getIp6Address(), neighbor.getBluetoothAddress(),
+                new HashSet<>(neighbor.getSupportedProtocols()));
+    }
+
+    /**
+     * Builds the database update of a neighbor, including its raw id.
+     * @param neighbor Neighbor.
+     * @return A {@link NeighborUpdate} object.
+     */
+    private static NeighborUpdate toNeighborUpdate(Neighbor neighbor) {
+        final ContentValues values = new ContentValues();
+        values.put(Neighbors._ID, neighbor.getRawId());
+        values.put(Neighbors.COLUMN_IDENTIFIER, neighbor.getNodeId());
+        values.put(Neighbors.COLUMN_TIME_LASTSEEN, neighbor.getTimeLastSeen());
+        values.put(Neighbors.COLUMN_MULTICAST_CAPABLE, neighbor.isMulticastCapable());
+        values.put(Neighbors.COLUMN_TIME_LASTPACKET, neighbor.getTimeLastPacket());
+        values.put(Neighbors.COLUMN_NETWORK, neighbor.getLastSeenNetwork());
+        if (neighbor.hasIp4Address()) {
+            values.put(Neighbors.COLUMN_IP4, neighbor.getIp4Address().getAddress());
+        }
+        if (neighbor.hasIp6Address()) {
+            values.put(Neighbors.COLUMN_IP6, neighbor.getIp6Address().getAddress());
+        }
+        if (neighbor.hasBluetoothAddress()) {
+            values.put(Neighbors.COLUMN_BLUETOOTH, neighbor.getBluetoothAddress());
+        }
+
+        final List<ByteString> protocols = new ArrayList<>();
+        for (ByteBuffer protocol : neighbor.getSupportedProtocols()) {
+            protocols.add(ByteString.copyFrom(protocol.duplicate()));
+        }
+        return new NeighborUpdate(values, protocols);
+    }
+
+    /**
+     * Returns a copy of a neighbor row with a protocol column appended.
+     * @param row Neighbor row.
+     * @param protocol Protocol hash, or null.
+     * @return Row.
+     */
+    private static Object[] withProtocol(Object[] row, byte[] protocol) {
+        final Object[] protocolRow = new Object[row.length + 1];
+        System.arraycopy(row, 0, protocolRow, 0, row.length);
+        protocolRow[row.length] = protocol;
+        return protocolRow;
+    }
+
+    /**
+     * Returns the remaining bytes of a buffer, without changing its position.
+     * @param buffer Buffer.
+     * @return Byte array.
+     */
+    private static byte[] toByteArray(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Converts a raw IP address to an {@link InetAddress} of a given type.
+     * @param address Raw address, or null.
+     * @param type Expected type of address.
+     * @return The address, or null if it is absent, invalid or of another type.
+     */
+    private static <T extends InetAddress> T toInetAddress(byte[] address, Class<T> type) {
+        if (address == null) {
+            return null;
+        }
+        try {
+            final InetAddress inetAddress = InetAddress.getByAddress(address);
+            return (type.isInstance(inetAddress) ? type.cast(inetAddress) : null);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Pending expiry of a neighbor.
+     */
+    private final class NeighborExpiry implements Runnable {
+        // neighbor's node id
+        private final ByteBuffer mKey;
+        // timeout in the expiry wheel, set right after scheduling
+        private HashedWheelTimer.Timeout mTimeout;
+
+        NeighborExpiry(ByteBuffer key) {
+            mKey = key;
+        }
+
+        @Override
+        public void run() {
+            onExpiry(this);
+        }
+    }
+}
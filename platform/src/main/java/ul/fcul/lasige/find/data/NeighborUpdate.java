@@ -0,0 +1,47 @@
+package ul.fcul.lasige.find.data;
+
+import android.content.ContentValues;
+
+import com.google.protobuf.ByteString;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds the values and supported protocols of a single neighbor that should be written to the
+ * database. Used to group several neighbor writes in a single transaction
+ * (see {@link DbController#insertNeighbors(List)}).
+ */
+public class NeighborUpdate {
+    // neighbor values, as in FullContract.Neighbors
+    private final ContentValues mValues;
+    // list of protocols' hash values
+    private final List<ByteString> mProtocols;
+
+    /**
+     * Constructor.
+     * @param values Values data structure.
+     * @param protocols List of protocols' hash values. If null, an empty list is assumed.
+     */
+    public NeighborUpdate(ContentValues values, List<ByteString> protocols) {
+        mValues = values;
+        mProtocols = (protocols == null) ? Collections.<ByteString>emptyList() : protocols;
+    }
+
+    /**
+     * Returns neighbor's values.
+     * @return Values data structure.
+     * @see FullContract.Neighbors
+     */
+    public ContentValues getValues() {
+        return mValues;
+    }
+
+    /**
+     * Returns neighbor's supported protocols.
+     * @return List of protocols' hash values.
+     */
+    public List<ByteString> getProtocols() {
+        return mProtocols;
+    }
+}
@@ -0,0 +1,150 @@
+package ul.fcul.lasige.find.data;
+
+import android.database.Cursor;
+
+import java.util.Locale;
+
+import ul.fcul.lasige.find.data.FullContract.NetworkStatistics;
+
+/**
+ * Historical yield of a WiFi network, i.e. how many neighbors were discovered and packets exchanged while
+ * connected to it, and how much time connecting and staying cost. It is stored in the
+ * {@link NetworkStatistics} table.
+ *
+ * <p>Every new visit or failed attempt first decays the accumulated values by {@link #DECAY}, so that the
+ * statistics follow networks whose population changes over time (e.g. a campus network at night).</p>
+ */
+public class NetworkYield {
+    /**
+     * Weight of the accumulated values on each update; the rest is forgotten.
+     */
+    public static final double DECAY = 0.9;
+
+    // network name (SSID)
+    private final String mNetwork;
+    // decayed counters
+    private double mVisits;
+    private double mFailures;
+    private double mConnectMillis;
+    private double mConnectedMillis;
+    private double mNeighbors;
+    private double mPackets;
+    // last attempt, in seconds
+    private long mTimeLastVisit;
+
+    /**
+     * Utility method to create an {@link NetworkYield} object from a data cursor.
+     * @param cursor Data cursor.
+     * @return {@link NetworkYield} object.
+     * @see Cursor
+     */
+    public static NetworkYield fromCursor(Cursor cursor) {
+        final NetworkYield yield = new NetworkYield(
+                cursor.getString(cursor.getColumnIndex(NetworkStatistics.COLUMN_NETWORK)));
+        yield.mVisits = cursor.getDouble(cursor.getColumnIndex(NetworkStatistics.COLUMN_VISITS));
+        yield.mFailures = cursor.getDouble(cursor.getColumnIndex(NetworkStatistics.COLUMN_FAILURES));
+        yield.mConnectMillis = cursor.getDouble(cursor.getColumnIndex(NetworkStatistics.COLUMN_CONNECT_TIME));
+        yield.mConnectedMillis = cursor.getDouble(cursor.getColumnIndex(NetworkStatistics.COLUMN_CONNECTED_TIME));
+        yield.mNeighbors = cursor.getDouble(cursor.getColumnIndex(NetworkStatistics.COLUMN_NEIGHBORS));
+        yield.mPackets = cursor.getDouble(cursor.getColumnIndex(NetworkStatistics.COLUMN_PACKETS));
+        yield.mTimeLastVisit = cursor.getLong(cursor.getColumnIndex(NetworkStatistics.COLUMN_TIME_LASTVISIT));
+        return yield;
+    }
+
+    /**
+     * Constructor of a network that was never attempted.
+     * @param network Network name (SSID).
+     */
+    public NetworkYield(String network) {
+        mNetwork = network;
+    }
+
+    /**
+     * Records a successful visit to the network.
+     * @param connectMillis Time it took to connect.
+     * @param connectedMillis Time spent connected.
+     * @param neighbors Number of neighbors discovered while connected.
+     * @param packets Number of packets sent and received while connected.
+     * @param nowSeconds Current time, in seconds.
+     */
+    public void recordVisit(long connectMillis, long connectedMillis, int neighbors, long packets, long nowSeconds) {
+        decay();
+        mVisits += 1;
+        mConnectMillis += connectMillis;
+        mConnectedMillis += connectedMillis;
+        mNeighbors += neighbors;
+        mPackets += packets;
+        mTimeLastVisit = nowSeconds;
+    }
+
+    /**
+     * Records an attempt to connect to the network that did not succeed.
+     * @param connectMillis Time lost trying to connect.
+     * @param nowSeconds Current time, in seconds.
+     */
+    public void recordFailure(long connectMillis, long nowSeconds) {
+        decay();
+        mFailures += 1;
+        mConnectMillis += connectMillis;
+        mTimeLastVisit = nowSeconds;
+    }
+
+    /**
+     * Forgets part of the accumulated values.
+     */
+    private void decay() {
+        mVisits *= DECAY;
+        mFailures *= DECAY;
+        mConnectMillis *= DECAY;
+        mConnectedMillis *= DECAY;
+        mNeighbors *= DECAY;
+        mPackets *= DECAY;
+    }
+
+    public String getNetwork() {
+        return mNetwork;
+    }
+
+    public double getVisits() {
+        return mVisits;
+    }
+
+    public double getFailures() {
+        return mFailures;
+    }
+
+    /**
+     * Returns the number of attempts to connect to the network, successful or not.
+     * @return Decayed number of attempts.
+     */
+    public double getAttempts() {
+        return mVisits + mFailures;
+    }
+
+    public double getConnectMillis() {
+        return mConnectMillis;
+    }
+
+    public double getConnectedMillis() {
+        return mConnectedMillis;
+    }
+
+    public double getNeighbors() {
+        return mNeighbors;
+    }
+
+    public double getPackets() {
+        return mPackets;
+    }
+
+    public long getTimeLastVisit() {
+        return mTimeLastVisit;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%s: %.1f visits, %.1f failures, %.0f s connecting, %.0f s connected, %.1f neighbors, %.1f packets",
+                mNetwork, mVisits, mFailures, mConnectMillis / 1000, mConnectedMillis / 1000, mNeighbors, mPackets);
+    }
+}
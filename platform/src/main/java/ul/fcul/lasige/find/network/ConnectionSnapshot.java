@@ -0,0 +1,61 @@
+package ul.fcul.lasige.find.network;
+
+import com.google.common.base.Optional;
+
+/**
+ * Immutable snapshot of the WiFi adapter state and current connection, as returned by
+ * {@link NetworkManager#getConnectionSnapshot()}. Reading it costs no system service calls, so it is meant
+ * for per-datagram and per-beacon paths; it is replaced by the {@link NetworkManager} whenever connectivity
+ * changes.
+ */
+public final class ConnectionSnapshot {
+    private final NetworkManager.WifiState mWifiState;
+    private final Optional<WifiConnection> mConnection;
+    // when the snapshot was taken, from System.nanoTime()
+    private final long mTimeTakenNanos;
+
+    /**
+     * Constructor.
+     * @param wifiState WiFi adapter state.
+     * @param connection Current connection, if any.
+     * @param timeTakenNanos When the snapshot was taken, from {@link System#nanoTime()}.
+     */
+    public ConnectionSnapshot(NetworkManager.WifiState wifiState, Optional<WifiConnection> connection,
+                              long timeTakenNanos) {
+        mWifiState = wifiState;
+        mConnection = connection;
+        mTimeTakenNanos = timeTakenNanos;
+    }
+
+    /**
+     * Returns the state of the WiFi adapter.
+     * @return WiFi state.
+     */
+    public NetworkManager.WifiState getWifiState() {
+        return mWifiState;
+    }
+
+    /**
+     * Returns the current WiFi connection.
+     * @return an {@link Optional} containing the current {@link WifiConnection} if connected.
+     */
+    public Optional<WifiConnection> getConnection() {
+        return mConnection;
+    }
+
+    /**
+     * Returns whether the WiFi adapter is connected, either to a network or as access point.
+     * @return true if connected, false otherwise.
+     */
+    public boolean isConnected() {
+        return !mWifiState.equals(NetworkManager.WifiState.DISCONNECTED) && mConnection.isPresent();
+    }
+
+    /**
+     * Returns when the snapshot was taken.
+     * @return Time, from {@link System#nanoTime()}.
+     */
+    public long getTimeTakenNanos() {
+        return mTimeTakenNanos;
+    }
+}
@@ -0,0 +1,292 @@
+package ul.fcul.lasige.find.network;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Compact binary format of captured datagrams, i.e. the beacons and packets received on the platform's ports,
+ * with {@link Writer} and {@link Reader} implementations. Traces are written by {@link DatagramTraceRecorder}
+ * and replayed by {@link ul.fcul.lasige.find.beaconing.TraceReplayer TraceReplayer}.
+ *
+ * <p>A trace starts with a header (magic {@code "FNDT"}, a version byte and the capture start time in
+ * milliseconds), followed by records. Each record holds the datagram's {@link Kind}, the milliseconds since the
+ * previous record (varint), the origin address, the receiving interface name and the raw data (varint
+ * length).</p>
+ */
+public class DatagramTrace {
+    private static final String TAG = DatagramTrace.class.getSimpleName();
+
+    // header
+    private static final byte[] MAGIC = { 'F', 'N', 'D', 'T' };
+    private static final int VERSION = 1;
+    // buffer size of trace files
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * What a captured datagram is, i.e. the socket it was received on.
+     */
+    public enum Kind {
+        /**
+         * Beacon received on the unicast beaconing port.
+         */
+        BEACON_UNICAST,
+        /**
+         * Beacon received on the multicast beaconing port.
+         */
+        BEACON_MULTICAST,
+        /**
+         * Transport packet received on the packet port.
+         */
+        PACKET
+    }
+
+    /**
+     * Constructor. It is private to prevent instantiation.
+     */
+    private DatagramTrace() {
+        // prevent instantiation
+    }
+
+    /**
+     * A captured datagram.
+     */
+    public static final class Record {
+        private final Kind mKind;
+        private final long mTimeMillis;
+        private final byte[] mOrigin;
+        private final String mInterfaceName;
+        private final byte[] mData;
+
+        /**
+         * Constructor.
+         * @param kind What the datagram is.
+         * @param timeMillis Time it was received.
+         * @param origin Sender's address (4 or 16 bytes), or an empty array if unknown.
+         * @param interfaceName Name of the receiving interface, or an empty string if unknown.
+         * @param data Datagram data.
+         */
+        public Record(Kind kind, long timeMillis, byte[] origin, String interfaceName, byte[] data) {
+            mKind = kind;
+            mTimeMillis = timeMillis;
+            mOrigin = origin;
+            mInterfaceName = interfaceName;
+            mData = data;
+        }
+
+        public Kind getKind() {
+            return mKind;
+        }
+
+        public long getTimeMillis() {
+            return mTimeMillis;
+        }
+
+        public byte[] getOrigin() {
+            return mOrigin;
+        }
+
+        public String getInterfaceName() {
+            return mInterfaceName;
+        }
+
+        public byte[] getData() {
+            return mData;
+        }
+    }
+
+    /**
+     * Appends records to a new trace file. It is not thread-safe.
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream mOutput;
+        private long mLastTimeMillis;
+        private long mBytesWritten;
+
+        /**
+         * Creates a trace file and writes its header.
+         * @param file Trace file; it is overwritten if it exists.
+         * @param startTimeMillis Capture start time.
+         * @throws IOException If the file could not be written.
+         */
+        public Writer(File file, long startTimeMillis) throws IOException {
+            mOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+            mOutput.write(MAGIC);
+            mOutput.writeByte(VERSION);
+            mOutput.writeLong(startTimeMillis);
+            mLastTimeMillis = startTimeMillis;
+            mBytesWritten = MAGIC.length + 1 + 8;
+        }
+
+        /**
+         * Appends a record.
+         * @param kind What the datagram is.
+         * @param timeMillis Time it was received; earlier times are stored as the previous record's time.
+         * @param origin Sender's address, or an empty array if unknown.
+         * @param interfaceName Name of the receiving interface, or null if unknown.
+         * @param data Buffer holding the datagram data.
+         * @param offset Offset of the data in the buffer.
+         * @param length Length of the data.
+         * @throws IOException If the record could not be written.
+         */
+        public void append(Kind kind, long timeMillis, byte[] origin, String interfaceName, byte[] data, int offset,
+                           int length) throws IOException {
+            final byte[] name = (interfaceName != null ? interfaceName.getBytes(UTF8) : new byte[0]);
+            final long delta = Math.max(0, timeMillis - mLastTimeMillis);
+            mLastTimeMillis += delta;
+
+            mOutput.writeByte(kind.ordinal());
+            int written = 1 + writeVarint(delta);
+            mOutput.writeByte(origin.length);
+            mOutput.write(origin);
+            mOutput.writeByte(Math.min(name.length, 255));
+            mOutput.write(name, 0, Math.min(name.length, 255));
+            written += 2 + origin.length + Math.min(name.length, 255);
+            written += writeVarint(length);
+            mOutput.write(data, offset, length);
+            mBytesWritten += written + length;
+        }
+
+        /**
+         * Returns the size of the trace so far.
+         * @return Number of bytes.
+         */
+        public long getBytesWritten() {
+            return mBytesWritten;
+        }
+
+        /**
+         * Writes buffered records to the file.
+         * @throws IOException If the file could not be written.
+         */
+        public void flush() throws IOException {
+            mOutput.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mOutput.close();
+        }
+
+        /**
+         * Writes an unsigned varint, as in protocol buffers.
+         * @param value Value, not negative.
+         * @return Number of bytes written.
+         * @throws IOException If the file could not be written.
+         */
+        private int writeVarint(long value) throws IOException {
+            int bytes = 1;
+            while ((value & ~0x7FL) != 0) {
+                mOutput.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+                bytes++;
+            }
+            mOutput.writeByte((int) value);
+            return bytes;
+        }
+    }
+
+    /**
+     * Reads the records of a trace file, in order.
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream mInput;
+        private final long mStartTimeMillis;
+        private long mLastTimeMillis;
+
+        /**
+         * Opens a trace file and reads its header.
+         * @param file Trace file.
+         * @throws IOException If the file could not be read or is not a trace.
+         */
+        public Reader(File file) throws IOException {
+            mInput = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+            try {
+                final byte[] magic = new byte[MAGIC.length];
+                mInput.readFully(magic);
+                if (!Arrays.equals(magic, MAGIC) || mInput.readUnsignedByte() != VERSION) {
+                    throw new IOException("Not a datagram trace: " + file);
+                }
+                mStartTimeMillis = mInput.readLong();
+            } catch (IOException e) {
+                mInput.close();
+                throw e;
+            }
+            mLastTimeMillis = mStartTimeMillis;
+        }
+
+        /**
+         * Returns the time the capture started.
+         * @return Time in milliseconds.
+         */
+        public long getStartTimeMillis() {
+            return mStartTimeMillis;
+        }
+
+        /**
+         * Reads the next record. A record cut short at the end of the file (e.g. when the platform was killed
+         * while capturing) is treated as the end of the trace.
+         * @return Record, or null at the end of the trace.
+         * @throws IOException If the file could not be read or is corrupted.
+         */
+        public Record next() throws IOException {
+            final int kind = mInput.read();
+            if (kind < 0) {
+                return null;
+            }
+            if (kind >= Kind.values().length) {
+                throw new IOException("Unknown record kind " + kind);
+            }
+
+            try {
+                mLastTimeMillis += readVarint();
+                final byte[] origin = new byte[mInput.readUnsignedByte()];
+                mInput.readFully(origin);
+                final byte[] name = new byte[mInput.readUnsignedByte()];
+                mInput.readFully(name);
+                final long length = readVarint();
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("Invalid record length " + length);
+                }
+                final byte[] data = new byte[(int) length];
+                mInput.readFully(data);
+                return new Record(Kind.values()[kind], mLastTimeMillis, origin, new String(name, UTF8), data);
+            } catch (EOFException e) {
+                // truncated record
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            mInput.close();
+        }
+
+        /**
+         * Reads an unsigned varint.
+         * @return Value.
+         * @throws IOException If the file could not be read or the varint is malformed.
+         */
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = mInput.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package ul.fcul.lasige.find.network;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+
+import ul.fcul.lasige.find.data.ConfigurationStore;
+
+/**
+ * Optional capture of every datagram received on the beaconing and packet ports, written to a
+ * {@link DatagramTrace} file so that field load can be inspected and replayed later. Capture is off by
+ * default; when enabled, each platform start writes a new trace in the {@code traces} directory of the app's
+ * files, up to {@link #MAX_TRACE_BYTES}. Only the last {@link #MAX_TRACES} traces are kept; older ones are deleted
+ * when a new one is opened.
+ *
+ * <p>Receivers call {@link #record} from their receive threads; it returns immediately when capture is off.
+ * It implements the Singleton design pattern and should be accessed through
+ * {@link DatagramTraceRecorder#getInstance(Context)}.</p>
+ */
+public class DatagramTraceRecorder {
+    private static final String TAG = DatagramTraceRecorder.class.getSimpleName();
+
+    // largest trace written; capture stops when it is reached
+    public static final long MAX_TRACE_BYTES = 32 * 1024 * 1024; // 32 MiB
+    // traces kept in the directory, including the one being written
+    public static final int MAX_TRACES = 4;
+    // directory of trace files, inside the app's files directory
+    private static final String TRACE_DIRECTORY = "traces";
+    // how often buffered records are written to the file
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    // singleton instance
+    private static DatagramTraceRecorder sInstance;
+
+    private final Context mContext;
+    // whether capture is on; read without locking by receive threads
+    private volatile boolean mEnabled;
+    // current trace, opened lazily on the first datagram
+    private DatagramTrace.Writer mWriter;
+    private File mTraceFile;
+    private long mLastFlushMillis;
+    // statistics
+    private long mRecords;
+
+    /**
+     * Returns the singleton instance.
+     * @param context Application context.
+     * @return {@link DatagramTraceRecorder} object.
+     */
+    public static synchronized DatagramTraceRecorder getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DatagramTraceRecorder(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructor. It is private to enforce the Singleton pattern.
+     * @param context Application context.
+     */
+    private DatagramTraceRecorder(Context context) {
+        mContext = context;
+        mEnabled = ConfigurationStore.isTraceCaptureEnabled(context);
+    }
+
+    /**
+     * Returns whether datagrams are being captured.
+     * @return true if capture is on, false otherwise.
+     */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Turns capture on or off, and remembers it across restarts. Turning it off closes the current trace;
+     * turning it on again starts a new one.
+     * @param enabled true to capture datagrams, false otherwise.
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        ConfigurationStore.setTraceCaptureEnabled(mContext, enabled);
+        mEnabled = enabled;
+        if (!enabled) {
+            closeTrace();
+        }
+    }
+
+    /**
+     * Returns the trace being written.
+     * @return Trace file, or null if none was opened yet.
+     */
+    public synchronized File getTraceFile() {
+        return mTraceFile;
+    }
+
+    /**
+     * Returns the number of datagrams captured since the platform started.
+     * @return Number of records.
+     */
+    public synchronized long getRecordCount() {
+        return mRecords;
+    }
+
+    /**
+     * Appends a received datagram to the trace, if capture is on. Errors stop the capture instead of
+     * affecting the caller.
+     * @param kind What the datagram is.
+     * @param origin Sender's address, or null if unknown.
+     * @param interfaceName Name of the receiving interface, or null if unknown.
+     * @param data Buffer holding the datagram data.
+     * @param offset Offset of the data in the buffer.
+     * @param length Length of the data.
+     */
+    public void record(DatagramTrace.Kind kind, InetAddress origin, String interfaceName, byte[] data, int offset,
+                       int length) {
+        if (!mEnabled) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (!mEnabled) {
+                return;
+            }
+            try {
+                if (mWriter == null) {
+                    openTrace(now);
+                }
+                mWriter.append(kind, now, (origin != null ? origin.getAddress() : new byte[0]), interfaceName,
+                        data, offset, length);
+                mRecords++;
+
+                if (mWriter.getBytesWritten() >= MAX_TRACE_BYTES) {
+                    Log.w(TAG, "Trace reached " + MAX_TRACE_BYTES + " bytes, stopping capture");
+                    mEnabled = false;
+                    closeTrace();
+                } else if (now - mLastFlushMillis >= FLUSH_INTERVAL_MILLIS) {
+                    mWriter.flush();
+                    mLastFlushMillis = now;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not write trace, stopping capture", e);
+                mEnabled = false;
+                closeTrace();
+            }
+        }
+    }
+
+    /**
+     * Creates a new trace file, named after the current time, after deleting the oldest traces so that at most
+     * {@link #MAX_TRACES} remain.
+     * @param now Current time.
+     * @throws IOException If the file could not be created.
+     */
+    private void openTrace(long now) throws IOException {
+        final File directory = new File(mContext.getFilesDir(), TRACE_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        deleteOldTraces(directory);
+        final String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date(now));
+        mTraceFile = new File(directory, "capture-" + name + ".trace");
+        mWriter = new DatagramTrace.Writer(mTraceFile, now);
+        mLastFlushMillis = now;
+        Log.i(TAG, "Capturing datagrams to " + mTraceFile);
+    }
+
+    /**
+     * Deletes the oldest traces of a directory, leaving room for a new one.
+     * @param directory Trace directory.
+     */
+    private static void deleteOldTraces(File directory) {
+        final File[] traces = directory.listFiles();
+        if (traces == null || traces.length < MAX_TRACES) {
+            return;
+        }
+        // names start with the time they were opened, so they sort oldest first
+        Arrays.sort(traces);
+        for (int i = 0; i <= traces.length - MAX_TRACES; i++) {
+            if (!traces[i].delete()) {
+                Log.w(TAG, "Could not delete old trace " + traces[i]);
+            }
+        }
+    }
+
+    /**
+     * Closes the current trace, if any.
+     */
+    private void closeTrace() {
+        if (mWriter == null) {
+            return;
+        }
+        try {
+            mWriter.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error while closing trace", e);
+        }
+        mWriter = null;
+    }
+}
@@ -15,15 +15,12 @@ import android.os.Build;
 import android.util.Log;
 
 import com.google.common.base.Optional;
-import com.google.common.primitives.Ints;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
-import java.net.UnknownHostException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -32,6 +29,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import ul.fcul.lasige.find.apps.TokenGenerator;
 
@@ -47,6 +46,8 @@ public class NetworkManager {
     public static final String BASE_AP_NAME = "FindAP";
     private static final String ERROR_MSG_NO_AP_MANIP = "AP manipulation not available.";
     private static final String ERROR_MSG_NO_3G_MANIP = "Mobile Data manipulation not available.";
+    // maximum age of the connection snapshot, in case a connectivity broadcast was missed
+    private static final long SNAPSHOT_MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(10);
 
     // singleton instance
     private static NetworkManager sInstance;
@@ -55,7 +56,8 @@ public class NetworkManager {
     private final Context mContext;
     // WiFi lock, not reference counted
     private final WifiManager.WifiLock mWifiLock;
-    //TODO private final WifiManager.MulticastLock mMulticastLock;
+    // multicast lock, not reference counted; only held while receiving multicast beacons
+    private final WifiManager.MulticastLock mMulticastLock;
     // lock count
     private int mWifiConnectionLockCount;
     //TODO private int mBtConnectionLockCount;
@@ -65,6 +67,12 @@ public class NetworkManager {
     protected final BluetoothAdapter mBluetoothAdapter;
     // network callback
     private final NetworkStateChangeReceiver mConnectivityReceiver;
+    // long-lived sockets used to send beacons and packets
+    private final SenderSocketPool mSenderSocketPool;
+    // WiFi state and connection, replaced on connectivity changes and read without locking; null when unknown
+    private final AtomicReference<ConnectionSnapshot> mConnectionSnapshot = new AtomicReference<>();
+    // whether connectivity changes are being received, i.e. the snapshot is kept up to date
+    private volatile boolean mIsReceivingChanges;
 
     // network states
     private final Deque<NetworkManagerState> mPreviousNetworkManagerStates = new ArrayDeque<>();
@@ -101,13 +109,14 @@ public class NetworkManager {
         mConnectivityManager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
         mWifiManager = (WifiManager) mContext.getSystemService(Context.WIFI_SERVICE);
         mBluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
-        mConnectivityReceiver = new NetworkStateChangeReceiver();
+        mSenderSocketPool = new SenderSocketPool();
+        mConnectivityReceiver = new NetworkStateChangeReceiver(this, mSenderSocketPool);
 
         // locks
         mWifiLock = mWifiManager.createWifiLock(WifiManager.WIFI_MODE_FULL, "FindWifiLock");
         mWifiLock.setReferenceCounted(false);
-        /*TODO mMulticastLock = mWifiManager.createMulticastLock("FindMulticastLock");
-        mMulticastLock.setReferenceCounted(false);*/
+        mMulticastLock = mWifiManager.createMulticastLock("FindMulticastLock");
+        mMulticastLock.setReferenceCounted(false);
 
         // discover hidden WLAN AP state methods using reflection
         Class<? extends WifiManager> wmClass = mWifiManager.getClass();
@@ -144,6 +153,9 @@ public class NetworkManager {
         if (!mConnectivityReceiver.hasListeners()) {
             // fist listener, register context in receiver
             mConnectivityReceiver.register(mContext);
+            // the snapshot was not kept up to date while unregistered
+            mConnectionSnapshot.set(null);
+            mIsReceivingChanges = true;
         }
         mConnectivityReceiver.registerListener(callback);
 
@@ -162,9 +174,20 @@ public class NetworkManager {
         if (!mConnectivityReceiver.hasListeners()) {
             // last listener, unregister context in receiver
             mConnectivityReceiver.unregister(mContext);
+            // changes are not received anymore
+            mIsReceivingChanges = false;
+            mConnectionSnapshot.set(null);
         }
     }
 
+    /**
+     * Returns the pool of sockets used to send beacons and packets. Its sockets are closed on connectivity changes.
+     * @return A {@link SenderSocketPool} object.
+     */
+    public SenderSocketPool getSenderSocketPool() {
+        return mSenderSocketPool;
+    }
+
     /*
      * SAVEPOINTS
      */
@@ -217,7 +240,6 @@ public class NetworkManager {
      */
     public void acquireLocks() {
         mWifiLock.acquire();
-        //TODO mMulticastLock.acquire();
     }
 
     /**
@@ -226,7 +248,25 @@ public class NetworkManager {
      */
     public void releaseLocks() {
         mWifiLock.release();
-        //TODO mMulticastLock.release();
+        releaseMulticastLock();
+    }
+
+    /**
+     * Acquire the WiFi multicast lock, so that multicast and broadcast packets are not filtered out by the
+     * WiFi driver. It is not reference counted and costs some battery, so it should only be held while
+     * listening for multicast beacons.
+     */
+    public void acquireMulticastLock() {
+        mMulticastLock.acquire();
+    }
+
+    /**
+     * Release the WiFi multicast lock, if it is held.
+     */
+    public void releaseMulticastLock() {
+        if (mMulticastLock.isHeld()) {
+            mMulticastLock.release();
+        }
     }
 
     /**
@@ -348,41 +388,14 @@ public class NetworkManager {
     }
 
     /**
-     * Generates a list of up to 256 continuous IPv4 addresses in the subnet currently connected to,
-     * by incrementing the least significant byte of the IP address from the subnet's start address.
-     *
-     * @return a list of InetAddress objects
+     * Retrieves the IPv4 subnet mask of the network currently connected to.
+     * @return Subnet mask, in network byte order; 0 if unknown.
+     * @see ul.fcul.lasige.find.beaconing.SubnetSweep
      */
-    public List<InetAddress> getIp4SweepRange() {
-        final List<InetAddress> addresses = new ArrayList<>();
-
-        DhcpInfo dhcp = mWifiManager.getDhcpInfo();
-        // NOTE: netmask and ipAddress are little-endian, but we want big-endian
-        final byte[] netmask = Ints.toByteArray(Integer.reverseBytes(dhcp.netmask));
-        final byte[] ownIp = Ints.toByteArray(Integer.reverseBytes(dhcp.ipAddress));
-
-        byte[] baseAddress = {
-                (byte) (ownIp[0] & netmask[0]),
-                (byte) (ownIp[1] & netmask[1]),
-                (byte) (ownIp[2] & netmask[2]),
-                (byte) (ownIp[3] & netmask[3])
-        };
-
-        // Stop when reaching end of subnet or after at most 255 addresses, whichever comes first
-        do {
-            ++baseAddress[3];
-
-            if (baseAddress[3] != ownIp[3]) {
-                // Skip own address
-                try {
-                    addresses.add(InetAddress.getByAddress(baseAddress));
-                } catch (UnknownHostException e) {
-                    // Skip
-                }
-            }
-        } while ((baseAddress[3] | netmask[3]) != (byte) 0xFF);
-
-        return addresses;
+    public int getIp4Netmask() {
+        final DhcpInfo dhcp = mWifiManager.getDhcpInfo();
+        // NOTE: netmask is little-endian, but we want big-endian
+        return (dhcp == null ? 0 : Integer.reverseBytes(dhcp.netmask));
     }
 
     /**
@@ -475,14 +488,23 @@ public class NetworkManager {
     }
 
     /**
-     * Returns the information about the current WiFi connection.
+     * Returns the information about the current WiFi connection. This queries system services and enumerates
+     * network interfaces; hot paths should use {@link #getConnectionSnapshot()} instead.
      *
      * @return an {@link Optional} containing the current {@link WifiConnection} info if present
      */
     public Optional<WifiConnection> getCurrentConnection() {
+        return getCurrentConnection(getWifiState());
+    }
+
+    /**
+     * Returns the information about the current WiFi connection, given the current WiFi state.
+     * @param state Current WiFi state.
+     * @return an {@link Optional} containing the current {@link WifiConnection} info if present
+     */
+    private Optional<WifiConnection> getCurrentConnection(WifiState state) {
         WifiConnection connection = null;
 
-        final WifiState state = getWifiState();
         final Optional<NetworkInterface> iface = getWifiNetworkInterface();
         try {
             if (state.equals(WifiState.FIND_AP)) {
@@ -500,6 +522,51 @@ public class NetworkManager {
         return Optional.fromNullable(connection);
     }
 
+    /**
+     * Returns the last snapshot of the WiFi state and connection. The snapshot is replaced whenever
+     * connectivity changes (see {@link NetworkStateChangeReceiver}), so reading it does not query system
+     * services nor take locks. It is taken on first use, when connectivity changes are not being received, and
+     * when it is older than {@link #SNAPSHOT_MAX_AGE_NANOS}.
+     * @return A {@link ConnectionSnapshot} object.
+     */
+    public ConnectionSnapshot getConnectionSnapshot() {
+        final ConnectionSnapshot snapshot = mConnectionSnapshot.get();
+        if (snapshot == null || System.nanoTime() - snapshot.getTimeTakenNanos() > SNAPSHOT_MAX_AGE_NANOS) {
+            final ConnectionSnapshot newSnapshot = takeConnectionSnapshot();
+            // a connectivity change may have published a newer snapshot while we were taking ours
+            if (mIsReceivingChanges && !mConnectionSnapshot.compareAndSet(snapshot, newSnapshot)) {
+                final ConnectionSnapshot current = mConnectionSnapshot.get();
+                return (current != null ? current : newSnapshot);
+            }
+            return newSnapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Takes a new snapshot of the WiFi state and connection, and publishes it to
+     * {@link #getConnectionSnapshot()}. Called by the {@link NetworkStateChangeReceiver} when connectivity
+     * changes, so the new snapshot always replaces the current one.
+     * @return The new {@link ConnectionSnapshot}.
+     */
+    public ConnectionSnapshot refreshConnectionSnapshot() {
+        final ConnectionSnapshot snapshot = takeConnectionSnapshot();
+        if (mIsReceivingChanges) {
+            // only kept while connectivity changes are received
+            mConnectionSnapshot.set(snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Takes a snapshot of the WiFi state and connection, without publishing it.
+     * @return A {@link ConnectionSnapshot} object.
+     */
+    private ConnectionSnapshot takeConnectionSnapshot() {
+        final WifiState state = getWifiState();
+        return new ConnectionSnapshot(state, getCurrentConnection(state), System.nanoTime());
+    }
+
     // WIFI AP MANAGEMENT
     /**
      * Checks whether access point mode manipulation methods are available for this device or not.
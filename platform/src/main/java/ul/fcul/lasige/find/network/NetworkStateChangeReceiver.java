@@ -65,9 +65,23 @@ public class NetworkStateChangeReceiver extends SafeBroadcastReceiver {
 
     // callbacks
     private final HashSet<NetworkChangeListener> mCallbacks = new HashSet<>();
+    // network manager, whose connection snapshot is refreshed on every change
+    private final NetworkManager mNetworkManager;
+    // sender sockets, closed when the WiFi interface may be gone
+    private final SenderSocketPool mSenderSocketPool;
     // are we connected?
     private boolean mIsWifiConnected;
 
+    /**
+     * Constructor.
+     * @param networkManager Network manager, whose connection snapshot is refreshed before listeners are notified.
+     * @param senderSocketPool Sender sockets, which are notified of connectivity changes before listeners.
+     */
+    protected NetworkStateChangeReceiver(NetworkManager networkManager, SenderSocketPool senderSocketPool) {
+        mNetworkManager = networkManager;
+        mSenderSocketPool = senderSocketPool;
+    }
+
     /**
      * Returns whether there are listeners registered.
      * @return true if there are listeners registered, false otherwise.
@@ -128,6 +142,9 @@ public class NetworkStateChangeReceiver extends SafeBroadcastReceiver {
                 if (INTERESTING_AP_STATES.contains(currentState)) {
                     // enabled or disabling
                     final boolean isActivated = (currentState == ApState.ENABLED);
+                    // the WiFi interface changes mode
+                    mNetworkManager.refreshConnectionSnapshot();
+                    mSenderSocketPool.onConnectivityChanged(false);
                     for (NetworkChangeListener callback : mCallbacks) {
                         // notify listeners of ap mode change
                         callback.onAccessPointModeChanged(isActivated);
@@ -143,6 +160,8 @@ public class NetworkStateChangeReceiver extends SafeBroadcastReceiver {
                 if (INTERESTING_WIFI_ADAPTER_STATES.contains(newState)) {
                     // disabled or enable
                     final boolean isActivated = (newState == WifiManager.WIFI_STATE_ENABLED);
+                    mNetworkManager.refreshConnectionSnapshot();
+                    mSenderSocketPool.onConnectivityChanged(isActivated);
                     for (NetworkChangeListener callback : mCallbacks) {
                         // notify listeners of adapter change
                         callback.onWifiAdapterChanged(isActivated);
@@ -180,12 +199,16 @@ public class NetworkStateChangeReceiver extends SafeBroadcastReceiver {
                 final boolean stillConnected = (affectedNetwork.isConnected() || !noConnectivity);
                 final boolean wifiFailover = isFailover && (failoverNetwork.getType() == ConnectivityManager.TYPE_WIFI);
 
+                // the network (or its addresses) may have changed even if connectivity did not
+                mNetworkManager.refreshConnectionSnapshot();
+
                 if (stillConnected == mIsWifiConnected) { // TODO could be a different network?
                     // connectivity state is still the same.
                     break;
                 }
 
                 mIsWifiConnected = stillConnected;
+                mSenderSocketPool.onConnectivityChanged(stillConnected);
                 for (NetworkChangeListener callback : mCallbacks) {
                     callback.onWifiNetworkChanged(stillConnected, wifiFailover);
                 }
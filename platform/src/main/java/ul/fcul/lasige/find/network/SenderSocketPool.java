@@ -0,0 +1,142 @@
+package ul.fcul.lasige.find.network;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Keeps one long-lived socket per {@link Purpose} (beacons, packets) for sending UDP datagrams, instead of
+ * creating and closing a socket for every beacon burst or packet. A socket is bound to the network interface
+ * it was requested for; it is only recreated when a different interface is requested or after a connectivity
+ * change reported by {@link NetworkStateChangeReceiver} closed it.
+ *
+ * <p>Sockets returned by {@link #getSocket(Purpose, NetworkInterface)} are shared between threads and must not be
+ * closed by their users. The pool should be accessed through {@link NetworkManager#getSenderSocketPool()}.</p>
+ */
+public class SenderSocketPool {
+    private static final String TAG = SenderSocketPool.class.getSimpleName();
+
+    // receive timeout of sender sockets
+    private static final int SOCKET_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * What a socket is used for. Each purpose has its own socket.
+     */
+    public enum Purpose {
+        /**
+         * Beacons and replies to beacons.
+         */
+        BEACON,
+        /**
+         * Transport packets.
+         */
+        PACKET
+    }
+
+    // open sockets, and the interfaces they are bound to (null for the default interface)
+    private final Map<Purpose, MulticastSocket> mSockets = new EnumMap<>(Purpose.class);
+    private final Map<Purpose, NetworkInterface> mInterfaces = new EnumMap<>(Purpose.class);
+
+    // statistics
+    private long mSocketsCreated;
+
+    /**
+     * Constructor. It is package-private, use {@link NetworkManager#getSenderSocketPool()}.
+     */
+    SenderSocketPool() { }
+
+    /**
+     * Returns the socket for a given purpose, creating it if there is none or if it is bound to a different
+     * interface. Notice that a {@link MulticastSocket} also works for unicast and broadcast.
+     * @param purpose What the socket is used for.
+     * @param wifiInterface Interface used to send multicast datagrams, or null to use the default interface.
+     * @return A shared {@link MulticastSocket} object, which must not be closed.
+     * @throws IOException If the socket could not be created.
+     */
+    public synchronized MulticastSocket getSocket(Purpose purpose, NetworkInterface wifiInterface) throws IOException {
+        MulticastSocket socket = mSockets.get(purpose);
+        if (socket != null && !socket.isClosed() && equalInterfaces(wifiInterface, mInterfaces.get(purpose))) {
+            return socket;
+        }
+
+        if (socket != null) {
+            // interface changed
+            socket.close();
+        }
+        socket = createSocket(wifiInterface);
+        mSockets.put(purpose, socket);
+        mInterfaces.put(purpose, wifiInterface);
+        mSocketsCreated++;
+        Log.v(TAG, String.format("Created %s socket on %s", purpose,
+                (wifiInterface != null ? wifiInterface.getName() : "default interface")));
+        return socket;
+    }
+
+    /**
+     * Closes all sockets. New sockets are created when they are requested again.
+     */
+    public synchronized void closeAll() {
+        if (mSockets.isEmpty()) {
+            return;
+        }
+        for (MulticastSocket socket : mSockets.values()) {
+            socket.close();
+        }
+        mSockets.clear();
+        mInterfaces.clear();
+        Log.v(TAG, "Closed sender sockets");
+    }
+
+    /**
+     * Returns the number of sockets created since the pool was created.
+     * @return Number of sockets.
+     */
+    public synchronized long getSocketsCreated() {
+        return mSocketsCreated;
+    }
+
+    /**
+     * Callback for connectivity changes, called by {@link NetworkStateChangeReceiver} before its listeners.
+     * Sockets are closed when the WiFi network is lost or the adapter changes mode, since the interface they
+     * are bound to may be gone.
+     * @param stillUsable Whether the current sockets can still be used.
+     */
+    void onConnectivityChanged(boolean stillUsable) {
+        if (!stillUsable) {
+            closeAll();
+        }
+    }
+
+    /**
+     * Creates a socket for a given network interface and with a 5 second timeout.
+     * @param wifiInterface WiFi interface, or null to use the default interface.
+     * @return A {@link MulticastSocket} object.
+     * @throws IOException If the socket could not be created.
+     */
+    private static MulticastSocket createSocket(NetworkInterface wifiInterface) throws IOException {
+        final MulticastSocket socket = new MulticastSocket(null);
+        // set timeout
+        socket.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+        socket.setReuseAddress(true);
+        socket.setLoopbackMode(true);
+        socket.setBroadcast(true);
+        if (wifiInterface != null) {
+            socket.setNetworkInterface(wifiInterface);
+        }
+        return socket;
+    }
+
+    /**
+     * Compares two interfaces, either of which may be null.
+     * @param a First interface.
+     * @param b Second interface.
+     * @return true if both are null or equal, false otherwise.
+     */
+    private static boolean equalInterfaces(NetworkInterface a, NetworkInterface b) {
+        return (a == null ? b == null : a.equals(b));
+    }
+}
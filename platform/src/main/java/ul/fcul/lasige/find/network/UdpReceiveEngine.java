@@ -0,0 +1,311 @@
+package ul.fcul.lasige.find.network;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import ul.fcul.lasige.find.utils.InterruptibleFailsafeRunnable;
+
+/**
+ * Receives UDP datagrams on several ports using a single thread. Each port is served by a non-blocking
+ * {@link DatagramChannel} registered with one {@link Selector}, so the thread sleeps until a datagram
+ * arrives (no socket timeouts) and wakes up immediately when a port is registered, unregistered or
+ * the engine is stopped.
+ *
+ * <p>It implements the Singleton design pattern and should be accessed through
+ * {@link UdpReceiveEngine#getInstance()}. The receive thread is started when the first port is
+ * registered and terminates when the last port is unregistered.</p>
+ *
+ * <p>Engines bound to a specific local address can be created with {@link #UdpReceiveEngine(InetAddress)},
+ * so that several platform instances can share a host (e.g. on loopback addresses, in benchmarks).</p>
+ */
+public class UdpReceiveEngine {
+    private static final String TAG = UdpReceiveEngine.class.getSimpleName();
+
+    // socket receive buffer size, large enough to absorb bursts of beacons
+    private static final int SOCKET_RECEIVE_BUFFER_SIZE = 256 * 1024; // 256 KiB
+
+    // singleton instance
+    private static UdpReceiveEngine sInstance;
+
+    /**
+     * Callback used to deliver received datagrams. It is called from the engine's thread, and the data
+     * buffer is reused after the call returns; implementations must copy whatever they need to keep.
+     */
+    public interface DatagramHandler {
+        void onDatagramReceived(ByteBuffer data, InetSocketAddress sender);
+    }
+
+    // local address channels are bound to; null for the wildcard address
+    private final InetAddress mBindAddress;
+    // open channels, by port
+    private final Map<Integer, DatagramChannel> mChannels = new HashMap<>();
+    // registrations and cancellations to be applied by the receive thread
+    private final Queue<Runnable> mPendingChanges = new ConcurrentLinkedQueue<>();
+    // selector used by the receive thread
+    private Selector mSelector;
+    // receive thread
+    private SelectorLoop mSelectorLoop;
+
+    /**
+     * Returns the singleton instance.
+     * @return {@link UdpReceiveEngine} object.
+     */
+    public static synchronized UdpReceiveEngine getInstance() {
+        if (sInstance == null) {
+            sInstance = new UdpReceiveEngine();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructor. It is private to enforce the Singleton pattern.
+     */
+    private UdpReceiveEngine() {
+        this(null);
+    }
+
+    /**
+     * Creates an engine whose ports are bound to a given local address instead of the wildcard address.
+     * The platform uses the singleton instance; this is meant for running several instances on one host.
+     * @param bindAddress Local address, or null for the wildcard address.
+     */
+    public UdpReceiveEngine(InetAddress bindAddress) {
+        mBindAddress = bindAddress;
+    }
+
+    /**
+     * Starts receiving datagrams on a given port. The port is bound immediately, so binding errors are
+     * reported to the caller.
+     * @param port UDP port.
+     * @param bufferSize Maximum size of a datagram; larger datagrams are truncated.
+     * @param handler Callback for received datagrams.
+     * @throws IOException If the port could not be bound.
+     * @throws IllegalStateException If the port is already registered.
+     */
+    public synchronized void register(int port, int bufferSize, DatagramHandler handler) throws IOException {
+        if (mChannels.containsKey(port)) {
+            throw new IllegalStateException("Port " + port + " is already registered");
+        }
+
+        // create and bind channel
+        final DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setReuseAddress(true);
+            channel.socket().setReceiveBufferSize(SOCKET_RECEIVE_BUFFER_SIZE);
+            channel.socket().bind(new InetSocketAddress(mBindAddress, port));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        mChannels.put(port, channel);
+
+        if (mSelectorLoop == null) {
+            // first port, start receive thread
+            mSelector = Selector.open();
+            mSelectorLoop = new SelectorLoop(mSelector);
+            new Thread(mSelectorLoop, TAG).start();
+        }
+
+        // registration must happen in the receive thread, otherwise it blocks while select() runs
+        final Selector selector = mSelector;
+        final ChannelAttachment attachment = new ChannelAttachment(handler, bufferSize);
+        mPendingChanges.add(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, attachment);
+                } catch (IOException e) {
+                    Log.e(TAG, "Could not register channel", e);
+                }
+            }
+        });
+        selector.wakeup();
+        Log.v(TAG, "Registered port " + port);
+    }
+
+    /**
+     * Stops receiving datagrams on a given port and closes its channel. When no ports remain, the receive
+     * thread terminates.
+     * @param port UDP port.
+     */
+    public synchronized void unregister(int port) {
+        final DatagramChannel channel = mChannels.remove(port);
+        if (channel == null) {
+            return;
+        }
+
+        mPendingChanges.add(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // closing the channel also cancels its selection key
+                    channel.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Error while closing channel", e);
+                }
+            }
+        });
+        mSelector.wakeup();
+        Log.v(TAG, "Unregistered port " + port);
+    }
+
+    /**
+     * Checks whether a port is registered.
+     * @param port UDP port.
+     * @return true if port is registered, false otherwise.
+     */
+    public synchronized boolean isRegistered(int port) {
+        return mChannels.containsKey(port);
+    }
+
+    /**
+     * Called by the receive thread when it has no more channels. Returns whether the thread may finish;
+     * a port may have been registered in the meantime.
+     * @param loop Receive thread.
+     * @return true if the thread should finish, false otherwise.
+     */
+    private synchronized boolean onSelectorLoopIdle(SelectorLoop loop) {
+        if (!mChannels.isEmpty() || !mPendingChanges.isEmpty() || mSelectorLoop != loop) {
+            return false;
+        }
+        mSelectorLoop = null;
+        mSelector = null;
+        return true;
+    }
+
+    /**
+     * Called by the receive thread when it finishes. If it did not finish because it was idle (e.g. it
+     * failed), all channels are closed so that ports can be registered again.
+     * @param loop Receive thread.
+     */
+    private synchronized void onSelectorLoopFinished(SelectorLoop loop) {
+        if (mSelectorLoop != loop) {
+            return;
+        }
+
+        for (DatagramChannel channel : mChannels.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Error while closing channel", e);
+            }
+        }
+        mChannels.clear();
+        mPendingChanges.clear();
+        mSelectorLoop = null;
+        mSelector = null;
+    }
+
+    /**
+     * Handler and receive buffer of a registered channel.
+     */
+    private static final class ChannelAttachment {
+        private final DatagramHandler mHandler;
+        // direct buffer, reused for every datagram received on the channel
+        private final ByteBuffer mBuffer;
+
+        ChannelAttachment(DatagramHandler handler, int bufferSize) {
+            mHandler = handler;
+            mBuffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+    }
+
+    /**
+     * Receive thread. Blocks in {@link Selector#select()} and drains every readable channel.
+     */
+    private final class SelectorLoop extends InterruptibleFailsafeRunnable {
+        private final Selector mLoopSelector;
+
+        SelectorLoop(Selector selector) {
+            super(TAG);
+            mLoopSelector = selector;
+        }
+
+        @Override
+        protected void execute() {
+            try {
+                while (!mThread.isInterrupted()) {
+                    // apply pending registrations and cancellations
+                    Runnable change;
+                    while ((change = mPendingChanges.poll()) != null) {
+                        change.run();
+                    }
+
+                    if (onSelectorLoopIdle(this)) {
+                        // no more ports to listen to
+                        break;
+                    }
+
+                    // block until a datagram arrives or we are woken up
+                    mLoopSelector.select();
+
+                    final Iterator<SelectionKey> keys = mLoopSelector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        final SelectionKey key = keys.next();
+                        keys.remove();
+                        if (key.isValid() && key.isReadable()) {
+                            drain(key);
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                Log.e(TAG, "Error while receiving datagrams, aborting.", e);
+            } finally {
+                onSelectorLoopFinished(this);
+                try {
+                    mLoopSelector.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Error while closing selector", e);
+                }
+            }
+        }
+
+        /**
+         * Reads all datagrams available on a channel and delivers them to its handler.
+         * @param key Selection key of the channel.
+         */
+        private void drain(SelectionKey key) {
+            final DatagramChannel channel = (DatagramChannel) key.channel();
+            final ChannelAttachment attachment = (ChannelAttachment) key.attachment();
+            final ByteBuffer buffer = attachment.mBuffer;
+
+            while (true) {
+                buffer.clear();
+                final SocketAddress sender;
+                try {
+                    sender = channel.receive(buffer);
+                } catch (IOException e) {
+                    Log.e(TAG, "Error while receiving datagram", e);
+                    return;
+                }
+                if (sender == null) {
+                    // nothing else to read
+                    return;
+                }
+
+                buffer.flip();
+                try {
+                    attachment.mHandler.onDatagramReceived(buffer, (InetSocketAddress) sender);
+                } catch (RuntimeException e) {
+                    // a faulty handler must not stop the other ports
+                    Log.e(TAG, "Error while handling datagram", e);
+                }
+            }
+        }
+    }
+}
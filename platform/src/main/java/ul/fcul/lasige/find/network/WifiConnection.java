@@ -23,6 +23,7 @@ import java.net.UnknownHostException;
 public class WifiConnection {
     private final Optional<Inet4Address> mIp4Address;
     private final Optional<Inet6Address> mIp6Address;
+    private final Optional<InetAddress> mIp4BroadcastAddress;
     private final Optional<InetAddress> mApAddress;
     private final Optional<String> mNetworkName;
     private final NetworkInterface mWifiInterface;
@@ -39,10 +40,12 @@ public class WifiConnection {
         // get IPv4 and IPv6 from network interface
         Inet4Address ip4 = null;
         Inet6Address ip6 = null;
+        InetAddress ip4Broadcast = null;
         for (InterfaceAddress ifaceAddr : iface.getInterfaceAddresses()) {
             InetAddress addr = ifaceAddr.getAddress();
             if (addr instanceof Inet4Address && ip4 == null) {
                 ip4 = (Inet4Address) addr;
+                ip4Broadcast = ifaceAddr.getBroadcast();
             } else if (addr instanceof Inet6Address && ip6 == null) {
                 ip6 = (Inet6Address) addr;
             }
@@ -64,7 +67,7 @@ public class WifiConnection {
             networkName = NetworkManager.unquoteSSID(networkName);
         }
 
-        return new WifiConnection(ip4, ip6, apIp, networkName, iface);
+        return new WifiConnection(ip4, ip6, ip4Broadcast, apIp, networkName, iface);
     }
 
     /**
@@ -77,30 +80,34 @@ public class WifiConnection {
         // get IPv4 and IPv6 from network interface
         Inet4Address ip4 = null;
         Inet6Address ip6 = null;
+        InetAddress ip4Broadcast = null;
         for (InterfaceAddress ifaceAddr : iface.getInterfaceAddresses()) {
             InetAddress addr = ifaceAddr.getAddress();
             if (addr instanceof Inet4Address && ip4 == null) {
                 ip4 = (Inet4Address) addr;
+                ip4Broadcast = ifaceAddr.getBroadcast();
             } else if (addr instanceof Inet6Address && ip6 == null) {
                 ip6 = (Inet6Address) addr;
             }
         }
 
-        return new WifiConnection(ip4, ip6, null, apName, iface);
+        return new WifiConnection(ip4, ip6, ip4Broadcast, null, apName, iface);
     }
 
     /**
      * Constructor. Hidden, cannot be instantiated.
      * @param ip4 IPv4.
      * @param ip6 IPv6.
+     * @param ip4Broadcast IPv4 subnet broadcast address.
      * @param apIp IP of currently connected network.
      * @param ssid SSID.
      * @param wifiInterface Network interface.
      */
-    private WifiConnection(Inet4Address ip4, Inet6Address ip6, InetAddress apIp, String ssid,
-                           NetworkInterface wifiInterface) {
+    private WifiConnection(Inet4Address ip4, Inet6Address ip6, InetAddress ip4Broadcast, InetAddress apIp,
+                           String ssid, NetworkInterface wifiInterface) {
         mIp4Address = Optional.fromNullable(ip4);
         mIp6Address = Optional.fromNullable(ip6);
+        mIp4BroadcastAddress = Optional.fromNullable(ip4Broadcast);
         mApAddress = Optional.fromNullable(apIp);
         mNetworkName = Optional.fromNullable(ssid);
         mWifiInterface = wifiInterface;
@@ -140,6 +147,23 @@ public class WifiConnection {
         return mIp6Address;
     }
 
+    /**
+     * Checks whether an IPv4 subnet broadcast address exists.
+     * @return true if a broadcast address exists, false otherwise.
+     */
+    public boolean hasIp4BroadcastAddress() {
+        return mIp4BroadcastAddress.isPresent();
+    }
+
+    /**
+     * Retrives the IPv4 subnet broadcast address.
+     * @return Broadcast address.
+     * @see InetAddress
+     */
+    public Optional<InetAddress> getIp4BroadcastAddress() {
+        return mIp4BroadcastAddress;
+    }
+
     /**
      * Checks whether an IP for the currently connected network exists.
      * @return true if an IP exists, false otherwise.
@@ -0,0 +1,199 @@
+package ul.fcul.lasige.find.packetcomm;
+
+import android.util.Log;
+
+import com.google.protobuf.ByteString;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ul.fcul.lasige.find.crypto.CryptoHelper;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment;
+
+/**
+ * Puts {@link TransportFragment}s back together into the encoded packets they were split from by the
+ * {@link PacketFragmenter}. Fragments may arrive in any order, repeated, from different neighbors and in different
+ * contacts: partially received packets are kept for half an hour, so that a packet interrupted by the end of a
+ * contact is completed by the missing fragments in a later one.
+ *
+ * <p>Memory is bounded: at most {@link #MAX_BUFFERED_BYTES} of fragments for at most {@link #MAX_PACKETS}
+ * packets are kept, the least recently active packet being dropped first. Packets recently reassembled are
+ * remembered, so that their fragments sent again are dropped right away.</p>
+ */
+public class FragmentReassembler {
+    private static final String TAG = FragmentReassembler.class.getSimpleName();
+
+    // maximum number of fragment bytes kept
+    public static final int MAX_BUFFERED_BYTES = 4 * 1024 * 1024; // 4 MiB
+    // maximum number of packets being reassembled
+    public static final int MAX_PACKETS = 32;
+    // time after which a packet with no new fragments is dropped
+    private static final long PACKET_TIMEOUT_MILLIS = 30 * 60 * 1000;
+    // maximum number of fragments of a packet
+    private static final int MAX_FRAGMENTS = 4096;
+    // number of packets reassembled that are remembered
+    private static final int MAX_COMPLETED = 256;
+    // length of packet digests
+    private static final int DIGEST_LENGTH = 20;
+
+    /**
+     * Fragments received of a packet.
+     */
+    private static final class Reassembly {
+        final int mPacketSize;
+        final ByteString[] mFragments;
+        int mReceived;
+        int mBytes;
+        long mLastActivityMillis;
+
+        Reassembly(int packetSize, int count) {
+            mPacketSize = packetSize;
+            mFragments = new ByteString[count];
+        }
+    }
+
+    // packets being reassembled, per digest, least recently active first
+    private final LinkedHashMap<ByteString, Reassembly> mPackets = new LinkedHashMap<>(16, 0.75f, true);
+    // digests of packets recently reassembled
+    private final LinkedHashMap<ByteString, Boolean> mCompleted =
+            new LinkedHashMap<ByteString, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteString, Boolean> eldest) {
+                    return size() > MAX_COMPLETED;
+                }
+            };
+    // fragment bytes kept
+    private int mBufferedBytes;
+
+    /**
+     * Adds a received fragment.
+     * @param fragment Fragment.
+     * @return The encoded packet, if this fragment completed it; null if more fragments are needed, or if the
+     * fragment is a duplicate or not valid.
+     */
+    public synchronized byte[] add(TransportFragment fragment) {
+        final long now = System.currentTimeMillis();
+        expirePackets(now);
+
+        final ByteString digest = fragment.getPacketDigest();
+        if (mCompleted.containsKey(digest)) {
+            // packet was reassembled already
+            return null;
+        }
+        if (!isValid(fragment)) {
+            Log.v(TAG, "Dropping invalid fragment");
+            return null;
+        }
+
+        Reassembly reassembly = mPackets.get(digest);
+        if (reassembly == null) {
+            reassembly = new Reassembly(fragment.getPacketSize(), fragment.getCount());
+            mPackets.put(digest, reassembly);
+        } else if (reassembly.mPacketSize != fragment.getPacketSize()
+                || reassembly.mFragments.length != fragment.getCount()) {
+            Log.v(TAG, "Dropping fragment that does not match previous fragments of its packet");
+            return null;
+        }
+        reassembly.mLastActivityMillis = now;
+
+        final int index = fragment.getIndex();
+        if (reassembly.mFragments[index] != null) {
+            // duplicate
+            return null;
+        }
+        reassembly.mFragments[index] = fragment.getData();
+        reassembly.mReceived++;
+        reassembly.mBytes += fragment.getData().size();
+        mBufferedBytes += fragment.getData().size();
+
+        if (reassembly.mReceived < reassembly.mFragments.length) {
+            evictPackets();
+            return null;
+        }
+
+        // all fragments received
+        mPackets.remove(digest);
+        mBufferedBytes -= reassembly.mBytes;
+        if (reassembly.mBytes != reassembly.mPacketSize) {
+            Log.v(TAG, "Dropping reassembled packet of " + reassembly.mBytes + " bytes, expected "
+                    + reassembly.mPacketSize);
+            return null;
+        }
+        final byte[] packet = new byte[reassembly.mPacketSize];
+        int offset = 0;
+        for (ByteString data : reassembly.mFragments) {
+            data.copyTo(packet, offset);
+            offset += data.size();
+        }
+        if (!Arrays.equals(CryptoHelper.createDigest(packet), digest.toByteArray())) {
+            Log.v(TAG, "Dropping reassembled packet, digest does not match");
+            return null;
+        }
+        mCompleted.put(digest, Boolean.TRUE);
+        return packet;
+    }
+
+    /**
+     * Returns the number of packets being reassembled.
+     * @return Number of packets.
+     */
+    public synchronized int getPacketCount() {
+        return mPackets.size();
+    }
+
+    /**
+     * Returns the number of fragment bytes kept.
+     * @return Number of bytes.
+     */
+    public synchronized int getBufferedBytes() {
+        return mBufferedBytes;
+    }
+
+    /**
+     * Checks a fragment's fields.
+     * @param fragment Fragment.
+     * @return true if the fragment may belong to a packet we can reassemble, false otherwise.
+     */
+    private static boolean isValid(TransportFragment fragment) {
+        final int count = fragment.getCount();
+        final int packetSize = fragment.getPacketSize();
+        final int size = fragment.getData().size();
+        return fragment.getPacketDigest().size() == DIGEST_LENGTH
+                && packetSize > 0 && packetSize <= PacketFragmenter.MAX_PACKET_SIZE
+                && count > 0 && count <= MAX_FRAGMENTS && count <= packetSize
+                && fragment.getIndex() >= 0 && fragment.getIndex() < count
+                && size > 0 && size <= packetSize;
+    }
+
+    /**
+     * Drops the least recently active packets while too many packets or fragment bytes are kept.
+     */
+    private void evictPackets() {
+        final Iterator<Reassembly> it = mPackets.values().iterator();
+        while ((mPackets.size() > MAX_PACKETS || mBufferedBytes > MAX_BUFFERED_BYTES) && mPackets.size() > 1) {
+            mBufferedBytes -= it.next().mBytes;
+            it.remove();
+            Log.v(TAG, "Dropping partially received packet, reassembly buffers are full");
+        }
+    }
+
+    /**
+     * Drops packets with no new fragments for too long.
+     * @param now Current time, in milliseconds.
+     */
+    private void expirePackets(long now) {
+        final Iterator<Reassembly> it = mPackets.values().iterator();
+        while (it.hasNext()) {
+            final Reassembly reassembly = it.next();
+            if (now - reassembly.mLastActivityMillis > PACKET_TIMEOUT_MILLIS) {
+                mBufferedBytes -= reassembly.mBytes;
+                it.remove();
+            } else {
+                // least recently active first, the others are more recent
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ul.fcul.lasige.find.packetcomm;
+
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket;
+
+/**
+ * An outgoing packet loaded for sending: its database id, when it was added to the platform, and the
+ * {@link TransportPacket.Builder} it is built from.
+ *
+ * @see ul.fcul.lasige.find.data.DbController#getPacketsForSending(java.util.Collection)
+ */
+public class OutgoingPacket {
+    private final long mPacketId;
+    private final long mTimeReceived;
+    private final TransportPacket.Builder mBuilder;
+
+    /**
+     * Constructor.
+     * @param packetId Packet id.
+     * @param timeReceived Time the packet was added to the platform, in seconds.
+     * @param builder Packet builder.
+     */
+    public OutgoingPacket(long packetId, long timeReceived, TransportPacket.Builder builder) {
+        mPacketId = packetId;
+        mTimeReceived = timeReceived;
+        mBuilder = builder;
+    }
+
+    public long getPacketId() {
+        return mPacketId;
+    }
+
+    public long getTimeReceived() {
+        return mTimeReceived;
+    }
+
+    public TransportPacket.Builder getBuilder() {
+        return mBuilder;
+    }
+}
@@ -6,7 +6,9 @@ import android.util.Log;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -14,10 +16,14 @@ import java.util.Set;
 
 import ul.fcul.lasige.find.apps.ProtocolRegistry;
 import ul.fcul.lasige.find.beaconing.BeaconingManager;
+import ul.fcul.lasige.find.data.ConfigurationStore;
 import ul.fcul.lasige.find.data.DbController;
 import ul.fcul.lasige.find.data.Identity;
+import ul.fcul.lasige.find.data.NeighborTable;
 import ul.fcul.lasige.find.lib.data.Neighbor;
 import ul.fcul.lasige.find.lib.data.NeighborObserver;
+import ul.fcul.lasige.find.network.DatagramTraceRecorder;
+import ul.fcul.lasige.find.network.NetworkManager;
 import ul.fcul.lasige.find.protocolbuffer.FindProtos;
 
 /**
@@ -38,12 +44,16 @@ public class PacketCommManager implements NeighborObserver.NeighborCallback, Pac
     private final PacketRegistry mPacketRegistry;
     // registry of all protocols
     private final ProtocolRegistry mProtocolRegistry;
-    // neighbors oberserver for notification of new discovered neighbors
-    private final NeighborObserver mNeighborObserver;
+    // neighbor table, for notification of connected and disconnected neighbors
+    private final NeighborTable mNeighborTable;
     // public key used to receive packets
     private final Identity mIdentity;
     // runnable to receive packets
     private PacketReceiver mPacketReceiver;
+    // sends packets to neighbors
+    private PacketSender mPacketSender;
+    // whether packets are being received through the shared NIO receive engine
+    private boolean mUsingNioReceiver;
 
     // mapping from neighbor node IDs to Neighbor objects.
     private final Map<ByteBuffer, Neighbor> mNeighborNodeIdMap = new HashMap<>();
@@ -63,7 +73,7 @@ public class PacketCommManager implements NeighborObserver.NeighborCallback, Pac
         mPacketRegistry = PacketRegistry.getInstance(mContext);
         mProtocolRegistry = ProtocolRegistry.getInstance(mContext);
         mIdentity = new DbController(context).getMasterIdentity();
-        mNeighborObserver = new NeighborObserver(mContext, this);
+        mNeighborTable = NeighborTable.getInstance(mContext);
     }
 
     /**
@@ -72,12 +82,35 @@ public class PacketCommManager implements NeighborObserver.NeighborCallback, Pac
      */
     public void start() {
         Log.d(TAG, "Packet Comm Start");
-        mNeighborObserver.register();
+        mNeighborTable.registerCallback(this);
         mPacketRegistry.registerCallback(this);
 
-        // start receiver thread
-        mPacketReceiver = new PacketReceiver(mPacketRegistry, mIdentity, mProtocolRegistry);
-        new Thread(mPacketReceiver).start();
+        // start sender
+        mPacketSender = new PacketSender(mContext, mBeaconingManager, mIdentity.getPublicKey());
+
+        // start receiver
+        mPacketReceiver = new PacketReceiver(mPacketRegistry, mIdentity, mProtocolRegistry,
+                DatagramTraceRecorder.getInstance(mContext), NetworkManager.getInstance(mContext).getSenderSocketPool());
+        mUsingNioReceiver = false;
+        if (ConfigurationStore.isNioReceiveEngineEnabled(mContext)) {
+            try {
+                mPacketReceiver.startNio();
+                mUsingNioReceiver = true;
+            } catch (IOException e) {
+                Log.e(TAG, "Could not start NIO packet receiver, using a dedicated thread", e);
+            }
+        }
+        if (!mUsingNioReceiver) {
+            new Thread(mPacketReceiver).start();
+        }
+    }
+
+    /**
+     * Returns the receiver of packets, e.g. to read its statistics.
+     * @return {@link PacketReceiver} object, or null if the manager was never started.
+     */
+    public PacketReceiver getPacketReceiver() {
+        return mPacketReceiver;
     }
 
     /**
@@ -85,10 +118,16 @@ public class PacketCommManager implements NeighborObserver.NeighborCallback, Pac
      */
     public void stop() {
         Log.d(TAG, "Packet Comm Stop");
-        mPacketReceiver.interrupt();
+        if (mUsingNioReceiver) {
+            mPacketReceiver.stopNio();
+        } else {
+            mPacketReceiver.interrupt();
+        }
 
         mPacketRegistry.unregisterCallback(this);
-        mNeighborObserver.unregister();
+        mNeighborTable.unregisterCallback(this);
+
+        mPacketSender.shutdown();
     }
 
     /**
@@ -96,15 +135,8 @@ public class PacketCommManager implements NeighborObserver.NeighborCallback, Pac
      * @param neighbor Neighbor object.
      */
     public void schedulePendingPackets(Neighbor neighbor) {
-        // for all new packets
-        for(Long packetId : mPacketRegistry.getPacketsIdsSince(neighbor.getTimeLastPacket())) {
-            if (neighbor.hasLastSeenNetwork()) {
-                // neighbor is in a WiFi network
-                mBeaconingManager.setWifiConnectionLocked(true);
-            }
-            // enqueues packet in sender service
-            PacketSenderService.startSendPacket(mContext, neighbor.getRawId(), packetId);
-        }
+        // enqueues all new packets in a single session
+        mPacketSender.send(neighbor, mPacketRegistry.getPacketsIdsSince(neighbor.getTimeLastPacket()));
     }
 
     /**
@@ -112,20 +144,13 @@ public class PacketCommManager implements NeighborObserver.NeighborCallback, Pac
      * forwarding packets, enqueued packets with no target neighbor (broadcasts) and packets
      * with protocols supported by the neighbor. Overlapping packets are sent only once.
      *
-     * <p>This method acquires the WiFi lock to guarantee that connection is available during sending.</p>
+     * <p>The {@link PacketSender} acquires the WiFi lock to guarantee that connection is available during sending.</p>
      *
      * @param neighbor Neighbor object.
      */
     private void scheduleSendingPackets(Neighbor neighbor) {
-        // for all packets
-        for (Long packetId : mPacketRegistry.getInterestingPacketIds(neighbor)) {
-            if (neighbor.hasLastSeenNetwork()) {
-                // neighbor is in a WiFi network, lock connection
-                mBeaconingManager.setWifiConnectionLocked(true);
-            }
-            // enqueues packet in sender service
-            PacketSenderService.startSendPacket(mContext, neighbor.getRawId(), packetId);
-        }
+        // enqueues all packets in a single session
+        mPacketSender.send(neighbor, mPacketRegistry.getInterestingPacketIds(neighbor));
     }
 
     /**
@@ -133,11 +158,11 @@ public class PacketCommManager implements NeighborObserver.NeighborCallback, Pac
      * @param neighbor Neighbor object.
      */
     private void cancelSendingPackets(Neighbor neighbor) {
-        // TODO: enable packetsenderservice to cancel sending packets to specific neighbors
+        // TODO: enable PacketSender to cancel sending packets to specific neighbors
     }
 
     /**
-     * Callback triggered by {@link NeighborObserver}. It sends interesting packets to newly connected
+     * Callback triggered by {@link NeighborTable}. It sends interesting packets to newly connected
      * neighbor.
      *
      * @param currentNeighbor Neighbor object.
@@ -157,7 +182,7 @@ public class PacketCommManager implements NeighborObserver.NeighborCallback, Pac
     }
 
     /**
-     * Callback triggered by {@link NeighborObserver}. Cancels all sending packets.
+     * Callback triggered by {@link NeighborTable}. Cancels all sending packets.
      *
      * @param recentNeighbor Neighbor object.
      */
@@ -174,7 +199,7 @@ public class PacketCommManager implements NeighborObserver.NeighborCallback, Pac
     }
 
     /**
-     * Callback triggered by {@link NeighborObserver}. Sends new packets (since last time
+     * Callback triggered by {@link NeighborTable}. Sends new packets (since last time
      * each neighbor was seen) to all neighbors.
      * @param currentNeighbors Set of current available neighbors.
      */
@@ -200,7 +225,7 @@ public class PacketCommManager implements NeighborObserver.NeighborCallback, Pac
             final Neighbor target = mNeighborNodeIdMap.get(packet.getTargetNode().asReadOnlyByteBuffer());
             if (target != null) {
                 // it is! send it
-                PacketSenderService.startSendPacket(mContext, target.getRawId(), packetId);
+                mPacketSender.send(target, Collections.singleton(packetId));
             }
         }
         else {
@@ -213,7 +238,7 @@ public class PacketCommManager implements NeighborObserver.NeighborCallback, Pac
                                 .contains(neighbor);
 
                 if (isUnencryptedPacket || isSupportedByNeighbor) {
-                    PacketSenderService.startSendPacket(mContext, neighbor.getRawId(), packetId);
+                    mPacketSender.send(neighbor, Collections.singleton(packetId));
                 }
             }
         }
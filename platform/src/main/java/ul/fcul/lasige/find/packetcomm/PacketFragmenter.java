@@ -0,0 +1,86 @@
+package ul.fcul.lasige.find.packetcomm;
+
+import com.google.protobuf.ByteString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ul.fcul.lasige.find.crypto.CryptoHelper;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket;
+
+/**
+ * Splits {@link TransportPacket}s too large for a single datagram into {@link TransportFragment}s, each sent in
+ * its own datagram, so that large packets (e.g. photos or voice notes) are not left to IP fragmentation, which
+ * loses the whole packet when any fragment is lost. Fragments are put back together by a
+ * {@link FragmentReassembler}.
+ *
+ * <p>Fragments are identified by the digest of the encoded packet, so that fragments of the same packet
+ * received in different contacts, or from different neighbors, are reassembled together.</p>
+ */
+public class PacketFragmenter {
+    private static final String TAG = PacketFragmenter.class.getSimpleName();
+
+    // largest encoded packet that is sent; larger ones cannot be reassembled
+    public static final int MAX_PACKET_SIZE = 1024 * 1024; // 1 MiB
+    // largest packet data accepted from client apps, leaving room for the other fields and encryption
+    public static final int MAX_DATA_SIZE = MAX_PACKET_SIZE - 4096;
+    // room left in a datagram for the fragment's fields and a reliable transfer segment around it
+    private static final int HEADER_SIZE = 64;
+    // default number of packet bytes in a fragment, so that a fragment fits the default datagram size budget
+    public static final int DEFAULT_FRAGMENT_SIZE = TransportBundler.DEFAULT_SIZE_BUDGET - HEADER_SIZE;
+
+    /**
+     * Constructor. It is private to prevent instantiation. All class' methods are static.
+     */
+    private PacketFragmenter() {}
+
+    /**
+     * Returns whether a packet must be fragmented, i.e. whether it does not fit the default datagram size budget.
+     * @param packet Packet.
+     * @return true if the packet is sent as fragments, false otherwise.
+     */
+    public static boolean needsFragmentation(TransportPacket packet) {
+        return packet.getSerializedSize() > TransportBundler.DEFAULT_SIZE_BUDGET;
+    }
+
+    /**
+     * Splits a packet into fragments.
+     * @param packet Packet, at most {@link #MAX_PACKET_SIZE} bytes when encoded.
+     * @param fragmentSize Number of packet bytes in each fragment (the last one may be shorter).
+     * @return Encoded fragments, in order, each to be sent in its own datagram.
+     * @throws IllegalArgumentException If the packet is too large.
+     */
+    public static List<byte[]> fragment(TransportPacket packet, int fragmentSize) {
+        final byte[] encoded = packet.toByteArray();
+        if (encoded.length > MAX_PACKET_SIZE) {
+            throw new IllegalArgumentException(
+                    "Packet of " + encoded.length + " bytes is larger than " + MAX_PACKET_SIZE + " bytes");
+        }
+
+        final ByteString digest = ByteString.copyFrom(CryptoHelper.createDigest(encoded));
+        final int count = (encoded.length + fragmentSize - 1) / fragmentSize;
+        final List<byte[]> fragments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int offset = i * fragmentSize;
+            fragments.add(TransportFragment.newBuilder()
+                    .setPacketDigest(digest)
+                    .setIndex(i)
+                    .setCount(count)
+                    .setPacketSize(encoded.length)
+                    .setData(ByteString.copyFrom(encoded, offset, Math.min(fragmentSize, encoded.length - offset)))
+                    .build()
+                    .toByteArray());
+        }
+        return fragments;
+    }
+
+    /**
+     * Returns whether received data is a {@link TransportFragment}, by looking at its first tag.
+     * @param data Datagram data.
+     * @return true if it is a fragment, false otherwise.
+     */
+    public static boolean isFragment(byte[] data) {
+        return TransportBundler.getFirstFieldNumber(data) == TransportFragment.PACKET_DIGEST_FIELD_NUMBER;
+    }
+}
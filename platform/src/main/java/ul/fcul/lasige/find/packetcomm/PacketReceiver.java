@@ -7,32 +7,49 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import ul.fcul.lasige.find.apps.ProtocolRegistry;
 import ul.fcul.lasige.find.data.FullContract;
 import ul.fcul.lasige.find.data.Identity;
+import ul.fcul.lasige.find.network.DatagramTrace;
+import ul.fcul.lasige.find.network.DatagramTraceRecorder;
+import ul.fcul.lasige.find.network.SenderSocketPool;
+import ul.fcul.lasige.find.network.UdpReceiveEngine;
 import ul.fcul.lasige.find.protocolbuffer.FindProtos;
 import ul.fcul.lasige.find.utils.InterruptibleFailsafeRunnable;
 
 /**
  * The class extends {@link InterruptibleFailsafeRunnable} and is responsible for waiting and receiving (listen)
- * for incoming packets from neighbors.
+ * for incoming packets from neighbors. Alternatively, packets can be received through the shared
+ * {@link UdpReceiveEngine} (see {@link #startNio()}); datagrams are then handed to a worker thread, so that
+ * database work, decryption and acknowledgments do not hold up beacons received by the engine's thread.
+ *
+ * <p>Datagrams hold a single {@link FindProtos.TransportPacket}, a {@link FindProtos.TransportBundle}, a
+ * {@link FindProtos.TransportFragment} of a packet too large for a datagram, or a
+ * {@link FindProtos.TransferSegment} of a reliable transfer carrying any of them.</p>
  *
  * Created by hugonicolau on 17/11/15.
  */
-public class PacketReceiver extends InterruptibleFailsafeRunnable {
+public class PacketReceiver extends InterruptibleFailsafeRunnable implements UdpReceiveEngine.DatagramHandler {
     private static final String TAG = PacketReceiver.class.getSimpleName();
 
     // timeout
     private static final int SOCKET_TIMEOUT = 5000;
     // incoming data buffer size
     private static final int BUFFER_SIZE = 65536;
+    // received data waiting for the worker thread from which further datagrams are dropped
+    private static final int MAX_QUEUED_BYTES = 4 * 1024 * 1024; // 4 MiB
 
     // packet registry, use to register incoming packets
     private final PacketRegistry mPacketRegistry;
@@ -40,18 +57,63 @@ public class PacketReceiver extends InterruptibleFailsafeRunnable {
     private final Identity mIdentity;
     // protocol registry, used to check whether we support packets' protocols
     private final ProtocolRegistry mProtocolRegistry;
+    // optional capture of received packets; may be null
+    private final DatagramTraceRecorder mTraceRecorder;
+    // pool of the socket acknowledgments of reliable transfers are sent from; may be null
+    private final SenderSocketPool mSenderSocketPool;
+    // segments received in reliable transfers
+    private final ReliableReceiver mReliableReceiver = new ReliableReceiver();
+    // fragments of packets too large for a datagram
+    private final FragmentReassembler mFragmentReassembler = new FragmentReassembler();
+    // thread handling datagrams received through the UdpReceiveEngine, and the data waiting for it
+    private volatile ExecutorService mWorker;
+    private final AtomicLong mQueuedBytes = new AtomicLong();
+
+    // statistics
+    private final AtomicLong mReceivedCount = new AtomicLong();
+    private final AtomicLong mRegisteredCount = new AtomicLong();
+    private final AtomicLong mRejectedCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
 
     /**
-     * Constructor.
+     * Constructor. Received packets are not captured.
      * @param packetRegistry Packet registry.
      * @param identity Platform's identity.
      * @param protocolRegistry Protocol registry.
      */
     public PacketReceiver(PacketRegistry packetRegistry, Identity identity, ProtocolRegistry protocolRegistry) {
+        this(packetRegistry, identity, protocolRegistry, null);
+    }
+
+    /**
+     * Constructor.
+     * @param packetRegistry Packet registry.
+     * @param identity Platform's identity.
+     * @param protocolRegistry Protocol registry.
+     * @param traceRecorder Recorder that captures received packets when enabled, or null.
+     */
+    public PacketReceiver(PacketRegistry packetRegistry, Identity identity, ProtocolRegistry protocolRegistry,
+                          DatagramTraceRecorder traceRecorder) {
+        this(packetRegistry, identity, protocolRegistry, traceRecorder, null);
+    }
+
+    /**
+     * Constructor.
+     * @param packetRegistry Packet registry.
+     * @param identity Platform's identity.
+     * @param protocolRegistry Protocol registry.
+     * @param traceRecorder Recorder that captures received packets when enabled, or null.
+     * @param senderSocketPool Pool of the socket used to acknowledge segments of reliable transfers, or null to
+     *                         deliver segments without acknowledging them.
+     */
+    public PacketReceiver(PacketRegistry packetRegistry, Identity identity, ProtocolRegistry protocolRegistry,
+                          DatagramTraceRecorder traceRecorder, SenderSocketPool senderSocketPool) {
         super(TAG);
         mPacketRegistry = packetRegistry;
         mIdentity = identity;
         mProtocolRegistry = protocolRegistry;
+        mTraceRecorder = traceRecorder;
+        mSenderSocketPool = senderSocketPool;
     }
 
     /**
@@ -62,7 +124,7 @@ public class PacketReceiver extends InterruptibleFailsafeRunnable {
         DatagramSocket socket = null;
         try {
             // create socket
-            socket = new DatagramSocket(PacketSenderService.PACKET_RECEIVING_PORT);
+            socket = new DatagramSocket(PacketSender.PACKET_RECEIVING_PORT);
             // set timeout
             socket.setSoTimeout(SOCKET_TIMEOUT);
         } catch (SocketException e) {
@@ -98,18 +160,177 @@ public class PacketReceiver extends InterruptibleFailsafeRunnable {
             }
 
             // packet received!
-            final FindProtos.TransportPacket incomingPacket;
+            if (mTraceRecorder != null) {
+                // the receiving interface is unknown, the socket listens on all of them
+                mTraceRecorder.record(DatagramTrace.Kind.PACKET, udpPacket.getAddress(), null,
+                        udpPacket.getData(), udpPacket.getOffset(), udpPacket.getLength());
+            }
+            onPacketReceived(Arrays.copyOf(udpPacket.getData(), udpPacket.getLength()),
+                    (InetSocketAddress) udpPacket.getSocketAddress());
+        }
+
+        // close socket when we are interrupted
+        socket.close();
+    }
+
+    /**
+     * Starts receiving packets through the shared {@link UdpReceiveEngine}, instead of running this object
+     * in its own thread.
+     * @throws IOException If the port could not be bound.
+     */
+    public void startNio() throws IOException {
+        startNio(UdpReceiveEngine.getInstance());
+    }
+
+    /**
+     * Starts receiving packets through a given {@link UdpReceiveEngine}.
+     * @param engine Receive engine.
+     * @throws IOException If the port could not be bound.
+     */
+    public void startNio(UdpReceiveEngine engine) throws IOException {
+        mWorker = Executors.newSingleThreadExecutor();
+        try {
+            engine.register(PacketSender.PACKET_RECEIVING_PORT, BUFFER_SIZE, this);
+        } catch (IOException e) {
+            mWorker.shutdown();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops receiving packets through the shared {@link UdpReceiveEngine}.
+     */
+    public void stopNio() {
+        stopNio(UdpReceiveEngine.getInstance());
+    }
+
+    /**
+     * Stops receiving packets through a given {@link UdpReceiveEngine}. Datagrams already received are still
+     * handled.
+     * @param engine Receive engine.
+     */
+    public void stopNio(UdpReceiveEngine engine) {
+        engine.unregister(PacketSender.PACKET_RECEIVING_PORT);
+        final ExecutorService worker = mWorker;
+        if (worker != null) {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * Callback triggered by {@link UdpReceiveEngine} for each received datagram. The datagram is copied and
+     * handed to the worker thread; it is dropped if too much data is already waiting for it.
+     * @param data Datagram data.
+     * @param sender Sender's address.
+     */
+    @Override
+    public void onDatagramReceived(ByteBuffer data, final InetSocketAddress sender) {
+        final byte[] rawData = new byte[data.remaining()];
+        data.get(rawData);
+        if (mTraceRecorder != null) {
+            mTraceRecorder.record(DatagramTrace.Kind.PACKET, sender.getAddress(), null, rawData, 0, rawData.length);
+        }
+
+        final ExecutorService worker = mWorker;
+        if (worker == null) {
+            mDroppedCount.incrementAndGet();
+            return;
+        }
+        if (mQueuedBytes.addAndGet(rawData.length) > MAX_QUEUED_BYTES) {
+            mQueuedBytes.addAndGet(-rawData.length);
+            mDroppedCount.incrementAndGet();
+            return;
+        }
+        try {
+            worker.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        onPacketReceived(rawData, sender);
+                    } finally {
+                        mQueuedBytes.addAndGet(-rawData.length);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // stopped meanwhile
+            mQueuedBytes.addAndGet(-rawData.length);
+            mDroppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Parses a received datagram, which holds a single packet or a bundle of packets, and registers its packets
+     * in the packet queues they belong to, as a batch. Also used to replay captured packets.
+     * @param data Datagram data.
+     * @see TransportBundler#parse(byte[])
+     */
+    public void onPacketReceived(byte[] data) {
+        onPacketReceived(data, null);
+    }
+
+    /**
+     * Parses a received datagram and registers its packets. Segments of reliable transfers are acknowledged to
+     * their sender, and their payload is registered only the first time they arrive. Fragments are kept until
+     * their packet is complete.
+     * @param data Datagram data.
+     * @param sender Sender's address and port, or null if unknown (e.g. when replaying captured packets).
+     * @see ReliableReceiver
+     * @see FragmentReassembler
+     */
+    public void onPacketReceived(byte[] data, InetSocketAddress sender) {
+        mReceivedCount.incrementAndGet();
+        if (ReliableReceiver.isAck(data)) {
+            // acknowledgments are received by the sender's socket
+            mRejectedCount.incrementAndGet();
+            return;
+        }
+        if (ReliableReceiver.isSegment(data)) {
+            final FindProtos.TransferSegment segment;
             try {
-                // build incoming packet
-                incomingPacket = FindProtos.TransportPacket.parseFrom(Arrays.copyOf(udpPacket.getData(), udpPacket.getLength()));
+                segment = FindProtos.TransferSegment.parseFrom(data);
             } catch (InvalidProtocolBufferException e) {
-                // not a TransportPacket, skip
-                continue;
+                mRejectedCount.incrementAndGet();
+                return;
+            }
+            if (sender != null) {
+                final boolean isNew = mReliableReceiver.onSegment(segment, sender);
+                sendAck(mReliableReceiver.getAck(segment.getTransferId(), sender), sender);
+                if (!isNew) {
+                    // duplicate, its packets were registered already
+                    return;
+                }
             }
+            data = segment.getPayload().toByteArray();
+        }
+        if (PacketFragmenter.isFragment(data)) {
+            final FindProtos.TransportFragment fragment;
+            try {
+                fragment = FindProtos.TransportFragment.parseFrom(data);
+            } catch (InvalidProtocolBufferException e) {
+                mRejectedCount.incrementAndGet();
+                return;
+            }
+            data = mFragmentReassembler.add(fragment);
+            if (data == null) {
+                // packet not complete yet
+                return;
+            }
+        }
 
-            // calculate packet queues to put the incoming packet into
-            final List<FullContract.PacketQueues> queue = new ArrayList<>();
+        final List<FindProtos.TransportPacket> incomingPackets;
+        try {
+            // build incoming packets
+            incomingPackets = TransportBundler.parse(data);
+        } catch (InvalidProtocolBufferException e) {
+            // not a TransportPacket nor a TransportBundle, skip
+            mRejectedCount.incrementAndGet();
+            return;
+        }
 
+        final List<FindProtos.TransportPacket> acceptedPackets = new ArrayList<>(incomingPackets.size());
+        final List<FullContract.PacketQueues[]> acceptedQueues = new ArrayList<>(incomingPackets.size());
+        for (FindProtos.TransportPacket incomingPacket : incomingPackets) {
             // are we the target node?
             final boolean isReceiver = (incomingPacket.hasTargetNode() && Arrays.equals(
                     incomingPacket.getTargetNode().toByteArray(), mIdentity.getPublicKey()));
@@ -118,36 +339,112 @@ public class PacketReceiver extends InterruptibleFailsafeRunnable {
             // do we support this protocol?
             final boolean supportedProtocol = mProtocolRegistry.hasProtocolImplementations(protocol);
 
-            if (isReceiver) {
-                // we are the target!
-                if (!supportedProtocol) {
-                    // The packet is targeted at us, but there is no client app installed
-                    // which implements the protocol (otherwise, the 'if' clause would have
-                    // consumed the packet already) - reject this packet.
-                    Log.v(TAG, "Rejecting incoming packet, protocol unknown");
-                    continue;
-                }
-
-                // add it to the queue
-                Log.v(TAG, "Adding incoming packet (targeted) to INCOMING queue");
-                queue.add(FullContract.PacketQueues.INCOMING);
-            } else {
-                // no target node always means "FORWARDING"
-                Log.v(TAG, "Adding incoming packet to FORWARDING queue");
-                queue.add(FullContract.PacketQueues.FORWARDING);
-
-                if (!incomingPacket.hasTargetNode() && supportedProtocol) {
-                    // if we support the protocol and the packet has no target, then add it to incoming
-                    Log.v(TAG, "Adding incoming packet (untargeted) to INCOMING queue");
-                    queue.add(FullContract.PacketQueues.INCOMING);
-                }
+            // calculate packet queues to put the incoming packet into
+            final List<FullContract.PacketQueues> queue =
+                    selectQueues(isReceiver, incomingPacket.hasTargetNode(), supportedProtocol);
+            if (queue.isEmpty()) {
+                mRejectedCount.incrementAndGet();
+                continue;
             }
+            acceptedPackets.add(incomingPacket);
+            acceptedQueues.add(queue.toArray(new FullContract.PacketQueues[] {}));
+        }
+        if (acceptedPackets.isEmpty()) {
+            return;
+        }
 
-            // register packet in queue list
-            mPacketRegistry.registerIncomingPacket(incomingPacket, queue.toArray(new FullContract.PacketQueues[] {}));
+        // register packets in queue lists
+        mPacketRegistry.registerIncomingPackets(acceptedPackets, acceptedQueues);
+        mRegisteredCount.addAndGet(acceptedPackets.size());
+    }
+
+    /**
+     * Sends the acknowledgment of a reliable transfer to its sender.
+     * @param ack Acknowledgment.
+     * @param sender Sender's address and port.
+     */
+    private void sendAck(FindProtos.TransferAck ack, InetSocketAddress sender) {
+        if (mSenderSocketPool == null) {
+            return;
+        }
+        final byte[] data = ack.toByteArray();
+        try {
+            mSenderSocketPool.getSocket(SenderSocketPool.Purpose.PACKET, null)
+                    .send(new DatagramPacket(data, data.length, sender));
+        } catch (IOException e) {
+            Log.e(TAG, "Could not acknowledge transfer to " + sender, e);
         }
+    }
 
-        // close socket when we are interrupted
-        socket.close();
+    /**
+     * Returns the number of datagrams received. A datagram may hold several packets.
+     * @return Number of datagrams.
+     */
+    public long getReceivedPackets() {
+        return mReceivedCount.get();
+    }
+
+    /**
+     * Returns the number of packets registered in the {@link PacketRegistry}.
+     * @return Number of packets.
+     */
+    public long getRegisteredPackets() {
+        return mRegisteredCount.get();
+    }
+
+    /**
+     * Returns the number of datagrams rejected because they were not packets, plus the number of packets
+     * no queue accepted.
+     * @return Number of datagrams and packets.
+     */
+    public long getRejectedPackets() {
+        return mRejectedCount.get();
+    }
+
+    /**
+     * Returns the number of datagrams received through the {@link UdpReceiveEngine} that were dropped because
+     * the worker thread was behind.
+     * @return Number of datagrams.
+     */
+    public long getDroppedPackets() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * Returns the queues an incoming packet is put into. Also used by the simulator.
+     * @param isReceiver Whether we are the packet's target node.
+     * @param hasTarget Whether the packet has a target node.
+     * @param supportedProtocol Whether we support the packet's protocol.
+     * @return Packet queues; empty if the packet is rejected.
+     */
+    public static List<FullContract.PacketQueues> selectQueues(boolean isReceiver, boolean hasTarget,
+                                                               boolean supportedProtocol) {
+        final List<FullContract.PacketQueues> queue = new ArrayList<>();
+
+        if (isReceiver) {
+            // we are the target!
+            if (!supportedProtocol) {
+                // The packet is targeted at us, but there is no client app installed
+                // which implements the protocol (otherwise, the 'if' clause would have
+                // consumed the packet already) - reject this packet.
+                Log.v(TAG, "Rejecting incoming packet, protocol unknown");
+                return queue;
+            }
+
+            // add it to the queue
+            Log.v(TAG, "Adding incoming packet (targeted) to INCOMING queue");
+            queue.add(FullContract.PacketQueues.INCOMING);
+        } else {
+            // no target node always means "FORWARDING"
+            Log.v(TAG, "Adding incoming packet to FORWARDING queue");
+            queue.add(FullContract.PacketQueues.FORWARDING);
+
+            if (!hasTarget && supportedProtocol) {
+                // if we support the protocol and the packet has no target, then add it to incoming
+                Log.v(TAG, "Adding incoming packet (untargeted) to INCOMING queue");
+                queue.add(FullContract.PacketQueues.INCOMING);
+            }
+        }
+        return queue;
     }
 }
@@ -10,7 +10,10 @@ import com.google.common.collect.Multimap;
 import com.google.protobuf.ByteString;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import ul.fcul.lasige.find.apps.ProtocolRegistry;
@@ -146,47 +149,83 @@ public class PacketRegistry {
      * @param queues Queues to be added to.
      */
     public void registerIncomingPacket(TransportPacket packet, PacketQueues... queues) {
-        // get public key
-        final byte[] senderPublicKey = packet.getSourceNode().toByteArray();
-
-        // check MAC if provided
-        if (packet.hasMac()) {
-            // it is! packet is signed
-            final ByteString mac = packet.getMac();
-            final byte[] signedPacket = packet.toBuilder().clearMac().build().toByteArray();
-
-            boolean success = false;
-            try {
-                success = CryptoHelper.verify(signedPacket, mac.toByteArray(), senderPublicKey);
-            } catch (RuntimeException e) {
-                Log.d(TAG, e.getLocalizedMessage());
-            }
+        registerIncomingPackets(Collections.singletonList(packet), Collections.singletonList(queues));
+    }
 
-            if (!success) {
-                Log.w(TAG, "Rejecting packet: Could not verify signed data.");
-                // not properly signed, ignore
-                return;
+    /**
+     * Adds several packets from neighbors (e.g. the contents of a
+     * {@link ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle}) to platform and given queues, in
+     * a single database transaction.
+     *
+     * <p>Signed packets (with a mac address) whose signed data cannot be verified are skipped.</p>
+     *
+     * @param packets Packets.
+     * @param queues Queues each packet is added to, in the same order as the packets.
+     */
+    public void registerIncomingPackets(List<TransportPacket> packets, List<PacketQueues[]> queues) {
+        final List<TransportPacket> verifiedPackets = new ArrayList<>(packets.size());
+        final List<PacketQueues[]> verifiedQueues = new ArrayList<>(packets.size());
+
+        for (int i = 0; i < packets.size(); i++) {
+            if (verifyMac(packets.get(i))) {
+                verifiedPackets.add(packets.get(i));
+                verifiedQueues.add(queues.get(i));
             }
         }
+        if (verifiedPackets.isEmpty()) {
+            return;
+        }
 
         synchronized (LOCK) {
-            // insert packet data in database
-            final long incomingPacketId = mDbController.insertIncomingPacket(packet, queues);
-            if (incomingPacketId > 0) {
-                // success
-                // add it to forwarding queue, if applicable
-                for (PacketQueues queue : queues) {
-                    if (queue == PacketQueues.FORWARDING) {
-                        mForwardingPackets.add(incomingPacketId);
-                        break;
+            // insert packets data in database
+            final long[] incomingPacketIds = mDbController.insertIncomingPackets(verifiedPackets, verifiedQueues);
+            for (int i = 0; i < incomingPacketIds.length; i++) {
+                if (incomingPacketIds[i] > 0) {
+                    // success
+                    // add it to forwarding queue, if applicable
+                    for (PacketQueues queue : verifiedQueues.get(i)) {
+                        if (queue == PacketQueues.FORWARDING) {
+                            mForwardingPackets.add(incomingPacketIds[i]);
+                            break;
+                        }
                     }
-                }
 
-                Log.v(TAG, "Received packet for protocol " + mProtocolRegistry.getProtocolNameFromPacket(packet));
+                    Log.v(TAG, "Received packet for protocol "
+                            + mProtocolRegistry.getProtocolNameFromPacket(verifiedPackets.get(i)));
+                }
             }
         }
     }
 
+    /**
+     * Verifies the signed data of a packet, if it is signed.
+     * @param packet Packet.
+     * @return true if the packet is not signed or properly signed, false otherwise.
+     */
+    private static boolean verifyMac(TransportPacket packet) {
+        // check MAC if provided
+        if (!packet.hasMac()) {
+            return true;
+        }
+
+        // it is! packet is signed
+        final byte[] senderPublicKey = packet.getSourceNode().toByteArray();
+        final ByteString mac = packet.getMac();
+        final byte[] signedPacket = packet.toBuilder().clearMac().build().toByteArray();
+
+        boolean success = false;
+        try {
+            success = CryptoHelper.verify(signedPacket, mac.toByteArray(), senderPublicKey);
+        } catch (RuntimeException e) {
+            Log.d(TAG, e.getLocalizedMessage());
+        }
+
+        if (!success) {
+            Log.w(TAG, "Rejecting packet: Could not verify signed data.");
+        }
+        return success;
+    }
+
     /**
      * Registers an outgoing packet to be send to neighbors.
      * @param implementation {@link ClientImplementation} object.
@@ -227,18 +266,10 @@ public class PacketRegistry {
      * @return Set of packet ids.
      */
     public Set<Long> getInterestingPacketIds(Neighbor neighbor) {
-        // All FORWARDING packets are interesting
-        final HashSet<Long> interestingPacketIds = new HashSet<>(mForwardingPackets);
+        final Set<Long> interestingPacketIds;
         synchronized (LOCK) {
-            // Also, all broadcasting packets
-            interestingPacketIds.addAll(mUnencryptedBroadcastingPackets);
-
-            // Additionally, all packets with protocols supported by the neighbor are interesting (may
-            // be overlapping with FORWARDING packets, which is why we're using a HashSet in the first
-            // place.
-            for (ByteBuffer protocol : neighbor.getSupportedProtocols()) {
-                interestingPacketIds.addAll(mOutgoingPacketProtocolsMap.get(protocol));
-            }
+            interestingPacketIds = selectInterestingPackets(mForwardingPackets, mUnencryptedBroadcastingPackets,
+                    mOutgoingPacketProtocolsMap, neighbor.getSupportedProtocols());
         }
 
         Log.v(TAG, String.format(
@@ -248,6 +279,33 @@ public class PacketRegistry {
         return interestingPacketIds;
     }
 
+    /**
+     * Selects the packets that should be sent to a neighbor with a given set of protocols. Also used by
+     * the simulator.
+     * @param forwardingPackets Forwarding packets' ids.
+     * @param broadcastingPackets Broadcast (not encrypted and without a target) packets' ids.
+     * @param packetsByProtocol Outgoing packets' ids, by protocol.
+     * @param neighborProtocols Protocols supported by the neighbor.
+     * @return Set of packet ids.
+     * @see #getInterestingPacketIds(Neighbor)
+     */
+    public static Set<Long> selectInterestingPackets(Set<Long> forwardingPackets, Set<Long> broadcastingPackets,
+                                                     Multimap<ByteBuffer, Long> packetsByProtocol,
+                                                     Set<ByteBuffer> neighborProtocols) {
+        // All FORWARDING packets are interesting
+        final HashSet<Long> interestingPacketIds = new HashSet<>(forwardingPackets);
+        // Also, all broadcasting packets
+        interestingPacketIds.addAll(broadcastingPackets);
+
+        // Additionally, all packets with protocols supported by the neighbor are interesting (may
+        // be overlapping with FORWARDING packets, which is why we're using a HashSet in the first
+        // place.
+        for (ByteBuffer protocol : neighborProtocols) {
+            interestingPacketIds.addAll(packetsByProtocol.get(protocol));
+        }
+        return interestingPacketIds;
+    }
+
     /**
      * Retrieves all outgoing packets' ids existing in the platform since a given timestamp.
      * @param timestamp Timestamp.
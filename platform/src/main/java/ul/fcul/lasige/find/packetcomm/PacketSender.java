@@ -0,0 +1,429 @@
+package ul.fcul.lasige.find.packetcomm;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.protobuf.ByteString;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.abstractj.kalium.keys.PrivateKey;
+import org.abstractj.kalium.keys.SigningKey;
+
+import ul.fcul.lasige.find.apps.ProtocolRegistry;
+import ul.fcul.lasige.find.beaconing.BeaconingManager;
+import ul.fcul.lasige.find.crypto.CryptoHelper;
+import ul.fcul.lasige.find.data.ClientImplementation;
+import ul.fcul.lasige.find.data.ConfigurationStore;
+import ul.fcul.lasige.find.data.DbController;
+import ul.fcul.lasige.find.data.NeighborTable;
+import ul.fcul.lasige.find.lib.data.Neighbor;
+import ul.fcul.lasige.find.network.NetworkManager;
+import ul.fcul.lasige.find.network.SenderSocketPool;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos;
+
+/**
+ * Sends packets to neighbors in per-neighbor sessions, on a dedicated thread.
+ *
+ * <p>Packets scheduled for a neighbor are collected until its session runs; the session then loads all
+ * of them with a single query, encrypts and/or signs them with keys loaded once, packs them into as few
+ * datagrams as possible ({@link TransportBundler}), streams them through the packet socket, and updates the neighbor's last packet timestamp once at the end. Packets
+ * scheduled while a session is running are sent by the next session of that neighbor. Packets too large for a
+ * datagram are sent as fragments ({@link PacketFragmenter}).</p>
+ *
+ * <p>Optionally, datagrams are sent in a {@link ReliableSender reliable transfer}; the neighbor's last packet
+ * timestamp then only advances past acknowledged packets.</p>
+ *
+ * <p>The WiFi lock is taken when a session is scheduled for a neighbor reachable through WiFi, and
+ * released when the session ends.</p>
+ */
+public class PacketSender {
+    private static final String TAG = PacketSender.class.getSimpleName();
+
+    // receiving port
+    public static final int PACKET_RECEIVING_PORT = 3109;
+
+    // number of packets sent since the platform started
+    private static final AtomicLong sSentCount = new AtomicLong();
+
+    private final Context mContext;
+    // database controller
+    private final DbController mDbController;
+    // neighbors
+    private final NeighborTable mNeighborTable;
+    // pool holding the socket used to send packets
+    private final SenderSocketPool mSenderSocketPool;
+    // protocol registry to get access to client implementations (protocol - app)
+    private final ProtocolRegistry mProtocolRegistry;
+    // beaconing manager to get access to wifi locks
+    private final BeaconingManager mBeaconingManager;
+    // our public key, to sign only our own packets
+    private final byte[] mNodeId;
+    // size budget of datagrams holding several packets; 0 sends one packet per datagram
+    private final int mBundleSizeBudget;
+    // whether datagrams are sent in reliable transfers
+    private final boolean mReliableTransfer;
+    // whether packets too large for a datagram are sent as fragments
+    private final boolean mFragmentation;
+    // source of transfer ids
+    private final Random mRandom = new Random();
+    // thread running the sessions
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    // packets waiting to be sent, per neighbor raw id; a neighbor has an entry while its session is scheduled
+    private final Map<Long, Set<Long>> mPendingPackets = new HashMap<>();
+
+    /**
+     * Constructor.
+     * @param context Application context.
+     * @param beaconingManager Beaconing manager, to lock WiFi while sending.
+     * @param nodeId Our public key.
+     */
+    public PacketSender(Context context, BeaconingManager beaconingManager, byte[] nodeId) {
+        mContext = context.getApplicationContext();
+        mDbController = new DbController(mContext);
+        mNeighborTable = NeighborTable.getInstance(mContext);
+        mSenderSocketPool = NetworkManager.getInstance(mContext).getSenderSocketPool();
+        mProtocolRegistry = ProtocolRegistry.getInstance(mContext);
+        mBeaconingManager = beaconingManager;
+        mNodeId = nodeId;
+        mBundleSizeBudget = (ConfigurationStore.isPacketBundlingEnabled(mContext)
+                ? TransportBundler.DEFAULT_SIZE_BUDGET : 0);
+        mReliableTransfer = ConfigurationStore.isReliableTransferEnabled(mContext);
+        mFragmentation = ConfigurationStore.isPacketFragmentationEnabled(mContext);
+    }
+
+    /**
+     * Returns the number of packets sent to neighbors since the platform started.
+     * @return Number of packets.
+     */
+    public static long getSentPackets() {
+        return sSentCount.get();
+    }
+
+    /**
+     * Schedules packets to be sent to a neighbor. If a session for the neighbor is already scheduled
+     * and has not started yet, the packets are added to it.
+     * @param neighbor Neighbor.
+     * @param packetIds Packet ids.
+     */
+    public synchronized void send(Neighbor neighbor, Collection<Long> packetIds) {
+        if (packetIds.isEmpty()) {
+            return;
+        }
+
+        final long neighborId = neighbor.getRawId();
+        Set<Long> pending = mPendingPackets.get(neighborId);
+        if (pending != null) {
+            // session not started yet, it will send these as well
+            pending.addAll(packetIds);
+            return;
+        }
+
+        // neighbor is in a WiFi network, lock connection until the session ends
+        final boolean lockWifi = neighbor.hasLastSeenNetwork();
+        if (lockWifi) {
+            mBeaconingManager.setWifiConnectionLocked(true);
+        }
+
+        pending = new LinkedHashSet<>(packetIds);
+        mPendingPackets.put(neighborId, pending);
+        try {
+            mExecutor.execute(new SendSession(neighborId, lockWifi));
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            mPendingPackets.remove(neighborId);
+            if (lockWifi) {
+                mBeaconingManager.setWifiConnectionLocked(false);
+            }
+        }
+    }
+
+    /**
+     * Stops sending packets. Sessions not started yet are discarded and release their WiFi lock.
+     */
+    public void shutdown() {
+        for (Runnable discarded : mExecutor.shutdownNow()) {
+            if (discarded instanceof SendSession && ((SendSession) discarded).mLockedWifi) {
+                mBeaconingManager.setWifiConnectionLocked(false);
+            }
+        }
+        synchronized (this) {
+            mPendingPackets.clear();
+        }
+    }
+
+    /**
+     * Takes the packets waiting to be sent to a neighbor; packets scheduled afterwards start a new session.
+     * @param neighborId Neighbor raw id.
+     * @return Packet ids, or null if there are none.
+     */
+    private synchronized Set<Long> takePendingPackets(long neighborId) {
+        return mPendingPackets.remove(neighborId);
+    }
+
+    /**
+     * Sends all pending packets to a neighbor.
+     */
+    private class SendSession implements Runnable {
+        private final long mNeighborId;
+        // whether the WiFi lock was taken for this session
+        private final boolean mLockedWifi;
+
+        SendSession(long neighborId, boolean lockedWifi) {
+            mNeighborId = neighborId;
+            mLockedWifi = lockedWifi;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final Set<Long> packetIds = takePendingPackets(mNeighborId);
+                if (packetIds == null) {
+                    return;
+                }
+
+                // get neighbor
+                final Neighbor neighbor;
+                try {
+                    neighbor = mNeighborTable.getNeighbor(mNeighborId);
+                } catch (IllegalArgumentException e) {
+                    Log.e(TAG, "Invalid neighbor ID: " + mNeighborId);
+                    return;
+                }
+                if (!neighbor.hasLastSeenNetwork()) {
+                    // no wifi connection
+                    // TODO: Data exchange is currently only supported over Wifi
+                    Log.v(TAG, "neighbor is only reachable via bluetooth, we're not able to send packets");
+                    return;
+                }
+
+                sendPackets(neighbor, packetIds);
+            } finally {
+                // release wifi lock
+                if (mLockedWifi) {
+                    mBeaconingManager.setWifiConnectionLocked(false);
+                }
+            }
+        }
+
+        /**
+         * Loads, prepares and sends packets to a neighbor, and updates its last packet timestamp.
+         * @param neighbor Neighbor.
+         * @param packetIds Packet ids.
+         */
+        private void sendPackets(Neighbor neighbor, Set<Long> packetIds) {
+            // load all packets at once; packets that do not exist anymore are skipped
+            final List<OutgoingPacket> packets = mDbController.getPacketsForSending(packetIds);
+            if (packets.size() < packetIds.size()) {
+                Log.e(TAG, (packetIds.size() - packets.size()) + " packets do not exist anymore, we will skip them");
+            }
+            if (packets.isEmpty()) {
+                return;
+            }
+
+            Log.v(TAG, "Preparing " + packets.size() + " packets to be sent to neighbor " + neighbor);
+
+            final DatagramSocket socket;
+            try {
+                socket = mSenderSocketPool.getSocket(SenderSocketPool.Purpose.PACKET, null);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not get socket to send packets to neighbor " + mNeighborId, e);
+                return;
+            }
+
+            // keys and protocol details are loaded once per session
+            PrivateKey encryptionKey = null;
+            SigningKey signingKey = null;
+            final Map<ByteBuffer, ClientImplementation> implementations = new HashMap<>();
+
+            // packets are sent in as few datagrams as possible
+            final TransportBundler bundler = new TransportBundler(mBundleSizeBudget);
+            // datagrams, and the packets in each of them
+            final List<byte[]> datagrams = new ArrayList<>();
+            final List<List<OutgoingPacket>> datagramPackets = new ArrayList<>();
+            List<OutgoingPacket> bundledPackets = new ArrayList<>();
+            for (OutgoingPacket outgoing : packets) {
+                final FindProtos.TransportPacket.Builder builder = outgoing.getBuilder();
+
+                // get protocol details
+                final ByteBuffer protocol = builder.getProtocol().asReadOnlyByteBuffer();
+                if (!implementations.containsKey(protocol)) {
+                    final Set<ClientImplementation> protocolImplementations =
+                            mProtocolRegistry.getProtocolImplementations(builder.getProtocol().toByteArray());
+                    implementations.put(protocol,
+                            protocolImplementations.isEmpty() ? null : protocolImplementations.iterator().next());
+                }
+                final ClientImplementation impl = implementations.get(protocol);
+
+                // encrypt and/or sign, if necessary
+                if (impl != null) {
+                    // encrypt
+                    if (impl.isEncrypted()) {
+                        if (encryptionKey == null) {
+                            encryptionKey = ConfigurationStore.getMasterEncryptionKey(mContext);
+                        }
+                        final byte[] ciphertext = CryptoHelper.encrypt(
+                                encryptionKey, builder.getData().toByteArray(), neighbor.getNodeId());
+                        builder.setData(ByteString.copyFrom(ciphertext));
+                    }
+
+                    if (impl.isSigned() && Arrays.equals(mNodeId, builder.getSourceNode().toByteArray())) {
+                        // only change/set the MAC if we're not forwarding an already signed packet. we only sign our own packets
+                        if (signingKey == null) {
+                            signingKey = ConfigurationStore.getMasterSigningKey(mContext);
+                        }
+                        // set mac - we use the mac field to sign packets
+                        builder.clearMac();
+                        final byte[] mac = CryptoHelper.sign(signingKey, builder.buildPartial().toByteArray());
+                        builder.setMac(ByteString.copyFrom(mac));
+                    }
+                }
+
+                // TODO send packet to local apps? they may be listening for the same protocols ..
+
+                // packets too large for a datagram are sent as fragments, each in its own datagram, if enabled;
+                // otherwise they are sent in a single datagram, as neighbors without fragments expect
+                final FindProtos.TransportPacket packet = builder.build();
+                if (mFragmentation && PacketFragmenter.needsFragmentation(packet)) {
+                    if (packet.getSerializedSize() > PacketFragmenter.MAX_PACKET_SIZE) {
+                        Log.e(TAG, "Packet " + outgoing.getPacketId() + " is too large to be sent, we will skip it");
+                        continue;
+                    }
+                    final List<OutgoingPacket> fragmentedPacket = Collections.singletonList(outgoing);
+                    for (byte[] fragment : PacketFragmenter.fragment(packet, PacketFragmenter.DEFAULT_FRAGMENT_SIZE)) {
+                        datagrams.add(fragment);
+                        datagramPackets.add(fragmentedPacket);
+                    }
+                    continue;
+                }
+
+                // add packet to the current datagram, and close the previous one if it is full
+                final byte[] datagram = bundler.add(packet);
+                if (datagram != null) {
+                    datagrams.add(datagram);
+                    datagramPackets.add(bundledPackets);
+                    bundledPackets = new ArrayList<>();
+                }
+                bundledPackets.add(outgoing);
+            }
+            final byte[] lastDatagram = bundler.flush();
+            if (lastDatagram != null) {
+                datagrams.add(lastDatagram);
+                datagramPackets.add(bundledPackets);
+            }
+
+            // send datagrams, reliably if enabled
+            final boolean[] delivered;
+            if (mReliableTransfer) {
+                delivered = sendReliably(socket, datagrams, neighbor);
+            } else {
+                delivered = new boolean[datagrams.size()];
+                for (int i = 0; i < datagrams.size(); i++) {
+                    delivered[i] = sendDatagram(socket, datagrams.get(i), neighbor);
+                }
+            }
+
+            // a packet is delivered when all datagrams holding it, or its fragments, are
+            final Map<OutgoingPacket, Boolean> packetDelivered = new LinkedHashMap<>();
+            for (int i = 0; i < datagrams.size(); i++) {
+                for (OutgoingPacket outgoing : datagramPackets.get(i)) {
+                    final Boolean previous = packetDelivered.get(outgoing);
+                    packetDelivered.put(outgoing, delivered[i] && (previous == null || previous));
+                }
+            }
+
+            // delivery state is only recorded for delivered packets
+            int sent = 0;
+            long oldestSentTime = Long.MAX_VALUE;
+            long oldestUndeliveredTime = Long.MAX_VALUE;
+            for (Map.Entry<OutgoingPacket, Boolean> entry : packetDelivered.entrySet()) {
+                final long timeReceived = entry.getKey().getTimeReceived();
+                if (entry.getValue()) {
+                    sent++;
+                    oldestSentTime = Math.min(oldestSentTime, timeReceived);
+                } else {
+                    oldestUndeliveredTime = Math.min(oldestUndeliveredTime, timeReceived);
+                }
+            }
+            Log.v(TAG, "\tsent " + sent + " of " + packets.size() + " packets");
+            if (sent == 0) {
+                return;
+            }
+            sSentCount.addAndGet(sent);
+
+            // update last packet sent timestamp (this is used to be able to send only new packet next time)
+            // we only update time when no outgoing packet since the neighbor's timestamp is older than the packets
+            // sent, otherwise the older packets wouldn't be sent; if some packets were not delivered, the
+            // timestamp stops at the oldest of them, so that they are sent again next time
+            final long oldestOutgoingTime = mDbController.getOldestOutgoingPacketTime(neighbor.getTimeLastPacket());
+            if (oldestOutgoingTime < 0 || oldestOutgoingTime >= oldestSentTime) {
+                long now = System.currentTimeMillis() / 1000;
+                final long timeLastPacket = Math.min(now, oldestUndeliveredTime);
+                if (timeLastPacket > neighbor.getTimeLastPacket()) {
+                    mNeighborTable.updateNeighborLastPacket(neighbor.getNodeId(), timeLastPacket);
+                }
+            }
+        }
+
+        /**
+         * Sends datagrams to a neighbor in a reliable transfer.
+         * @param socket Socket, which also receives the acknowledgments.
+         * @param datagrams Datagram data.
+         * @param neighbor Neighbor.
+         * @return For each datagram, whether it was acknowledged.
+         */
+        private boolean[] sendReliably(DatagramSocket socket, List<byte[]> datagrams, Neighbor neighbor) {
+            // a neighbor that left holds up sessions with other neighbors for at most ReliableSender.SILENCE_MILLIS;
+            // packets not acknowledged are sent again in its next session
+            final ReliableSender transfer =
+                    new ReliableSender(socket, neighbor.getAnyIpAddress(), PACKET_RECEIVING_PORT, mRandom);
+            try {
+                final boolean[] acked = transfer.send(datagrams);
+                Log.v(TAG, String.format("\treliable transfer: %d segments sent, %d retransmitted, %d timeouts, "
+                                + "rtt %.0f ms", transfer.getTransmissions(), transfer.getRetransmissions(),
+                        transfer.getTimeouts(), transfer.getSmoothedRtt()));
+                return acked;
+            } catch (IOException e) {
+                Log.e(TAG, "Error in reliable transfer to neighbor " + mNeighborId, e);
+                return new boolean[datagrams.size()];
+            }
+        }
+
+        /**
+         * Sends a datagram holding one or more packets to a neighbor.
+         * @param socket Socket.
+         * @param datagram Datagram data.
+         * @param neighbor Neighbor.
+         * @return true if sent, false otherwise.
+         */
+        private boolean sendDatagram(DatagramSocket socket, byte[] datagram, Neighbor neighbor) {
+            final DatagramPacket rawPacket = new DatagramPacket(
+                    datagram, datagram.length, neighbor.getAnyIpAddress(), PACKET_RECEIVING_PORT);
+            try {
+                socket.send(rawPacket);
+                return true;
+            } catch (IOException e) {
+                Log.e(TAG, "Error while sending " + datagram.length + " bytes to neighbor " + mNeighborId, e);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ul.fcul.lasige.find.packetcomm;
+
+import java.net.InetSocketAddress;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment;
+
+/**
+ * Receiving side of reliable transfers (see {@link ReliableSender}). It keeps, per sender and transfer, which
+ * {@link TransferSegment}s were received, so that duplicates are delivered only once, and builds the
+ * {@link TransferAck}s sent back to the sender: a cumulative acknowledgment, selective acknowledgments and the
+ * missing segments below the highest one received.
+ *
+ * <p>Segments are delivered as soon as they arrive, in any order, since the packets they carry are independent.
+ * Memory is bounded: segments more than {@link #MAX_WINDOW} above the cumulative acknowledgment are dropped, at
+ * most {@link #MAX_TRANSFERS} transfers are tracked (the least recently active is forgotten first), and
+ * transfers idle for a minute are forgotten.</p>
+ */
+public class ReliableReceiver {
+    private static final String TAG = ReliableReceiver.class.getSimpleName();
+
+    // number of segments above the cumulative acknowledgment that are accepted
+    public static final int MAX_WINDOW = 128;
+    // maximum number of transfers tracked
+    public static final int MAX_TRANSFERS = 32;
+    // time after which an idle transfer is forgotten
+    private static final long TRANSFER_TIMEOUT_MILLIS = 60 * 1000;
+
+    /**
+     * Identifies a transfer: the sender's address and port and the transfer id.
+     */
+    private static final class TransferKey {
+        private final InetSocketAddress mSender;
+        private final int mTransferId;
+
+        TransferKey(InetSocketAddress sender, int transferId) {
+            mSender = sender;
+            mTransferId = transferId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TransferKey)) {
+                return false;
+            }
+            final TransferKey other = (TransferKey) o;
+            return mTransferId == other.mTransferId && mSender.equals(other.mSender);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mSender.hashCode() + mTransferId;
+        }
+    }
+
+    /**
+     * Segments received in a transfer.
+     */
+    private static final class TransferState {
+        // all segments below this were received
+        int mCumulative;
+        // segments received above the cumulative acknowledgment, as offsets from it
+        BitSet mReceived = new BitSet();
+        long mLastActivityMillis;
+    }
+
+    // transfers, least recently active first
+    private final LinkedHashMap<TransferKey, TransferState> mTransfers =
+            new LinkedHashMap<TransferKey, TransferState>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<TransferKey, TransferState> eldest) {
+                    return size() > MAX_TRANSFERS;
+                }
+            };
+
+    /**
+     * Returns whether received data is a {@link TransferSegment}, by looking at its first tag.
+     * @param data Datagram data.
+     * @return true if it is a segment, false otherwise.
+     */
+    public static boolean isSegment(byte[] data) {
+        return TransportBundler.getFirstFieldNumber(data) == TransferSegment.TRANSFER_ID_FIELD_NUMBER;
+    }
+
+    /**
+     * Returns whether received data is a {@link TransferAck}, by looking at its first tag.
+     * @param data Datagram data.
+     * @return true if it is an acknowledgment, false otherwise.
+     */
+    public static boolean isAck(byte[] data) {
+        return TransportBundler.getFirstFieldNumber(data) == TransferAck.TRANSFER_ID_FIELD_NUMBER;
+    }
+
+    /**
+     * Records a received segment.
+     * @param segment Segment.
+     * @param sender Sender's address and port.
+     * @return true if the segment is new and its payload should be delivered, false if it is a duplicate or
+     * beyond the receive window.
+     */
+    public synchronized boolean onSegment(TransferSegment segment, InetSocketAddress sender) {
+        final long now = System.currentTimeMillis();
+        expireTransfers(now);
+
+        final TransferKey key = new TransferKey(sender, segment.getTransferId());
+        TransferState state = mTransfers.get(key);
+        if (state == null) {
+            state = new TransferState();
+            mTransfers.put(key, state);
+        }
+        state.mLastActivityMillis = now;
+
+        final int offset = segment.getSequence() - state.mCumulative;
+        if (offset < 0 || offset >= MAX_WINDOW || state.mReceived.get(offset)) {
+            // duplicate, or beyond the window
+            return false;
+        }
+        state.mReceived.set(offset);
+
+        // advance the cumulative acknowledgment
+        final int advance = state.mReceived.nextClearBit(0);
+        if (advance > 0) {
+            state.mCumulative += advance;
+            state.mReceived = state.mReceived.get(advance, Math.max(advance, state.mReceived.length()));
+        }
+        return true;
+    }
+
+    /**
+     * Builds the acknowledgment of a transfer, reporting all segments received so far.
+     * @param transferId Transfer id.
+     * @param sender Sender's address and port.
+     * @return Acknowledgment.
+     */
+    public synchronized TransferAck getAck(int transferId, InetSocketAddress sender) {
+        final TransferAck.Builder ack = TransferAck.newBuilder()
+                .setTransferId(transferId)
+                .setWindow(MAX_WINDOW);
+
+        final TransferState state = mTransfers.get(new TransferKey(sender, transferId));
+        if (state == null) {
+            return ack.setCumulativeAck(0).build();
+        }
+
+        ack.setCumulativeAck(state.mCumulative);
+        final int highest = state.mReceived.length();
+        for (int offset = 0; offset < highest; offset++) {
+            if (state.mReceived.get(offset)) {
+                ack.addSelectiveAcks(state.mCumulative + offset);
+            } else {
+                ack.addMissing(state.mCumulative + offset);
+            }
+        }
+        return ack.build();
+    }
+
+    /**
+     * Returns the number of transfers tracked.
+     * @return Number of transfers.
+     */
+    public synchronized int getTransferCount() {
+        return mTransfers.size();
+    }
+
+    /**
+     * Forgets transfers idle for too long.
+     * @param now Current time, in milliseconds.
+     */
+    private void expireTransfers(long now) {
+        final Iterator<TransferState> it = mTransfers.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().mLastActivityMillis > TRANSFER_TIMEOUT_MILLIS) {
+                it.remove();
+            } else {
+                // least recently active first, the others are more recent
+                break;
+            }
+        }
+    }
+}
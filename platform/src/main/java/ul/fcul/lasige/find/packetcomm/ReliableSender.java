@@ -0,0 +1,380 @@
+package ul.fcul.lasige.find.packetcomm;
+
+import android.util.Log;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment;
+
+/**
+ * Sending side of a reliable transfer of datagrams to a neighbor's packet port. Each datagram is sent as a
+ * sequence-numbered {@link TransferSegment}; the neighbor's {@link ReliableReceiver} answers every segment with
+ * a {@link TransferAck} (cumulative, selective and negative acknowledgments), which arrives on the same socket.
+ *
+ * <p>Segments are sent within a sliding window, bounded by the receiver's window and by a congestion window
+ * that grows with acknowledgments (slow start, then additive increase). Segments reported missing by the
+ * receiver, or not acknowledged within the retransmission timeout, are considered lost and retransmitted before
+ * new segments. Missing segments shrink the congestion window once per window of data; a timeout shrinks it to
+ * a single segment and doubles the timeout until new data is acknowledged. The timeout otherwise follows the
+ * measured round-trip time (RFC 6298, sampling only segments sent once and not yet considered lost, the most
+ * recent one per acknowledgment).</p>
+ *
+ * <p>The transfer gives up when no acknowledgment at all arrived for {@link #SILENCE_MILLIS} (the neighbor
+ * probably left), when no segment was acknowledged for {@link #GIVE_UP_MILLIS}, or when a segment was sent
+ * {@link #MAX_TRANSMISSIONS} times; segments not acknowledged by then are reported as not delivered.</p>
+ */
+public class ReliableSender {
+    private static final String TAG = ReliableSender.class.getSimpleName();
+
+    // retransmission timeout: initial value and bounds
+    private static final long INITIAL_RTO_MILLIS = 250;
+    private static final long MIN_RTO_MILLIS = 40;
+    private static final long MAX_RTO_MILLIS = 300;
+    // initial congestion window and slow start threshold, in segments
+    private static final double INITIAL_WINDOW = 4;
+    private static final double INITIAL_SLOW_START_THRESHOLD = ReliableReceiver.MAX_WINDOW;
+    // factor the congestion window is multiplied by on loss (as in CUBIC, gentler than halving on lossy links)
+    private static final double DECREASE_FACTOR = 0.7;
+    // minimum slow start threshold after a loss, in segments
+    private static final double MIN_SLOW_START_THRESHOLD = 2;
+    // the transfer gives up after this long without any acknowledgment, so that a neighbor that left does not
+    // hold up the sender for long; the backed off timeout is short enough for several retransmissions meanwhile
+    public static final long SILENCE_MILLIS = 3000;
+    // the transfer gives up after this long without progress
+    public static final long GIVE_UP_MILLIS = 10000;
+    // maximum number of times a segment is sent
+    public static final int MAX_TRANSMISSIONS = 20;
+    // receive buffer for acknowledgments
+    private static final int ACK_BUFFER_SIZE = 2048;
+
+    private final DatagramSocket mSocket;
+    private final InetAddress mAddress;
+    private final int mPort;
+    private final int mTransferId;
+
+    // round-trip time estimates and retransmission timeout, in milliseconds
+    private double mSmoothedRtt = -1;
+    private double mRttVariation;
+    private long mRto = INITIAL_RTO_MILLIS;
+    // congestion window and slow start threshold, in segments
+    private double mCongestionWindow = INITIAL_WINDOW;
+    private double mSlowStartThreshold = INITIAL_SLOW_START_THRESHOLD;
+    // receiver's window, in segments
+    private int mReceiverWindow = ReliableReceiver.MAX_WINDOW;
+
+    // statistics
+    private int mTransmissions;
+    private int mRetransmissions;
+    private int mTimeouts;
+
+    /**
+     * Constructor.
+     * @param socket Socket to send segments from and receive acknowledgments on. It is used exclusively by this
+     *               transfer while {@link #send(List)} runs.
+     * @param address Neighbor's address.
+     * @param port Neighbor's packet port.
+     * @param random Source of randomness, for the transfer id.
+     */
+    public ReliableSender(DatagramSocket socket, InetAddress address, int port, Random random) {
+        mSocket = socket;
+        mAddress = address;
+        mPort = port;
+        mTransferId = random.nextInt();
+    }
+
+    /**
+     * Sends datagrams reliably, blocking until all of them are acknowledged or the transfer gives up.
+     * @param payloads Datagram data, each a {@link ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket}
+     *                 or {@link ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle}.
+     * @return For each datagram, whether it was acknowledged.
+     * @throws IOException If the socket failed.
+     */
+    public boolean[] send(List<byte[]> payloads) throws IOException {
+        final int count = payloads.size();
+        final boolean[] acked = new boolean[count];
+        // segments sent and not yet acknowledged nor considered lost, and segments waiting for retransmission
+        final boolean[] inFlight = new boolean[count];
+        final boolean[] lost = new boolean[count];
+        // time each segment was last sent, and how many times
+        final long[] sentAt = new long[count];
+        final int[] transmissions = new int[count];
+
+        // lowest segment not acknowledged, next segment never sent, and segments in flight
+        int base = 0;
+        int next = 0;
+        int outstanding = 0;
+        // no further window reduction until segments sent before the last reduction are acknowledged
+        int recoveryPoint = 0;
+
+        final int previousTimeout = mSocket.getSoTimeout();
+        final byte[] buffer = new byte[ACK_BUFFER_SIZE];
+        final DatagramPacket ackPacket = new DatagramPacket(buffer, buffer.length);
+        long lastProgress = System.currentTimeMillis();
+        long lastAck = lastProgress;
+        try {
+            while (base < count) {
+                if (Thread.currentThread().isInterrupted()) {
+                    Log.v(TAG, "Transfer interrupted");
+                    break;
+                }
+                long now = System.currentTimeMillis();
+
+                // segments in flight for longer than the retransmission timeout are lost
+                boolean timedOut = false;
+                for (int i = base; i < next; i++) {
+                    if (inFlight[i] && now - sentAt[i] >= mRto) {
+                        inFlight[i] = false;
+                        lost[i] = true;
+                        outstanding--;
+                        timedOut = true;
+                    }
+                }
+                if (timedOut) {
+                    // back off
+                    mTimeouts++;
+                    mSlowStartThreshold = Math.max(mCongestionWindow * DECREASE_FACTOR, MIN_SLOW_START_THRESHOLD);
+                    mCongestionWindow = 1;
+                    mRto = Math.min(mRto * 2, MAX_RTO_MILLIS);
+                    recoveryPoint = next;
+                }
+
+                // send while the congestion window allows: lost segments first, then new ones
+                while (outstanding < (int) mCongestionWindow) {
+                    int sequence = -1;
+                    for (int i = base; i < next; i++) {
+                        if (lost[i]) {
+                            sequence = i;
+                            break;
+                        }
+                    }
+                    if (sequence >= 0) {
+                        if (transmissions[sequence] >= MAX_TRANSMISSIONS) {
+                            Log.v(TAG, "Giving up, segment " + sequence + " was sent " + MAX_TRANSMISSIONS + " times");
+                            return acked;
+                        }
+                        lost[sequence] = false;
+                    } else if (next < count && next - base < mReceiverWindow) {
+                        sequence = next++;
+                    } else {
+                        break;
+                    }
+                    sendSegment(payloads, sequence, sentAt, transmissions, now);
+                    inFlight[sequence] = true;
+                    outstanding++;
+                }
+
+                // wait for an acknowledgment until the earliest retransmission timeout
+                long deadline = now + mRto;
+                for (int i = base; i < next; i++) {
+                    if (inFlight[i]) {
+                        deadline = Math.min(deadline, sentAt[i] + mRto);
+                    }
+                }
+                final TransferAck ack = receiveAck(ackPacket, buffer, Math.max(1, deadline - now));
+                now = System.currentTimeMillis();
+                if (ack == null) {
+                    if (now - lastAck > SILENCE_MILLIS) {
+                        Log.v(TAG, "Giving up, no acknowledgments for " + (now - lastAck) + " ms");
+                        break;
+                    }
+                    if (now - lastProgress > GIVE_UP_MILLIS) {
+                        Log.v(TAG, "Giving up, nothing acknowledged for " + (now - lastProgress) + " ms");
+                        break;
+                    }
+                    continue;
+                }
+                lastAck = now;
+                mReceiverWindow = Math.max(1, ack.getWindow());
+
+                // mark acknowledged segments
+                int newlyAcked = 0;
+                long rttSample = -1;
+                // segments from base up to the cumulative acknowledgment, then the selective acknowledgments
+                final int cumulativeCount = Math.max(0, Math.min(ack.getCumulativeAck(), next) - base);
+                for (int i = 0; i < cumulativeCount + ack.getSelectiveAcksCount(); i++) {
+                    final int sequence =
+                            (i < cumulativeCount ? base + i : ack.getSelectiveAcks(i - cumulativeCount));
+                    if (sequence < base || sequence >= next || acked[sequence]) {
+                        continue;
+                    }
+                    acked[sequence] = true;
+                    lost[sequence] = false;
+                    newlyAcked++;
+                    if (inFlight[sequence]) {
+                        inFlight[sequence] = false;
+                        outstanding--;
+                        // sample the most recently sent segment: earlier ones may have been acknowledged late,
+                        // because their own acknowledgment was lost
+                        if (transmissions[sequence] == 1
+                                && (rttSample < 0 || now - sentAt[sequence] < rttSample)) {
+                            rttSample = now - sentAt[sequence];
+                        }
+                    }
+                }
+                if (newlyAcked > 0) {
+                    lastProgress = now;
+                    if (rttSample >= 0) {
+                        updateRttEstimate(rttSample);
+                    }
+                    // new data was acknowledged, so the timeout is no longer backed off
+                    if (mSmoothedRtt >= 0) {
+                        mRto = Math.max(MIN_RTO_MILLIS,
+                                Math.min(MAX_RTO_MILLIS, (long) (mSmoothedRtt + 4 * mRttVariation)));
+                    }
+                    // grow the congestion window: slow start, then additive increase
+                    for (int i = 0; i < newlyAcked; i++) {
+                        mCongestionWindow += (mCongestionWindow < mSlowStartThreshold ? 1 : 1 / mCongestionWindow);
+                    }
+                    mCongestionWindow = Math.min(mCongestionWindow, ReliableReceiver.MAX_WINDOW);
+                }
+                while (base < count && acked[base]) {
+                    base++;
+                }
+
+                // segments reported missing are lost, unless they were sent too recently to be acknowledged
+                final long minAge = (long) (mSmoothedRtt >= 0 ? mSmoothedRtt : mRto);
+                boolean lossDetected = false;
+                for (int sequence : ack.getMissingList()) {
+                    if (sequence >= base && sequence < next && inFlight[sequence]
+                            && now - sentAt[sequence] >= minAge) {
+                        inFlight[sequence] = false;
+                        lost[sequence] = true;
+                        outstanding--;
+                        lossDetected |= (sequence >= recoveryPoint);
+                    }
+                }
+                if (lossDetected) {
+                    // reduce the window, once per window of data
+                    mSlowStartThreshold = Math.max(mCongestionWindow * DECREASE_FACTOR, MIN_SLOW_START_THRESHOLD);
+                    mCongestionWindow = mSlowStartThreshold;
+                    recoveryPoint = next;
+                }
+            }
+        } finally {
+            if (!mSocket.isClosed()) {
+                mSocket.setSoTimeout(previousTimeout);
+            }
+        }
+        return acked;
+    }
+
+    /**
+     * Sends a segment.
+     * @param payloads Datagram data.
+     * @param sequence Sequence number of the segment.
+     * @param sentAt Time each segment was last sent, updated.
+     * @param transmissions Number of times each segment was sent, updated.
+     * @param now Current time, in milliseconds.
+     * @throws IOException If the socket failed.
+     */
+    private void sendSegment(List<byte[]> payloads, int sequence, long[] sentAt, int[] transmissions, long now)
+            throws IOException {
+        final byte[] segment = TransferSegment.newBuilder()
+                .setTransferId(mTransferId)
+                .setSequence(sequence)
+                .setPayload(ByteString.copyFrom(payloads.get(sequence)))
+                .build()
+                .toByteArray();
+        mSocket.send(new DatagramPacket(segment, segment.length, mAddress, mPort));
+
+        if (transmissions[sequence] > 0) {
+            mRetransmissions++;
+        }
+        transmissions[sequence]++;
+        sentAt[sequence] = now;
+        mTransmissions++;
+    }
+
+    /**
+     * Waits for an acknowledgment of this transfer; other datagrams are skipped.
+     * @param ackPacket Datagram packet to receive into.
+     * @param buffer Its buffer.
+     * @param timeoutMillis How long to wait.
+     * @return Acknowledgment, or null if none arrived in time.
+     * @throws IOException If the socket failed.
+     */
+    private TransferAck receiveAck(DatagramPacket ackPacket, byte[] buffer, long timeoutMillis) throws IOException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (remaining > 0) {
+            mSocket.setSoTimeout((int) Math.min(remaining, Integer.MAX_VALUE));
+            ackPacket.setData(buffer);
+            try {
+                mSocket.receive(ackPacket);
+            } catch (SocketTimeoutException e) {
+                return null;
+            }
+
+            final byte[] data = Arrays.copyOf(ackPacket.getData(), ackPacket.getLength());
+            if (ReliableReceiver.isAck(data)) {
+                try {
+                    final TransferAck ack = TransferAck.parseFrom(data);
+                    if (ack.getTransferId() == mTransferId) {
+                        return ack;
+                    }
+                } catch (InvalidProtocolBufferException e) {
+                    // not an acknowledgment, skip
+                }
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return null;
+    }
+
+    /**
+     * Updates the round-trip time estimates with a new sample (RFC 6298).
+     * @param sampleMillis Round-trip time of a segment sent once.
+     */
+    private void updateRttEstimate(long sampleMillis) {
+        if (mSmoothedRtt < 0) {
+            mSmoothedRtt = sampleMillis;
+            mRttVariation = sampleMillis / 2.0;
+        } else {
+            mRttVariation = 0.75 * mRttVariation + 0.25 * Math.abs(mSmoothedRtt - sampleMillis);
+            mSmoothedRtt = 0.875 * mSmoothedRtt + 0.125 * sampleMillis;
+        }
+    }
+
+    /**
+     * Returns the number of segments sent, including retransmissions.
+     * @return Number of segments.
+     */
+    public int getTransmissions() {
+        return mTransmissions;
+    }
+
+    /**
+     * Returns the number of segments retransmitted.
+     * @return Number of segments.
+     */
+    public int getRetransmissions() {
+        return mRetransmissions;
+    }
+
+    /**
+     * Returns the number of times the retransmission timeout expired.
+     * @return Number of timeouts.
+     */
+    public int getTimeouts() {
+        return mTimeouts;
+    }
+
+    /**
+     * Returns the smoothed round-trip time.
+     * @return Round-trip time, in milliseconds, or -1 if it was never measured.
+     */
+    public double getSmoothedRtt() {
+        return mSmoothedRtt;
+    }
+}
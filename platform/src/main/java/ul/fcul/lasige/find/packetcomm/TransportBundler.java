@@ -0,0 +1,126 @@
+package ul.fcul.lasige.find.packetcomm;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ul.fcul.lasige.find.beaconing.BeaconBuilder;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket;
+
+/**
+ * Packs {@link TransportPacket}s into datagrams up to a size budget. Packets that fit together are sent as
+ * one {@link TransportBundle}; a datagram holding a single packet is sent as a plain {@link TransportPacket},
+ * as before bundles existed. It also unpacks received datagrams of either kind.
+ *
+ * <p>Packets are added in order with {@link #add(TransportPacket)}, which returns the previous datagram once
+ * the next packet does not fit anymore; the last datagram is returned by {@link #flush()}.</p>
+ */
+public class TransportBundler {
+    private static final String TAG = TransportBundler.class.getSimpleName();
+
+    // default size budget of a datagram, so that it is not fragmented (same as beacons)
+    public static final int DEFAULT_SIZE_BUDGET = BeaconBuilder.MAX_BEACON_SIZE;
+
+    // size budget, in bytes
+    private final int mSizeBudget;
+    // packets of the current datagram, and its encoded size as a bundle
+    private final List<TransportPacket> mPackets = new ArrayList<>();
+    private int mBundleSize;
+
+    /**
+     * Constructor.
+     * @param sizeBudget Maximum size of a datagram holding several packets. A packet larger than this is
+     *                   sent alone.
+     */
+    public TransportBundler(int sizeBudget) {
+        mSizeBudget = sizeBudget;
+    }
+
+    /**
+     * Adds a packet to the current datagram. If it does not fit, the current datagram is closed and
+     * returned, and the packet starts the next one.
+     * @param packet Packet.
+     * @return Datagram data to send, or null if the packet fit in the current datagram.
+     */
+    public byte[] add(TransportPacket packet) {
+        final int entrySize = CodedOutputStream.computeMessageSize(TransportBundle.PACKETS_FIELD_NUMBER, packet);
+
+        byte[] datagram = null;
+        if (!mPackets.isEmpty() && mBundleSize + entrySize > mSizeBudget) {
+            datagram = flush();
+        }
+        mPackets.add(packet);
+        mBundleSize += entrySize;
+        return datagram;
+    }
+
+    /**
+     * Closes the current datagram.
+     * @return Datagram data to send, or null if no packets were added since the last datagram.
+     */
+    public byte[] flush() {
+        final byte[] datagram;
+        if (mPackets.isEmpty()) {
+            return null;
+        } else if (mPackets.size() == 1) {
+            // a single packet is sent as is
+            datagram = mPackets.get(0).toByteArray();
+        } else {
+            datagram = TransportBundle.newBuilder().addAllPackets(mPackets).build().toByteArray();
+        }
+        mPackets.clear();
+        mBundleSize = 0;
+        return datagram;
+    }
+
+    /**
+     * Returns the number of packets in the current datagram.
+     * @return Number of packets.
+     */
+    public int getPacketCount() {
+        return mPackets.size();
+    }
+
+    /**
+     * Returns whether received data is a {@link TransportBundle}, by looking at its first tag.
+     * @param data Datagram data.
+     * @return true if it is a bundle, false if it may be a single packet.
+     */
+    public static boolean isBundle(byte[] data) {
+        return getFirstFieldNumber(data) == TransportBundle.PACKETS_FIELD_NUMBER;
+    }
+
+    /**
+     * Returns the number of the first field of an encoded message. Messages sent on the packet port have
+     * distinct field numbers, so that this tells which message it is.
+     * @param data Encoded message.
+     * @return Field number, or 0 if the data is empty or malformed.
+     */
+    static int getFirstFieldNumber(byte[] data) {
+        try {
+            return WireFormat.getTagFieldNumber(CodedInputStream.newInstance(data).readTag());
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Unpacks a received datagram, which holds either a single packet or a bundle.
+     * @param data Datagram data.
+     * @return Packets, in the order they were added.
+     * @throws InvalidProtocolBufferException If the data is neither a packet nor a bundle.
+     */
+    public static List<TransportPacket> parse(byte[] data) throws InvalidProtocolBufferException {
+        if (isBundle(data)) {
+            return TransportBundle.parseFrom(data).getPacketsList();
+        }
+        return Collections.singletonList(TransportPacket.parseFrom(data));
+    }
+}
@@ -1630,6 +1630,24 @@ public final class FindProtos {
      */
     int getDeltaLastseen();
 
+    // optional bytes node_id_prefix = 9;
+    /**
+     * <code>optional bytes node_id_prefix = 9;</code>
+     *
+     * <pre>
+     * The first bytes of the node id; used instead of node_id for neighbors in compact beacons
+     * </pre>
+     */
+    boolean hasNodeIdPrefix();
+    /**
+     * <code>optional bytes node_id_prefix = 9;</code>
+     *
+     * <pre>
+     * The first bytes of the node id; used instead of node_id for neighbors in compact beacons
+     * </pre>
+     */
+    com.google.protobuf.ByteString getNodeIdPrefix();
+
     // repeated bytes protocols = 20;
     /**
      * <code>repeated bytes protocols = 20;</code>
@@ -1656,6 +1674,24 @@ public final class FindProtos {
      */
     com.google.protobuf.ByteString getProtocols(int index);
 
+    // optional bytes protocols_bloom = 21;
+    /**
+     * <code>optional bytes protocols_bloom = 21;</code>
+     *
+     * <pre>
+     * A Bloom filter of the supported protocols; used instead of protocols in compact beacons
+     * </pre>
+     */
+    boolean hasProtocolsBloom();
+    /**
+     * <code>optional bytes protocols_bloom = 21;</code>
+     *
+     * <pre>
+     * A Bloom filter of the supported protocols; used instead of protocols in compact beacons
+     * </pre>
+     */
+    com.google.protobuf.ByteString getProtocolsBloom();
+
     // optional int32 ap_likelihood = 30;
     /**
      * <code>optional int32 ap_likelihood = 30;</code>
@@ -1765,16 +1801,26 @@ public final class FindProtos {
               deltaLastseen_ = input.readUInt32();
               break;
             }
+            case 74: {
+              bitField0_ |= 0x00000100;
+              nodeIdPrefix_ = input.readBytes();
+              break;
+            }
             case 162: {
-              if (!((mutable_bitField0_ & 0x00000100) == 0x00000100)) {
+              if (!((mutable_bitField0_ & 0x00000200) == 0x00000200)) {
                 protocols_ = new java.util.ArrayList<com.google.protobuf.ByteString>();
-                mutable_bitField0_ |= 0x00000100;
+                mutable_bitField0_ |= 0x00000200;
               }
               protocols_.add(input.readBytes());
               break;
             }
+            case 170: {
+              bitField0_ |= 0x00000200;
+              protocolsBloom_ = input.readBytes();
+              break;
+            }
             case 240: {
-              bitField0_ |= 0x00000100;
+              bitField0_ |= 0x00000400;
               apLikelihood_ = input.readInt32();
               break;
             }
@@ -1786,7 +1832,7 @@ public final class FindProtos {
         throw new com.google.protobuf.InvalidProtocolBufferException(
             e.getMessage()).setUnfinishedMessage(this);
       } finally {
-        if (((mutable_bitField0_ & 0x00000100) == 0x00000100)) {
+        if (((mutable_bitField0_ & 0x00000200) == 0x00000200)) {
           protocols_ = java.util.Collections.unmodifiableList(protocols_);
         }
         this.unknownFields = unknownFields.build();
@@ -2036,6 +2082,30 @@ public final class FindProtos {
       return deltaLastseen_;
     }
 
+    // optional bytes node_id_prefix = 9;
+    public static final int NODE_ID_PREFIX_FIELD_NUMBER = 9;
+    private com.google.protobuf.ByteString nodeIdPrefix_;
+    /**
+     * <code>optional bytes node_id_prefix = 9;</code>
+     *
+     * <pre>
+     * The first bytes of the node id; used instead of node_id for neighbors in compact beacons
+     * </pre>
+     */
+    public boolean hasNodeIdPrefix() {
+      return ((bitField0_ & 0x00000100) == 0x00000100);
+    }
+    /**
+     * <code>optional bytes node_id_prefix = 9;</code>
+     *
+     * <pre>
+     * The first bytes of the node id; used instead of node_id for neighbors in compact beacons
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getNodeIdPrefix() {
+      return nodeIdPrefix_;
+    }
+
     // repeated bytes protocols = 20;
     public static final int PROTOCOLS_FIELD_NUMBER = 20;
     private java.util.List<com.google.protobuf.ByteString> protocols_;
@@ -2071,6 +2141,30 @@ public final class FindProtos {
       return protocols_.get(index);
     }
 
+    // optional bytes protocols_bloom = 21;
+    public static final int PROTOCOLS_BLOOM_FIELD_NUMBER = 21;
+    private com.google.protobuf.ByteString protocolsBloom_;
+    /**
+     * <code>optional bytes protocols_bloom = 21;</code>
+     *
+     * <pre>
+     * A Bloom filter of the supported protocols; used instead of protocols in compact beacons
+     * </pre>
+     */
+    public boolean hasProtocolsBloom() {
+      return ((bitField0_ & 0x00000200) == 0x00000200);
+    }
+    /**
+     * <code>optional bytes protocols_bloom = 21;</code>
+     *
+     * <pre>
+     * A Bloom filter of the supported protocols; used instead of protocols in compact beacons
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getProtocolsBloom() {
+      return protocolsBloom_;
+    }
+
     // optional int32 ap_likelihood = 30;
     public static final int AP_LIKELIHOOD_FIELD_NUMBER = 30;
     private int apLikelihood_;
@@ -2082,7 +2176,7 @@ public final class FindProtos {
      * </pre>
      */
     public boolean hasApLikelihood() {
-      return ((bitField0_ & 0x00000100) == 0x00000100);
+      return ((bitField0_ & 0x00000400) == 0x00000400);
     }
     /**
      * <code>optional int32 ap_likelihood = 30;</code>
@@ -2104,7 +2198,9 @@ public final class FindProtos {
       multicastCapable_ = false;
       timeLastseen_ = 0L;
       deltaLastseen_ = 0;
+      nodeIdPrefix_ = com.google.protobuf.ByteString.EMPTY;
       protocols_ = java.util.Collections.emptyList();
+      protocolsBloom_ = com.google.protobuf.ByteString.EMPTY;
       apLikelihood_ = 0;
     }
     private byte memoizedIsInitialized = -1;
@@ -2143,10 +2239,16 @@ public final class FindProtos {
       if (((bitField0_ & 0x00000080) == 0x00000080)) {
         output.writeUInt32(8, deltaLastseen_);
       }
+      if (((bitField0_ & 0x00000100) == 0x00000100)) {
+        output.writeBytes(9, nodeIdPrefix_);
+      }
       for (int i = 0; i < protocols_.size(); i++) {
         output.writeBytes(20, protocols_.get(i));
       }
-      if (((bitField0_ & 0x00000100) == 0x00000100)) {
+      if (((bitField0_ & 0x00000200) == 0x00000200)) {
+        output.writeBytes(21, protocolsBloom_);
+      }
+      if (((bitField0_ & 0x00000400) == 0x00000400)) {
         output.writeInt32(30, apLikelihood_);
       }
       getUnknownFields().writeTo(output);
@@ -2190,6 +2292,10 @@ public final class FindProtos {
         size += com.google.protobuf.CodedOutputStream
           .computeUInt32Size(8, deltaLastseen_);
       }
+      if (((bitField0_ & 0x00000100) == 0x00000100)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(9, nodeIdPrefix_);
+      }
       {
         int dataSize = 0;
         for (int i = 0; i < protocols_.size(); i++) {
@@ -2199,7 +2305,11 @@ public final class FindProtos {
         size += dataSize;
         size += 2 * getProtocolsList().size();
       }
-      if (((bitField0_ & 0x00000100) == 0x00000100)) {
+      if (((bitField0_ & 0x00000200) == 0x00000200)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(21, protocolsBloom_);
+      }
+      if (((bitField0_ & 0x00000400) == 0x00000400)) {
         size += com.google.protobuf.CodedOutputStream
           .computeInt32Size(30, apLikelihood_);
       }
@@ -2335,10 +2445,14 @@ public final class FindProtos {
         bitField0_ = (bitField0_ & ~0x00000040);
         deltaLastseen_ = 0;
         bitField0_ = (bitField0_ & ~0x00000080);
-        protocols_ = java.util.Collections.emptyList();
+        nodeIdPrefix_ = com.google.protobuf.ByteString.EMPTY;
         bitField0_ = (bitField0_ & ~0x00000100);
-        apLikelihood_ = 0;
+        protocols_ = java.util.Collections.emptyList();
         bitField0_ = (bitField0_ & ~0x00000200);
+        protocolsBloom_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000400);
+        apLikelihood_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000800);
         return this;
       }
 
@@ -2399,13 +2513,21 @@ public final class FindProtos {
           to_bitField0_ |= 0x00000080;
         }
         result.deltaLastseen_ = deltaLastseen_;
-        if (((bitField0_ & 0x00000100) == 0x00000100)) {
+        if (((from_bitField0_ & 0x00000100) == 0x00000100)) {
+          to_bitField0_ |= 0x00000100;
+        }
+        result.nodeIdPrefix_ = nodeIdPrefix_;
+        if (((bitField0_ & 0x00000200) == 0x00000200)) {
           protocols_ = java.util.Collections.unmodifiableList(protocols_);
-          bitField0_ = (bitField0_ & ~0x00000100);
+          bitField0_ = (bitField0_ & ~0x00000200);
         }
         result.protocols_ = protocols_;
-        if (((from_bitField0_ & 0x00000200) == 0x00000200)) {
-          to_bitField0_ |= 0x00000100;
+        if (((from_bitField0_ & 0x00000400) == 0x00000400)) {
+          to_bitField0_ |= 0x00000200;
+        }
+        result.protocolsBloom_ = protocolsBloom_;
+        if (((from_bitField0_ & 0x00000800) == 0x00000800)) {
+          to_bitField0_ |= 0x00000400;
         }
         result.apLikelihood_ = apLikelihood_;
         result.bitField0_ = to_bitField0_;
@@ -2450,16 +2572,22 @@ public final class FindProtos {
         if (other.hasDeltaLastseen()) {
           setDeltaLastseen(other.getDeltaLastseen());
         }
+        if (other.hasNodeIdPrefix()) {
+          setNodeIdPrefix(other.getNodeIdPrefix());
+        }
         if (!other.protocols_.isEmpty()) {
           if (protocols_.isEmpty()) {
             protocols_ = other.protocols_;
-            bitField0_ = (bitField0_ & ~0x00000100);
+            bitField0_ = (bitField0_ & ~0x00000200);
           } else {
             ensureProtocolsIsMutable();
             protocols_.addAll(other.protocols_);
           }
           onChanged();
         }
+        if (other.hasProtocolsBloom()) {
+          setProtocolsBloom(other.getProtocolsBloom());
+        }
         if (other.hasApLikelihood()) {
           setApLikelihood(other.getApLikelihood());
         }
@@ -2927,12 +3055,64 @@ public final class FindProtos {
         return this;
       }
 
+      // optional bytes node_id_prefix = 9;
+      private com.google.protobuf.ByteString nodeIdPrefix_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes node_id_prefix = 9;</code>
+       *
+       * <pre>
+       * The first bytes of the node id; used instead of node_id for neighbors in compact beacons
+       * </pre>
+       */
+      public boolean hasNodeIdPrefix() {
+        return ((bitField0_ & 0x00000100) == 0x00000100);
+      }
+      /**
+       * <code>optional bytes node_id_prefix = 9;</code>
+       *
+       * <pre>
+       * The first bytes of the node id; used instead of node_id for neighbors in compact beacons
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getNodeIdPrefix() {
+        return nodeIdPrefix_;
+      }
+      /**
+       * <code>optional bytes node_id_prefix = 9;</code>
+       *
+       * <pre>
+       * The first bytes of the node id; used instead of node_id for neighbors in compact beacons
+       * </pre>
+       */
+      public Builder setNodeIdPrefix(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000100;
+        nodeIdPrefix_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes node_id_prefix = 9;</code>
+       *
+       * <pre>
+       * The first bytes of the node id; used instead of node_id for neighbors in compact beacons
+       * </pre>
+       */
+      public Builder clearNodeIdPrefix() {
+        bitField0_ = (bitField0_ & ~0x00000100);
+        nodeIdPrefix_ = getDefaultInstance().getNodeIdPrefix();
+        onChanged();
+        return this;
+      }
+
       // repeated bytes protocols = 20;
       private java.util.List<com.google.protobuf.ByteString> protocols_ = java.util.Collections.emptyList();
       private void ensureProtocolsIsMutable() {
-        if (!((bitField0_ & 0x00000100) == 0x00000100)) {
+        if (!((bitField0_ & 0x00000200) == 0x00000200)) {
           protocols_ = new java.util.ArrayList<com.google.protobuf.ByteString>(protocols_);
-          bitField0_ |= 0x00000100;
+          bitField0_ |= 0x00000200;
          }
       }
       /**
@@ -3022,7 +3202,59 @@ public final class FindProtos {
        */
       public Builder clearProtocols() {
         protocols_ = java.util.Collections.emptyList();
-        bitField0_ = (bitField0_ & ~0x00000100);
+        bitField0_ = (bitField0_ & ~0x00000200);
+        onChanged();
+        return this;
+      }
+
+      // optional bytes protocols_bloom = 21;
+      private com.google.protobuf.ByteString protocolsBloom_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes protocols_bloom = 21;</code>
+       *
+       * <pre>
+       * A Bloom filter of the supported protocols; used instead of protocols in compact beacons
+       * </pre>
+       */
+      public boolean hasProtocolsBloom() {
+        return ((bitField0_ & 0x00000400) == 0x00000400);
+      }
+      /**
+       * <code>optional bytes protocols_bloom = 21;</code>
+       *
+       * <pre>
+       * A Bloom filter of the supported protocols; used instead of protocols in compact beacons
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getProtocolsBloom() {
+        return protocolsBloom_;
+      }
+      /**
+       * <code>optional bytes protocols_bloom = 21;</code>
+       *
+       * <pre>
+       * A Bloom filter of the supported protocols; used instead of protocols in compact beacons
+       * </pre>
+       */
+      public Builder setProtocolsBloom(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000400;
+        protocolsBloom_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes protocols_bloom = 21;</code>
+       *
+       * <pre>
+       * A Bloom filter of the supported protocols; used instead of protocols in compact beacons
+       * </pre>
+       */
+      public Builder clearProtocolsBloom() {
+        bitField0_ = (bitField0_ & ~0x00000400);
+        protocolsBloom_ = getDefaultInstance().getProtocolsBloom();
         onChanged();
         return this;
       }
@@ -3037,7 +3269,7 @@ public final class FindProtos {
        * </pre>
        */
       public boolean hasApLikelihood() {
-        return ((bitField0_ & 0x00000200) == 0x00000200);
+        return ((bitField0_ & 0x00000800) == 0x00000800);
       }
       /**
        * <code>optional int32 ap_likelihood = 30;</code>
@@ -3057,7 +3289,7 @@ public final class FindProtos {
        * </pre>
        */
       public Builder setApLikelihood(int value) {
-        bitField0_ |= 0x00000200;
+        bitField0_ |= 0x00000800;
         apLikelihood_ = value;
         onChanged();
         return this;
@@ -3070,7 +3302,7 @@ public final class FindProtos {
        * </pre>
        */
       public Builder clearApLikelihood() {
-        bitField0_ = (bitField0_ & ~0x00000200);
+        bitField0_ = (bitField0_ & ~0x00000800);
         apLikelihood_ = 0;
         onChanged();
         return this;
@@ -3903,73 +4135,3478 @@ public final class FindProtos {
     // @@protoc_insertion_point(class_scope:ul.fcul.lasige.find.protocolbuffer.TransportPacket)
   }
 
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_ul_fcul_lasige_find_protocolbuffer_Beacon_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_ul_fcul_lasige_find_protocolbuffer_Beacon_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_ul_fcul_lasige_find_protocolbuffer_Node_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_ul_fcul_lasige_find_protocolbuffer_Node_fieldAccessorTable;
-  private static com.google.protobuf.Descriptors.Descriptor
-    internal_static_ul_fcul_lasige_find_protocolbuffer_TransportPacket_descriptor;
-  private static
-    com.google.protobuf.GeneratedMessage.FieldAccessorTable
-      internal_static_ul_fcul_lasige_find_protocolbuffer_TransportPacket_fieldAccessorTable;
+  public interface TransportBundleOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
 
-  public static com.google.protobuf.Descriptors.FileDescriptor
-      getDescriptor() {
-    return descriptor;
+    // repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;
+    /**
+     * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+     */
+    java.util.List<ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket> 
+        getPacketsList();
+    /**
+     * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+     */
+    ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket getPackets(int index);
+    /**
+     * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+     */
+    int getPacketsCount();
+    /**
+     * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+     */
+    java.util.List<? extends ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacketOrBuilder> 
+        getPacketsOrBuilderList();
+    /**
+     * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+     */
+    ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacketOrBuilder getPacketsOrBuilder(
+        int index);
   }
-  private static com.google.protobuf.Descriptors.FileDescriptor
-      descriptor;
-  static {
-    java.lang.String[] descriptorData = {
-      "\n\030PacketDescriptions.proto\022\"ul.fcul.lasi" +
-      "ge.find.protocolbuffer\"\245\002\n\006Beacon\022T\n\013bea" +
-      "con_type\030\001 \001(\01625.ul.fcul.lasige.find.pro" +
-      "tocolbuffer.Beacon.BeaconType:\010ORIGINAL\022" +
-      "\021\n\tbeacon_id\030\002 \001(\r\022\024\n\014time_created\030\003 \001(\004" +
-      "\0228\n\006sender\030\n \001(\0132(.ul.fcul.lasige.find.p" +
-      "rotocolbuffer.Node\022;\n\tneighbors\030\024 \003(\0132(." +
-      "ul.fcul.lasige.find.protocolbuffer.Node\"" +
-      "%\n\nBeaconType\022\014\n\010ORIGINAL\020\000\022\t\n\005REPLY\020\001\"\341" +
-      "\001\n\004Node\022\017\n\007node_id\030\001 \001(\014\022\017\n\007network\030\002 \001(",
-      "\t\022\023\n\013ip4_address\030\003 \001(\014\022\023\n\013ip6_address\030\004 " +
-      "\001(\014\022\022\n\nbt_address\030\005 \001(\014\022 \n\021multicast_cap" +
-      "able\030\006 \001(\010:\005false\022\025\n\rtime_lastseen\030\007 \001(\004" +
-      "\022\026\n\016delta_lastseen\030\010 \001(\r\022\021\n\tprotocols\030\024 " +
-      "\003(\014\022\025\n\rap_likelihood\030\036 \001(\005\"u\n\017TransportP" +
-      "acket\022\023\n\013source_node\030\001 \001(\014\022\023\n\013target_nod" +
-      "e\030\002 \001(\014\022\020\n\010protocol\030\003 \001(\014\022\013\n\003ttl\030\004 \001(\004\022\013" +
-      "\n\003mac\030\n \001(\014\022\014\n\004data\030\024 \001(\014B0\n\"ul.fcul.las" +
-      "ige.find.protocolbufferB\nFindProtos"
-    };
-    com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
-      new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
-        public com.google.protobuf.ExtensionRegistry assignDescriptors(
-            com.google.protobuf.Descriptors.FileDescriptor root) {
-          descriptor = root;
-          internal_static_ul_fcul_lasige_find_protocolbuffer_Beacon_descriptor =
-            getDescriptor().getMessageTypes().get(0);
-          internal_static_ul_fcul_lasige_find_protocolbuffer_Beacon_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_ul_fcul_lasige_find_protocolbuffer_Beacon_descriptor,
-              new java.lang.String[] { "BeaconType", "BeaconId", "TimeCreated", "Sender", "Neighbors", });
-          internal_static_ul_fcul_lasige_find_protocolbuffer_Node_descriptor =
-            getDescriptor().getMessageTypes().get(1);
-          internal_static_ul_fcul_lasige_find_protocolbuffer_Node_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_ul_fcul_lasige_find_protocolbuffer_Node_descriptor,
-              new java.lang.String[] { "NodeId", "Network", "Ip4Address", "Ip6Address", "BtAddress", "MulticastCapable", "TimeLastseen", "DeltaLastseen", "Protocols", "ApLikelihood", });
-          internal_static_ul_fcul_lasige_find_protocolbuffer_TransportPacket_descriptor =
-            getDescriptor().getMessageTypes().get(2);
-          internal_static_ul_fcul_lasige_find_protocolbuffer_TransportPacket_fieldAccessorTable = new
-            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
-              internal_static_ul_fcul_lasige_find_protocolbuffer_TransportPacket_descriptor,
-              new java.lang.String[] { "SourceNode", "TargetNode", "Protocol", "Ttl", "Mac", "Data", });
+  /**
+   * Protobuf type {@code ul.fcul.lasige.find.protocolbuffer.TransportBundle}
+   *
+   * <pre>
+   * Several packets sent together in a single datagram. The field number is not used by TransportPacket, so that
+   * receivers can tell bundles from single packets by the first tag.
+   * </pre>
+   */
+  public static final class TransportBundle extends
+      com.google.protobuf.GeneratedMessage
+      implements TransportBundleOrBuilder {
+    // Use TransportBundle.newBuilder() to construct.
+    private TransportBundle(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private TransportBundle(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final TransportBundle defaultInstance;
+    public static TransportBundle getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public TransportBundle getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private TransportBundle(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 242: {
+              if (!((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+                packets_ = new java.util.ArrayList<ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket>();
+                mutable_bitField0_ |= 0x00000001;
+              }
+              packets_.add(input.readMessage(ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.PARSER, extensionRegistry));
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+          packets_ = java.util.Collections.unmodifiableList(packets_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransportBundle_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransportBundle_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle.class, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<TransportBundle> PARSER =
+        new com.google.protobuf.AbstractParser<TransportBundle>() {
+      public TransportBundle parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new TransportBundle(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<TransportBundle> getParserForType() {
+      return PARSER;
+    }
+
+    // repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;
+    public static final int PACKETS_FIELD_NUMBER = 30;
+    private java.util.List<ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket> packets_;
+    /**
+     * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+     */
+    public java.util.List<ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket> getPacketsList() {
+      return packets_;
+    }
+    /**
+     * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+     */
+    public java.util.List<? extends ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacketOrBuilder> 
+        getPacketsOrBuilderList() {
+      return packets_;
+    }
+    /**
+     * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+     */
+    public int getPacketsCount() {
+      return packets_.size();
+    }
+    /**
+     * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+     */
+    public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket getPackets(int index) {
+      return packets_.get(index);
+    }
+    /**
+     * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+     */
+    public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacketOrBuilder getPacketsOrBuilder(
+        int index) {
+      return packets_.get(index);
+    }
+
+    private void initFields() {
+      packets_ = java.util.Collections.emptyList();
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      for (int i = 0; i < packets_.size(); i++) {
+        output.writeMessage(30, packets_.get(i));
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      for (int i = 0; i < packets_.size(); i++) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeMessageSize(30, packets_.get(i));
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code ul.fcul.lasige.find.protocolbuffer.TransportBundle}
+     *
+     * <pre>
+     * Several packets sent together in a single datagram. The field number is not used by TransportPacket, so that
+     * receivers can tell bundles from single packets by the first tag.
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundleOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransportBundle_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransportBundle_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle.class, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle.Builder.class);
+      }
+
+      // Construct using ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+          getPacketsFieldBuilder();
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        if (packetsBuilder_ == null) {
+          packets_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000001);
+        } else {
+          packetsBuilder_.clear();
+        }
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransportBundle_descriptor;
+      }
+
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle getDefaultInstanceForType() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle.getDefaultInstance();
+      }
+
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle build() {
+        ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle buildPartial() {
+        ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle result = new ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle(this);
+        int from_bitField0_ = bitField0_;
+        if (packetsBuilder_ == null) {
+          if (((bitField0_ & 0x00000001) == 0x00000001)) {
+            packets_ = java.util.Collections.unmodifiableList(packets_);
+            bitField0_ = (bitField0_ & ~0x00000001);
+          }
+          result.packets_ = packets_;
+        } else {
+          result.packets_ = packetsBuilder_.build();
+        }
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle) {
+          return mergeFrom((ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle other) {
+        if (other == ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle.getDefaultInstance()) return this;
+        if (packetsBuilder_ == null) {
+          if (!other.packets_.isEmpty()) {
+            if (packets_.isEmpty()) {
+              packets_ = other.packets_;
+              bitField0_ = (bitField0_ & ~0x00000001);
+            } else {
+              ensurePacketsIsMutable();
+              packets_.addAll(other.packets_);
+            }
+            onChanged();
+          }
+        } else {
+          if (!other.packets_.isEmpty()) {
+            if (packetsBuilder_.isEmpty()) {
+              packetsBuilder_.dispose();
+              packetsBuilder_ = null;
+              packets_ = other.packets_;
+              bitField0_ = (bitField0_ & ~0x00000001);
+              packetsBuilder_ = 
+                com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders ?
+                   getPacketsFieldBuilder() : null;
+            } else {
+              packetsBuilder_.addAllMessages(other.packets_);
+            }
+          }
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportBundle) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;
+      private java.util.List<ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket> packets_ =
+        java.util.Collections.emptyList();
+      private void ensurePacketsIsMutable() {
+        if (!((bitField0_ & 0x00000001) == 0x00000001)) {
+          packets_ = new java.util.ArrayList<ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket>(packets_);
+          bitField0_ |= 0x00000001;
+         }
+      }
+
+      private com.google.protobuf.RepeatedFieldBuilder<
+          ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.Builder, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacketOrBuilder> packetsBuilder_;
+
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public java.util.List<ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket> getPacketsList() {
+        if (packetsBuilder_ == null) {
+          return java.util.Collections.unmodifiableList(packets_);
+        } else {
+          return packetsBuilder_.getMessageList();
+        }
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public int getPacketsCount() {
+        if (packetsBuilder_ == null) {
+          return packets_.size();
+        } else {
+          return packetsBuilder_.getCount();
+        }
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket getPackets(int index) {
+        if (packetsBuilder_ == null) {
+          return packets_.get(index);
+        } else {
+          return packetsBuilder_.getMessage(index);
+        }
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public Builder setPackets(
+          int index, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket value) {
+        if (packetsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensurePacketsIsMutable();
+          packets_.set(index, value);
+          onChanged();
+        } else {
+          packetsBuilder_.setMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public Builder setPackets(
+          int index, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.Builder builderForValue) {
+        if (packetsBuilder_ == null) {
+          ensurePacketsIsMutable();
+          packets_.set(index, builderForValue.build());
+          onChanged();
+        } else {
+          packetsBuilder_.setMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public Builder addPackets(ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket value) {
+        if (packetsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensurePacketsIsMutable();
+          packets_.add(value);
+          onChanged();
+        } else {
+          packetsBuilder_.addMessage(value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public Builder addPackets(
+          int index, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket value) {
+        if (packetsBuilder_ == null) {
+          if (value == null) {
+            throw new NullPointerException();
+          }
+          ensurePacketsIsMutable();
+          packets_.add(index, value);
+          onChanged();
+        } else {
+          packetsBuilder_.addMessage(index, value);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public Builder addPackets(
+          ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.Builder builderForValue) {
+        if (packetsBuilder_ == null) {
+          ensurePacketsIsMutable();
+          packets_.add(builderForValue.build());
+          onChanged();
+        } else {
+          packetsBuilder_.addMessage(builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public Builder addPackets(
+          int index, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.Builder builderForValue) {
+        if (packetsBuilder_ == null) {
+          ensurePacketsIsMutable();
+          packets_.add(index, builderForValue.build());
+          onChanged();
+        } else {
+          packetsBuilder_.addMessage(index, builderForValue.build());
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public Builder addAllPackets(
+          java.lang.Iterable<? extends ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket> values) {
+        if (packetsBuilder_ == null) {
+          ensurePacketsIsMutable();
+          super.addAll(values, packets_);
+          onChanged();
+        } else {
+          packetsBuilder_.addAllMessages(values);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public Builder clearPackets() {
+        if (packetsBuilder_ == null) {
+          packets_ = java.util.Collections.emptyList();
+          bitField0_ = (bitField0_ & ~0x00000001);
+          onChanged();
+        } else {
+          packetsBuilder_.clear();
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public Builder removePackets(int index) {
+        if (packetsBuilder_ == null) {
+          ensurePacketsIsMutable();
+          packets_.remove(index);
+          onChanged();
+        } else {
+          packetsBuilder_.remove(index);
+        }
+        return this;
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.Builder getPacketsBuilder(
+          int index) {
+        return getPacketsFieldBuilder().getBuilder(index);
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacketOrBuilder getPacketsOrBuilder(
+          int index) {
+        if (packetsBuilder_ == null) {
+          return packets_.get(index);  } else {
+          return packetsBuilder_.getMessageOrBuilder(index);
+        }
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public java.util.List<? extends ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacketOrBuilder> 
+           getPacketsOrBuilderList() {
+        if (packetsBuilder_ != null) {
+          return packetsBuilder_.getMessageOrBuilderList();
+        } else {
+          return java.util.Collections.unmodifiableList(packets_);
+        }
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.Builder addPacketsBuilder() {
+        return getPacketsFieldBuilder().addBuilder(
+            ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.Builder addPacketsBuilder(
+          int index) {
+        return getPacketsFieldBuilder().addBuilder(
+            index, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.getDefaultInstance());
+      }
+      /**
+       * <code>repeated .ul.fcul.lasige.find.protocolbuffer.TransportPacket packets = 30;</code>
+       */
+      public java.util.List<ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.Builder> 
+           getPacketsBuilderList() {
+        return getPacketsFieldBuilder().getBuilderList();
+      }
+      private com.google.protobuf.RepeatedFieldBuilder<
+          ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.Builder, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacketOrBuilder> 
+          getPacketsFieldBuilder() {
+        if (packetsBuilder_ == null) {
+          packetsBuilder_ = new com.google.protobuf.RepeatedFieldBuilder<
+              ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket.Builder, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacketOrBuilder>(
+                  packets_,
+                  ((bitField0_ & 0x00000001) == 0x00000001),
+                  getParentForChildren(),
+                  isClean());
+          packets_ = null;
+        }
+        return packetsBuilder_;
+      }
+
+      // @@protoc_insertion_point(builder_scope:ul.fcul.lasige.find.protocolbuffer.TransportBundle)
+    }
+
+    static {
+      defaultInstance = new TransportBundle(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:ul.fcul.lasige.find.protocolbuffer.TransportBundle)
+  }
+
+  public interface TransferSegmentOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // optional uint32 transfer_id = 40;
+    /**
+     * <code>optional uint32 transfer_id = 40;</code>
+     *
+     * <pre>
+     * The id of the transfer, chosen at random by the sender
+     * </pre>
+     */
+    boolean hasTransferId();
+    /**
+     * <code>optional uint32 transfer_id = 40;</code>
+     *
+     * <pre>
+     * The id of the transfer, chosen at random by the sender
+     * </pre>
+     */
+    int getTransferId();
+
+    // optional uint32 sequence = 41;
+    /**
+     * <code>optional uint32 sequence = 41;</code>
+     *
+     * <pre>
+     * The sequence number of this segment within the transfer, starting at 0
+     * </pre>
+     */
+    boolean hasSequence();
+    /**
+     * <code>optional uint32 sequence = 41;</code>
+     *
+     * <pre>
+     * The sequence number of this segment within the transfer, starting at 0
+     * </pre>
+     */
+    int getSequence();
+
+    // optional bytes payload = 42;
+    /**
+     * <code>optional bytes payload = 42;</code>
+     *
+     * <pre>
+     * The TransportPacket or TransportBundle carried by this segment
+     * </pre>
+     */
+    boolean hasPayload();
+    /**
+     * <code>optional bytes payload = 42;</code>
+     *
+     * <pre>
+     * The TransportPacket or TransportBundle carried by this segment
+     * </pre>
+     */
+    com.google.protobuf.ByteString getPayload();
+  }
+  /**
+   * Protobuf type {@code ul.fcul.lasige.find.protocolbuffer.TransferSegment}
+   *
+   * <pre>
+   * A sequence-numbered datagram of a reliable transfer, carrying a TransportPacket or TransportBundle. Field numbers
+   * start at 40, so that receivers can tell segments from packets and bundles by the first tag.
+   * </pre>
+   */
+  public static final class TransferSegment extends
+      com.google.protobuf.GeneratedMessage
+      implements TransferSegmentOrBuilder {
+    // Use TransferSegment.newBuilder() to construct.
+    private TransferSegment(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private TransferSegment(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final TransferSegment defaultInstance;
+    public static TransferSegment getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public TransferSegment getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private TransferSegment(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 320: {
+              bitField0_ |= 0x00000001;
+              transferId_ = input.readUInt32();
+              break;
+            }
+            case 328: {
+              bitField0_ |= 0x00000002;
+              sequence_ = input.readUInt32();
+              break;
+            }
+            case 338: {
+              bitField0_ |= 0x00000004;
+              payload_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransferSegment_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransferSegment_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment.class, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<TransferSegment> PARSER =
+        new com.google.protobuf.AbstractParser<TransferSegment>() {
+      public TransferSegment parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new TransferSegment(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<TransferSegment> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // optional uint32 transfer_id = 40;
+    public static final int TRANSFER_ID_FIELD_NUMBER = 40;
+    private int transferId_;
+    /**
+     * <code>optional uint32 transfer_id = 40;</code>
+     *
+     * <pre>
+     * The id of the transfer, chosen at random by the sender
+     * </pre>
+     */
+    public boolean hasTransferId() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>optional uint32 transfer_id = 40;</code>
+     *
+     * <pre>
+     * The id of the transfer, chosen at random by the sender
+     * </pre>
+     */
+    public int getTransferId() {
+      return transferId_;
+    }
+
+    // optional uint32 sequence = 41;
+    public static final int SEQUENCE_FIELD_NUMBER = 41;
+    private int sequence_;
+    /**
+     * <code>optional uint32 sequence = 41;</code>
+     *
+     * <pre>
+     * The sequence number of this segment within the transfer, starting at 0
+     * </pre>
+     */
+    public boolean hasSequence() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>optional uint32 sequence = 41;</code>
+     *
+     * <pre>
+     * The sequence number of this segment within the transfer, starting at 0
+     * </pre>
+     */
+    public int getSequence() {
+      return sequence_;
+    }
+
+    // optional bytes payload = 42;
+    public static final int PAYLOAD_FIELD_NUMBER = 42;
+    private com.google.protobuf.ByteString payload_;
+    /**
+     * <code>optional bytes payload = 42;</code>
+     *
+     * <pre>
+     * The TransportPacket or TransportBundle carried by this segment
+     * </pre>
+     */
+    public boolean hasPayload() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional bytes payload = 42;</code>
+     *
+     * <pre>
+     * The TransportPacket or TransportBundle carried by this segment
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getPayload() {
+      return payload_;
+    }
+
+    private void initFields() {
+      transferId_ = 0;
+      sequence_ = 0;
+      payload_ = com.google.protobuf.ByteString.EMPTY;
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeUInt32(40, transferId_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeUInt32(41, sequence_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeBytes(42, payload_);
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt32Size(40, transferId_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt32Size(41, sequence_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(42, payload_);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code ul.fcul.lasige.find.protocolbuffer.TransferSegment}
+     *
+     * <pre>
+     * A sequence-numbered datagram of a reliable transfer, carrying a TransportPacket or TransportBundle. Field numbers
+     * start at 40, so that receivers can tell segments from packets and bundles by the first tag.
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegmentOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransferSegment_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransferSegment_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment.class, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment.Builder.class);
+      }
+
+      // Construct using ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        transferId_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000001);
+        sequence_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        payload_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000004);
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransferSegment_descriptor;
+      }
+
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment getDefaultInstanceForType() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment.getDefaultInstance();
+      }
+
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment build() {
+        ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment buildPartial() {
+        ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment result = new ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.transferId_ = transferId_;
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.sequence_ = sequence_;
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.payload_ = payload_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment) {
+          return mergeFrom((ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment other) {
+        if (other == ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment.getDefaultInstance()) return this;
+        if (other.hasTransferId()) {
+          setTransferId(other.getTransferId());
+        }
+        if (other.hasSequence()) {
+          setSequence(other.getSequence());
+        }
+        if (other.hasPayload()) {
+          setPayload(other.getPayload());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // optional uint32 transfer_id = 40;
+      private int transferId_ ;
+      /**
+       * <code>optional uint32 transfer_id = 40;</code>
+       *
+       * <pre>
+       * The id of the transfer, chosen at random by the sender
+       * </pre>
+       */
+      public boolean hasTransferId() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>optional uint32 transfer_id = 40;</code>
+       *
+       * <pre>
+       * The id of the transfer, chosen at random by the sender
+       * </pre>
+       */
+      public int getTransferId() {
+        return transferId_;
+      }
+      /**
+       * <code>optional uint32 transfer_id = 40;</code>
+       *
+       * <pre>
+       * The id of the transfer, chosen at random by the sender
+       * </pre>
+       */
+      public Builder setTransferId(int value) {
+        bitField0_ |= 0x00000001;
+        transferId_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint32 transfer_id = 40;</code>
+       *
+       * <pre>
+       * The id of the transfer, chosen at random by the sender
+       * </pre>
+       */
+      public Builder clearTransferId() {
+        bitField0_ = (bitField0_ & ~0x00000001);
+        transferId_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // optional uint32 sequence = 41;
+      private int sequence_ ;
+      /**
+       * <code>optional uint32 sequence = 41;</code>
+       *
+       * <pre>
+       * The sequence number of this segment within the transfer, starting at 0
+       * </pre>
+       */
+      public boolean hasSequence() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>optional uint32 sequence = 41;</code>
+       *
+       * <pre>
+       * The sequence number of this segment within the transfer, starting at 0
+       * </pre>
+       */
+      public int getSequence() {
+        return sequence_;
+      }
+      /**
+       * <code>optional uint32 sequence = 41;</code>
+       *
+       * <pre>
+       * The sequence number of this segment within the transfer, starting at 0
+       * </pre>
+       */
+      public Builder setSequence(int value) {
+        bitField0_ |= 0x00000002;
+        sequence_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint32 sequence = 41;</code>
+       *
+       * <pre>
+       * The sequence number of this segment within the transfer, starting at 0
+       * </pre>
+       */
+      public Builder clearSequence() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        sequence_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // optional bytes payload = 42;
+      private com.google.protobuf.ByteString payload_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes payload = 42;</code>
+       *
+       * <pre>
+       * The TransportPacket or TransportBundle carried by this segment
+       * </pre>
+       */
+      public boolean hasPayload() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional bytes payload = 42;</code>
+       *
+       * <pre>
+       * The TransportPacket or TransportBundle carried by this segment
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getPayload() {
+        return payload_;
+      }
+      /**
+       * <code>optional bytes payload = 42;</code>
+       *
+       * <pre>
+       * The TransportPacket or TransportBundle carried by this segment
+       * </pre>
+       */
+      public Builder setPayload(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000004;
+        payload_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes payload = 42;</code>
+       *
+       * <pre>
+       * The TransportPacket or TransportBundle carried by this segment
+       * </pre>
+       */
+      public Builder clearPayload() {
+        bitField0_ = (bitField0_ & ~0x00000004);
+        payload_ = getDefaultInstance().getPayload();
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:ul.fcul.lasige.find.protocolbuffer.TransferSegment)
+    }
+
+    static {
+      defaultInstance = new TransferSegment(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:ul.fcul.lasige.find.protocolbuffer.TransferSegment)
+  }
+
+  public interface TransferAckOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // optional uint32 transfer_id = 50;
+    /**
+     * <code>optional uint32 transfer_id = 50;</code>
+     *
+     * <pre>
+     * The id of the acknowledged transfer
+     * </pre>
+     */
+    boolean hasTransferId();
+    /**
+     * <code>optional uint32 transfer_id = 50;</code>
+     *
+     * <pre>
+     * The id of the acknowledged transfer
+     * </pre>
+     */
+    int getTransferId();
+
+    // optional uint32 cumulative_ack = 51;
+    /**
+     * <code>optional uint32 cumulative_ack = 51;</code>
+     *
+     * <pre>
+     * All segments with a lower sequence number were received
+     * </pre>
+     */
+    boolean hasCumulativeAck();
+    /**
+     * <code>optional uint32 cumulative_ack = 51;</code>
+     *
+     * <pre>
+     * All segments with a lower sequence number were received
+     * </pre>
+     */
+    int getCumulativeAck();
+
+    // repeated uint32 selective_acks = 52 [packed = true];
+    /**
+     * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+     *
+     * <pre>
+     * Segments received above cumulative_ack (selective acknowledgment)
+     * </pre>
+     */
+    java.util.List<java.lang.Integer> getSelectiveAcksList();
+    /**
+     * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+     *
+     * <pre>
+     * Segments received above cumulative_ack (selective acknowledgment)
+     * </pre>
+     */
+    int getSelectiveAcksCount();
+    /**
+     * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+     *
+     * <pre>
+     * Segments received above cumulative_ack (selective acknowledgment)
+     * </pre>
+     */
+    int getSelectiveAcks(int index);
+
+    // repeated uint32 missing = 53 [packed = true];
+    /**
+     * <code>repeated uint32 missing = 53 [packed = true];</code>
+     *
+     * <pre>
+     * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+     * </pre>
+     */
+    java.util.List<java.lang.Integer> getMissingList();
+    /**
+     * <code>repeated uint32 missing = 53 [packed = true];</code>
+     *
+     * <pre>
+     * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+     * </pre>
+     */
+    int getMissingCount();
+    /**
+     * <code>repeated uint32 missing = 53 [packed = true];</code>
+     *
+     * <pre>
+     * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+     * </pre>
+     */
+    int getMissing(int index);
+
+    // optional uint32 window = 54;
+    /**
+     * <code>optional uint32 window = 54;</code>
+     *
+     * <pre>
+     * The number of segments above cumulative_ack the receiver accepts
+     * </pre>
+     */
+    boolean hasWindow();
+    /**
+     * <code>optional uint32 window = 54;</code>
+     *
+     * <pre>
+     * The number of segments above cumulative_ack the receiver accepts
+     * </pre>
+     */
+    int getWindow();
+  }
+  /**
+   * Protobuf type {@code ul.fcul.lasige.find.protocolbuffer.TransferAck}
+   *
+   * <pre>
+   * Acknowledgment of the segments of a reliable transfer received so far, sent back to the sender of each segment.
+   * Field numbers start at 50.
+   * </pre>
+   */
+  public static final class TransferAck extends
+      com.google.protobuf.GeneratedMessage
+      implements TransferAckOrBuilder {
+    // Use TransferAck.newBuilder() to construct.
+    private TransferAck(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private TransferAck(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final TransferAck defaultInstance;
+    public static TransferAck getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public TransferAck getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private TransferAck(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 400: {
+              bitField0_ |= 0x00000001;
+              transferId_ = input.readUInt32();
+              break;
+            }
+            case 408: {
+              bitField0_ |= 0x00000002;
+              cumulativeAck_ = input.readUInt32();
+              break;
+            }
+            case 416: {
+              if (!((mutable_bitField0_ & 0x00000004) == 0x00000004)) {
+                selectiveAcks_ = new java.util.ArrayList<java.lang.Integer>();
+                mutable_bitField0_ |= 0x00000004;
+              }
+              selectiveAcks_.add(input.readUInt32());
+              break;
+            }
+            case 418: {
+              int length = input.readRawVarint32();
+              int limit = input.pushLimit(length);
+              if (!((mutable_bitField0_ & 0x00000004) == 0x00000004) && input.getBytesUntilLimit() > 0) {
+                selectiveAcks_ = new java.util.ArrayList<java.lang.Integer>();
+                mutable_bitField0_ |= 0x00000004;
+              }
+              while (input.getBytesUntilLimit() > 0) {
+                selectiveAcks_.add(input.readUInt32());
+              }
+              input.popLimit(limit);
+              break;
+            }
+            case 424: {
+              if (!((mutable_bitField0_ & 0x00000008) == 0x00000008)) {
+                missing_ = new java.util.ArrayList<java.lang.Integer>();
+                mutable_bitField0_ |= 0x00000008;
+              }
+              missing_.add(input.readUInt32());
+              break;
+            }
+            case 426: {
+              int length = input.readRawVarint32();
+              int limit = input.pushLimit(length);
+              if (!((mutable_bitField0_ & 0x00000008) == 0x00000008) && input.getBytesUntilLimit() > 0) {
+                missing_ = new java.util.ArrayList<java.lang.Integer>();
+                mutable_bitField0_ |= 0x00000008;
+              }
+              while (input.getBytesUntilLimit() > 0) {
+                missing_.add(input.readUInt32());
+              }
+              input.popLimit(limit);
+              break;
+            }
+            case 432: {
+              bitField0_ |= 0x00000004;
+              window_ = input.readUInt32();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000004) == 0x00000004)) {
+          selectiveAcks_ = java.util.Collections.unmodifiableList(selectiveAcks_);
+        }
+        if (((mutable_bitField0_ & 0x00000008) == 0x00000008)) {
+          missing_ = java.util.Collections.unmodifiableList(missing_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransferAck_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransferAck_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck.class, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<TransferAck> PARSER =
+        new com.google.protobuf.AbstractParser<TransferAck>() {
+      public TransferAck parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new TransferAck(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<TransferAck> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // optional uint32 transfer_id = 50;
+    public static final int TRANSFER_ID_FIELD_NUMBER = 50;
+    private int transferId_;
+    /**
+     * <code>optional uint32 transfer_id = 50;</code>
+     *
+     * <pre>
+     * The id of the acknowledged transfer
+     * </pre>
+     */
+    public boolean hasTransferId() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>optional uint32 transfer_id = 50;</code>
+     *
+     * <pre>
+     * The id of the acknowledged transfer
+     * </pre>
+     */
+    public int getTransferId() {
+      return transferId_;
+    }
+
+    // optional uint32 cumulative_ack = 51;
+    public static final int CUMULATIVE_ACK_FIELD_NUMBER = 51;
+    private int cumulativeAck_;
+    /**
+     * <code>optional uint32 cumulative_ack = 51;</code>
+     *
+     * <pre>
+     * All segments with a lower sequence number were received
+     * </pre>
+     */
+    public boolean hasCumulativeAck() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>optional uint32 cumulative_ack = 51;</code>
+     *
+     * <pre>
+     * All segments with a lower sequence number were received
+     * </pre>
+     */
+    public int getCumulativeAck() {
+      return cumulativeAck_;
+    }
+
+    // repeated uint32 selective_acks = 52 [packed = true];
+    public static final int SELECTIVE_ACKS_FIELD_NUMBER = 52;
+    private java.util.List<java.lang.Integer> selectiveAcks_;
+    /**
+     * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+     *
+     * <pre>
+     * Segments received above cumulative_ack (selective acknowledgment)
+     * </pre>
+     */
+    public java.util.List<java.lang.Integer>
+        getSelectiveAcksList() {
+      return selectiveAcks_;
+    }
+    /**
+     * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+     *
+     * <pre>
+     * Segments received above cumulative_ack (selective acknowledgment)
+     * </pre>
+     */
+    public int getSelectiveAcksCount() {
+      return selectiveAcks_.size();
+    }
+    /**
+     * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+     *
+     * <pre>
+     * Segments received above cumulative_ack (selective acknowledgment)
+     * </pre>
+     */
+    public int getSelectiveAcks(int index) {
+      return selectiveAcks_.get(index);
+    }
+    private int selectiveAcksMemoizedSerializedSize = -1;
+
+    // repeated uint32 missing = 53 [packed = true];
+    public static final int MISSING_FIELD_NUMBER = 53;
+    private java.util.List<java.lang.Integer> missing_;
+    /**
+     * <code>repeated uint32 missing = 53 [packed = true];</code>
+     *
+     * <pre>
+     * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+     * </pre>
+     */
+    public java.util.List<java.lang.Integer>
+        getMissingList() {
+      return missing_;
+    }
+    /**
+     * <code>repeated uint32 missing = 53 [packed = true];</code>
+     *
+     * <pre>
+     * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+     * </pre>
+     */
+    public int getMissingCount() {
+      return missing_.size();
+    }
+    /**
+     * <code>repeated uint32 missing = 53 [packed = true];</code>
+     *
+     * <pre>
+     * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+     * </pre>
+     */
+    public int getMissing(int index) {
+      return missing_.get(index);
+    }
+    private int missingMemoizedSerializedSize = -1;
+
+    // optional uint32 window = 54;
+    public static final int WINDOW_FIELD_NUMBER = 54;
+    private int window_;
+    /**
+     * <code>optional uint32 window = 54;</code>
+     *
+     * <pre>
+     * The number of segments above cumulative_ack the receiver accepts
+     * </pre>
+     */
+    public boolean hasWindow() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional uint32 window = 54;</code>
+     *
+     * <pre>
+     * The number of segments above cumulative_ack the receiver accepts
+     * </pre>
+     */
+    public int getWindow() {
+      return window_;
+    }
+
+    private void initFields() {
+      transferId_ = 0;
+      cumulativeAck_ = 0;
+      selectiveAcks_ = java.util.Collections.emptyList();
+      missing_ = java.util.Collections.emptyList();
+      window_ = 0;
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeUInt32(50, transferId_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeUInt32(51, cumulativeAck_);
+      }
+      if (getSelectiveAcksList().size() > 0) {
+        output.writeRawVarint32(418);
+        output.writeRawVarint32(selectiveAcksMemoizedSerializedSize);
+      }
+      for (int i = 0; i < selectiveAcks_.size(); i++) {
+        output.writeUInt32NoTag(selectiveAcks_.get(i));
+      }
+      if (getMissingList().size() > 0) {
+        output.writeRawVarint32(426);
+        output.writeRawVarint32(missingMemoizedSerializedSize);
+      }
+      for (int i = 0; i < missing_.size(); i++) {
+        output.writeUInt32NoTag(missing_.get(i));
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeUInt32(54, window_);
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt32Size(50, transferId_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt32Size(51, cumulativeAck_);
+      }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < selectiveAcks_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeUInt32SizeNoTag(selectiveAcks_.get(i));
+        }
+        size += dataSize;
+        if (!getSelectiveAcksList().isEmpty()) {
+          size += 2;
+          size += com.google.protobuf.CodedOutputStream
+              .computeInt32SizeNoTag(dataSize);
+        }
+        selectiveAcksMemoizedSerializedSize = dataSize;
+      }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < missing_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeUInt32SizeNoTag(missing_.get(i));
+        }
+        size += dataSize;
+        if (!getMissingList().isEmpty()) {
+          size += 2;
+          size += com.google.protobuf.CodedOutputStream
+              .computeInt32SizeNoTag(dataSize);
+        }
+        missingMemoizedSerializedSize = dataSize;
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt32Size(54, window_);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code ul.fcul.lasige.find.protocolbuffer.TransferAck}
+     *
+     * <pre>
+     * Acknowledgment of the segments of a reliable transfer received so far, sent back to the sender of each segment.
+     * Field numbers start at 50.
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAckOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransferAck_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransferAck_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck.class, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck.Builder.class);
+      }
+
+      // Construct using ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        transferId_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000001);
+        cumulativeAck_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        selectiveAcks_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000004);
+        missing_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000008);
+        window_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000010);
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransferAck_descriptor;
+      }
+
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck getDefaultInstanceForType() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck.getDefaultInstance();
+      }
+
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck build() {
+        ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck buildPartial() {
+        ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck result = new ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.transferId_ = transferId_;
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.cumulativeAck_ = cumulativeAck_;
+        if (((bitField0_ & 0x00000004) == 0x00000004)) {
+          selectiveAcks_ = java.util.Collections.unmodifiableList(selectiveAcks_);
+          bitField0_ = (bitField0_ & ~0x00000004);
+        }
+        result.selectiveAcks_ = selectiveAcks_;
+        if (((bitField0_ & 0x00000008) == 0x00000008)) {
+          missing_ = java.util.Collections.unmodifiableList(missing_);
+          bitField0_ = (bitField0_ & ~0x00000008);
+        }
+        result.missing_ = missing_;
+        if (((from_bitField0_ & 0x00000010) == 0x00000010)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.window_ = window_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck) {
+          return mergeFrom((ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck other) {
+        if (other == ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck.getDefaultInstance()) return this;
+        if (other.hasTransferId()) {
+          setTransferId(other.getTransferId());
+        }
+        if (other.hasCumulativeAck()) {
+          setCumulativeAck(other.getCumulativeAck());
+        }
+        if (!other.selectiveAcks_.isEmpty()) {
+          if (selectiveAcks_.isEmpty()) {
+            selectiveAcks_ = other.selectiveAcks_;
+            bitField0_ = (bitField0_ & ~0x00000004);
+          } else {
+            ensureSelectiveAcksIsMutable();
+            selectiveAcks_.addAll(other.selectiveAcks_);
+          }
+          onChanged();
+        }
+        if (!other.missing_.isEmpty()) {
+          if (missing_.isEmpty()) {
+            missing_ = other.missing_;
+            bitField0_ = (bitField0_ & ~0x00000008);
+          } else {
+            ensureMissingIsMutable();
+            missing_.addAll(other.missing_);
+          }
+          onChanged();
+        }
+        if (other.hasWindow()) {
+          setWindow(other.getWindow());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // optional uint32 transfer_id = 50;
+      private int transferId_ ;
+      /**
+       * <code>optional uint32 transfer_id = 50;</code>
+       *
+       * <pre>
+       * The id of the acknowledged transfer
+       * </pre>
+       */
+      public boolean hasTransferId() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>optional uint32 transfer_id = 50;</code>
+       *
+       * <pre>
+       * The id of the acknowledged transfer
+       * </pre>
+       */
+      public int getTransferId() {
+        return transferId_;
+      }
+      /**
+       * <code>optional uint32 transfer_id = 50;</code>
+       *
+       * <pre>
+       * The id of the acknowledged transfer
+       * </pre>
+       */
+      public Builder setTransferId(int value) {
+        bitField0_ |= 0x00000001;
+        transferId_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint32 transfer_id = 50;</code>
+       *
+       * <pre>
+       * The id of the acknowledged transfer
+       * </pre>
+       */
+      public Builder clearTransferId() {
+        bitField0_ = (bitField0_ & ~0x00000001);
+        transferId_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // optional uint32 cumulative_ack = 51;
+      private int cumulativeAck_ ;
+      /**
+       * <code>optional uint32 cumulative_ack = 51;</code>
+       *
+       * <pre>
+       * All segments with a lower sequence number were received
+       * </pre>
+       */
+      public boolean hasCumulativeAck() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>optional uint32 cumulative_ack = 51;</code>
+       *
+       * <pre>
+       * All segments with a lower sequence number were received
+       * </pre>
+       */
+      public int getCumulativeAck() {
+        return cumulativeAck_;
+      }
+      /**
+       * <code>optional uint32 cumulative_ack = 51;</code>
+       *
+       * <pre>
+       * All segments with a lower sequence number were received
+       * </pre>
+       */
+      public Builder setCumulativeAck(int value) {
+        bitField0_ |= 0x00000002;
+        cumulativeAck_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint32 cumulative_ack = 51;</code>
+       *
+       * <pre>
+       * All segments with a lower sequence number were received
+       * </pre>
+       */
+      public Builder clearCumulativeAck() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        cumulativeAck_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // repeated uint32 selective_acks = 52 [packed = true];
+      private java.util.List<java.lang.Integer> selectiveAcks_ = java.util.Collections.emptyList();
+      private void ensureSelectiveAcksIsMutable() {
+        if (!((bitField0_ & 0x00000004) == 0x00000004)) {
+          selectiveAcks_ = new java.util.ArrayList<java.lang.Integer>(selectiveAcks_);
+          bitField0_ |= 0x00000004;
+         }
+      }
+      /**
+       * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+       *
+       * <pre>
+       * Segments received above cumulative_ack (selective acknowledgment)
+       * </pre>
+       */
+      public java.util.List<java.lang.Integer>
+          getSelectiveAcksList() {
+        return java.util.Collections.unmodifiableList(selectiveAcks_);
+      }
+      /**
+       * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+       *
+       * <pre>
+       * Segments received above cumulative_ack (selective acknowledgment)
+       * </pre>
+       */
+      public int getSelectiveAcksCount() {
+        return selectiveAcks_.size();
+      }
+      /**
+       * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+       *
+       * <pre>
+       * Segments received above cumulative_ack (selective acknowledgment)
+       * </pre>
+       */
+      public int getSelectiveAcks(int index) {
+        return selectiveAcks_.get(index);
+      }
+      /**
+       * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+       *
+       * <pre>
+       * Segments received above cumulative_ack (selective acknowledgment)
+       * </pre>
+       */
+      public Builder setSelectiveAcks(
+          int index, int value) {
+        ensureSelectiveAcksIsMutable();
+        selectiveAcks_.set(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+       *
+       * <pre>
+       * Segments received above cumulative_ack (selective acknowledgment)
+       * </pre>
+       */
+      public Builder addSelectiveAcks(int value) {
+        ensureSelectiveAcksIsMutable();
+        selectiveAcks_.add(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+       *
+       * <pre>
+       * Segments received above cumulative_ack (selective acknowledgment)
+       * </pre>
+       */
+      public Builder addAllSelectiveAcks(
+          java.lang.Iterable<? extends java.lang.Integer> values) {
+        ensureSelectiveAcksIsMutable();
+        super.addAll(values, selectiveAcks_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated uint32 selective_acks = 52 [packed = true];</code>
+       *
+       * <pre>
+       * Segments received above cumulative_ack (selective acknowledgment)
+       * </pre>
+       */
+      public Builder clearSelectiveAcks() {
+        selectiveAcks_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000004);
+        onChanged();
+        return this;
+      }
+
+      // repeated uint32 missing = 53 [packed = true];
+      private java.util.List<java.lang.Integer> missing_ = java.util.Collections.emptyList();
+      private void ensureMissingIsMutable() {
+        if (!((bitField0_ & 0x00000008) == 0x00000008)) {
+          missing_ = new java.util.ArrayList<java.lang.Integer>(missing_);
+          bitField0_ |= 0x00000008;
+         }
+      }
+      /**
+       * <code>repeated uint32 missing = 53 [packed = true];</code>
+       *
+       * <pre>
+       * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+       * </pre>
+       */
+      public java.util.List<java.lang.Integer>
+          getMissingList() {
+        return java.util.Collections.unmodifiableList(missing_);
+      }
+      /**
+       * <code>repeated uint32 missing = 53 [packed = true];</code>
+       *
+       * <pre>
+       * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+       * </pre>
+       */
+      public int getMissingCount() {
+        return missing_.size();
+      }
+      /**
+       * <code>repeated uint32 missing = 53 [packed = true];</code>
+       *
+       * <pre>
+       * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+       * </pre>
+       */
+      public int getMissing(int index) {
+        return missing_.get(index);
+      }
+      /**
+       * <code>repeated uint32 missing = 53 [packed = true];</code>
+       *
+       * <pre>
+       * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+       * </pre>
+       */
+      public Builder setMissing(
+          int index, int value) {
+        ensureMissingIsMutable();
+        missing_.set(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated uint32 missing = 53 [packed = true];</code>
+       *
+       * <pre>
+       * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+       * </pre>
+       */
+      public Builder addMissing(int value) {
+        ensureMissingIsMutable();
+        missing_.add(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated uint32 missing = 53 [packed = true];</code>
+       *
+       * <pre>
+       * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+       * </pre>
+       */
+      public Builder addAllMissing(
+          java.lang.Iterable<? extends java.lang.Integer> values) {
+        ensureMissingIsMutable();
+        super.addAll(values, missing_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated uint32 missing = 53 [packed = true];</code>
+       *
+       * <pre>
+       * Segments not received between cumulative_ack and the highest received segment (negative acknowledgment)
+       * </pre>
+       */
+      public Builder clearMissing() {
+        missing_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000008);
+        onChanged();
+        return this;
+      }
+
+      // optional uint32 window = 54;
+      private int window_ ;
+      /**
+       * <code>optional uint32 window = 54;</code>
+       *
+       * <pre>
+       * The number of segments above cumulative_ack the receiver accepts
+       * </pre>
+       */
+      public boolean hasWindow() {
+        return ((bitField0_ & 0x00000010) == 0x00000010);
+      }
+      /**
+       * <code>optional uint32 window = 54;</code>
+       *
+       * <pre>
+       * The number of segments above cumulative_ack the receiver accepts
+       * </pre>
+       */
+      public int getWindow() {
+        return window_;
+      }
+      /**
+       * <code>optional uint32 window = 54;</code>
+       *
+       * <pre>
+       * The number of segments above cumulative_ack the receiver accepts
+       * </pre>
+       */
+      public Builder setWindow(int value) {
+        bitField0_ |= 0x00000010;
+        window_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint32 window = 54;</code>
+       *
+       * <pre>
+       * The number of segments above cumulative_ack the receiver accepts
+       * </pre>
+       */
+      public Builder clearWindow() {
+        bitField0_ = (bitField0_ & ~0x00000010);
+        window_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:ul.fcul.lasige.find.protocolbuffer.TransferAck)
+    }
+
+    static {
+      defaultInstance = new TransferAck(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:ul.fcul.lasige.find.protocolbuffer.TransferAck)
+  }
+
+  public interface TransportFragmentOrBuilder
+      extends com.google.protobuf.MessageOrBuilder {
+
+    // optional bytes packet_digest = 60;
+    /**
+     * <code>optional bytes packet_digest = 60;</code>
+     *
+     * <pre>
+     * The SHA-1 digest of the encoded packet, identifying it across fragments, senders and contacts
+     * </pre>
+     */
+    boolean hasPacketDigest();
+    /**
+     * <code>optional bytes packet_digest = 60;</code>
+     *
+     * <pre>
+     * The SHA-1 digest of the encoded packet, identifying it across fragments, senders and contacts
+     * </pre>
+     */
+    com.google.protobuf.ByteString getPacketDigest();
+
+    // optional uint32 index = 61;
+    /**
+     * <code>optional uint32 index = 61;</code>
+     *
+     * <pre>
+     * The index of this fragment, starting at 0
+     * </pre>
+     */
+    boolean hasIndex();
+    /**
+     * <code>optional uint32 index = 61;</code>
+     *
+     * <pre>
+     * The index of this fragment, starting at 0
+     * </pre>
+     */
+    int getIndex();
+
+    // optional uint32 count = 62;
+    /**
+     * <code>optional uint32 count = 62;</code>
+     *
+     * <pre>
+     * The number of fragments of the packet
+     * </pre>
+     */
+    boolean hasCount();
+    /**
+     * <code>optional uint32 count = 62;</code>
+     *
+     * <pre>
+     * The number of fragments of the packet
+     * </pre>
+     */
+    int getCount();
+
+    // optional uint32 packet_size = 63;
+    /**
+     * <code>optional uint32 packet_size = 63;</code>
+     *
+     * <pre>
+     * The size of the encoded packet, in bytes
+     * </pre>
+     */
+    boolean hasPacketSize();
+    /**
+     * <code>optional uint32 packet_size = 63;</code>
+     *
+     * <pre>
+     * The size of the encoded packet, in bytes
+     * </pre>
+     */
+    int getPacketSize();
+
+    // optional bytes data = 64;
+    /**
+     * <code>optional bytes data = 64;</code>
+     *
+     * <pre>
+     * A slice of the encoded packet
+     * </pre>
+     */
+    boolean hasData();
+    /**
+     * <code>optional bytes data = 64;</code>
+     *
+     * <pre>
+     * A slice of the encoded packet
+     * </pre>
+     */
+    com.google.protobuf.ByteString getData();
+  }
+  /**
+   * Protobuf type {@code ul.fcul.lasige.find.protocolbuffer.TransportFragment}
+   *
+   * <pre>
+   * A fragment of a TransportPacket too large for a single datagram. Field numbers start at 60, so that receivers can
+   * tell fragments from other messages by the first tag.
+   * </pre>
+   */
+  public static final class TransportFragment extends
+      com.google.protobuf.GeneratedMessage
+      implements TransportFragmentOrBuilder {
+    // Use TransportFragment.newBuilder() to construct.
+    private TransportFragment(com.google.protobuf.GeneratedMessage.Builder<?> builder) {
+      super(builder);
+      this.unknownFields = builder.getUnknownFields();
+    }
+    private TransportFragment(boolean noInit) { this.unknownFields = com.google.protobuf.UnknownFieldSet.getDefaultInstance(); }
+
+    private static final TransportFragment defaultInstance;
+    public static TransportFragment getDefaultInstance() {
+      return defaultInstance;
+    }
+
+    public TransportFragment getDefaultInstanceForType() {
+      return defaultInstance;
+    }
+
+    private final com.google.protobuf.UnknownFieldSet unknownFields;
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+        getUnknownFields() {
+      return this.unknownFields;
+    }
+    private TransportFragment(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      initFields();
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(input, unknownFields,
+                                     extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 482: {
+              bitField0_ |= 0x00000001;
+              packetDigest_ = input.readBytes();
+              break;
+            }
+            case 488: {
+              bitField0_ |= 0x00000002;
+              index_ = input.readUInt32();
+              break;
+            }
+            case 496: {
+              bitField0_ |= 0x00000004;
+              count_ = input.readUInt32();
+              break;
+            }
+            case 504: {
+              bitField0_ |= 0x00000008;
+              packetSize_ = input.readUInt32();
+              break;
+            }
+            case 514: {
+              bitField0_ |= 0x00000010;
+              data_ = input.readBytes();
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e.getMessage()).setUnfinishedMessage(this);
+      } finally {
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransportFragment_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransportFragment_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment.class, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment.Builder.class);
+    }
+
+    public static com.google.protobuf.Parser<TransportFragment> PARSER =
+        new com.google.protobuf.AbstractParser<TransportFragment>() {
+      public TransportFragment parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new TransportFragment(input, extensionRegistry);
+      }
+    };
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<TransportFragment> getParserForType() {
+      return PARSER;
+    }
+
+    private int bitField0_;
+    // optional bytes packet_digest = 60;
+    public static final int PACKET_DIGEST_FIELD_NUMBER = 60;
+    private com.google.protobuf.ByteString packetDigest_;
+    /**
+     * <code>optional bytes packet_digest = 60;</code>
+     *
+     * <pre>
+     * The SHA-1 digest of the encoded packet, identifying it across fragments, senders and contacts
+     * </pre>
+     */
+    public boolean hasPacketDigest() {
+      return ((bitField0_ & 0x00000001) == 0x00000001);
+    }
+    /**
+     * <code>optional bytes packet_digest = 60;</code>
+     *
+     * <pre>
+     * The SHA-1 digest of the encoded packet, identifying it across fragments, senders and contacts
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getPacketDigest() {
+      return packetDigest_;
+    }
+
+    // optional uint32 index = 61;
+    public static final int INDEX_FIELD_NUMBER = 61;
+    private int index_;
+    /**
+     * <code>optional uint32 index = 61;</code>
+     *
+     * <pre>
+     * The index of this fragment, starting at 0
+     * </pre>
+     */
+    public boolean hasIndex() {
+      return ((bitField0_ & 0x00000002) == 0x00000002);
+    }
+    /**
+     * <code>optional uint32 index = 61;</code>
+     *
+     * <pre>
+     * The index of this fragment, starting at 0
+     * </pre>
+     */
+    public int getIndex() {
+      return index_;
+    }
+
+    // optional uint32 count = 62;
+    public static final int COUNT_FIELD_NUMBER = 62;
+    private int count_;
+    /**
+     * <code>optional uint32 count = 62;</code>
+     *
+     * <pre>
+     * The number of fragments of the packet
+     * </pre>
+     */
+    public boolean hasCount() {
+      return ((bitField0_ & 0x00000004) == 0x00000004);
+    }
+    /**
+     * <code>optional uint32 count = 62;</code>
+     *
+     * <pre>
+     * The number of fragments of the packet
+     * </pre>
+     */
+    public int getCount() {
+      return count_;
+    }
+
+    // optional uint32 packet_size = 63;
+    public static final int PACKET_SIZE_FIELD_NUMBER = 63;
+    private int packetSize_;
+    /**
+     * <code>optional uint32 packet_size = 63;</code>
+     *
+     * <pre>
+     * The size of the encoded packet, in bytes
+     * </pre>
+     */
+    public boolean hasPacketSize() {
+      return ((bitField0_ & 0x00000008) == 0x00000008);
+    }
+    /**
+     * <code>optional uint32 packet_size = 63;</code>
+     *
+     * <pre>
+     * The size of the encoded packet, in bytes
+     * </pre>
+     */
+    public int getPacketSize() {
+      return packetSize_;
+    }
+
+    // optional bytes data = 64;
+    public static final int DATA_FIELD_NUMBER = 64;
+    private com.google.protobuf.ByteString data_;
+    /**
+     * <code>optional bytes data = 64;</code>
+     *
+     * <pre>
+     * A slice of the encoded packet
+     * </pre>
+     */
+    public boolean hasData() {
+      return ((bitField0_ & 0x00000010) == 0x00000010);
+    }
+    /**
+     * <code>optional bytes data = 64;</code>
+     *
+     * <pre>
+     * A slice of the encoded packet
+     * </pre>
+     */
+    public com.google.protobuf.ByteString getData() {
+      return data_;
+    }
+
+    private void initFields() {
+      packetDigest_ = com.google.protobuf.ByteString.EMPTY;
+      index_ = 0;
+      count_ = 0;
+      packetSize_ = 0;
+      data_ = com.google.protobuf.ByteString.EMPTY;
+    }
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized != -1) return isInitialized == 1;
+
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        output.writeBytes(60, packetDigest_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        output.writeUInt32(61, index_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        output.writeUInt32(62, count_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        output.writeUInt32(63, packetSize_);
+      }
+      if (((bitField0_ & 0x00000010) == 0x00000010)) {
+        output.writeBytes(64, data_);
+      }
+      getUnknownFields().writeTo(output);
+    }
+
+    private int memoizedSerializedSize = -1;
+    public int getSerializedSize() {
+      int size = memoizedSerializedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      if (((bitField0_ & 0x00000001) == 0x00000001)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(60, packetDigest_);
+      }
+      if (((bitField0_ & 0x00000002) == 0x00000002)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt32Size(61, index_);
+      }
+      if (((bitField0_ & 0x00000004) == 0x00000004)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt32Size(62, count_);
+      }
+      if (((bitField0_ & 0x00000008) == 0x00000008)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeUInt32Size(63, packetSize_);
+      }
+      if (((bitField0_ & 0x00000010) == 0x00000010)) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(64, data_);
+      }
+      size += getUnknownFields().getSerializedSize();
+      memoizedSerializedSize = size;
+      return size;
+    }
+
+    private static final long serialVersionUID = 0L;
+    @java.lang.Override
+    protected java.lang.Object writeReplace()
+        throws java.io.ObjectStreamException {
+      return super.writeReplace();
+    }
+
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseDelimitedFrom(input, extensionRegistry);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input);
+    }
+    public static ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return PARSER.parseFrom(input, extensionRegistry);
+    }
+
+    public static Builder newBuilder() { return Builder.create(); }
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder(ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment prototype) {
+      return newBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() { return newBuilder(this); }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code ul.fcul.lasige.find.protocolbuffer.TransportFragment}
+     *
+     * <pre>
+     * A fragment of a TransportPacket too large for a single datagram. Field numbers start at 60, so that receivers can
+     * tell fragments from other messages by the first tag.
+     * </pre>
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessage.Builder<Builder>
+       implements ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragmentOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransportFragment_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessage.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransportFragment_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment.class, ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment.Builder.class);
+      }
+
+      // Construct using ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessage.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessage.alwaysUseFieldBuilders) {
+        }
+      }
+      private static Builder create() {
+        return new Builder();
+      }
+
+      public Builder clear() {
+        super.clear();
+        packetDigest_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000001);
+        index_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000002);
+        count_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000004);
+        packetSize_ = 0;
+        bitField0_ = (bitField0_ & ~0x00000008);
+        data_ = com.google.protobuf.ByteString.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000010);
+        return this;
+      }
+
+      public Builder clone() {
+        return create().mergeFrom(buildPartial());
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.internal_static_ul_fcul_lasige_find_protocolbuffer_TransportFragment_descriptor;
+      }
+
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment getDefaultInstanceForType() {
+        return ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment.getDefaultInstance();
+      }
+
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment build() {
+        ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment buildPartial() {
+        ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment result = new ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment(this);
+        int from_bitField0_ = bitField0_;
+        int to_bitField0_ = 0;
+        if (((from_bitField0_ & 0x00000001) == 0x00000001)) {
+          to_bitField0_ |= 0x00000001;
+        }
+        result.packetDigest_ = packetDigest_;
+        if (((from_bitField0_ & 0x00000002) == 0x00000002)) {
+          to_bitField0_ |= 0x00000002;
+        }
+        result.index_ = index_;
+        if (((from_bitField0_ & 0x00000004) == 0x00000004)) {
+          to_bitField0_ |= 0x00000004;
+        }
+        result.count_ = count_;
+        if (((from_bitField0_ & 0x00000008) == 0x00000008)) {
+          to_bitField0_ |= 0x00000008;
+        }
+        result.packetSize_ = packetSize_;
+        if (((from_bitField0_ & 0x00000010) == 0x00000010)) {
+          to_bitField0_ |= 0x00000010;
+        }
+        result.data_ = data_;
+        result.bitField0_ = to_bitField0_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment) {
+          return mergeFrom((ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment other) {
+        if (other == ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment.getDefaultInstance()) return this;
+        if (other.hasPacketDigest()) {
+          setPacketDigest(other.getPacketDigest());
+        }
+        if (other.hasIndex()) {
+          setIndex(other.getIndex());
+        }
+        if (other.hasCount()) {
+          setCount(other.getCount());
+        }
+        if (other.hasPacketSize()) {
+          setPacketSize(other.getPacketSize());
+        }
+        if (other.hasData()) {
+          setData(other.getData());
+        }
+        this.mergeUnknownFields(other.getUnknownFields());
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment) e.getUnfinishedMessage();
+          throw e;
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      // optional bytes packet_digest = 60;
+      private com.google.protobuf.ByteString packetDigest_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes packet_digest = 60;</code>
+       *
+       * <pre>
+       * The SHA-1 digest of the encoded packet, identifying it across fragments, senders and contacts
+       * </pre>
+       */
+      public boolean hasPacketDigest() {
+        return ((bitField0_ & 0x00000001) == 0x00000001);
+      }
+      /**
+       * <code>optional bytes packet_digest = 60;</code>
+       *
+       * <pre>
+       * The SHA-1 digest of the encoded packet, identifying it across fragments, senders and contacts
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getPacketDigest() {
+        return packetDigest_;
+      }
+      /**
+       * <code>optional bytes packet_digest = 60;</code>
+       *
+       * <pre>
+       * The SHA-1 digest of the encoded packet, identifying it across fragments, senders and contacts
+       * </pre>
+       */
+      public Builder setPacketDigest(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000001;
+        packetDigest_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes packet_digest = 60;</code>
+       *
+       * <pre>
+       * The SHA-1 digest of the encoded packet, identifying it across fragments, senders and contacts
+       * </pre>
+       */
+      public Builder clearPacketDigest() {
+        bitField0_ = (bitField0_ & ~0x00000001);
+        packetDigest_ = getDefaultInstance().getPacketDigest();
+        onChanged();
+        return this;
+      }
+
+      // optional uint32 index = 61;
+      private int index_ ;
+      /**
+       * <code>optional uint32 index = 61;</code>
+       *
+       * <pre>
+       * The index of this fragment, starting at 0
+       * </pre>
+       */
+      public boolean hasIndex() {
+        return ((bitField0_ & 0x00000002) == 0x00000002);
+      }
+      /**
+       * <code>optional uint32 index = 61;</code>
+       *
+       * <pre>
+       * The index of this fragment, starting at 0
+       * </pre>
+       */
+      public int getIndex() {
+        return index_;
+      }
+      /**
+       * <code>optional uint32 index = 61;</code>
+       *
+       * <pre>
+       * The index of this fragment, starting at 0
+       * </pre>
+       */
+      public Builder setIndex(int value) {
+        bitField0_ |= 0x00000002;
+        index_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint32 index = 61;</code>
+       *
+       * <pre>
+       * The index of this fragment, starting at 0
+       * </pre>
+       */
+      public Builder clearIndex() {
+        bitField0_ = (bitField0_ & ~0x00000002);
+        index_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // optional uint32 count = 62;
+      private int count_ ;
+      /**
+       * <code>optional uint32 count = 62;</code>
+       *
+       * <pre>
+       * The number of fragments of the packet
+       * </pre>
+       */
+      public boolean hasCount() {
+        return ((bitField0_ & 0x00000004) == 0x00000004);
+      }
+      /**
+       * <code>optional uint32 count = 62;</code>
+       *
+       * <pre>
+       * The number of fragments of the packet
+       * </pre>
+       */
+      public int getCount() {
+        return count_;
+      }
+      /**
+       * <code>optional uint32 count = 62;</code>
+       *
+       * <pre>
+       * The number of fragments of the packet
+       * </pre>
+       */
+      public Builder setCount(int value) {
+        bitField0_ |= 0x00000004;
+        count_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint32 count = 62;</code>
+       *
+       * <pre>
+       * The number of fragments of the packet
+       * </pre>
+       */
+      public Builder clearCount() {
+        bitField0_ = (bitField0_ & ~0x00000004);
+        count_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // optional uint32 packet_size = 63;
+      private int packetSize_ ;
+      /**
+       * <code>optional uint32 packet_size = 63;</code>
+       *
+       * <pre>
+       * The size of the encoded packet, in bytes
+       * </pre>
+       */
+      public boolean hasPacketSize() {
+        return ((bitField0_ & 0x00000008) == 0x00000008);
+      }
+      /**
+       * <code>optional uint32 packet_size = 63;</code>
+       *
+       * <pre>
+       * The size of the encoded packet, in bytes
+       * </pre>
+       */
+      public int getPacketSize() {
+        return packetSize_;
+      }
+      /**
+       * <code>optional uint32 packet_size = 63;</code>
+       *
+       * <pre>
+       * The size of the encoded packet, in bytes
+       * </pre>
+       */
+      public Builder setPacketSize(int value) {
+        bitField0_ |= 0x00000008;
+        packetSize_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional uint32 packet_size = 63;</code>
+       *
+       * <pre>
+       * The size of the encoded packet, in bytes
+       * </pre>
+       */
+      public Builder clearPacketSize() {
+        bitField0_ = (bitField0_ & ~0x00000008);
+        packetSize_ = 0;
+        onChanged();
+        return this;
+      }
+
+      // optional bytes data = 64;
+      private com.google.protobuf.ByteString data_ = com.google.protobuf.ByteString.EMPTY;
+      /**
+       * <code>optional bytes data = 64;</code>
+       *
+       * <pre>
+       * A slice of the encoded packet
+       * </pre>
+       */
+      public boolean hasData() {
+        return ((bitField0_ & 0x00000010) == 0x00000010);
+      }
+      /**
+       * <code>optional bytes data = 64;</code>
+       *
+       * <pre>
+       * A slice of the encoded packet
+       * </pre>
+       */
+      public com.google.protobuf.ByteString getData() {
+        return data_;
+      }
+      /**
+       * <code>optional bytes data = 64;</code>
+       *
+       * <pre>
+       * A slice of the encoded packet
+       * </pre>
+       */
+      public Builder setData(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  bitField0_ |= 0x00000010;
+        data_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>optional bytes data = 64;</code>
+       *
+       * <pre>
+       * A slice of the encoded packet
+       * </pre>
+       */
+      public Builder clearData() {
+        bitField0_ = (bitField0_ & ~0x00000010);
+        data_ = getDefaultInstance().getData();
+        onChanged();
+        return this;
+      }
+
+      // @@protoc_insertion_point(builder_scope:ul.fcul.lasige.find.protocolbuffer.TransportFragment)
+    }
+
+    static {
+      defaultInstance = new TransportFragment(true);
+      defaultInstance.initFields();
+    }
+
+    // @@protoc_insertion_point(class_scope:ul.fcul.lasige.find.protocolbuffer.TransportFragment)
+  }
+
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_ul_fcul_lasige_find_protocolbuffer_Beacon_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_ul_fcul_lasige_find_protocolbuffer_Beacon_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_ul_fcul_lasige_find_protocolbuffer_Node_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_ul_fcul_lasige_find_protocolbuffer_Node_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_ul_fcul_lasige_find_protocolbuffer_TransportPacket_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_ul_fcul_lasige_find_protocolbuffer_TransportPacket_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_ul_fcul_lasige_find_protocolbuffer_TransportBundle_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_ul_fcul_lasige_find_protocolbuffer_TransportBundle_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_ul_fcul_lasige_find_protocolbuffer_TransferSegment_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_ul_fcul_lasige_find_protocolbuffer_TransferSegment_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_ul_fcul_lasige_find_protocolbuffer_TransferAck_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_ul_fcul_lasige_find_protocolbuffer_TransferAck_fieldAccessorTable;
+  private static com.google.protobuf.Descriptors.Descriptor
+    internal_static_ul_fcul_lasige_find_protocolbuffer_TransportFragment_descriptor;
+  private static
+    com.google.protobuf.GeneratedMessage.FieldAccessorTable
+      internal_static_ul_fcul_lasige_find_protocolbuffer_TransportFragment_fieldAccessorTable;
+
+  public static com.google.protobuf.Descriptors.FileDescriptor
+      getDescriptor() {
+    return descriptor;
+  }
+  private static com.google.protobuf.Descriptors.FileDescriptor
+      descriptor;
+  static {
+    java.lang.String[] descriptorData = {
+      "\n\030PacketDescriptions.proto\022\"ul.fcul.lasi" +
+      "ge.find.protocolbuffer\"\245\002\n\006Beacon\022T\n\013bea" +
+      "con_type\030\001 \001(\01625.ul.fcul.lasige.find.pro" +
+      "tocolbuffer.Beacon.BeaconType:\010ORIGINAL\022" +
+      "\021\n\tbeacon_id\030\002 \001(\r\022\024\n\014time_created\030\003 \001(\004" +
+      "\0228\n\006sender\030\n \001(\0132(.ul.fcul.lasige.find.p" +
+      "rotocolbuffer.Node\022;\n\tneighbors\030\024 \003(\0132(." +
+      "ul.fcul.lasige.find.protocolbuffer.Node\"" +
+      "%\n\nBeaconType\022\014\n\010ORIGINAL\020\000\022\t\n\005REPLY\020\001\"\222" +
+      "\002\n\004Node\022\017\n\007node_id\030\001 \001(\014\022\017\n\007network\030\002 \001(",
+      "\t\022\023\n\013ip4_address\030\003 \001(\014\022\023\n\013ip6_address\030\004 " +
+      "\001(\014\022\022\n\nbt_address\030\005 \001(\014\022 \n\021multicast_cap" +
+      "able\030\006 \001(\010:\005false\022\025\n\rtime_lastseen\030\007 \001(\004" +
+      "\022\026\n\016delta_lastseen\030\010 \001(\r\022\026\n\016node_id_pref" +
+      "ix\030\t \001(\014\022\021\n\tprotocols\030\024 \003(\014\022\027\n\017protocols" +
+      "_bloom\030\025 \001(\014\022\025\n\rap_likelihood\030\036 \001(\005\"u\n\017T" +
+      "ransportPacket\022\023\n\013source_node\030\001 \001(\014\022\023\n\013t" +
+      "arget_node\030\002 \001(\014\022\020\n\010protocol\030\003 \001(\014\022\013\n\003tt" +
+      "l\030\004 \001(\004\022\013\n\003mac\030\n \001(\014\022\014\n\004data\030\024 \001(\014\"W\n\017Tr" +
+      "ansportBundle\022D\n\007packets\030\036 \003(\01323.ul.fcul",
+      ".lasige.find.protocolbuffer.TransportPac" +
+      "ket\"I\n\017TransferSegment\022\023\n\013transfer_id\030( " +
+      "\001(\r\022\020\n\010sequence\030) \001(\r\022\017\n\007payload\030* \001(\014\"{" +
+      "\n\013TransferAck\022\023\n\013transfer_id\0302 \001(\r\022\026\n\016cu" +
+      "mulative_ack\0303 \001(\r\022\032\n\016selective_acks\0304 \003" +
+      "(\rB\002\020\001\022\023\n\007missing\0305 \003(\rB\002\020\001\022\016\n\006window\0306 " +
+      "\001(\r\"k\n\021TransportFragment\022\025\n\rpacket_diges" +
+      "t\030< \001(\014\022\r\n\005index\030= \001(\r\022\r\n\005count\030> \001(\r\022\023\n" +
+      "\013packet_size\030? \001(\r\022\014\n\004data\030@ \001(\014B0\n\"ul.f" +
+      "cul.lasige.find.protocolbufferB\nFindProt",
+      "os"
+    };
+    com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
+      new com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner() {
+        public com.google.protobuf.ExtensionRegistry assignDescriptors(
+            com.google.protobuf.Descriptors.FileDescriptor root) {
+          descriptor = root;
+          internal_static_ul_fcul_lasige_find_protocolbuffer_Beacon_descriptor =
+            getDescriptor().getMessageTypes().get(0);
+          internal_static_ul_fcul_lasige_find_protocolbuffer_Beacon_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_ul_fcul_lasige_find_protocolbuffer_Beacon_descriptor,
+              new java.lang.String[] { "BeaconType", "BeaconId", "TimeCreated", "Sender", "Neighbors", });
+          internal_static_ul_fcul_lasige_find_protocolbuffer_Node_descriptor =
+            getDescriptor().getMessageTypes().get(1);
+          internal_static_ul_fcul_lasige_find_protocolbuffer_Node_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_ul_fcul_lasige_find_protocolbuffer_Node_descriptor,
+              new java.lang.String[] { "NodeId", "Network", "Ip4Address", "Ip6Address", "BtAddress", "MulticastCapable", "TimeLastseen", "DeltaLastseen", "NodeIdPrefix", "Protocols", "ProtocolsBloom", "ApLikelihood", });
+          internal_static_ul_fcul_lasige_find_protocolbuffer_TransportPacket_descriptor =
+            getDescriptor().getMessageTypes().get(2);
+          internal_static_ul_fcul_lasige_find_protocolbuffer_TransportPacket_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_ul_fcul_lasige_find_protocolbuffer_TransportPacket_descriptor,
+              new java.lang.String[] { "SourceNode", "TargetNode", "Protocol", "Ttl", "Mac", "Data", });
+          internal_static_ul_fcul_lasige_find_protocolbuffer_TransportBundle_descriptor =
+            getDescriptor().getMessageTypes().get(3);
+          internal_static_ul_fcul_lasige_find_protocolbuffer_TransportBundle_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_ul_fcul_lasige_find_protocolbuffer_TransportBundle_descriptor,
+              new java.lang.String[] { "Packets", });
+          internal_static_ul_fcul_lasige_find_protocolbuffer_TransferSegment_descriptor =
+            getDescriptor().getMessageTypes().get(4);
+          internal_static_ul_fcul_lasige_find_protocolbuffer_TransferSegment_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_ul_fcul_lasige_find_protocolbuffer_TransferSegment_descriptor,
+              new java.lang.String[] { "TransferId", "Sequence", "Payload", });
+          internal_static_ul_fcul_lasige_find_protocolbuffer_TransferAck_descriptor =
+            getDescriptor().getMessageTypes().get(5);
+          internal_static_ul_fcul_lasige_find_protocolbuffer_TransferAck_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_ul_fcul_lasige_find_protocolbuffer_TransferAck_descriptor,
+              new java.lang.String[] { "TransferId", "CumulativeAck", "SelectiveAcks", "Missing", "Window", });
+          internal_static_ul_fcul_lasige_find_protocolbuffer_TransportFragment_descriptor =
+            getDescriptor().getMessageTypes().get(6);
+          internal_static_ul_fcul_lasige_find_protocolbuffer_TransportFragment_fieldAccessorTable = new
+            com.google.protobuf.GeneratedMessage.FieldAccessorTable(
+              internal_static_ul_fcul_lasige_find_protocolbuffer_TransportFragment_descriptor,
+              new java.lang.String[] { "PacketDigest", "Index", "Count", "PacketSize", "Data", });
           return null;
         }
       };
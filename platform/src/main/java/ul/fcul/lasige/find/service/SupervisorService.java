@@ -23,6 +23,7 @@ import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Set;
 
+import ul.fcul.lasige.find.beaconing.AdaptiveBeaconingScheduler;
 import ul.fcul.lasige.find.beaconing.BeaconingIntervalHandler;
 import ul.fcul.lasige.find.beaconing.BeaconingManager;
 import ul.fcul.lasige.find.beaconing.Policy;
@@ -78,6 +79,7 @@ public class SupervisorService extends Service {
     private BeaconingManager mBeaconingManager; // singleton
     private BroadcastReceiver mBeaconingFinishedReceiver; // receiver of beaconing finish
     private int mBeaconingRoundId; // stores the id of this beaconing round
+    private AdaptiveBeaconingScheduler mBeaconingScheduler; // decides when the next beaconing round starts
 
     // policy that influences beaconing interval
     private volatile Policy mPolicy; // current policy
@@ -95,6 +97,7 @@ public class SupervisorService extends Service {
 
         // initializes beaconing manager
         mBeaconingManager = BeaconingManager.getInstance(this);
+        mBeaconingScheduler = AdaptiveBeaconingScheduler.getInstance(this);
 
         // get alarm manager to schedule wakeups
         mAlarmManager = (AlarmManager) getSystemService(Context.ALARM_SERVICE);
@@ -486,9 +489,11 @@ public class SupervisorService extends Service {
     }
 
     /**
-     * Schedule next {@link SupervisorService Supervisor} wakeup based on current policy.
+     * Schedule next {@link SupervisorService Supervisor} wakeup based on current policy and on the
+     * neighborhood's activity.
      *
      * @see Policy
+     * @see AdaptiveBeaconingScheduler
      */
     private void scheduleNextWakeUp() {
         // get policy interval
@@ -502,7 +507,7 @@ public class SupervisorService extends Service {
                     this, 0, new Intent(this, WakeUpReceiver.class),
                     PendingIntent.FLAG_UPDATE_CURRENT);
             // get next beaconing time
-            final long triggerTimeMillis = interval.getNextBeaconTimeMillis();
+            final long triggerTimeMillis = mBeaconingScheduler.getNextBeaconTimeMillis(mPolicy);
             // set alarm
             mAlarmManager.set(AlarmManager.RTC_WAKEUP, triggerTimeMillis, mWakeUpIntent);
             Log.d(TAG, String.format("Set alarm to wake up again in %d seconds",
@@ -24,7 +24,7 @@ import java.util.Set;
 
 import ul.fcul.lasige.find.R;
 import ul.fcul.lasige.find.beaconing.BeaconingManager;
-import ul.fcul.lasige.find.data.DbController;
+import ul.fcul.lasige.find.data.NeighborTable;
 import ul.fcul.lasige.find.lib.data.Neighbor;
 import ul.fcul.lasige.find.network.NetworkManager;
 
@@ -38,7 +38,7 @@ public class NeighborsFragment extends Fragment {
 
     // data cursor adapter
     private NeighborListAdapter mAdapter;
-    private DbController mDbController;
+    private NeighborTable mNeighborTable;
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
@@ -47,9 +47,9 @@ public class NeighborsFragment extends Fragment {
         View view = inflater.inflate(R.layout.fragment_neighbors, container, false);
 
         // get data
-        mDbController = new DbController(getActivity());
+        mNeighborTable = NeighborTable.getInstance(getActivity());
         // get all neighbors
-        Set<Neighbor> list = mDbController.getNeighbors(0);
+        Set<Neighbor> list = mNeighborTable.getNeighbors(0);
 
         // create adapter (data)
         mAdapter = new NeighborListAdapter(getActivity(), list);
@@ -66,7 +66,7 @@ public class NeighborsFragment extends Fragment {
         super.onResume();
 
         // update adapter
-        Set<Neighbor> list = mDbController.getNeighbors(0);
+        Set<Neighbor> list = mNeighborTable.getNeighbors(0);
         mAdapter.changeList(list);
     }
 
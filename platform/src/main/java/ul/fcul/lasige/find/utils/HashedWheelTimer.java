@@ -0,0 +1,213 @@
+package ul.fcul.lasige.find.utils;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel (Varghese and Lauck), used to schedule a large number of coarse timeouts that are frequently
+ * rescheduled, such as neighbor expiry. Scheduling and cancelling a timeout are O(1); every tick, only the timeouts
+ * in the current bucket are visited.
+ *
+ * <p>The wheel only ticks while timeouts are pending. Tasks run on the wheel's thread, outside its lock, and should
+ * be short.</p>
+ */
+public class HashedWheelTimer {
+    private static final String TAG = HashedWheelTimer.class.getSimpleName();
+
+    // duration of a tick
+    private final long mTickMillis;
+    // buckets, each a doubly linked list of timeouts
+    private final Timeout[] mBuckets;
+    // mask to map ticks to buckets (number of buckets is a power of two)
+    private final int mMask;
+
+    // thread where the wheel ticks and tasks run
+    private final ScheduledExecutorService mExecutor;
+    // ticking task, while timeouts are pending
+    private ScheduledFuture<?> mTicker;
+    // current tick, and time it started
+    private long mTick;
+    private long mTickStartMillis;
+    // number of pending timeouts
+    private int mPendingCount;
+
+    /**
+     * Constructor.
+     * @param name Name of the wheel's thread.
+     * @param tickMillis Duration of a tick, i.e. the resolution of the timer.
+     * @param wheelSize Number of buckets; it is rounded up to a power of two.
+     */
+    public HashedWheelTimer(final String name, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive.");
+        }
+        mTickMillis = tickMillis;
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        mBuckets = new Timeout[size];
+        mMask = size - 1;
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Schedules a task to run after a given delay. The task runs at most one tick late.
+     * @param task Task.
+     * @param delayMillis Delay, in milliseconds.
+     * @return Timeout, which can be cancelled.
+     */
+    public synchronized Timeout schedule(Runnable task, long delayMillis) {
+        if (mTicker == null) {
+            // wheel was idle, restart ticking
+            mTickStartMillis = System.currentTimeMillis();
+            mTicker = mExecutor.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    tick();
+                }
+            }, mTickMillis, mTickMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // ticks are counted from the start of the current tick
+        final long elapsed = System.currentTimeMillis() - mTickStartMillis;
+        final long ticks = Math.max(1, (elapsed + Math.max(0, delayMillis) + mTickMillis - 1) / mTickMillis);
+        final Timeout timeout = new Timeout(task, mTick + ticks);
+        link(timeout);
+        mPendingCount++;
+        return timeout;
+    }
+
+    /**
+     * Returns the number of pending timeouts.
+     * @return Number of timeouts.
+     */
+    public synchronized int getPendingCount() {
+        return mPendingCount;
+    }
+
+    /**
+     * Cancels all pending timeouts and stops the wheel's thread. The timer can not be used afterwards.
+     */
+    public synchronized void stop() {
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i] = null;
+        }
+        mPendingCount = 0;
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Advances the wheel one tick and runs the tasks that expired.
+     */
+    private void tick() {
+        final List<Runnable> expired = new ArrayList<>();
+        synchronized (this) {
+            mTick++;
+            mTickStartMillis = System.currentTimeMillis();
+
+            Timeout timeout = mBuckets[(int) (mTick & mMask)];
+            while (timeout != null) {
+                final Timeout next = timeout.mNext;
+                if (timeout.mDeadlineTick <= mTick) {
+                    unlink(timeout);
+                    mPendingCount--;
+                    expired.add(timeout.mTask);
+                }
+                timeout = next;
+            }
+
+            if (mPendingCount == 0 && mTicker != null) {
+                // nothing left, stop ticking
+                mTicker.cancel(false);
+                mTicker = null;
+            }
+        }
+
+        for (Runnable task : expired) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Timer task failed:", e);
+            }
+        }
+    }
+
+    /**
+     * Adds a timeout to the bucket of its deadline. Must be called while holding the lock.
+     * @param timeout Timeout.
+     */
+    private void link(Timeout timeout) {
+        final int bucket = (int) (timeout.mDeadlineTick & mMask);
+        timeout.mBucket = bucket;
+        timeout.mNext = mBuckets[bucket];
+        if (timeout.mNext != null) {
+            timeout.mNext.mPrevious = timeout;
+        }
+        mBuckets[bucket] = timeout;
+    }
+
+    /**
+     * Removes a timeout from its bucket. Must be called while holding the lock.
+     * @param timeout Timeout.
+     */
+    private void unlink(Timeout timeout) {
+        if (timeout.mPrevious != null) {
+            timeout.mPrevious.mNext = timeout.mNext;
+        } else {
+            mBuckets[timeout.mBucket] = timeout.mNext;
+        }
+        if (timeout.mNext != null) {
+            timeout.mNext.mPrevious = timeout.mPrevious;
+        }
+        timeout.mNext = null;
+        timeout.mPrevious = null;
+        timeout.mBucket = -1;
+    }
+
+    /**
+     * A scheduled task.
+     */
+    public final class Timeout {
+        private final Runnable mTask;
+        private final long mDeadlineTick;
+        // bucket and neighbors in the bucket; bucket is -1 when the timeout is not pending
+        private int mBucket = -1;
+        private Timeout mPrevious;
+        private Timeout mNext;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            mTask = task;
+            mDeadlineTick = deadlineTick;
+        }
+
+        /**
+         * Cancels the timeout, if it is still pending.
+         * @return true if it was cancelled, false if it already ran or was cancelled.
+         */
+        public boolean cancel() {
+            synchronized (HashedWheelTimer.this) {
+                if (mBucket < 0) {
+                    return false;
+                }
+                unlink(this);
+                mPendingCount--;
+                return true;
+            }
+        }
+    }
+}
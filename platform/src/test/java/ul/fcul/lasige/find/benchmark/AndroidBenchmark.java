@@ -0,0 +1,81 @@
+package ul.fcul.lasige.find.benchmark;
+
+import android.content.Context;
+
+import org.junit.Assume;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+
+import java.util.Random;
+
+import ul.fcul.lasige.find.data.DbController;
+import ul.fcul.lasige.find.data.Identity;
+
+/**
+ * Runs benchmarks that need the Android framework (SQLite, content resolvers, the platform's singletons) on a
+ * desktop JVM. Such benchmarks are JUnit classes run by Robolectric, which provides the framework. They are
+ * skipped by the unit test task, and run from their {@code main} method, which calls {@link #run}.
+ *
+ * <p>Arguments are handed to the benchmark through a system property, since JUnit instantiates the class.</p>
+ */
+final class AndroidBenchmark {
+    // system property holding the benchmark arguments; benchmarks are skipped when it is not set
+    private static final String ARGS_PROPERTY = "find.benchmark.args";
+    // separator of arguments in the property
+    private static final String SEPARATOR = "\u001f";
+
+    /**
+     * Constructor. It is private to prevent instantiation. All class' methods are static.
+     */
+    private AndroidBenchmark() {}
+
+    /**
+     * Runs a benchmark class with given arguments, and exits with a non-zero status if it failed.
+     * @param benchmark Benchmark class, a JUnit class run by Robolectric.
+     * @param args Arguments, read by the benchmark with {@link #getArgs()}.
+     */
+    static void run(Class<?> benchmark, String[] args) {
+        final StringBuilder joined = new StringBuilder();
+        for (String arg : args) {
+            joined.append(arg).append(SEPARATOR);
+        }
+        System.setProperty(ARGS_PROPERTY, joined.toString());
+
+        final Result result = new JUnitCore().run(benchmark);
+        for (Failure failure : result.getFailures()) {
+            System.err.println(failure.getTestHeader() + ": " + failure.getTrace());
+        }
+        System.exit(result.wasSuccessful() ? 0 : 1);
+    }
+
+    /**
+     * Skips the calling benchmark unless it was started by {@link #run}.
+     */
+    static void assumeRunning() {
+        Assume.assumeTrue(System.getProperty(ARGS_PROPERTY) != null);
+    }
+
+    /**
+     * Returns the arguments the benchmark was started with.
+     * @return Arguments.
+     */
+    static String[] getArgs() {
+        final String joined = System.getProperty(ARGS_PROPERTY, "");
+        return (joined.isEmpty() ? new String[0] : joined.split(SEPARATOR));
+    }
+
+    /**
+     * Creates the platform's identity, with a random public key, which the platform otherwise creates when it is
+     * first started. It must be called before the {@link ul.fcul.lasige.find.beaconing.BeaconingManager} is.
+     * @param context Application context.
+     * @return Platform's identity.
+     */
+    static Identity createMasterIdentity(Context context) {
+        final byte[] publicKey = new byte[32];
+        new Random().nextBytes(publicKey);
+        final DbController dbController = new DbController(context);
+        dbController.insertIdentity("master", publicKey, null);
+        return dbController.getMasterIdentity();
+    }
+}
@@ -0,0 +1,268 @@
+package ul.fcul.lasige.find.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import ul.fcul.lasige.find.beaconing.BeaconBuilder;
+import ul.fcul.lasige.find.beaconing.UdpSender;
+import ul.fcul.lasige.find.lib.data.Neighbor;
+import ul.fcul.lasige.find.network.WifiConnection;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos;
+
+/**
+ * Benchmark of the beacon modes of the {@link UdpSender}: a burst to every neighbor (unicast), against a burst to
+ * the subnet broadcast address and multicast groups, plus unicast to neighbors that are not multicast capable
+ * (group). Beacons list all peers as neighbors, are built by the {@link BeaconBuilder}, and are sent to the
+ * targets returned by {@link UdpSender#getNeighborTargets}, over loopback, on the platform's unicast beacon port.
+ * Every peer has a socket on its own loopback address (127.0.0.2, 127.0.0.3, ...), for unicast beacons, and one
+ * on the wildcard address, for group beacons.
+ *
+ * <p>The loopback interface has no broadcast address, so its group targets are the multicast groups only (a WiFi
+ * interface adds the subnet broadcast address), and it has no multicast support, so group beacons are sent to
+ * 127.255.255.255 instead, which reaches every peer as a group beacon reaches every node of the WiFi segment.
+ * Group frames are sent at the basic rate of the WiFi network, which is not accounted for.</p>
+ *
+ * <p>It reports, per number of peers and mode, the datagrams and bytes sent per beacon round, and the peers that
+ * received a beacon in every round.</p>
+ *
+ * <p>Usage: {@code BeaconModeBenchmark [rounds] [% of peers not multicast capable] [peer counts...]}.</p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class BeaconModeBenchmark {
+    // port where beacons are received (BeaconingManager.RECEIVER_PORT_UNICAST)
+    private static final int BEACON_PORT = 3108;
+    // beacons sent to each target (BeaconingManager's burst size)
+    private static final int BURST_SIZE = 3;
+    // protocols of the sender and its neighbors
+    private static final int PROTOCOL_COUNT = 3;
+    // network name of the sender and its neighbors
+    private static final String NETWORK_NAME = "benchmark";
+    // stand-in for the group targets, which loopback does not support
+    private static final String GROUP_STAND_IN = "127.255.255.255";
+    // how long to wait for datagrams in flight, and for more datagrams when draining a socket
+    private static final int DRAIN_MILLIS = 20;
+
+    private final Random mRandom = new Random(42);
+
+    /**
+     * Results of one mode.
+     */
+    private static final class Result {
+        int targets;
+        long datagrams;
+        long bytes;
+        int reached;
+    }
+
+    /**
+     * A peer's sockets, which count the beacons received.
+     */
+    private static final class Peer {
+        private final DatagramSocket mUnicastSocket;
+        private final DatagramSocket mGroupSocket;
+
+        Peer(InetAddress address) throws IOException {
+            mUnicastSocket = bind(new InetSocketAddress(address, BEACON_PORT));
+            mGroupSocket = bind(new InetSocketAddress(BEACON_PORT));
+        }
+
+        private static DatagramSocket bind(InetSocketAddress address) throws IOException {
+            final DatagramSocket socket = new DatagramSocket(null);
+            socket.setReuseAddress(true);
+            socket.setReceiveBufferSize(1024 * 1024);
+            socket.setSoTimeout(DRAIN_MILLIS);
+            socket.bind(address);
+            return socket;
+        }
+
+        /**
+         * Receives all pending beacons.
+         * @return Ids of the beacons received.
+         * @throws IOException If a socket failed.
+         */
+        Set<Integer> drain() throws IOException {
+            final Set<Integer> beaconIds = new HashSet<>();
+            drain(mUnicastSocket, beaconIds);
+            drain(mGroupSocket, beaconIds);
+            return beaconIds;
+        }
+
+        private static void drain(DatagramSocket socket, Set<Integer> beaconIds) throws IOException {
+            final DatagramPacket packet = new DatagramPacket(new byte[64 * 1024], 64 * 1024);
+            while (true) {
+                try {
+                    socket.receive(packet);
+                } catch (SocketTimeoutException e) {
+                    return;
+                }
+                try {
+                    beaconIds.add(FindProtos.Beacon.parseFrom(
+                            ByteString.copyFrom(packet.getData(), packet.getOffset(), packet.getLength()))
+                            .getBeaconId());
+                } catch (InvalidProtocolBufferException e) {
+                    // not a beacon
+                }
+            }
+        }
+
+        void close() {
+            mUnicastSocket.close();
+            mGroupSocket.close();
+        }
+    }
+
+    /**
+     * Sends a number of beacon rounds to all peers, in one mode.
+     * @param peers Peers, which count the beacons they receive.
+     * @param neighbors Neighbors, listed in the beacons.
+     * @param pages Beacon pages; rounds go through them in turn.
+     * @param connection Loopback connection.
+     * @param multicast Whether to use the group mode.
+     * @param rounds Number of beacon rounds.
+     * @return Results.
+     * @throws Exception If a socket failed.
+     */
+    private static Result runMode(List<Peer> peers, Set<Neighbor> neighbors, byte[][] pages,
+                                  WifiConnection connection, boolean multicast, int rounds) throws Exception {
+        final List<InetSocketAddress> targets = UdpSender.getNeighborTargets(neighbors, connection, multicast);
+        final InetSocketAddress groupStandIn = new InetSocketAddress(GROUP_STAND_IN, BEACON_PORT);
+        final Set<InetAddress> neighborAddresses = new HashSet<>();
+        for (Neighbor neighbor : neighbors) {
+            neighborAddresses.add(neighbor.getAnyIpAddress());
+        }
+        final Result result = new Result();
+        result.targets = targets.size();
+
+        final DatagramSocket socket = new DatagramSocket(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        try {
+            socket.setBroadcast(true);
+            for (int round = 0; round < rounds; round++) {
+                final byte[] beacon = BeaconBuilder.makeBeacon(pages[round % pages.length],
+                        FindProtos.Beacon.BeaconType.ORIGINAL, round, System.currentTimeMillis() / 1000);
+                final DatagramPacket packet = new DatagramPacket(beacon, beacon.length);
+                for (InetSocketAddress target : targets) {
+                    // targets other than neighbors are the broadcast address and multicast groups
+                    final boolean isGroup = !neighborAddresses.contains(target.getAddress());
+                    packet.setSocketAddress(isGroup ? groupStandIn : target);
+                    for (int i = 0; i < BURST_SIZE; i++) {
+                        socket.send(packet);
+                        result.datagrams++;
+                        result.bytes += beacon.length;
+                    }
+                }
+            }
+        } finally {
+            socket.close();
+        }
+
+        Thread.sleep(DRAIN_MILLIS);
+        for (Peer peer : peers) {
+            if (peer.drain().size() == rounds) {
+                result.reached++;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        AndroidBenchmark.assumeRunning();
+        final String[] args = AndroidBenchmark.getArgs();
+        final int rounds = (args.length > 0 ? Integer.parseInt(args[0]) : 10);
+        final int incapablePercent = (args.length > 1 ? Integer.parseInt(args[1]) : 0);
+        final List<Integer> peerCounts = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            peerCounts.add(Integer.parseInt(args[i]));
+        }
+        if (peerCounts.isEmpty()) {
+            peerCounts.add(5);
+            peerCounts.add(20);
+            peerCounts.add(50);
+        }
+
+        final WifiConnection connection = WifiConnection.fromApMode(NetworkInterface.getByName("lo"), NETWORK_NAME);
+        final Set<ByteBuffer> protocols = new HashSet<>();
+        final List<ByteString> protocolList = new ArrayList<>();
+        for (int i = 0; i < PROTOCOL_COUNT; i++) {
+            final byte[] hash = new byte[20];
+            mRandom.nextBytes(hash);
+            protocols.add(ByteBuffer.wrap(hash));
+            protocolList.add(ByteString.copyFrom(hash));
+        }
+        final byte[] senderId = new byte[32];
+        mRandom.nextBytes(senderId);
+        final FindProtos.Node.Builder sender = FindProtos.Node.newBuilder()
+                .setNodeId(ByteString.copyFrom(senderId))
+                .setIp4Address(ByteString.copyFrom(new byte[] {127, 0, 0, 1}))
+                .addAllProtocols(protocolList);
+
+        System.out.println(String.format(Locale.US, "%d rounds, burst of %d, %d%% of peers not multicast capable",
+                rounds, BURST_SIZE, incapablePercent));
+        System.out.println("peers  beacon bytes  mode     targets  datagrams/round  bytes/round  peers reached");
+        for (int peerCount : peerCounts) {
+            final long nowSeconds = System.currentTimeMillis() / 1000;
+            final List<Peer> peers = new ArrayList<>(peerCount);
+            final Set<Neighbor> neighbors = new HashSet<>();
+            try {
+                for (int i = 0; i < peerCount; i++) {
+                    final Inet4Address address = (Inet4Address) InetAddress.getByAddress(
+                            new byte[] {127, 0, (byte) ((i + 2) >> 8), (byte) (i + 2)});
+                    peers.add(new Peer(address));
+                    final byte[] nodeId = new byte[32];
+                    mRandom.nextBytes(nodeId);
+                    final boolean multicastCapable = (i * 100 >= peerCount * incapablePercent);
+                    neighbors.add(new Neighbor(i, nodeId, nowSeconds - mRandom.nextInt(600), 0, multicastCapable,
+                            NETWORK_NAME, address, null, null, new HashSet<>(protocols)));
+                }
+                final byte[][] pages = BeaconBuilder.makePages(sender, protocols, neighbors, NETWORK_NAME,
+                        nowSeconds);
+                int beaconBytes = 0;
+                for (byte[] page : pages) {
+                    beaconBytes = Math.max(beaconBytes, BeaconBuilder.makeBeacon(page,
+                            FindProtos.Beacon.BeaconType.ORIGINAL, 0, nowSeconds).length);
+                }
+
+                for (boolean multicast : new boolean[] {false, true}) {
+                    final Result r = runMode(peers, neighbors, pages, connection, multicast, rounds);
+                    System.out.println(String.format(Locale.US, "%5d  %12d  %-7s  %7d  %15d  %11d  %8d/%d",
+                            peerCount, beaconBytes, (multicast ? "group" : "unicast"), r.targets,
+                            r.datagrams / rounds, r.bytes / rounds, r.reached, peerCount));
+                }
+            } finally {
+                for (Peer peer : peers) {
+                    peer.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the benchmark and prints the results.
+     * @param args Optional number of rounds, share of peers not multicast capable, and peer counts.
+     */
+    public static void main(String[] args) {
+        AndroidBenchmark.run(BeaconModeBenchmark.class, args);
+    }
+}
@@ -0,0 +1,219 @@
+package ul.fcul.lasige.find.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ul.fcul.lasige.find.data.FullContract.PacketQueues;
+import ul.fcul.lasige.find.packetcomm.PacketReceiver;
+import ul.fcul.lasige.find.packetcomm.TransportBundler;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos;
+
+/**
+ * Loopback benchmark of the packet data path with and without {@link FindProtos.TransportBundle}s. A sender
+ * thread streams small packets (like the status packets of a victim-finding app) to a receiver on the packet
+ * port, either one packet per datagram or packed by a {@link TransportBundler}; the receiver unpacks each
+ * datagram as {@link PacketReceiver} does and classifies every packet with {@link PacketReceiver#selectQueues}.
+ *
+ * <p>It reports, per payload size and mode, the packets and datagrams per second handled by the receiver and
+ * the share of sent packets that were lost (e.g. dropped by a full socket buffer). Database inserts are not
+ * included.</p>
+ *
+ * <p>Usage: {@code BundleBenchmark [seconds per run] [payload bytes, comma-separated]}.</p>
+ */
+public class BundleBenchmark {
+    private static final String TAG = BundleBenchmark.class.getSimpleName();
+
+    // bytes in node ids (public keys) and protocol hashes
+    private static final int NODE_ID_BYTES = 32;
+    private static final int PROTOCOL_BYTES = 20;
+    // receive buffer, as in PacketReceiver
+    private static final int BUFFER_SIZE = 65536;
+    // kernel socket buffer of the receiver
+    private static final int SOCKET_BUFFER_SIZE = 1024 * 1024;
+    // time to wait for datagrams in flight after the sender stops
+    private static final int DRAIN_MILLIS = 200;
+
+    /**
+     * Results of one run.
+     */
+    private static final class Result {
+        long packetsSent;
+        long datagramsSent;
+        long packetsReceived;
+        long datagramsReceived;
+        double seconds;
+    }
+
+    /**
+     * Builds the packets the sender cycles through.
+     * @param count Number of packets.
+     * @param payloadBytes Payload size.
+     * @param random Source of randomness.
+     * @return Packets.
+     */
+    private static FindProtos.TransportPacket[] makePackets(int count, int payloadBytes, Random random) {
+        final byte[] source = new byte[NODE_ID_BYTES];
+        final byte[] protocol = new byte[PROTOCOL_BYTES];
+        random.nextBytes(source);
+        random.nextBytes(protocol);
+
+        final FindProtos.TransportPacket[] packets = new FindProtos.TransportPacket[count];
+        for (int i = 0; i < count; i++) {
+            final byte[] payload = new byte[payloadBytes];
+            random.nextBytes(payload);
+            packets[i] = FindProtos.TransportPacket.newBuilder()
+                    .setSourceNode(ByteString.copyFrom(source))
+                    .setProtocol(ByteString.copyFrom(protocol))
+                    .setTtl(System.currentTimeMillis() / 1000 + 3600)
+                    .setData(ByteString.copyFrom(payload))
+                    .build();
+        }
+        return packets;
+    }
+
+    /**
+     * Streams packets to a loopback receiver for a given time.
+     * @param packets Packets the sender cycles through.
+     * @param sizeBudget Size budget of bundles; 0 sends one packet per datagram.
+     * @param seconds Duration.
+     * @return Results.
+     * @throws Exception If sockets could not be created or the run was interrupted.
+     */
+    private static Result run(final FindProtos.TransportPacket[] packets, final int sizeBudget, int seconds)
+            throws Exception {
+        final InetAddress loopback = InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 });
+        final DatagramSocket receiver = new DatagramSocket(new InetSocketAddress(loopback, 0));
+        receiver.setReceiveBufferSize(SOCKET_BUFFER_SIZE);
+        receiver.setSoTimeout(DRAIN_MILLIS);
+        final InetSocketAddress target = new InetSocketAddress(loopback, receiver.getLocalPort());
+
+        final AtomicBoolean sending = new AtomicBoolean(true);
+        final AtomicLong packetsSent = new AtomicLong();
+        final AtomicLong datagramsSent = new AtomicLong();
+        final Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final TransportBundler bundler = new TransportBundler(sizeBudget);
+                try {
+                    final DatagramSocket socket = new DatagramSocket();
+                    try {
+                        int next = 0;
+                        while (sending.get()) {
+                            final byte[] datagram = bundler.add(packets[next++ % packets.length]);
+                            packetsSent.incrementAndGet();
+                            if (datagram != null) {
+                                socket.send(new DatagramPacket(datagram, datagram.length, target));
+                                datagramsSent.incrementAndGet();
+                            }
+                        }
+                        final byte[] datagram = bundler.flush();
+                        if (datagram != null) {
+                            socket.send(new DatagramPacket(datagram, datagram.length, target));
+                            datagramsSent.incrementAndGet();
+                        }
+                    } finally {
+                        socket.close();
+                    }
+                } catch (Exception e) {
+                    // counted as lost
+                }
+            }
+        });
+
+        final Result result = new Result();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final DatagramPacket udpPacket = new DatagramPacket(buffer, buffer.length);
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        sender.start();
+        try {
+            long lastReceived = start;
+            while (true) {
+                if (sending.get() && System.nanoTime() >= end) {
+                    sending.set(false);
+                }
+                udpPacket.setData(buffer);
+                try {
+                    receiver.receive(udpPacket);
+                } catch (SocketTimeoutException e) {
+                    if (!sending.get()) {
+                        break;
+                    }
+                    continue;
+                }
+                lastReceived = System.nanoTime();
+                result.datagramsReceived++;
+
+                final List<FindProtos.TransportPacket> received;
+                try {
+                    received = TransportBundler.parse(Arrays.copyOf(udpPacket.getData(), udpPacket.getLength()));
+                } catch (InvalidProtocolBufferException e) {
+                    continue;
+                }
+                for (FindProtos.TransportPacket packet : received) {
+                    final List<PacketQueues> queues =
+                            PacketReceiver.selectQueues(false, packet.hasTargetNode(), true);
+                    if (!queues.isEmpty()) {
+                        result.packetsReceived++;
+                    }
+                }
+            }
+            result.seconds = (lastReceived - start) / 1e9;
+        } finally {
+            sending.set(false);
+            sender.join();
+            receiver.close();
+        }
+        result.packetsSent = packetsSent.get();
+        result.datagramsSent = datagramsSent.get();
+        return result;
+    }
+
+    /**
+     * Runs the benchmark and prints the results.
+     * @param args Optional seconds per run and comma-separated payload sizes.
+     * @throws Exception If sockets could not be created or the benchmark was interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        final int seconds = (args.length > 0 ? Integer.parseInt(args[0]) : 3);
+        final String[] payloadSizes = (args.length > 1 ? args[1] : "32,128,512").split(",");
+        final Random random = new Random(42);
+
+        System.out.println("payload  mode      packets/s  datagrams/s  packets/datagram  lost");
+        for (String payloadSize : payloadSizes) {
+            final int payloadBytes = Integer.parseInt(payloadSize.trim());
+            final FindProtos.TransportPacket[] packets = makePackets(256, payloadBytes, random);
+            // warm up
+            run(packets, 0, 1);
+            run(packets, TransportBundler.DEFAULT_SIZE_BUDGET, 1);
+
+            double singleRate = 0;
+            for (int budget : new int[] { 0, TransportBundler.DEFAULT_SIZE_BUDGET }) {
+                final Result result = run(packets, budget, seconds);
+                final double packetsPerSecond = result.packetsReceived / result.seconds;
+                if (budget == 0) {
+                    singleRate = packetsPerSecond;
+                }
+                System.out.println(String.format(Locale.US, "%7d  %-7s %11.0f %12.0f %17.1f %5.1f%%%s",
+                        payloadBytes, (budget == 0 ? "single" : "bundled"), packetsPerSecond,
+                        result.datagramsReceived / result.seconds,
+                        result.packetsReceived / (double) Math.max(1, result.datagramsReceived),
+                        100.0 * (result.packetsSent - result.packetsReceived) / Math.max(1, result.packetsSent),
+                        (budget == 0 ? "" : String.format(Locale.US, "  (x%.1f)", packetsPerSecond / singleRate))));
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package ul.fcul.lasige.find.benchmark;
+
+import com.google.common.base.Optional;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ul.fcul.lasige.find.network.ConnectionSnapshot;
+import ul.fcul.lasige.find.network.NetworkManager;
+import ul.fcul.lasige.find.network.WifiConnection;
+
+/**
+ * Microbenchmark of the per-datagram cost of looking up the current WiFi connection in the receive paths,
+ * comparing the previous lookup ({@code NetworkManager.getCurrentConnection()}) with a read of the
+ * {@link ConnectionSnapshot} ({@code NetworkManager.getConnectionSnapshot()}).
+ *
+ * <p>The lookup is measured on its own (ns per call, single thread and with contending threads) and inside a
+ * loopback receive loop like {@code UdpReceiver}'s, where it is reported as overhead per received datagram.
+ * Off the device there are no WiFi system services: the previous lookup is mirrored by its synchronized
+ * interface enumeration and {@link WifiConnection} construction on the loopback interface, without the
+ * {@code WifiManager} and {@code ConnectivityManager} binder calls, so its cost on a device is higher than
+ * reported here.</p>
+ *
+ * <p>Usage: {@code ConnectionLookupBenchmark [datagrams per run] [contending threads]}.</p>
+ */
+public class ConnectionLookupBenchmark {
+    private static final String TAG = ConnectionLookupBenchmark.class.getSimpleName();
+
+    // names of WiFi interfaces, as in NetworkManager, and the stand-in used off the device
+    private static final String[] WIFI_INTERFACE_NAMES = { "wlan0", "eth0", "wl0.1" };
+    private static final String LOOPBACK_INTERFACE_NAME = "lo";
+    // lookups per measurement of the lookup alone
+    private static final int LOOKUPS = 20000;
+    // measurements, of which the first are warm-up
+    private static final int RUNS = 5;
+    private static final int WARMUP_RUNS = 2;
+
+    /**
+     * How the connection is looked up for each datagram.
+     */
+    private enum Lookup {
+        NONE, LIVE, SNAPSHOT
+    }
+
+    // lock of the mirrored NetworkManager.getWifiNetworkInterface()
+    private final Object mInterfaceLock = new Object();
+    // snapshot, as held by NetworkManager
+    private volatile ConnectionSnapshot mSnapshot;
+    // keeps lookups from being optimized away
+    private volatile int mSink;
+
+    /**
+     * Mirrors {@code NetworkManager.getWifiNetworkInterface()}: enumerates all interfaces under a lock.
+     * @return WiFi interface, or the loopback interface off the device.
+     */
+    private Optional<NetworkInterface> findWifiNetworkInterface() {
+        synchronized (mInterfaceLock) {
+            NetworkInterface wifiInterface = null;
+            NetworkInterface loopback = null;
+            try {
+                final List<NetworkInterface> networkInterfaces =
+                        Collections.list(NetworkInterface.getNetworkInterfaces());
+                for (NetworkInterface iface : networkInterfaces) {
+                    final String name = iface.getName();
+                    for (String wifiName : WIFI_INTERFACE_NAMES) {
+                        if (name.equals(wifiName)) {
+                            wifiInterface = iface;
+                        }
+                    }
+                    if (name.equals(LOOPBACK_INTERFACE_NAME) || iface.isLoopback()) {
+                        loopback = iface;
+                    }
+                    if (wifiInterface != null) {
+                        break;
+                    }
+                }
+            } catch (SocketException e) {
+                // no interfaces
+            }
+            return Optional.fromNullable(wifiInterface != null ? wifiInterface : loopback);
+        }
+    }
+
+    /**
+     * Mirrors {@code NetworkManager.getCurrentConnection()}, without the system service calls.
+     * @return Current connection.
+     */
+    private Optional<WifiConnection> getCurrentConnection() {
+        final Optional<NetworkInterface> iface = findWifiNetworkInterface();
+        if (!iface.isPresent()) {
+            return Optional.absent();
+        }
+        return Optional.of(WifiConnection.fromApMode(iface.get(), NetworkManager.BASE_AP_NAME));
+    }
+
+    /**
+     * Mirrors {@code NetworkManager.getConnectionSnapshot()}.
+     * @return Current connection.
+     */
+    private Optional<WifiConnection> getSnapshotConnection() {
+        final ConnectionSnapshot snapshot = mSnapshot;
+        if (snapshot == null || System.nanoTime() - snapshot.getTimeTakenNanos() > TimeUnit.SECONDS.toNanos(10)) {
+            mSnapshot = new ConnectionSnapshot(NetworkManager.WifiState.FIND_AP, getCurrentConnection(),
+                    System.nanoTime());
+            return mSnapshot.getConnection();
+        }
+        return snapshot.getConnection();
+    }
+
+    /**
+     * Looks up the connection once.
+     * @param lookup How to look it up.
+     */
+    private void lookup(Lookup lookup) {
+        switch (lookup) {
+            case LIVE: {
+                mSink += (getCurrentConnection().isPresent() ? 1 : 0);
+                break;
+            }
+            case SNAPSHOT: {
+                mSink += (getSnapshotConnection().isPresent() ? 1 : 0);
+                break;
+            }
+            default: {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Measures the lookup alone, on the calling thread, while other threads look up the connection as well.
+     * @param lookup How to look it up.
+     * @param contendingThreads Number of other threads looking it up in a loop.
+     * @return Nanoseconds per lookup.
+     * @throws InterruptedException If interrupted while stopping the other threads.
+     */
+    private double measureLookup(final Lookup lookup, int contendingThreads) throws InterruptedException {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Thread[] threads = new Thread[contendingThreads];
+        for (int i = 0; i < contendingThreads; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        lookup(lookup);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        try {
+            final long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                lookup(lookup);
+            }
+            return (System.nanoTime() - start) / (double) LOOKUPS;
+        } finally {
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    /**
+     * Measures a receive loop like {@code UdpReceiver}'s: another thread floods a loopback socket, and the
+     * calling thread receives datagrams and looks up the connection after each one.
+     * @param lookup How to look up the connection.
+     * @param datagrams Number of datagrams to receive.
+     * @return Nanoseconds per received datagram.
+     * @throws Exception If sockets could not be created.
+     */
+    private double measureReceive(Lookup lookup, int datagrams) throws Exception {
+        final InetAddress loopback = InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 });
+        final DatagramSocket receiver = new DatagramSocket(new InetSocketAddress(loopback, 0));
+        receiver.setSoTimeout(1000);
+        final InetSocketAddress target = new InetSocketAddress(loopback, receiver.getLocalPort());
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        final Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final byte[] data = new byte[256];
+                try {
+                    final DatagramSocket socket = new DatagramSocket();
+                    try {
+                        final DatagramPacket packet = new DatagramPacket(data, data.length, target);
+                        while (running.get()) {
+                            socket.send(packet);
+                        }
+                    } finally {
+                        socket.close();
+                    }
+                } catch (Exception e) {
+                    // receiver will time out
+                }
+            }
+        });
+        sender.start();
+
+        try {
+            final byte[] buffer = new byte[2048];
+            final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            // first datagram starts the clock
+            receiver.receive(packet);
+            final long start = System.nanoTime();
+            for (int i = 0; i < datagrams; i++) {
+                packet.setData(buffer);
+                try {
+                    receiver.receive(packet);
+                } catch (SocketTimeoutException e) {
+                    throw new IllegalStateException("Sender stopped", e);
+                }
+                lookup(lookup);
+            }
+            return (System.nanoTime() - start) / (double) datagrams;
+        } finally {
+            running.set(false);
+            sender.join();
+            receiver.close();
+        }
+    }
+
+    /**
+     * A measurement that can be repeated.
+     */
+    private interface Measurement {
+        double run() throws Exception;
+    }
+
+    /**
+     * Runs a measurement several times and returns the median of the runs after warm-up.
+     * @param measurement Measurement.
+     * @return Median result.
+     * @throws Exception If the measurement failed.
+     */
+    private static double median(Measurement measurement) throws Exception {
+        final double[] results = new double[RUNS - WARMUP_RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            final double result = measurement.run();
+            if (i >= WARMUP_RUNS) {
+                results[i - WARMUP_RUNS] = result;
+            }
+        }
+        Arrays.sort(results);
+        return results[results.length / 2];
+    }
+
+    /**
+     * Runs the benchmark and prints the results.
+     * @param args Optional datagrams per receive run and number of contending threads.
+     * @throws Exception If sockets could not be created or the benchmark was interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        final int datagrams = (args.length > 0 ? Integer.parseInt(args[0]) : 50000);
+        final int contendingThreads = (args.length > 1 ? Integer.parseInt(args[1]) : 3);
+        final ConnectionLookupBenchmark benchmark = new ConnectionLookupBenchmark();
+
+        System.out.println("lookup       ns/lookup  ns/lookup (" + contendingThreads
+                + " contending)  ns/datagram  overhead/datagram");
+        final double baseline = median(new Measurement() {
+            @Override
+            public double run() throws Exception {
+                return benchmark.measureReceive(Lookup.NONE, datagrams);
+            }
+        });
+        System.out.println(String.format(Locale.US, "%-10s %11s %28s %12.0f %18s", "none", "-", "-", baseline, "-"));
+
+        for (final Lookup lookup : new Lookup[] { Lookup.LIVE, Lookup.SNAPSHOT }) {
+            final double alone = median(new Measurement() {
+                @Override
+                public double run() throws Exception {
+                    return benchmark.measureLookup(lookup, 0);
+                }
+            });
+            final double contended = median(new Measurement() {
+                @Override
+                public double run() throws Exception {
+                    return benchmark.measureLookup(lookup, contendingThreads);
+                }
+            });
+            final double perDatagram = median(new Measurement() {
+                @Override
+                public double run() throws Exception {
+                    return benchmark.measureReceive(lookup, datagrams);
+                }
+            });
+            System.out.println(String.format(Locale.US, "%-10s %11.0f %28.0f %12.0f %12.0f (%+.0f%%)",
+                    lookup.name().toLowerCase(Locale.US), alone, contended, perDatagram, perDatagram - baseline,
+                    100 * (perDatagram - baseline) / baseline));
+        }
+    }
+}
@@ -0,0 +1,661 @@
+package ul.fcul.lasige.find.benchmark;
+
+import android.content.Context;
+
+import com.google.protobuf.ByteString;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import ul.fcul.lasige.find.apps.ProtocolRegistry;
+import ul.fcul.lasige.find.beaconing.BeaconBuilder;
+import ul.fcul.lasige.find.beaconing.BeaconParser;
+import ul.fcul.lasige.find.beaconing.BeaconingManager;
+import ul.fcul.lasige.find.data.Identity;
+import ul.fcul.lasige.find.lib.data.Neighbor;
+import ul.fcul.lasige.find.network.DatagramTrace;
+import ul.fcul.lasige.find.network.UdpReceiveEngine;
+import ul.fcul.lasige.find.packetcomm.PacketReceiver;
+import ul.fcul.lasige.find.packetcomm.PacketRegistry;
+import ul.fcul.lasige.find.packetcomm.PacketSender;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos;
+
+/**
+ * Load generator for stress testing the receive path. It synthesizes valid beacons (built by
+ * {@link BeaconBuilder}, from a pool of made-up nodes) and {@link FindProtos.TransportPacket}s, and sends them at
+ * a target rate through loopback. While sending, it samples the {@link BeaconParser} queue and the
+ * {@link PacketReceiver} counters, and it returns a {@link Report} with the sustained ingest rates, drop rates and
+ * queue growth, so capacity limits are known before deployments.
+ *
+ * <p>It runs under Robolectric from its {@code main} method, which prints the report. The receive path is the
+ * platform's: a {@link BeaconParser} of the {@link BeaconingManager}, fed by a {@link UdpReceiveEngine} on
+ * 127.0.0.1 as the beacon receiver does (there is no WiFi connection to check), and a {@link PacketReceiver}
+ * storing packets in SQLite. Datagrams are sent from several loopback addresses, so the intake queue sees several
+ * origins. Signatures and ciphertexts are random bytes of the right size, since the receive path does not verify
+ * or decrypt packets.</p>
+ *
+ * <p>Usage: {@code FloodGenerator [seconds] [datagrams/s] [beacon share] [neighbors per beacon]}.</p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class FloodGenerator {
+    // defaults
+    public static final int DEFAULT_DATAGRAMS_PER_SECOND = 2000;
+    public static final int DEFAULT_NEIGHBOR_COUNT = 20;
+    public static final int DEFAULT_PROTOCOL_COUNT = 4;
+    public static final int DEFAULT_PAYLOAD_BYTES = 256;
+
+    // port where beacons are received (BeaconingManager.RECEIVER_PORT_UNICAST)
+    private static final int BEACON_PORT = 3108;
+    // beacon receive buffer (BeaconingManager.RECEIVER_BUFFER_SIZE)
+    private static final int BEACON_BUFFER_SIZE = 4 * 1024;
+    // sizes of node ids, protocol hashes (SHA-1), signatures and encryption overhead (nonce and MAC)
+    private static final int NODE_ID_BYTES = 32;
+    private static final int PROTOCOL_HASH_BYTES = 20;
+    private static final int SIGNATURE_BYTES = 64;
+    private static final int ENCRYPTION_OVERHEAD_BYTES = 24 + 16;
+    // packets' time to live
+    private static final long PACKET_TTL_SECONDS = 60 * 60;
+    // number of loopback addresses datagrams are sent from
+    private static final int SENDER_ADDRESSES = 16;
+    // number of sent datagrams remembered, of each kind, to resend as duplicates
+    private static final int DUPLICATE_HISTORY = 256;
+    // interval between samples of the receive path
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+    // interval between checks of whether the receive path caught up after sending
+    private static final long DRAIN_MILLIS = 1000;
+    // network name of synthetic neighbors
+    private static final String NETWORK_NAME = "flood";
+
+    private final Random mRandom = new Random();
+
+    // configuration
+    private int mDatagramsPerSecond = DEFAULT_DATAGRAMS_PER_SECOND;
+    private double mBeaconShare = 0.5;
+    private int mNeighborCount = DEFAULT_NEIGHBOR_COUNT;
+    private int mProtocolCount = DEFAULT_PROTOCOL_COUNT;
+    private int mPayloadBytes = DEFAULT_PAYLOAD_BYTES;
+    private double mSignedShare = 0.5;
+    private double mEncryptedShare = 0.25;
+    private double mDuplicateRate = 0.1;
+
+    /**
+     * Sets the number of datagrams sent per second, beacons and packets together.
+     * @param datagramsPerSecond Target rate.
+     */
+    public void setDatagramsPerSecond(int datagramsPerSecond) {
+        mDatagramsPerSecond = datagramsPerSecond;
+    }
+
+    /**
+     * Sets the share of datagrams that are beacons; the others are packets.
+     * @param beaconShare Share, between 0 and 1.
+     */
+    public void setBeaconShare(double beaconShare) {
+        mBeaconShare = beaconShare;
+    }
+
+    /**
+     * Sets the number of neighbors listed in each beacon. The synthetic nodes are this many plus one.
+     * @param neighborCount Number of neighbors.
+     */
+    public void setNeighborCount(int neighborCount) {
+        mNeighborCount = neighborCount;
+    }
+
+    /**
+     * Sets the number of protocols advertised by synthetic nodes and used by packets.
+     * @param protocolCount Number of protocols, at least 1.
+     */
+    public void setProtocolCount(int protocolCount) {
+        mProtocolCount = Math.max(1, protocolCount);
+    }
+
+    /**
+     * Sets the size of packets' payloads, before encryption.
+     * @param payloadBytes Payload size.
+     */
+    public void setPayloadBytes(int payloadBytes) {
+        mPayloadBytes = payloadBytes;
+    }
+
+    /**
+     * Sets the share of packets that are signed.
+     * @param signedShare Share, between 0 and 1.
+     */
+    public void setSignedShare(double signedShare) {
+        mSignedShare = signedShare;
+    }
+
+    /**
+     * Sets the share of packets that are encrypted, i.e. targeted at a synthetic node.
+     * @param encryptedShare Share, between 0 and 1.
+     */
+    public void setEncryptedShare(double encryptedShare) {
+        mEncryptedShare = encryptedShare;
+    }
+
+    /**
+     * Sets the share of datagrams that repeat a datagram sent before.
+     * @param duplicateRate Share, between 0 and 1.
+     */
+    public void setDuplicateRate(double duplicateRate) {
+        mDuplicateRate = duplicateRate;
+    }
+
+    /**
+     * Sends datagrams for a given time to 127.0.0.1 and reports how the receive path coped.
+     * @param parser Parser of beacons received on port {@value #BEACON_PORT}.
+     * @param packetReceiver Receiver of packets received on {@link PacketSender#PACKET_RECEIVING_PORT}.
+     * @param durationMillis How long to send.
+     * @return Report.
+     * @throws IOException If the sending sockets could not be created.
+     */
+    public Report run(BeaconParser parser, PacketReceiver packetReceiver, long durationMillis) throws IOException {
+        final Workload workload = new Workload();
+
+        // sockets on several loopback addresses
+        final List<DatagramSocket> sockets = openSockets();
+        final InetAddress target = InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 });
+        final InetSocketAddress beaconTarget = new InetSocketAddress(target, BEACON_PORT);
+        final InetSocketAddress packetTarget = new InetSocketAddress(target, PacketSender.PACKET_RECEIVING_PORT);
+
+        final Report report = new Report(parser, packetReceiver);
+        final List<byte[]> sentBeacons = new ArrayList<>();
+        final List<byte[]> sentPackets = new ArrayList<>();
+        try {
+            final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, mDatagramsPerSecond);
+            final long start = System.nanoTime();
+            final long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+            long nextSend = start;
+            long nextSample = start + TimeUnit.MILLISECONDS.toNanos(SAMPLE_INTERVAL_MILLIS);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                final long now = System.nanoTime();
+                if (now >= end) {
+                    break;
+                }
+                if (now >= nextSample) {
+                    report.sample(parser, packetReceiver);
+                    nextSample += TimeUnit.MILLISECONDS.toNanos(SAMPLE_INTERVAL_MILLIS);
+                }
+                if (now < nextSend) {
+                    LockSupport.parkNanos(nextSend - now);
+                    continue;
+                }
+                nextSend += intervalNanos;
+
+                // pick what to send
+                final boolean isBeacon = (mRandom.nextDouble() < mBeaconShare);
+                final List<byte[]> history = (isBeacon ? sentBeacons : sentPackets);
+                final byte[] data;
+                if (!history.isEmpty() && mRandom.nextDouble() < mDuplicateRate) {
+                    data = history.get(mRandom.nextInt(history.size()));
+                    report.mDuplicatesSent++;
+                } else {
+                    data = (isBeacon ? workload.makeBeacon() : workload.makePacket());
+                    if (history.size() < DUPLICATE_HISTORY) {
+                        history.add(data);
+                    } else {
+                        history.set(mRandom.nextInt(DUPLICATE_HISTORY), data);
+                    }
+                }
+
+                final DatagramSocket socket = sockets.get(mRandom.nextInt(sockets.size()));
+                try {
+                    socket.send(new DatagramPacket(data, data.length, (isBeacon ? beaconTarget : packetTarget)));
+                    if (isBeacon) {
+                        report.mBeaconsSent++;
+                    } else {
+                        report.mPacketsSent++;
+                    }
+                } catch (IOException e) {
+                    report.mSendErrors++;
+                }
+            }
+            final long sendingEnd = System.nanoTime();
+            report.finishSending(sendingEnd - start, parser, packetReceiver);
+
+            // let the receive path catch up, to tell slow from lost
+            long handledPackets = -1;
+            while (parser.getQueueDepth() > 0 || handledPackets != packetReceiver.getReceivedPackets()) {
+                handledPackets = packetReceiver.getReceivedPackets();
+                try {
+                    Thread.sleep(DRAIN_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            report.finishDraining(System.nanoTime() - sendingEnd, parser, packetReceiver);
+        } finally {
+            for (DatagramSocket socket : sockets) {
+                socket.close();
+            }
+        }
+
+        return report;
+    }
+
+    /**
+     * Writes a trace of synthetic datagrams, as captured by the
+     * {@link ul.fcul.lasige.find.network.DatagramTraceRecorder DatagramTraceRecorder}, at the configured
+     * rate and share of beacons. Nothing is written twice.
+     * @param file Trace file; it is overwritten if it exists.
+     * @param datagrams Number of datagrams.
+     * @throws IOException If the trace could not be written.
+     */
+    public void writeTrace(File file, int datagrams) throws IOException {
+        final Workload workload = new Workload();
+        final long startMillis = System.currentTimeMillis();
+        final DatagramTrace.Writer writer = new DatagramTrace.Writer(file, startMillis);
+        try {
+            for (int i = 0; i < datagrams; i++) {
+                final boolean isBeacon = (mRandom.nextDouble() < mBeaconShare);
+                final byte[] data = (isBeacon ? workload.makeBeacon() : workload.makePacket());
+                writer.append(isBeacon ? DatagramTrace.Kind.BEACON_UNICAST : DatagramTrace.Kind.PACKET,
+                        startMillis + i * 1000L / Math.max(1, mDatagramsPerSecond),
+                        senderAddress(mRandom.nextInt(SENDER_ADDRESSES)).getAddress(), null, data, 0, data.length);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Synthetic nodes and protocols, and the beacon pages of each node.
+     */
+    private final class Workload {
+        private final List<byte[]> mNodeIds = new ArrayList<>();
+        private final List<ByteString> mProtocols = new ArrayList<>();
+        private final List<byte[][]> mPages;
+
+        Workload() {
+            for (int i = 0; i <= mNeighborCount; i++) {
+                mNodeIds.add(randomBytes(NODE_ID_BYTES));
+            }
+            final Set<ByteBuffer> protocolSet = new HashSet<>();
+            for (int i = 0; i < mProtocolCount; i++) {
+                final byte[] protocol = randomBytes(PROTOCOL_HASH_BYTES);
+                mProtocols.add(ByteString.copyFrom(protocol));
+                protocolSet.add(ByteBuffer.wrap(protocol));
+            }
+            mPages = makePages(mNodeIds, mProtocols, protocolSet, System.currentTimeMillis() / 1000);
+        }
+
+        byte[] makeBeacon() {
+            return FloodGenerator.this.makeBeacon(mPages);
+        }
+
+        byte[] makePacket() {
+            return FloodGenerator.this.makePacket(mNodeIds, mProtocols);
+        }
+    }
+
+    /**
+     * Builds the beacon pages of each synthetic node, listing all other synthetic nodes as neighbors.
+     * @param nodeIds Ids of synthetic nodes.
+     * @param protocols Protocols.
+     * @param protocolSet Protocols, as a set.
+     * @param nowSeconds Current time, in seconds.
+     * @return Pages of each node.
+     */
+    private List<byte[][]> makePages(List<byte[]> nodeIds, List<ByteString> protocols, Set<ByteBuffer> protocolSet,
+                                     long nowSeconds) {
+        final List<byte[][]> pages = new ArrayList<>();
+        for (int i = 0; i < nodeIds.size(); i++) {
+            final FindProtos.Node.Builder sender = FindProtos.Node.newBuilder()
+                    .setNodeId(ByteString.copyFrom(nodeIds.get(i)))
+                    .setIp4Address(ByteString.copyFrom(senderAddress(i).getAddress()))
+                    .addAllProtocols(protocols);
+
+            final List<Neighbor> neighbors = new ArrayList<>();
+            for (int j = 0; j < nodeIds.size(); j++) {
+                if (j != i) {
+                    neighbors.add(new Neighbor(j, nodeIds.get(j), nowSeconds - mRandom.nextInt(600), 0, false,
+                            NETWORK_NAME, senderAddress(j), null, null, new HashSet<>(protocolSet)));
+                }
+            }
+            pages.add(BeaconBuilder.makePages(sender, protocolSet, neighbors, NETWORK_NAME, nowSeconds));
+        }
+        return pages;
+    }
+
+    /**
+     * Makes a new beacon from a random synthetic node.
+     * @param pages Pages of each node.
+     * @return Beacon.
+     */
+    private byte[] makeBeacon(List<byte[][]> pages) {
+        final byte[][] nodePages = pages.get(mRandom.nextInt(pages.size()));
+        return BeaconBuilder.makeBeacon(nodePages[mRandom.nextInt(nodePages.length)],
+                FindProtos.Beacon.BeaconType.ORIGINAL, mRandom.nextInt(), System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Makes a new packet from a random synthetic node. Encrypted packets are targeted at another synthetic node,
+     * so they are forwarded; the others are broadcast.
+     * @param nodeIds Ids of synthetic nodes.
+     * @param protocols Protocols.
+     * @return Packet.
+     */
+    private byte[] makePacket(List<byte[]> nodeIds, List<ByteString> protocols) {
+        final boolean encrypted = (mRandom.nextDouble() < mEncryptedShare);
+        final FindProtos.TransportPacket.Builder packet = FindProtos.TransportPacket.newBuilder()
+                .setSourceNode(ByteString.copyFrom(nodeIds.get(mRandom.nextInt(nodeIds.size()))))
+                .setProtocol(protocols.get(mRandom.nextInt(protocols.size())))
+                .setTtl(System.currentTimeMillis() / 1000 + PACKET_TTL_SECONDS)
+                .setData(ByteString.copyFrom(
+                        randomBytes(mPayloadBytes + (encrypted ? ENCRYPTION_OVERHEAD_BYTES : 0))));
+        if (encrypted) {
+            packet.setTargetNode(ByteString.copyFrom(nodeIds.get(mRandom.nextInt(nodeIds.size()))));
+        }
+        if (mRandom.nextDouble() < mSignedShare) {
+            packet.setMac(ByteString.copyFrom(randomBytes(SIGNATURE_BYTES)));
+        }
+        return packet.build().toByteArray();
+    }
+
+    /**
+     * Opens the sending sockets, one per loopback address; falls back to a single socket if loopback addresses
+     * other than 127.0.0.1 cannot be bound.
+     * @return Sockets.
+     * @throws IOException If no socket could be created.
+     */
+    private static List<DatagramSocket> openSockets() throws IOException {
+        final List<DatagramSocket> sockets = new ArrayList<>();
+        for (int i = 0; i < SENDER_ADDRESSES; i++) {
+            try {
+                sockets.add(new DatagramSocket(new InetSocketAddress(senderAddress(i), 0)));
+            } catch (IOException e) {
+                break;
+            }
+        }
+        if (sockets.isEmpty()) {
+            sockets.add(new DatagramSocket());
+        }
+        return sockets;
+    }
+
+    /**
+     * Returns the loopback address of a synthetic node or socket.
+     * @param index Node or socket number.
+     * @return Address 127.0.0.x.
+     */
+    private static Inet4Address senderAddress(int index) {
+        try {
+            return (Inet4Address) InetAddress.getByAddress(new byte[] { 127, 0, 0, (byte) (2 + index % SENDER_ADDRESSES) });
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Returns random bytes.
+     * @param length Number of bytes.
+     * @return Byte array.
+     */
+    private byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        mRandom.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Results of a run. Beacon counters come from the {@link BeaconParser}, packet counters from the
+     * {@link PacketReceiver}; both are taken as the difference between the end and the start of the run.
+     */
+    public static final class Report {
+        // sent
+        private long mBeaconsSent;
+        private long mPacketsSent;
+        private long mDuplicatesSent;
+        private long mSendErrors;
+        private long mDurationNanos;
+
+        // receive path, at the start of the run
+        private final long mStartParsed;
+        private final long mStartBeaconDrops;
+        private final long mStartBeaconDuplicates;
+        private final int mStartQueueDepth;
+        private final long mStartPacketsReceived;
+        private final long mStartPacketsRegistered;
+
+        // receive path, at the end of the run and after draining
+        private long mParsed;
+        private long mBeaconDrops;
+        private long mBeaconDuplicates;
+        private int mEndQueueDepth;
+        private int mMaxQueueDepth;
+        private long mPacketsReceived;
+        private long mPacketsRegistered;
+        private long mPacketsReceivedAfterDrain;
+        private long mDrainNanos;
+
+        private Report(BeaconParser parser, PacketReceiver packetReceiver) {
+            mStartParsed = parser.getParsedBeacons();
+            mStartBeaconDrops = parser.getDroppedBeacons();
+            mStartBeaconDuplicates = parser.getDuplicateBeacons();
+            mStartQueueDepth = parser.getQueueDepth();
+            mMaxQueueDepth = mStartQueueDepth;
+            mStartPacketsReceived = packetReceiver.getReceivedPackets();
+            mStartPacketsRegistered = packetReceiver.getRegisteredPackets();
+        }
+
+        /**
+         * Samples the receive path while sending.
+         */
+        private void sample(BeaconParser parser, PacketReceiver packetReceiver) {
+            final int depth = parser.getQueueDepth();
+            mMaxQueueDepth = Math.max(mMaxQueueDepth, depth);
+            System.out.println(String.format(Locale.US, "queue %d, parsed %d, dropped %d, packets received %d",
+                    depth, parser.getParsedBeacons() - mStartParsed, parser.getDroppedBeacons() - mStartBeaconDrops,
+                    packetReceiver.getReceivedPackets() - mStartPacketsReceived));
+        }
+
+        /**
+         * Takes the counters at the end of the sending period.
+         */
+        private void finishSending(long durationNanos, BeaconParser parser, PacketReceiver packetReceiver) {
+            mDurationNanos = durationNanos;
+            mParsed = parser.getParsedBeacons() - mStartParsed;
+            mBeaconDrops = parser.getDroppedBeacons() - mStartBeaconDrops;
+            mBeaconDuplicates = parser.getDuplicateBeacons() - mStartBeaconDuplicates;
+            mEndQueueDepth = parser.getQueueDepth();
+            mMaxQueueDepth = Math.max(mMaxQueueDepth, mEndQueueDepth);
+            mPacketsReceived = packetReceiver.getReceivedPackets() - mStartPacketsReceived;
+            mPacketsRegistered = packetReceiver.getRegisteredPackets() - mStartPacketsRegistered;
+        }
+
+        /**
+         * Takes the counters once the receive path caught up.
+         */
+        private void finishDraining(long drainNanos, BeaconParser parser, PacketReceiver packetReceiver) {
+            mDrainNanos = drainNanos;
+            mPacketsReceivedAfterDrain = packetReceiver.getReceivedPackets() - mStartPacketsReceived;
+            mPacketsRegistered = packetReceiver.getRegisteredPackets() - mStartPacketsRegistered;
+            mBeaconDrops = parser.getDroppedBeacons() - mStartBeaconDrops;
+        }
+
+        private double perSecond(long count) {
+            return (mDurationNanos == 0 ? 0 : count * 1e9 / mDurationNanos);
+        }
+
+        public long getBeaconsSent() {
+            return mBeaconsSent;
+        }
+
+        public long getPacketsSent() {
+            return mPacketsSent;
+        }
+
+        /**
+         * Returns the rate datagrams were actually sent at, which is below the target rate if the sender could
+         * not keep up.
+         * @return Datagrams per second.
+         */
+        public double getSendRate() {
+            return perSecond(mBeaconsSent + mPacketsSent);
+        }
+
+        /**
+         * Returns the rate beacons were parsed at while sending.
+         * @return Beacons per second.
+         */
+        public double getBeaconIngestRate() {
+            return perSecond(mParsed);
+        }
+
+        /**
+         * Returns the share of sent beacons dropped because the intake queue was full.
+         * @return Drop rate, between 0 and 1.
+         */
+        public double getBeaconDropRate() {
+            return (mBeaconsSent == 0 ? 0 : (double) mBeaconDrops / mBeaconsSent);
+        }
+
+        /**
+         * Returns how fast the intake queue grew while sending; a sustained positive value means the parser
+         * cannot keep up.
+         * @return Beacons per second.
+         */
+        public double getQueueGrowthRate() {
+            return perSecond(mEndQueueDepth - mStartQueueDepth);
+        }
+
+        public int getMaxQueueDepth() {
+            return mMaxQueueDepth;
+        }
+
+        /**
+         * Returns the rate packets were received at while sending.
+         * @return Packets per second.
+         */
+        public double getPacketIngestRate() {
+            return perSecond(mPacketsReceived);
+        }
+
+        /**
+         * Returns the share of sent packets never received, i.e. dropped by the socket buffer or by the
+         * receiver's queue.
+         * @return Drop rate, between 0 and 1.
+         */
+        public double getPacketDropRate() {
+            return (mPacketsSent == 0 ? 0 : Math.max(0, 1 - (double) mPacketsReceivedAfterDrain / mPacketsSent));
+        }
+
+        /**
+         * Returns how many sent packets were still waiting in the socket buffer or in the receiver's queue when
+         * sending stopped.
+         * @return Number of packets.
+         */
+        public long getPacketBacklog() {
+            return Math.max(0, mPacketsReceivedAfterDrain - mPacketsReceived);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "sent %d beacons and %d packets in %.1f s (%.0f/s, %d duplicates, %d errors); "
+                            + "beacons: ingest %.0f/s, dropped %.1f%%, %d duplicates ignored, queue max %d, "
+                            + "growth %.1f/s; packets: ingest %.0f/s, registered %d, dropped %.1f%%, backlog %d; "
+                            + "caught up %.1f s after sending",
+                    mBeaconsSent, mPacketsSent, mDurationNanos / 1e9, getSendRate(), mDuplicatesSent, mSendErrors,
+                    getBeaconIngestRate(), getBeaconDropRate() * 100, mBeaconDuplicates, mMaxQueueDepth,
+                    getQueueGrowthRate(), getPacketIngestRate(), mPacketsRegistered, getPacketDropRate() * 100,
+                    getPacketBacklog(), mDrainNanos / 1e9);
+        }
+    }
+
+    /**
+     * Receives beacons on 127.0.0.1 and queues them for a parser, as the beacon receiver does.
+     */
+    private static final class BeaconIntake implements UdpReceiveEngine.DatagramHandler {
+        private final BeaconParser mParser;
+        private final byte[] mReceiverNodeId;
+
+        BeaconIntake(BeaconParser parser, byte[] receiverNodeId) {
+            mParser = parser;
+            mReceiverNodeId = receiverNodeId;
+        }
+
+        @Override
+        public void onDatagramReceived(ByteBuffer data, InetSocketAddress sender) {
+            final byte[] rawData = new byte[data.remaining()];
+            data.get(rawData);
+            mParser.addProcessableBeacon(new BeaconParser.PossibleBeacon(rawData, sender.getAddress().getAddress(),
+                    System.currentTimeMillis() / 1000, NETWORK_NAME, BeaconingManager.SocketType.UNICAST,
+                    mReceiverNodeId));
+        }
+    }
+
+    @Test
+    public void flood() throws Exception {
+        AndroidBenchmark.assumeRunning();
+        final String[] args = AndroidBenchmark.getArgs();
+        final int seconds = (args.length > 0 ? Integer.parseInt(args[0]) : 10);
+        // on the desktop JVM, libsodium (which verifies signatures) is not available, and Robolectric's SQLite
+        // reports duplicate packets as generic errors instead of constraint violations
+        setSignedShare(0);
+        setDuplicateRate(0);
+        if (args.length > 1) {
+            setDatagramsPerSecond(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            setBeaconShare(Double.parseDouble(args[2]));
+        }
+        if (args.length > 3) {
+            setNeighborCount(Integer.parseInt(args[3]));
+        }
+
+        // the platform's receive path, on loopback
+        final Context context = RuntimeEnvironment.application;
+        final Identity identity = AndroidBenchmark.createMasterIdentity(context);
+        final BeaconParser parser = new BeaconParser(BeaconingManager.getInstance(context));
+        new Thread(parser).start();
+        final PacketReceiver packetReceiver = new PacketReceiver(PacketRegistry.getInstance(context), identity,
+                ProtocolRegistry.getInstance(context));
+        final UdpReceiveEngine engine = new UdpReceiveEngine(InetAddress.getByName("127.0.0.1"));
+        engine.register(BEACON_PORT, BEACON_BUFFER_SIZE, new BeaconIntake(parser, identity.getPublicKey()));
+        packetReceiver.startNio(engine);
+
+        try {
+            System.out.println(String.format(Locale.US, "%d s at %d datagrams/s, %.0f%% beacons listing %d neighbors",
+                    seconds, mDatagramsPerSecond, mBeaconShare * 100, mNeighborCount));
+            System.out.println(run(parser, packetReceiver, TimeUnit.SECONDS.toMillis(seconds)));
+        } finally {
+            packetReceiver.stopNio(engine);
+            engine.unregister(BEACON_PORT);
+            parser.interrupt();
+        }
+    }
+
+    /**
+     * Runs the generator against the platform's receive path and prints the report.
+     * @param args Optional duration, datagram rate, beacon share and neighbors listed in each beacon.
+     */
+    public static void main(String[] args) {
+        AndroidBenchmark.run(FloodGenerator.class, args);
+    }
+}
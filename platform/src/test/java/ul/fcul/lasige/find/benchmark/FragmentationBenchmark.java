@@ -0,0 +1,128 @@
+package ul.fcul.lasige.find.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import ul.fcul.lasige.find.packetcomm.FragmentReassembler;
+import ul.fcul.lasige.find.packetcomm.PacketFragmenter;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos;
+
+/**
+ * Benchmark of sending large packets as fragments ({@link PacketFragmenter} and {@link FragmentReassembler}) over
+ * lossy contacts, without acknowledgments. In each contact the sender sends all fragments of a packet once, and
+ * each fragment is lost with a given probability.
+ *
+ * <p>It reports, per packet size and loss rate, the average number of contacts until the packet is received
+ * when fragments are kept across contacts, and when the packet must arrive whole in a single contact (as with
+ * IP fragmentation, which drops the packet when any fragment is lost). It also reports the time taken to
+ * fragment and reassemble a packet.</p>
+ *
+ * <p>Usage: {@code FragmentationBenchmark [trials] [packet KiB, comma-separated] [loss %, comma-separated]}.</p>
+ */
+public class FragmentationBenchmark {
+    private static final String TAG = FragmentationBenchmark.class.getSimpleName();
+
+    // contacts after which a packet is given up
+    private static final int MAX_CONTACTS = 1000;
+
+    /**
+     * Builds a packet with random data.
+     * @param dataBytes Data size.
+     * @param random Source of randomness.
+     * @return Packet.
+     */
+    private static FindProtos.TransportPacket makePacket(int dataBytes, Random random) {
+        final byte[] protocol = new byte[20];
+        final byte[] data = new byte[dataBytes];
+        random.nextBytes(protocol);
+        random.nextBytes(data);
+        return FindProtos.TransportPacket.newBuilder()
+                .setProtocol(ByteString.copyFrom(protocol))
+                .setTtl(System.currentTimeMillis() / 1000 + 3600)
+                .setData(ByteString.copyFrom(data))
+                .build();
+    }
+
+    /**
+     * Sends a packet's fragments in contacts until it is reassembled.
+     * @param fragments Encoded fragments.
+     * @param loss Probability of losing a fragment.
+     * @param resume Whether fragments received are kept across contacts.
+     * @param random Source of randomness.
+     * @return Number of contacts, or {@link #MAX_CONTACTS} + 1 if the packet was not received.
+     * @throws InvalidProtocolBufferException If a fragment could not be parsed.
+     */
+    private static int contactsUntilReceived(List<byte[]> fragments, double loss, boolean resume, Random random)
+            throws InvalidProtocolBufferException {
+        FragmentReassembler reassembler = new FragmentReassembler();
+        for (int contact = 1; contact <= MAX_CONTACTS; contact++) {
+            if (!resume) {
+                reassembler = new FragmentReassembler();
+            }
+            for (byte[] fragment : fragments) {
+                if (random.nextDouble() < loss) {
+                    continue;
+                }
+                if (reassembler.add(FindProtos.TransportFragment.parseFrom(fragment)) != null) {
+                    return contact;
+                }
+            }
+        }
+        return MAX_CONTACTS + 1;
+    }
+
+    /**
+     * Runs the benchmark and prints the results.
+     * @param args Optional number of trials, comma-separated packet sizes and comma-separated loss rates.
+     * @throws Exception If a fragment could not be parsed.
+     */
+    public static void main(String[] args) throws Exception {
+        final int trials = (args.length > 0 ? Integer.parseInt(args[0]) : 100);
+        final String[] packetSizes = (args.length > 1 ? args[1] : "16,128,512").split(",");
+        final String[] losses = (args.length > 2 ? args[2] : "1,5,10,20").split(",");
+        final Random random = new Random(42);
+
+        System.out.println("packet  fragments  loss  contacts (kept)  contacts (whole)  fragment+reassemble");
+        for (String packetSize : packetSizes) {
+            final FindProtos.TransportPacket packet = makePacket(Integer.parseInt(packetSize.trim()) * 1024, random);
+            final List<byte[]> fragments = PacketFragmenter.fragment(packet, PacketFragmenter.DEFAULT_FRAGMENT_SIZE);
+
+            // cost of fragmenting and reassembling, without loss
+            final int runs = 20;
+            final long start = System.nanoTime();
+            for (int i = 0; i < runs; i++) {
+                final FragmentReassembler reassembler = new FragmentReassembler();
+                byte[] reassembled = null;
+                for (byte[] fragment : PacketFragmenter.fragment(packet, PacketFragmenter.DEFAULT_FRAGMENT_SIZE)) {
+                    reassembled = reassembler.add(FindProtos.TransportFragment.parseFrom(fragment));
+                }
+                if (reassembled == null || reassembled.length != packet.getSerializedSize()) {
+                    throw new IllegalStateException("Packet was not reassembled");
+                }
+            }
+            final double millis = (System.nanoTime() - start) / 1e6 / runs;
+
+            for (String lossPercent : losses) {
+                final double loss = Integer.parseInt(lossPercent.trim()) / 100.0;
+                long kept = 0;
+                long whole = 0;
+                boolean wholeGaveUp = false;
+                for (int i = 0; i < trials; i++) {
+                    kept += contactsUntilReceived(fragments, loss, true, random);
+                    final int contacts = contactsUntilReceived(fragments, loss, false, random);
+                    wholeGaveUp |= (contacts > MAX_CONTACTS);
+                    whole += contacts;
+                }
+                System.out.println(String.format(Locale.US, "%4d KiB %10d %4d%% %16.2f %17s %17.1f ms",
+                        packet.getSerializedSize() / 1024, fragments.size(), (int) (loss * 100),
+                        kept / (double) trials,
+                        (wholeGaveUp ? ">" + MAX_CONTACTS : String.format(Locale.US, "%.2f", whole / (double) trials)),
+                        millis));
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package ul.fcul.lasige.find.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Integration benchmark that runs several platform instances ({@link LoopbackNode}s) in one JVM, each bound to
+ * its own loopback address (127.0.0.2, 127.0.0.3, ...), exchanging real beacons and transport packets over
+ * UDP on the platform's ports. For each node count it waits until every instance discovered all others,
+ * then every instance creates packets at a fixed rate and sends them to all its neighbors.
+ *
+ * <p>It reports, per node count, the end-to-end packets delivered per second, the p50 and p99 delivery
+ * latency, and the CPU used per instance (process CPU time divided by instances and wall time).</p>
+ *
+ * <p>Usage: {@code LoopbackBenchmark [max nodes] [seconds per step] [packets/s per node] [payload bytes]}.
+ * Linux routes all of 127.0.0.0/8 to the loopback interface; other systems need loopback aliases (e.g.
+ * {@code ifconfig lo0 alias 127.0.0.2} on macOS).</p>
+ */
+public class LoopbackBenchmark {
+    private static final String TAG = LoopbackBenchmark.class.getSimpleName();
+
+    // time between beacons of an instance
+    private static final long BEACON_INTERVAL_MILLIS = 1000;
+    // how long to wait for discovery
+    private static final long DISCOVERY_TIMEOUT_MILLIS = 15 * 1000;
+    // how long to wait for packets in flight after instances stop creating them
+    private static final long DRAIN_MILLIS = 500;
+    // protocol of the packets
+    private static final ByteBuffer PROTOCOL = ByteBuffer.wrap(new byte[32]);
+
+    /**
+     * Results of one step.
+     */
+    private static final class Result {
+        int nodes;
+        boolean discovered;
+        long created;
+        long sent;
+        long delivered;
+        double packetsPerSecond;
+        double p50Millis;
+        double p99Millis;
+        double cpuPerNodePercent;
+        long sendErrors;
+    }
+
+    /**
+     * Runs the benchmark for a given number of instances.
+     * @param nodeCount Number of instances.
+     * @param seconds Duration of the measurement.
+     * @param packetsPerSecond Packets created per second by each instance.
+     * @param payloadBytes Payload size.
+     * @return Results.
+     * @throws Exception If sockets could not be bound or the benchmark was interrupted.
+     */
+    private static Result runStep(int nodeCount, int seconds, double packetsPerSecond, int payloadBytes)
+            throws Exception {
+        final Random random = new Random(nodeCount);
+        final List<Inet4Address> addresses = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            addresses.add((Inet4Address) InetAddress.getByAddress(
+                    new byte[] { 127, 0, (byte) ((i + 2) >> 8), (byte) (i + 2) }));
+        }
+        final List<LoopbackNode> nodes = new ArrayList<>();
+        final Result result = new Result();
+        result.nodes = nodeCount;
+        try {
+            for (Inet4Address address : addresses) {
+                final LoopbackNode node = new LoopbackNode(address, PROTOCOL, new Random(random.nextLong()));
+                node.setPeers(addresses);
+                nodes.add(node);
+            }
+            for (LoopbackNode node : nodes) {
+                node.start(BEACON_INTERVAL_MILLIS);
+            }
+
+            // wait for discovery
+            result.discovered = awaitDiscovery(nodes, nodeCount - 1);
+            for (LoopbackNode node : nodes) {
+                node.resetStatistics();
+            }
+
+            // measure
+            final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            final long cpuStart = processCpuNanos(os, threads);
+            final long wallStart = System.nanoTime();
+            for (LoopbackNode node : nodes) {
+                node.startPackets(packetsPerSecond, payloadBytes);
+            }
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            for (LoopbackNode node : nodes) {
+                node.stopPackets();
+            }
+            final long wallNanos = System.nanoTime() - wallStart;
+            Thread.sleep(DRAIN_MILLIS);
+            final long cpuNanos = processCpuNanos(os, threads) - cpuStart;
+
+            // collect
+            final List<Long> latencies = new ArrayList<>();
+            for (LoopbackNode node : nodes) {
+                result.created += node.getPacketsCreated();
+                result.sent += node.getPacketsSent();
+                result.sendErrors += node.getSendErrors();
+                latencies.addAll(node.getDeliveryLatenciesNanos());
+            }
+            Collections.sort(latencies);
+            result.delivered = latencies.size();
+            result.packetsPerSecond = latencies.size() / (wallNanos / 1e9);
+            result.p50Millis = percentile(latencies, 50) / 1e6;
+            result.p99Millis = percentile(latencies, 99) / 1e6;
+            result.cpuPerNodePercent = (cpuNanos < 0 ? -1 : 100.0 * cpuNanos / wallNanos / nodeCount);
+        } finally {
+            for (LoopbackNode node : nodes) {
+                node.stop();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Waits until every instance knows a given number of neighbors.
+     * @param nodes Instances.
+     * @param neighbors Number of neighbors.
+     * @return true if all instances discovered their neighbors before the timeout, false otherwise.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private static boolean awaitDiscovery(List<LoopbackNode> nodes, int neighbors) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + DISCOVERY_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            boolean discovered = true;
+            for (LoopbackNode node : nodes) {
+                if (node.getNeighborCount() < neighbors) {
+                    discovered = false;
+                    break;
+                }
+            }
+            if (discovered) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the CPU time used by the process, or by all live threads if the JVM does not report it.
+     * @param os Operating system bean.
+     * @param threads Thread bean.
+     * @return CPU time, in nanoseconds; -1 if unavailable.
+     */
+    private static long processCpuNanos(OperatingSystemMXBean os, ThreadMXBean threads) {
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        if (!threads.isThreadCpuTimeSupported()) {
+            return -1;
+        }
+        long total = 0;
+        for (long threadId : threads.getAllThreadIds()) {
+            total += Math.max(0, threads.getThreadCpuTime(threadId));
+        }
+        return total;
+    }
+
+    /**
+     * Returns a percentile of sorted values (nearest rank).
+     * @param sorted Sorted values.
+     * @param percentile Percentile, between 0 and 100.
+     * @return Value; -1 if there are no values.
+     */
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return -1;
+        }
+        final int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+        return sorted.get(Math.min(sorted.size() - 1, Math.max(0, rank - 1)));
+    }
+
+    /**
+     * Runs the benchmark with 2, 4, 8, ... instances and prints a table of results.
+     * @param args Optional maximum number of instances, seconds per step, packets per second per instance and
+     *             payload size.
+     * @throws Exception If sockets could not be bound or the benchmark was interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        final int maxNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 64);
+        final int seconds = (args.length > 1 ? Integer.parseInt(args[1]) : 10);
+        final double packetsPerSecond = (args.length > 2 ? Double.parseDouble(args[2]) : 10);
+        final int payloadBytes = (args.length > 3 ? Integer.parseInt(args[3]) : 256);
+
+        System.out.println(String.format(Locale.US, "%d s per step, %.1f packets/s per node, %d B payload",
+                seconds, packetsPerSecond, payloadBytes));
+        System.out.println("nodes  discovered    created       sent  delivered   pkts/s  p50 ms  p99 ms  cpu/node");
+        for (int nodeCount = 2; nodeCount <= maxNodes; nodeCount *= 2) {
+            final Result r = runStep(nodeCount, seconds, packetsPerSecond, payloadBytes);
+            System.out.println(String.format(Locale.US, "%5d  %10s %10d %10d %10d %8.0f %7.2f %7.2f %8.1f%%%s",
+                    r.nodes, (r.discovered ? "yes" : "partial"), r.created, r.sent, r.delivered,
+                    r.packetsPerSecond, r.p50Millis, r.p99Millis, r.cpuPerNodePercent,
+                    (r.sendErrors > 0 ? "  (" + r.sendErrors + " send errors)" : "")));
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package ul.fcul.lasige.find.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ul.fcul.lasige.find.beaconing.BeaconBuilder;
+import ul.fcul.lasige.find.beaconing.BeaconDedupCache;
+import ul.fcul.lasige.find.beaconing.ProtocolBloomFilter;
+import ul.fcul.lasige.find.data.FullContract.PacketQueues;
+import ul.fcul.lasige.find.lib.data.Neighbor;
+import ul.fcul.lasige.find.network.UdpReceiveEngine;
+import ul.fcul.lasige.find.packetcomm.PacketReceiver;
+import ul.fcul.lasige.find.packetcomm.PacketSender;
+import ul.fcul.lasige.find.packetcomm.TransportBundler;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos;
+
+/**
+ * A platform instance bound to its own loopback address, for {@link LoopbackBenchmark}. It receives beacons
+ * and packets on the platform's ports through its own {@link UdpReceiveEngine}, sends beacons built by
+ * {@link BeaconBuilder} to the other instances (as the subnet sweep does, since loopback has no broadcast), and
+ * sends {@link FindProtos.TransportPacket}s to its current neighbors as {@link PacketSender} does.
+ *
+ * <p>The Android-bound parts are replaced by stand-ins: the WiFi connection is the loopback address and a fixed
+ * network name, neighbors are kept in memory instead of {@link ul.fcul.lasige.find.data.NeighborTable}, and
+ * incoming packets are classified by {@link PacketReceiver#selectQueues} but not stored in SQLite.</p>
+ */
+public class LoopbackNode {
+    private static final String TAG = LoopbackNode.class.getSimpleName();
+
+    // ports and buffer sizes of the platform
+    static final int BEACON_PORT = 3108; // BeaconingManager.RECEIVER_PORT_UNICAST
+    private static final int BEACON_BUFFER_SIZE = 4 * 1024; // BeaconingManager.RECEIVER_BUFFER_SIZE
+    private static final int PACKET_BUFFER_SIZE = 65536;
+    // stand-in for the WiFi network name
+    private static final String NETWORK_NAME = "FIND_LOOPBACK";
+    // bytes in node ids (public keys)
+    private static final int NODE_ID_BYTES = 32;
+    // how long beacon fingerprints are remembered
+    private static final long BEACON_DEDUP_MILLIS = 60 * 1000;
+
+    private final Inet4Address mAddress;
+    private final byte[] mNodeId;
+    private final ByteBuffer mProtocol;
+    private final Set<ByteBuffer> mProtocols;
+    // addresses of the other instances, swept with beacons
+    private final List<Inet4Address> mPeers = new ArrayList<>();
+
+    private final UdpReceiveEngine mEngine;
+    private final DatagramSocket mSenderSocket;
+    private final ScheduledExecutorService mExecutor;
+    private final Random mRandom;
+    private ScheduledFuture<?> mPacketGenerator;
+
+    // neighbors, by node id; written by the receive thread, read by the sender thread
+    private final ConcurrentHashMap<ByteBuffer, Neighbor> mNeighbors = new ConcurrentHashMap<>();
+    private final BeaconDedupCache mKnownBeacons = new BeaconDedupCache(1024);
+    // packets already received (the database rejects duplicates); receive thread only
+    private final Set<Long> mReceivedPackets = new HashSet<>();
+    private int mNextPacketSequence;
+
+    // statistics
+    private final AtomicLong mPacketsCreated = new AtomicLong();
+    private final AtomicLong mPacketsSent = new AtomicLong();
+    private final AtomicLong mBeaconsSent = new AtomicLong();
+    private final AtomicLong mSendErrors = new AtomicLong();
+    private final List<Long> mDeliveryLatenciesNanos = new ArrayList<>();
+
+    /**
+     * Constructor. It binds the sender socket, but does not start receiving.
+     * @param address Loopback address of this instance.
+     * @param protocol Protocol of the packets it creates and implements.
+     * @param random Source of randomness, for the node id.
+     * @throws IOException If the sender socket could not be bound.
+     */
+    public LoopbackNode(Inet4Address address, ByteBuffer protocol, Random random) throws IOException {
+        mAddress = address;
+        mNodeId = new byte[NODE_ID_BYTES];
+        random.nextBytes(mNodeId);
+        mProtocol = protocol;
+        mProtocols = Collections.singleton(protocol);
+        mRandom = random;
+        mEngine = new UdpReceiveEngine(address);
+        mSenderSocket = new DatagramSocket(new InetSocketAddress(address, 0));
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Sets the addresses of the other instances.
+     * @param peers Addresses; this instance's address is skipped.
+     */
+    public void setPeers(Collection<Inet4Address> peers) {
+        for (Inet4Address peer : peers) {
+            if (!peer.equals(mAddress)) {
+                mPeers.add(peer);
+            }
+        }
+    }
+
+    /**
+     * Binds the receiving ports and starts beaconing.
+     * @param beaconIntervalMillis Time between beacons.
+     * @throws IOException If a port could not be bound.
+     */
+    public void start(long beaconIntervalMillis) throws IOException {
+        mEngine.register(BEACON_PORT, BEACON_BUFFER_SIZE, new UdpReceiveEngine.DatagramHandler() {
+            @Override
+            public void onDatagramReceived(ByteBuffer data, InetSocketAddress sender) {
+                onBeaconReceived(data, sender);
+            }
+        });
+        mEngine.register(PacketSender.PACKET_RECEIVING_PORT, PACKET_BUFFER_SIZE,
+                new UdpReceiveEngine.DatagramHandler() {
+                    @Override
+                    public void onDatagramReceived(ByteBuffer data, InetSocketAddress sender) {
+                        onPacketReceived(data);
+                    }
+                });
+        mExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sendBeacons();
+            }
+        }, mRandom.nextInt((int) beaconIntervalMillis), beaconIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts creating packets at a fixed rate.
+     * @param packetsPerSecond Packets created per second.
+     * @param payloadBytes Payload size.
+     */
+    public void startPackets(double packetsPerSecond, final int payloadBytes) {
+        final long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / packetsPerSecond);
+        mPacketGenerator = mExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                createPacket(payloadBytes);
+            }
+        }, mRandom.nextInt((int) Math.max(1, periodNanos)), periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops creating packets, and waits for the packets being sent.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void stopPackets() throws InterruptedException {
+        if (mPacketGenerator != null) {
+            mPacketGenerator.cancel(false);
+        }
+        // wait for a running task
+        try {
+            mExecutor.submit(new Runnable() {
+                @Override
+                public void run() { }
+            }).get();
+        } catch (ExecutionException e) {
+            // the task does nothing
+        }
+    }
+
+    /**
+     * Stops beaconing and receiving, and closes the sockets.
+     * @throws InterruptedException If interrupted while waiting for the sender thread.
+     */
+    public void stop() throws InterruptedException {
+        mExecutor.shutdownNow();
+        mExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        mEngine.unregister(BEACON_PORT);
+        mEngine.unregister(PacketSender.PACKET_RECEIVING_PORT);
+        mSenderSocket.close();
+    }
+
+    /**
+     * Returns the number of current neighbors.
+     * @return Number of neighbors.
+     */
+    public int getNeighborCount() {
+        return mNeighbors.size();
+    }
+
+    /**
+     * Clears the statistics, e.g. after discovery.
+     */
+    public synchronized void resetStatistics() {
+        mPacketsCreated.set(0);
+        mPacketsSent.set(0);
+        mBeaconsSent.set(0);
+        mSendErrors.set(0);
+        mDeliveryLatenciesNanos.clear();
+    }
+
+    public long getPacketsCreated() {
+        return mPacketsCreated.get();
+    }
+
+    public long getPacketsSent() {
+        return mPacketsSent.get();
+    }
+
+    public long getBeaconsSent() {
+        return mBeaconsSent.get();
+    }
+
+    public long getSendErrors() {
+        return mSendErrors.get();
+    }
+
+    /**
+     * Returns the latencies of packets delivered to this instance since the statistics were cleared.
+     * @return Latencies, in nanoseconds.
+     */
+    public synchronized List<Long> getDeliveryLatenciesNanos() {
+        return new ArrayList<>(mDeliveryLatenciesNanos);
+    }
+
+    /*
+     * SENDING
+     */
+
+    /**
+     * Sends a beacon with the current neighbors to every other instance.
+     */
+    private void sendBeacons() {
+        final long nowSeconds = System.currentTimeMillis() / 1000;
+        final FindProtos.Node.Builder sender = FindProtos.Node.newBuilder()
+                .setNodeId(ByteString.copyFrom(mNodeId))
+                .setIp4Address(ByteString.copyFrom(mAddress.getAddress()))
+                .addProtocols(ByteString.copyFrom(mProtocol.array()));
+        final byte[][] pages = BeaconBuilder.makePages(
+                sender, mProtocols, new ArrayList<>(mNeighbors.values()), NETWORK_NAME, nowSeconds);
+
+        int page = mRandom.nextInt(pages.length);
+        for (Inet4Address peer : mPeers) {
+            final byte[] beacon = BeaconBuilder.makeBeacon(pages[page++ % pages.length],
+                    FindProtos.Beacon.BeaconType.ORIGINAL, mRandom.nextInt(), nowSeconds);
+            send(beacon, peer, BEACON_PORT);
+            mBeaconsSent.incrementAndGet();
+        }
+    }
+
+    /**
+     * Creates an untargeted packet and sends it to every current neighbor. The payload starts with the
+     * packet id and its creation time, so receivers can measure the delivery latency.
+     * @param payloadBytes Payload size.
+     */
+    private void createPacket(int payloadBytes) {
+        final byte[] payload = new byte[Math.max(16, payloadBytes)];
+        final long packetId = ((long) mAddress.hashCode() << 32) | (mNextPacketSequence++ & 0xFFFFFFFFL);
+        ByteBuffer.wrap(payload).putLong(packetId).putLong(System.nanoTime());
+        final byte[] packet = FindProtos.TransportPacket.newBuilder()
+                .setSourceNode(ByteString.copyFrom(mNodeId))
+                .setProtocol(ByteString.copyFrom(mProtocol.array()))
+                .setData(ByteString.copyFrom(payload))
+                .build()
+                .toByteArray();
+        mPacketsCreated.incrementAndGet();
+
+        for (Neighbor neighbor : mNeighbors.values()) {
+            send(packet, neighbor.getIp4Address(), PacketSender.PACKET_RECEIVING_PORT);
+            mPacketsSent.incrementAndGet();
+        }
+    }
+
+    /**
+     * Sends a datagram, counting errors instead of aborting.
+     * @param data Data.
+     * @param address Destination address.
+     * @param port Destination port.
+     */
+    private void send(byte[] data, InetAddress address, int port) {
+        try {
+            mSenderSocket.send(new DatagramPacket(data, data.length, address, port));
+        } catch (IOException e) {
+            mSendErrors.incrementAndGet();
+        }
+    }
+
+    /*
+     * RECEIVING
+     */
+
+    /**
+     * Handles a received beacon, registering its sender as a neighbor.
+     * @param data Datagram data.
+     * @param sender Sender's address.
+     */
+    private void onBeaconReceived(ByteBuffer data, InetSocketAddress sender) {
+        final byte[] rawData = new byte[data.remaining()];
+        data.get(rawData);
+        if (rawData.length == 0 || sender.getAddress().equals(mAddress)) {
+            // empty or our own
+            return;
+        }
+        if (!mKnownBeacons.add(BeaconDedupCache.fingerprint(rawData), System.currentTimeMillis(),
+                BEACON_DEDUP_MILLIS)) {
+            return;
+        }
+
+        final FindProtos.Beacon beacon;
+        try {
+            beacon = FindProtos.Beacon.parseFrom(rawData);
+        } catch (InvalidProtocolBufferException e) {
+            return;
+        }
+        final FindProtos.Node node = beacon.getSender();
+        final byte[] nodeId = node.getNodeId().toByteArray();
+        if (nodeId.length == 0 || Arrays.equals(nodeId, mNodeId)) {
+            return;
+        }
+
+        final HashSet<ByteBuffer> protocols = new HashSet<>();
+        final Collection<ByteString> senderProtocols = (node.hasProtocolsBloom()
+                ? ProtocolBloomFilter.decode(node.getProtocolsBloom(), mProtocols) : node.getProtocolsList());
+        for (ByteString protocol : senderProtocols) {
+            protocols.add(ByteBuffer.wrap(protocol.toByteArray()));
+        }
+        final ByteBuffer key = ByteBuffer.wrap(nodeId);
+        final Neighbor current = mNeighbors.get(key);
+        mNeighbors.put(key, new Neighbor((current != null ? current.getRawId() : mNeighbors.size() + 1), nodeId,
+                System.currentTimeMillis() / 1000, 0, false, NETWORK_NAME, (Inet4Address) sender.getAddress(),
+                null, null, protocols));
+    }
+
+    /**
+     * Handles a received datagram, as {@link PacketReceiver} does, and records the delivery latency of its
+     * packets.
+     * @param data Datagram data.
+     */
+    private void onPacketReceived(ByteBuffer data) {
+        final long timeReceived = System.nanoTime();
+        final byte[] rawData = new byte[data.remaining()];
+        data.get(rawData);
+
+        final List<FindProtos.TransportPacket> packets;
+        try {
+            packets = TransportBundler.parse(rawData);
+        } catch (InvalidProtocolBufferException e) {
+            return;
+        }
+        for (FindProtos.TransportPacket packet : packets) {
+            final boolean isReceiver = (packet.hasTargetNode()
+                    && Arrays.equals(packet.getTargetNode().toByteArray(), mNodeId));
+            final boolean supportedProtocol = mProtocols.contains(packet.getProtocol().asReadOnlyByteBuffer());
+            final List<PacketQueues> queues =
+                    PacketReceiver.selectQueues(isReceiver, packet.hasTargetNode(), supportedProtocol);
+            final ByteBuffer payload = packet.getData().asReadOnlyByteBuffer();
+            if (queues.isEmpty() || payload.remaining() < 16 || !mReceivedPackets.add(payload.getLong())) {
+                continue;
+            }
+
+            if (queues.contains(PacketQueues.INCOMING)) {
+                final long timeCreated = payload.getLong();
+                synchronized (this) {
+                    mDeliveryLatenciesNanos.add(timeReceived - timeCreated);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package ul.fcul.lasige.find.benchmark;
+
+import android.content.ContentValues;
+
+import com.google.protobuf.ByteString;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import ul.fcul.lasige.find.data.DbController;
+import ul.fcul.lasige.find.data.FullContract.Neighbors;
+import ul.fcul.lasige.find.data.NeighborUpdate;
+
+/**
+ * Benchmark of neighbor writes: beacons from a batch of neighbors written one {@link DbController#insertNeighbor}
+ * call (and transaction) per neighbor, as the beacon parser did, against a single
+ * {@link DbController#insertNeighbors(List)} call per batch, as the {@link ul.fcul.lasige.find.data.NeighborTable}
+ * write-behind does. Each neighbor has an IPv4 address and a few protocols, and every round writes newer
+ * timestamps, so that no write is skipped as stale.
+ *
+ * <p>Usage: {@code NeighborInsertBenchmark [rounds] [protocols per neighbor] [batch sizes...]}. It reports the
+ * beacons written per second by both paths, for each batch size.</p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class NeighborInsertBenchmark {
+    // rounds run before measuring, for each batch size and path
+    private static final int WARMUP_ROUNDS = 20;
+
+    private final Random mRandom = new Random(42);
+
+    /**
+     * Creates the updates of a batch of neighbors, all seen at a given time.
+     * @param nodeIds Neighbors' identifiers.
+     * @param protocols Neighbors' protocols.
+     * @param timestamp Time they were seen, in seconds.
+     * @return Neighbor updates.
+     */
+    private static List<NeighborUpdate> makeUpdates(List<byte[]> nodeIds, List<ByteString> protocols,
+                                                    long timestamp) {
+        final List<NeighborUpdate> updates = new ArrayList<>(nodeIds.size());
+        for (int i = 0; i < nodeIds.size(); i++) {
+            final ContentValues values = new ContentValues();
+            values.put(Neighbors.COLUMN_IDENTIFIER, nodeIds.get(i));
+            values.put(Neighbors.COLUMN_TIME_LASTSEEN, timestamp);
+            values.put(Neighbors.COLUMN_MULTICAST_CAPABLE, true);
+            values.put(Neighbors.COLUMN_TIME_LASTPACKET, 0L);
+            values.put(Neighbors.COLUMN_NETWORK, "benchmark");
+            values.put(Neighbors.COLUMN_IP4, new byte[] {10, 0, (byte) (i >> 8), (byte) i});
+            updates.add(new NeighborUpdate(values, protocols));
+        }
+        return updates;
+    }
+
+    /**
+     * Writes a number of rounds of a batch of neighbors.
+     * @param db Database controller.
+     * @param nodeIds Neighbors' identifiers.
+     * @param protocols Neighbors' protocols.
+     * @param firstTimestamp Timestamp of the first round; each round uses the next one.
+     * @param rounds Number of rounds.
+     * @param batched Whether to write each round with a single call.
+     * @return Elapsed time, in nanoseconds.
+     */
+    private static long write(DbController db, List<byte[]> nodeIds, List<ByteString> protocols,
+                              long firstTimestamp, int rounds, boolean batched) {
+        final List<List<NeighborUpdate>> allUpdates = new ArrayList<>(rounds);
+        for (int round = 0; round < rounds; round++) {
+            allUpdates.add(makeUpdates(nodeIds, protocols, firstTimestamp + round));
+        }
+
+        final long start = System.nanoTime();
+        for (List<NeighborUpdate> updates : allUpdates) {
+            if (batched) {
+                db.insertNeighbors(updates);
+            } else {
+                for (NeighborUpdate update : updates) {
+                    db.insertNeighbor(update.getValues(), update.getProtocols());
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void benchmark() {
+        AndroidBenchmark.assumeRunning();
+        final String[] args = AndroidBenchmark.getArgs();
+        final int rounds = (args.length > 0 ? Integer.parseInt(args[0]) : 200);
+        final int protocolCount = (args.length > 1 ? Integer.parseInt(args[1]) : 3);
+        final List<Integer> batchSizes = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            batchSizes.add(Integer.parseInt(args[i]));
+        }
+        if (batchSizes.isEmpty()) {
+            batchSizes.add(1);
+            batchSizes.add(5);
+            batchSizes.add(20);
+            batchSizes.add(50);
+        }
+
+        final DbController db = new DbController(RuntimeEnvironment.application);
+        final List<ByteString> protocols = new ArrayList<>(protocolCount);
+        for (int i = 0; i < protocolCount; i++) {
+            final byte[] hash = new byte[20];
+            mRandom.nextBytes(hash);
+            protocols.add(ByteString.copyFrom(hash));
+        }
+
+        System.out.println(String.format(Locale.US, "%d rounds, %d protocols per neighbor", rounds, protocolCount));
+        System.out.println("batch  per-neighbor beacons/s  batched beacons/s  speedup");
+        long timestamp = 1;
+        for (int batchSize : batchSizes) {
+            final List<byte[]> nodeIds = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                final byte[] nodeId = new byte[32];
+                mRandom.nextBytes(nodeId);
+                nodeIds.add(nodeId);
+            }
+
+            // both paths write the same neighbors, which already exist after the warmup
+            write(db, nodeIds, protocols, timestamp, WARMUP_ROUNDS, false);
+            timestamp += WARMUP_ROUNDS;
+            write(db, nodeIds, protocols, timestamp, WARMUP_ROUNDS, true);
+            timestamp += WARMUP_ROUNDS;
+
+            final long singleNanos = write(db, nodeIds, protocols, timestamp, rounds, false);
+            timestamp += rounds;
+            final long batchedNanos = write(db, nodeIds, protocols, timestamp, rounds, true);
+            timestamp += rounds;
+
+            final double beacons = (double) rounds * batchSize;
+            final double singleRate = beacons / (singleNanos / 1e9);
+            final double batchedRate = beacons / (batchedNanos / 1e9);
+            System.out.println(String.format(Locale.US, "%5d  %22.0f  %17.0f  %6.1fx",
+                    batchSize, singleRate, batchedRate, batchedRate / singleRate));
+        }
+    }
+
+    /**
+     * Runs the benchmark and prints the results.
+     * @param args Optional number of rounds, protocols per neighbor and batch sizes.
+     */
+    public static void main(String[] args) {
+        AndroidBenchmark.run(NeighborInsertBenchmark.class, args);
+    }
+}
@@ -0,0 +1,292 @@
+package ul.fcul.lasige.find.benchmark;
+
+import android.content.Context;
+import android.database.MatrixCursor;
+
+import com.google.protobuf.ByteString;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ul.fcul.lasige.find.apps.ProtocolRegistry;
+import ul.fcul.lasige.find.data.FullContract;
+import ul.fcul.lasige.find.data.Identity;
+import ul.fcul.lasige.find.network.UdpReceiveEngine;
+import ul.fcul.lasige.find.packetcomm.PacketReceiver;
+import ul.fcul.lasige.find.packetcomm.PacketRegistry;
+import ul.fcul.lasige.find.packetcomm.PacketSender;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos;
+
+/**
+ * Benchmark of beacon intake while the packet port is flooded. Beacons and packets are received by the same
+ * {@link UdpReceiveEngine} thread; packets are handled by a real {@link PacketReceiver}, which stores them in
+ * SQLite through the {@link PacketRegistry}. Beacons carry their send time, and are only copied on arrival, as
+ * {@link ul.fcul.lasige.find.beaconing.NioBeaconReceiver} does before queueing them for the parser.
+ *
+ * <p>Two modes are compared: packets handled on the engine thread, as the receiver did before handing
+ * datagrams to a worker thread, and through {@link PacketReceiver#startNio(UdpReceiveEngine)}. It reports,
+ * per mode, the beacons received and their intake latency (p50, p99, max), and the packets received, stored
+ * and dropped.</p>
+ *
+ * <p>Usage: {@code ReceiveFloodBenchmark [seconds] [packets/s] [packet bytes] [beacons/s]}. It runs on
+ * 127.0.0.1, on the platform's ports.</p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class ReceiveFloodBenchmark {
+    private static final String TAG = ReceiveFloodBenchmark.class.getSimpleName();
+
+    // port where beacons are received (BeaconingManager.RECEIVER_PORT_UNICAST)
+    private static final int BEACON_PORT = 3108;
+    // beacon buffer and size (BeaconingManager.RECEIVER_BUFFER_SIZE, a beacon with a few protocols)
+    private static final int BEACON_BUFFER_SIZE = 4 * 1024;
+    private static final int BEACON_SIZE = 300;
+    // how long to wait for datagrams in flight after the flood stops
+    private static final long DRAIN_MILLIS = 1000;
+
+    /**
+     * How packets are handled.
+     */
+    private enum Mode {
+        /**
+         * On the engine thread.
+         */
+        INLINE,
+        /**
+         * On the receiver's worker thread.
+         */
+        WORKER
+    }
+
+    /**
+     * Results of one mode.
+     */
+    private static final class Result {
+        Mode mode;
+        long beaconsSent;
+        long beaconsReceived;
+        double p50Millis;
+        double p99Millis;
+        double maxMillis;
+        long packetsSent;
+        long packetsReceived;
+        long packetsStored;
+        long packetsDropped;
+    }
+
+    /**
+     * Handles packets on the engine thread, as {@link PacketReceiver#onDatagramReceived} did before datagrams
+     * were handed to a worker thread.
+     */
+    private static final class InlinePacketHandler implements UdpReceiveEngine.DatagramHandler {
+        private final PacketReceiver mReceiver;
+
+        InlinePacketHandler(PacketReceiver receiver) {
+            mReceiver = receiver;
+        }
+
+        @Override
+        public void onDatagramReceived(ByteBuffer data, InetSocketAddress sender) {
+            final byte[] rawData = new byte[data.remaining()];
+            data.get(rawData);
+            mReceiver.onPacketReceived(rawData, sender);
+        }
+    }
+
+    /**
+     * Records the intake latency of beacons, which carry their send time in their first bytes.
+     */
+    private static final class BeaconHandler implements UdpReceiveEngine.DatagramHandler {
+        private final List<Long> mLatencies = Collections.synchronizedList(new ArrayList<Long>());
+
+        @Override
+        public void onDatagramReceived(ByteBuffer data, InetSocketAddress sender) {
+            final byte[] rawData = new byte[data.remaining()];
+            data.get(rawData);
+            mLatencies.add(System.nanoTime() - ByteBuffer.wrap(rawData).getLong());
+        }
+    }
+
+    /**
+     * Sends datagrams at a fixed rate, from its own thread.
+     */
+    private abstract static class Sender extends Thread {
+        private final DatagramSocket mSocket;
+        private final InetSocketAddress mTarget;
+        private final long mIntervalNanos;
+        private final long mEndNanos;
+        final AtomicLong mSent = new AtomicLong();
+
+        Sender(InetSocketAddress target, int perSecond, long endNanos) throws IOException {
+            mSocket = new DatagramSocket(new InetSocketAddress(target.getAddress(), 0));
+            mSocket.setSendBufferSize(1024 * 1024);
+            mTarget = target;
+            mIntervalNanos = TimeUnit.SECONDS.toNanos(1) / perSecond;
+            mEndNanos = endNanos;
+        }
+
+        abstract byte[] next(long sequence);
+
+        @Override
+        public void run() {
+            long nextNanos = System.nanoTime();
+            try {
+                while (nextNanos < mEndNanos) {
+                    final long sleepNanos = nextNanos - System.nanoTime();
+                    if (sleepNanos > 0) {
+                        TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                    }
+                    final byte[] data = next(mSent.get());
+                    mSocket.send(new DatagramPacket(data, data.length, mTarget));
+                    mSent.incrementAndGet();
+                    nextNanos += mIntervalNanos;
+                }
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                mSocket.close();
+            }
+        }
+    }
+
+    /**
+     * Runs one mode.
+     * @param mode Mode.
+     * @param receiver Packet receiver.
+     * @param seconds Duration of the flood.
+     * @param packetsPerSecond Packets sent per second.
+     * @param packetBytes Data bytes of each packet.
+     * @param beaconsPerSecond Beacons sent per second.
+     * @return Results.
+     * @throws Exception If a socket failed.
+     */
+    private static Result runMode(Mode mode, PacketReceiver receiver, int seconds, int packetsPerSecond,
+                                  final int packetBytes, int beaconsPerSecond) throws Exception {
+        final InetAddress address = InetAddress.getByName("127.0.0.1");
+        final UdpReceiveEngine engine = new UdpReceiveEngine(address);
+        final BeaconHandler beaconHandler = new BeaconHandler();
+        engine.register(BEACON_PORT, BEACON_BUFFER_SIZE, beaconHandler);
+        if (mode == Mode.INLINE) {
+            engine.register(PacketSender.PACKET_RECEIVING_PORT, 65536, new InlinePacketHandler(receiver));
+        } else {
+            receiver.startNio(engine);
+        }
+
+        final long receivedBefore = receiver.getReceivedPackets();
+        final long storedBefore = receiver.getRegisteredPackets();
+        final long droppedBefore = receiver.getDroppedPackets();
+        final Random random = new Random(mode.ordinal());
+        final long endNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final Sender packetSender = new Sender(
+                new InetSocketAddress(address, PacketSender.PACKET_RECEIVING_PORT), packetsPerSecond, endNanos) {
+            @Override
+            byte[] next(long sequence) {
+                final byte[] data = new byte[packetBytes];
+                random.nextBytes(data);
+                return FindProtos.TransportPacket.newBuilder()
+                        .setProtocol(ByteString.copyFrom(new byte[32]))
+                        .setTtl(System.currentTimeMillis() / 1000 + 3600)
+                        .setData(ByteString.copyFrom(data))
+                        .build()
+                        .toByteArray();
+            }
+        };
+        final Sender beaconSender = new Sender(
+                new InetSocketAddress(address, BEACON_PORT), beaconsPerSecond, endNanos) {
+            @Override
+            byte[] next(long sequence) {
+                return ByteBuffer.allocate(BEACON_SIZE).putLong(System.nanoTime()).array();
+            }
+        };
+        packetSender.start();
+        beaconSender.start();
+        packetSender.join();
+        beaconSender.join();
+
+        // wait until the receiver caught up
+        long received;
+        do {
+            received = receiver.getReceivedPackets() + receiver.getDroppedPackets();
+            Thread.sleep(DRAIN_MILLIS);
+        } while (received != receiver.getReceivedPackets() + receiver.getDroppedPackets());
+
+        if (mode == Mode.INLINE) {
+            engine.unregister(PacketSender.PACKET_RECEIVING_PORT);
+        } else {
+            receiver.stopNio(engine);
+        }
+        engine.unregister(BEACON_PORT);
+
+        final Result result = new Result();
+        result.mode = mode;
+        result.beaconsSent = beaconSender.mSent.get();
+        result.packetsSent = packetSender.mSent.get();
+        result.packetsReceived = receiver.getReceivedPackets() - receivedBefore;
+        result.packetsStored = receiver.getRegisteredPackets() - storedBefore;
+        result.packetsDropped = receiver.getDroppedPackets() - droppedBefore;
+
+        final List<Long> latencies = new ArrayList<>(beaconHandler.mLatencies);
+        Collections.sort(latencies);
+        result.beaconsReceived = latencies.size();
+        if (!latencies.isEmpty()) {
+            result.p50Millis = latencies.get(latencies.size() / 2) / 1e6;
+            result.p99Millis = latencies.get(Math.min(latencies.size() - 1, latencies.size() * 99 / 100)) / 1e6;
+            result.maxMillis = latencies.get(latencies.size() - 1) / 1e6;
+        }
+        return result;
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        AndroidBenchmark.assumeRunning();
+        final String[] args = AndroidBenchmark.getArgs();
+        final int seconds = (args.length > 0 ? Integer.parseInt(args[0]) : 10);
+        final int packetsPerSecond = (args.length > 1 ? Integer.parseInt(args[1]) : 2000);
+        final int packetBytes = (args.length > 2 ? Integer.parseInt(args[2]) : 1000);
+        final int beaconsPerSecond = (args.length > 3 ? Integer.parseInt(args[3]) : 200);
+
+        final Context context = RuntimeEnvironment.application;
+        final MatrixCursor identityCursor = new MatrixCursor(new String[] {
+                FullContract.Identities.COLUMN_PUBLICKEY, FullContract.Identities.COLUMN_DISPLAY_NAME});
+        identityCursor.addRow(new Object[] {new byte[32], TAG});
+        identityCursor.moveToFirst();
+        final PacketReceiver receiver = new PacketReceiver(PacketRegistry.getInstance(context),
+                Identity.fromCursor(identityCursor), ProtocolRegistry.getInstance(context));
+
+        System.out.println(String.format(Locale.US, "%d s flood of %d packets/s of %d bytes, %d beacons/s",
+                seconds, packetsPerSecond, packetBytes, beaconsPerSecond));
+        System.out.println("mode    beacons rcvd/sent  intake p50 ms  p99 ms  max ms"
+                + "  packets sent  received  stored  dropped");
+        for (Mode mode : Mode.values()) {
+            final Result r = runMode(mode, receiver, seconds, packetsPerSecond, packetBytes, beaconsPerSecond);
+            System.out.println(String.format(Locale.US, "%-6s  %8d/%-8d  %13.2f  %6.2f  %6.1f  %12d  %8d  %6d  %7d",
+                    r.mode, r.beaconsReceived, r.beaconsSent, r.p50Millis, r.p99Millis, r.maxMillis,
+                    r.packetsSent, r.packetsReceived, r.packetsStored, r.packetsDropped));
+        }
+    }
+
+    /**
+     * Runs the benchmark and prints the results.
+     * @param args Optional duration, packet rate, packet size and beacon rate.
+     */
+    public static void main(String[] args) {
+        AndroidBenchmark.run(ReceiveFloodBenchmark.class, args);
+    }
+}
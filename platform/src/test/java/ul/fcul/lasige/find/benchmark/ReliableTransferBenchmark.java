@@ -0,0 +1,369 @@
+package ul.fcul.lasige.find.benchmark;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ul.fcul.lasige.find.packetcomm.ReliableReceiver;
+import ul.fcul.lasige.find.packetcomm.ReliableSender;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos;
+
+/**
+ * Loopback benchmark of reliable transfers ({@link ReliableSender} and {@link ReliableReceiver}) under emulated
+ * loss. A relay between sender and receiver drops datagrams in both directions with a given probability and
+ * delays the others by a fixed one-way delay, like a lossy WiFi link. For each loss rate, the same set of
+ * datagrams is sent once fire-and-forget and once in a reliable transfer.
+ *
+ * <p>It reports, per loss rate and mode, the share of datagrams delivered, the goodput (distinct payload bytes
+ * delivered per second, until the last delivery or until the transfer ended), and for reliable transfers the
+ * retransmitted segments and retransmission timeouts.</p>
+ *
+ * <p>Usage: {@code ReliableTransferBenchmark [datagrams] [datagram bytes] [one-way delay ms] [loss %, comma-separated]}.</p>
+ */
+public class ReliableTransferBenchmark {
+    private static final String TAG = ReliableTransferBenchmark.class.getSimpleName();
+
+    // receive buffer
+    private static final int BUFFER_SIZE = 65536;
+    // kernel socket buffer of the relay and the receiver
+    private static final int SOCKET_BUFFER_SIZE = 1024 * 1024;
+    // fire-and-forget datagrams sent back to back, before pausing for a millisecond
+    private static final int PACING_BURST = 8;
+    // how long to wait for datagrams in flight after a fire-and-forget run
+    private static final long DRAIN_MILLIS = 500;
+
+    /**
+     * Results of one run.
+     */
+    private static final class Result {
+        int delivered;
+        long payloadBytes;
+        double seconds;
+        int retransmissions;
+        int timeouts;
+    }
+
+    /**
+     * A datagram held by the relay until its delay expires.
+     */
+    private static final class DelayedDatagram implements Delayed {
+        final byte[] mData;
+        final SocketAddress mTarget;
+        final long mDueNanos;
+
+        DelayedDatagram(byte[] data, SocketAddress target, long dueNanos) {
+            mData = data;
+            mTarget = target;
+            mDueNanos = dueNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(mDueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            final long diff = mDueNanos - ((DelayedDatagram) other).mDueNanos;
+            return (diff < 0 ? -1 : (diff > 0 ? 1 : 0));
+        }
+    }
+
+    /**
+     * Relays datagrams between a sender and a receiver, dropping and delaying them.
+     */
+    private static final class LossyRelay {
+        private final DatagramSocket mSocket;
+        private final InetSocketAddress mReceiver;
+        private final double mLoss;
+        private final long mDelayNanos;
+        private final Random mRandom;
+        private final DelayQueue<DelayedDatagram> mQueue = new DelayQueue<>();
+        private final AtomicBoolean mRunning = new AtomicBoolean(true);
+        private final Thread mReceiveThread;
+        private final Thread mSendThread;
+        // last address datagrams for the receiver came from
+        private volatile SocketAddress mSender;
+
+        LossyRelay(InetAddress loopback, InetSocketAddress receiver, double loss, long delayMillis, Random random)
+                throws SocketException {
+            mSocket = new DatagramSocket(new InetSocketAddress(loopback, 0));
+            mSocket.setReceiveBufferSize(SOCKET_BUFFER_SIZE);
+            mSocket.setSoTimeout(100);
+            mReceiver = receiver;
+            mLoss = loss;
+            mDelayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            mRandom = random;
+            mReceiveThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    receiveLoop();
+                }
+            });
+            mSendThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    sendLoop();
+                }
+            });
+            mReceiveThread.start();
+            mSendThread.start();
+        }
+
+        InetSocketAddress getAddress() {
+            return (InetSocketAddress) mSocket.getLocalSocketAddress();
+        }
+
+        private void receiveLoop() {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            while (mRunning.get()) {
+                packet.setData(buffer);
+                try {
+                    mSocket.receive(packet);
+                } catch (SocketTimeoutException e) {
+                    continue;
+                } catch (Exception e) {
+                    return;
+                }
+                final SocketAddress source = packet.getSocketAddress();
+                final SocketAddress target;
+                if (source.equals(mReceiver)) {
+                    target = mSender;
+                } else {
+                    mSender = source;
+                    target = mReceiver;
+                }
+                if (target == null || mRandom.nextDouble() < mLoss) {
+                    continue;
+                }
+                mQueue.put(new DelayedDatagram(Arrays.copyOf(packet.getData(), packet.getLength()), target,
+                        System.nanoTime() + mDelayNanos));
+            }
+        }
+
+        private void sendLoop() {
+            while (mRunning.get()) {
+                final DelayedDatagram datagram;
+                try {
+                    datagram = mQueue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (datagram == null) {
+                    continue;
+                }
+                try {
+                    mSocket.send(new DatagramPacket(datagram.mData, datagram.mData.length, datagram.mTarget));
+                } catch (Exception e) {
+                    // dropped
+                }
+            }
+        }
+
+        void stop() throws InterruptedException {
+            mRunning.set(false);
+            mReceiveThread.join();
+            mSendThread.join();
+            mSocket.close();
+        }
+    }
+
+    /**
+     * Receives datagrams, acknowledging segments as {@link ul.fcul.lasige.find.packetcomm.PacketReceiver} does,
+     * and records which datagrams arrived (by the index at the start of their payload) and when.
+     */
+    private static final class Receiver {
+        private final DatagramSocket mSocket;
+        private final ReliableReceiver mReliableReceiver = new ReliableReceiver();
+        private final AtomicBoolean mRunning = new AtomicBoolean(true);
+        private final Thread mThread;
+        private final BitSet mDelivered = new BitSet();
+        private long mPayloadBytes;
+        private long mLastDeliveryNanos;
+
+        Receiver(InetAddress loopback) throws SocketException {
+            mSocket = new DatagramSocket(new InetSocketAddress(loopback, 0));
+            mSocket.setReceiveBufferSize(SOCKET_BUFFER_SIZE);
+            mSocket.setSoTimeout(100);
+            mThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    receiveLoop();
+                }
+            });
+            mThread.start();
+        }
+
+        InetSocketAddress getAddress() {
+            return (InetSocketAddress) mSocket.getLocalSocketAddress();
+        }
+
+        private void receiveLoop() {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            while (mRunning.get()) {
+                packet.setData(buffer);
+                try {
+                    mSocket.receive(packet);
+                } catch (SocketTimeoutException e) {
+                    continue;
+                } catch (Exception e) {
+                    return;
+                }
+                byte[] data = Arrays.copyOf(packet.getData(), packet.getLength());
+                if (ReliableReceiver.isSegment(data)) {
+                    final FindProtos.TransferSegment segment;
+                    try {
+                        segment = FindProtos.TransferSegment.parseFrom(data);
+                    } catch (InvalidProtocolBufferException e) {
+                        continue;
+                    }
+                    final InetSocketAddress sender = (InetSocketAddress) packet.getSocketAddress();
+                    final boolean isNew = mReliableReceiver.onSegment(segment, sender);
+                    final byte[] ack = mReliableReceiver.getAck(segment.getTransferId(), sender).toByteArray();
+                    try {
+                        mSocket.send(new DatagramPacket(ack, ack.length, sender));
+                    } catch (Exception e) {
+                        // the sender will retransmit
+                    }
+                    if (!isNew) {
+                        continue;
+                    }
+                    data = segment.getPayload().toByteArray();
+                }
+                final int index = ByteBuffer.wrap(data).getInt();
+                synchronized (this) {
+                    if (!mDelivered.get(index)) {
+                        mDelivered.set(index);
+                        mPayloadBytes += data.length;
+                        mLastDeliveryNanos = System.nanoTime();
+                    }
+                }
+            }
+        }
+
+        synchronized int getDelivered() {
+            return mDelivered.cardinality();
+        }
+
+        synchronized long getPayloadBytes() {
+            return mPayloadBytes;
+        }
+
+        synchronized long getLastDeliveryNanos() {
+            return mLastDeliveryNanos;
+        }
+
+        void stop() throws InterruptedException {
+            mRunning.set(false);
+            mThread.join();
+            mSocket.close();
+        }
+    }
+
+    /**
+     * Sends datagrams through a lossy relay.
+     * @param datagrams Datagram data.
+     * @param reliable Whether to send them in a reliable transfer.
+     * @param loss Probability of dropping a datagram, in each direction.
+     * @param delayMillis One-way delay.
+     * @param seed Seed of the relay's randomness.
+     * @return Results.
+     * @throws Exception If sockets could not be created or the run was interrupted.
+     */
+    private static Result run(List<byte[]> datagrams, boolean reliable, double loss, long delayMillis, long seed)
+            throws Exception {
+        final InetAddress loopback = InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 });
+        final Receiver receiver = new Receiver(loopback);
+        final LossyRelay relay = new LossyRelay(loopback, receiver.getAddress(), loss, delayMillis, new Random(seed));
+        final DatagramSocket socket = new DatagramSocket(new InetSocketAddress(loopback, 0));
+        final InetSocketAddress target = relay.getAddress();
+        final Result result = new Result();
+        try {
+            final long start = System.nanoTime();
+            long end;
+            if (reliable) {
+                final ReliableSender sender =
+                        new ReliableSender(socket, target.getAddress(), target.getPort(), new Random(seed));
+                sender.send(datagrams);
+                end = System.nanoTime();
+                result.retransmissions = sender.getRetransmissions();
+                result.timeouts = sender.getTimeouts();
+            } else {
+                for (int i = 0; i < datagrams.size(); i++) {
+                    final byte[] datagram = datagrams.get(i);
+                    socket.send(new DatagramPacket(datagram, datagram.length, target));
+                    if (i % PACING_BURST == PACING_BURST - 1) {
+                        // keep socket buffers from overflowing, which would add to the emulated loss
+                        Thread.sleep(1);
+                    }
+                }
+                Thread.sleep(DRAIN_MILLIS + delayMillis);
+                end = receiver.getLastDeliveryNanos();
+            }
+            result.delivered = receiver.getDelivered();
+            result.payloadBytes = receiver.getPayloadBytes();
+            result.seconds = Math.max(1, end - start) / 1e9;
+        } finally {
+            socket.close();
+            relay.stop();
+            receiver.stop();
+        }
+        return result;
+    }
+
+    /**
+     * Runs the benchmark and prints the results.
+     * @param args Optional number of datagrams, datagram size, one-way delay and comma-separated loss rates.
+     * @throws Exception If sockets could not be created or the benchmark was interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        final int count = (args.length > 0 ? Integer.parseInt(args[0]) : 2000);
+        final int size = (args.length > 1 ? Integer.parseInt(args[1]) : 1200);
+        final long delayMillis = (args.length > 2 ? Long.parseLong(args[2]) : 5);
+        final String[] losses = (args.length > 3 ? args[3] : "0,5,10,20,30").split(",");
+
+        // datagrams start with their index
+        final Random random = new Random(42);
+        final List<byte[]> datagrams = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final byte[] datagram = new byte[Math.max(4, size)];
+            random.nextBytes(datagram);
+            ByteBuffer.wrap(datagram).putInt(i);
+            datagrams.add(datagram);
+        }
+
+        System.out.println(String.format(Locale.US, "%d datagrams of %d bytes, %d ms one-way delay", count, size,
+                delayMillis));
+        System.out.println("loss  mode        delivered  goodput KB/s  retransmitted  timeouts");
+        for (String lossPercent : losses) {
+            final double loss = Integer.parseInt(lossPercent.trim()) / 100.0;
+            for (boolean reliable : new boolean[] { false, true }) {
+                final Result result = run(datagrams, reliable, loss, delayMillis, 7);
+                System.out.println(String.format(Locale.US, "%3.0f%%  %-10s %9.1f%% %13.0f %14s %9s",
+                        100 * loss, (reliable ? "reliable" : "unreliable"), 100.0 * result.delivered / count,
+                        result.payloadBytes / 1024.0 / result.seconds,
+                        (reliable ? String.valueOf(result.retransmissions) : "-"),
+                        (reliable ? String.valueOf(result.timeouts) : "-")));
+            }
+        }
+    }
+}
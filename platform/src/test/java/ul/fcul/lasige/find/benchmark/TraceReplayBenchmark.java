@@ -0,0 +1,104 @@
+package ul.fcul.lasige.find.benchmark;
+
+import android.content.Context;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.Locale;
+
+import ul.fcul.lasige.find.beaconing.BeaconingManager;
+import ul.fcul.lasige.find.beaconing.TraceReplayer;
+import ul.fcul.lasige.find.data.NeighborTable;
+import ul.fcul.lasige.find.packetcomm.PacketRegistry;
+
+/**
+ * Benchmark of the platform fed by a {@link TraceReplayer}: a captured trace (e.g. pulled from a device where the
+ * {@link ul.fcul.lasige.find.network.DatagramTraceRecorder DatagramTraceRecorder} was enabled), or a synthetic one
+ * written by the {@link FloodGenerator}, is replayed into the platform, which runs in the passive state. It reports
+ * how fast the trace was replayed, and the neighbors and packets the platform holds once it caught up.
+ *
+ * <p>Usage: {@code TraceReplayBenchmark [speedup] [trace file | synthetic datagrams]}. A speedup of 0 replays the
+ * trace as fast as possible.</p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class TraceReplayBenchmark {
+    // interval between checks of whether the platform caught up after the replay
+    private static final long SETTLE_MILLIS = 1000;
+
+    /**
+     * Returns the neighbors and packets the platform holds.
+     * @param context Application context.
+     * @return Number of neighbors and number of packets to forward.
+     */
+    private static long[] getState(Context context) {
+        return new long[] {
+                NeighborTable.getInstance(context).getNeighbors(0).size(),
+                PacketRegistry.getInstance(context).getPacketsIdsSince(0).size()
+        };
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        AndroidBenchmark.assumeRunning();
+        final String[] args = AndroidBenchmark.getArgs();
+        final double speedup = (args.length > 0 ? Double.parseDouble(args[0]) : 0);
+
+        final File trace;
+        if (args.length > 1 && new File(args[1]).isFile()) {
+            trace = new File(args[1]);
+        } else {
+            final int datagrams = (args.length > 1 ? Integer.parseInt(args[1]) : 20000);
+            trace = File.createTempFile("replay", ".trace");
+            trace.deleteOnExit();
+            final FloodGenerator generator = new FloodGenerator();
+            // on the desktop JVM, libsodium (which verifies signatures) is not available
+            generator.setSignedShare(0);
+            generator.writeTrace(trace, datagrams);
+            System.out.println(String.format(Locale.US, "synthetic trace of %d datagrams, %d bytes",
+                    datagrams, trace.length()));
+        }
+
+        final Context context = RuntimeEnvironment.application;
+        AndroidBenchmark.createMasterIdentity(context);
+        final BeaconingManager beaconingManager = BeaconingManager.getInstance(context);
+        beaconingManager.setPassive();
+        try {
+            final TraceReplayer replayer = new TraceReplayer(context);
+            final long start = System.nanoTime();
+            final int replayed = replayer.replay(trace, speedup);
+            final long replayEnd = System.nanoTime();
+
+            // beacons are parsed, and neighbors written, after they are replayed
+            long[] state = getState(context);
+            long[] previousState;
+            do {
+                previousState = state;
+                Thread.sleep(SETTLE_MILLIS);
+                state = getState(context);
+            } while (state[0] != previousState[0] || state[1] != previousState[1]);
+
+            System.out.println(String.format(Locale.US,
+                    "replayed %d datagrams in %.2f s (%.0f/s, speedup %s); after %.1f s, %d neighbors and "
+                            + "%d packets to forward",
+                    replayed, (replayEnd - start) / 1e9, replayed * 1e9 / (replayEnd - start),
+                    (speedup > 0 ? String.valueOf(speedup) : "none"), (System.nanoTime() - replayEnd) / 1e9,
+                    state[0], state[1]));
+        } finally {
+            beaconingManager.setStopped();
+        }
+    }
+
+    /**
+     * Replays a trace and prints the results.
+     * @param args Optional speedup, and trace file or number of synthetic datagrams.
+     */
+    public static void main(String[] args) {
+        AndroidBenchmark.run(TraceReplayBenchmark.class, args);
+    }
+}
@@ -0,0 +1,200 @@
+package ul.fcul.lasige.find.packetcomm;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportFragment;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransportPacket;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link PacketFragmenter} and {@link FragmentReassembler}.
+ */
+public class FragmentReassemblerTest {
+    private static final int FRAGMENT_SIZE = 1000;
+
+    private final Random mRandom = new Random(42);
+    private FragmentReassembler mReassembler;
+
+    @Before
+    public void setUp() {
+        mReassembler = new FragmentReassembler();
+    }
+
+    private TransportPacket makePacket(int dataBytes) {
+        final byte[] data = new byte[dataBytes];
+        mRandom.nextBytes(data);
+        return TransportPacket.newBuilder()
+                .setProtocol(ByteString.copyFromUtf8("protocol"))
+                .setData(ByteString.copyFrom(data))
+                .build();
+    }
+
+    private static List<TransportFragment> fragment(TransportPacket packet) throws InvalidProtocolBufferException {
+        final List<TransportFragment> fragments = new ArrayList<>();
+        for (byte[] fragment : PacketFragmenter.fragment(packet, FRAGMENT_SIZE)) {
+            assertTrue(PacketFragmenter.isFragment(fragment));
+            fragments.add(TransportFragment.parseFrom(fragment));
+        }
+        return fragments;
+    }
+
+    /**
+     * Adds fragments, checking that only the last one completes the packet.
+     * @return The reassembled packet.
+     */
+    private byte[] addAll(List<TransportFragment> fragments) {
+        byte[] packet = null;
+        for (int i = 0; i < fragments.size(); i++) {
+            packet = mReassembler.add(fragments.get(i));
+            if (i < fragments.size() - 1) {
+                assertNull(packet);
+            }
+        }
+        return packet;
+    }
+
+    @Test
+    public void fragmentsInAnyOrderAreReassembled() throws Exception {
+        final TransportPacket packet = makePacket(10 * FRAGMENT_SIZE + 123);
+        final List<TransportFragment> fragments = fragment(packet);
+        assertEquals(11, fragments.size());
+
+        Collections.shuffle(fragments, mRandom);
+        assertArrayEquals(packet.toByteArray(), addAll(fragments));
+        assertEquals(0, mReassembler.getPacketCount());
+        assertEquals(0, mReassembler.getBufferedBytes());
+    }
+
+    @Test
+    public void duplicateFragmentsAreIgnored() throws Exception {
+        final List<TransportFragment> fragments = fragment(makePacket(3 * FRAGMENT_SIZE));
+        assertNull(mReassembler.add(fragments.get(0)));
+        assertNull(mReassembler.add(fragments.get(0)));
+        assertEquals(FRAGMENT_SIZE, mReassembler.getBufferedBytes());
+    }
+
+    @Test
+    public void fragmentsOfReassembledPacketAreDropped() throws Exception {
+        final List<TransportFragment> fragments = fragment(makePacket(3 * FRAGMENT_SIZE));
+        assertNotNull(addAll(fragments));
+
+        // sent again, e.g. by another neighbor: the packet is not reassembled twice, nor kept
+        for (TransportFragment fragment : fragments) {
+            assertNull(mReassembler.add(fragment));
+        }
+        assertEquals(0, mReassembler.getPacketCount());
+        assertEquals(0, mReassembler.getBufferedBytes());
+    }
+
+    @Test
+    public void evictedPacketStartsOverWhenFragmentsArriveAgain() throws Exception {
+        final TransportPacket first = makePacket(2 * FRAGMENT_SIZE);
+        final List<TransportFragment> firstFragments = fragment(first);
+        assertNull(mReassembler.add(firstFragments.get(0)));
+
+        // the least recently active packet is dropped when too many are being reassembled
+        for (int i = 0; i < FragmentReassembler.MAX_PACKETS; i++) {
+            assertNull(mReassembler.add(fragment(makePacket(2 * FRAGMENT_SIZE)).get(0)));
+        }
+        assertEquals(FragmentReassembler.MAX_PACKETS, mReassembler.getPacketCount());
+
+        // the fragment received before the eviction is gone, so the packet needs all of its fragments again
+        for (TransportFragment fragment : firstFragments.subList(1, firstFragments.size())) {
+            assertNull(mReassembler.add(fragment));
+        }
+        assertArrayEquals(first.toByteArray(), mReassembler.add(firstFragments.get(0)));
+    }
+
+    @Test
+    public void bufferedBytesAreBounded() throws Exception {
+        final int packetSize = FragmentReassembler.MAX_BUFFERED_BYTES / 8;
+        for (int i = 0; i < 12; i++) {
+            final List<TransportFragment> fragments = fragment(makePacket(packetSize));
+            // all fragments but the last one
+            assertNull(addAll(fragments.subList(0, fragments.size() - 1)));
+            assertTrue(mReassembler.getBufferedBytes() <= FragmentReassembler.MAX_BUFFERED_BYTES);
+        }
+    }
+
+    @Test
+    public void fragmentNotMatchingPreviousOnesIsDropped() throws Exception {
+        final TransportPacket packet = makePacket(3 * FRAGMENT_SIZE);
+        final List<TransportFragment> fragments = fragment(packet);
+        assertNull(mReassembler.add(fragments.get(0)));
+
+        // same digest, different count or packet size
+        assertNull(mReassembler.add(fragments.get(1).toBuilder().setCount(fragments.size() + 1).build()));
+        assertNull(mReassembler.add(fragments.get(1).toBuilder()
+                .setPacketSize(fragments.get(1).getPacketSize() + 1).build()));
+        assertEquals(FRAGMENT_SIZE, mReassembler.getBufferedBytes());
+
+        // the genuine fragments still complete the packet
+        assertArrayEquals(packet.toByteArray(), addAll(fragments.subList(1, fragments.size())));
+    }
+
+    @Test
+    public void invalidFragmentsAreDropped() throws Exception {
+        final TransportFragment fragment = fragment(makePacket(3 * FRAGMENT_SIZE)).get(0);
+        assertNull(mReassembler.add(fragment.toBuilder().setIndex(fragment.getCount()).build()));
+        assertNull(mReassembler.add(fragment.toBuilder().setCount(0).build()));
+        assertNull(mReassembler.add(fragment.toBuilder().setPacketSize(PacketFragmenter.MAX_PACKET_SIZE + 1).build()));
+        assertNull(mReassembler.add(fragment.toBuilder().setPacketDigest(ByteString.copyFromUtf8("short")).build()));
+        assertNull(mReassembler.add(fragment.toBuilder().setData(ByteString.EMPTY).build()));
+        assertEquals(0, mReassembler.getPacketCount());
+    }
+
+    @Test
+    public void packetWithWrongSizeIsDropped() throws Exception {
+        final List<TransportFragment> fragments = fragment(makePacket(3 * FRAGMENT_SIZE));
+        final TransportFragment last = fragments.get(fragments.size() - 1);
+        fragments.set(fragments.size() - 1,
+                last.toBuilder().setData(last.getData().concat(ByteString.copyFromUtf8("extra"))).build());
+
+        assertNull(addAll(fragments));
+        assertEquals(0, mReassembler.getPacketCount());
+        assertEquals(0, mReassembler.getBufferedBytes());
+    }
+
+    @Test
+    public void packetWithWrongDigestIsDropped() throws Exception {
+        final TransportPacket packet = makePacket(3 * FRAGMENT_SIZE);
+        final List<TransportFragment> fragments = fragment(packet);
+        final TransportFragment first = fragments.get(0);
+        final byte[] tampered = first.getData().toByteArray();
+        tampered[tampered.length - 1] ^= 1;
+        fragments.set(0, first.toBuilder().setData(ByteString.copyFrom(tampered)).build());
+
+        assertNull(addAll(fragments));
+        assertEquals(0, mReassembler.getPacketCount());
+        assertEquals(0, mReassembler.getBufferedBytes());
+
+        // a packet that failed its digest check is not remembered as reassembled
+        assertArrayEquals(packet.toByteArray(), addAll(fragment(packet)));
+    }
+
+    @Test
+    public void smallPacketsAreNotFragmented() {
+        assertFalse(PacketFragmenter.needsFragmentation(makePacket(100)));
+        assertTrue(PacketFragmenter.needsFragmentation(makePacket(TransportBundler.DEFAULT_SIZE_BUDGET)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void packetsTooLargeAreRejected() {
+        PacketFragmenter.fragment(makePacket(PacketFragmenter.MAX_PACKET_SIZE), FRAGMENT_SIZE);
+    }
+}
@@ -0,0 +1,143 @@
+package ul.fcul.lasige.find.packetcomm;
+
+import com.google.protobuf.ByteString;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferAck;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos.TransferSegment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link ReliableReceiver}.
+ */
+public class ReliableReceiverTest {
+    private static final int TRANSFER_ID = 7;
+
+    private ReliableReceiver mReceiver;
+    private InetSocketAddress mSender;
+
+    @Before
+    public void setUp() throws Exception {
+        mReceiver = new ReliableReceiver();
+        mSender = new InetSocketAddress(InetAddress.getByAddress(new byte[] {10, 0, 0, 1}), 40000);
+    }
+
+    private static TransferSegment segment(int transferId, int sequence) {
+        return TransferSegment.newBuilder()
+                .setTransferId(transferId)
+                .setSequence(sequence)
+                .setPayload(ByteString.copyFromUtf8("payload " + sequence))
+                .build();
+    }
+
+    @Test
+    public void inOrderSegmentsAdvanceCumulativeAck() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(mReceiver.onSegment(segment(TRANSFER_ID, i), mSender));
+        }
+        final TransferAck ack = mReceiver.getAck(TRANSFER_ID, mSender);
+        assertEquals(5, ack.getCumulativeAck());
+        assertEquals(0, ack.getSelectiveAcksCount());
+        assertEquals(0, ack.getMissingCount());
+    }
+
+    @Test
+    public void gapIsReportedMissingUntilFilled() {
+        assertTrue(mReceiver.onSegment(segment(TRANSFER_ID, 0), mSender));
+        assertTrue(mReceiver.onSegment(segment(TRANSFER_ID, 2), mSender));
+        assertTrue(mReceiver.onSegment(segment(TRANSFER_ID, 4), mSender));
+
+        TransferAck ack = mReceiver.getAck(TRANSFER_ID, mSender);
+        assertEquals(1, ack.getCumulativeAck());
+        assertEquals(Arrays.asList(2, 4), ack.getSelectiveAcksList());
+        assertEquals(Arrays.asList(1, 3), ack.getMissingList());
+
+        assertTrue(mReceiver.onSegment(segment(TRANSFER_ID, 1), mSender));
+        ack = mReceiver.getAck(TRANSFER_ID, mSender);
+        assertEquals(3, ack.getCumulativeAck());
+        assertEquals(Collections.singletonList(4), ack.getSelectiveAcksList());
+        assertEquals(Collections.singletonList(3), ack.getMissingList());
+    }
+
+    @Test
+    public void duplicatesAreNotDeliveredAgain() {
+        assertTrue(mReceiver.onSegment(segment(TRANSFER_ID, 0), mSender));
+        assertTrue(mReceiver.onSegment(segment(TRANSFER_ID, 2), mSender));
+
+        // below the cumulative acknowledgment, and selectively acknowledged
+        assertFalse(mReceiver.onSegment(segment(TRANSFER_ID, 0), mSender));
+        assertFalse(mReceiver.onSegment(segment(TRANSFER_ID, 2), mSender));
+    }
+
+    @Test
+    public void segmentsOutsideWindowAreDropped() {
+        assertFalse(mReceiver.onSegment(segment(TRANSFER_ID, ReliableReceiver.MAX_WINDOW), mSender));
+        assertFalse(mReceiver.onSegment(segment(TRANSFER_ID, -1), mSender));
+        assertTrue(mReceiver.onSegment(segment(TRANSFER_ID, ReliableReceiver.MAX_WINDOW - 1), mSender));
+
+        final TransferAck ack = mReceiver.getAck(TRANSFER_ID, mSender);
+        assertEquals(0, ack.getCumulativeAck());
+        assertEquals(Collections.singletonList(ReliableReceiver.MAX_WINDOW - 1), ack.getSelectiveAcksList());
+        assertEquals(ReliableReceiver.MAX_WINDOW - 1, ack.getMissingCount());
+
+        // the window moves with the cumulative acknowledgment
+        assertTrue(mReceiver.onSegment(segment(TRANSFER_ID, 0), mSender));
+        assertTrue(mReceiver.onSegment(segment(TRANSFER_ID, ReliableReceiver.MAX_WINDOW), mSender));
+    }
+
+    @Test
+    public void transfersAreKeptApart() throws Exception {
+        final InetSocketAddress otherSender =
+                new InetSocketAddress(InetAddress.getByAddress(new byte[] {10, 0, 0, 2}), 40000);
+        assertTrue(mReceiver.onSegment(segment(TRANSFER_ID, 0), mSender));
+        assertTrue(mReceiver.onSegment(segment(TRANSFER_ID + 1, 0), mSender));
+        assertTrue(mReceiver.onSegment(segment(TRANSFER_ID, 0), otherSender));
+        assertEquals(3, mReceiver.getTransferCount());
+    }
+
+    @Test
+    public void leastRecentlyActiveTransferIsEvicted() {
+        assertTrue(mReceiver.onSegment(segment(0, 0), mSender));
+        for (int transferId = 1; transferId <= ReliableReceiver.MAX_TRANSFERS; transferId++) {
+            assertTrue(mReceiver.onSegment(segment(transferId, 0), mSender));
+        }
+        assertEquals(ReliableReceiver.MAX_TRANSFERS, mReceiver.getTransferCount());
+
+        // the first transfer was forgotten: its acknowledgment starts over, and a duplicate is delivered again
+        // (packets delivered twice are dropped when they are stored)
+        assertEquals(0, mReceiver.getAck(0, mSender).getCumulativeAck());
+        assertTrue(mReceiver.onSegment(segment(0, 0), mSender));
+
+        // which evicted the next least recently active one
+        assertEquals(1, mReceiver.getAck(ReliableReceiver.MAX_TRANSFERS, mSender).getCumulativeAck());
+        assertEquals(0, mReceiver.getAck(1, mSender).getCumulativeAck());
+    }
+
+    @Test
+    public void ackOfUnknownTransferIsEmpty() {
+        final TransferAck ack = mReceiver.getAck(TRANSFER_ID, mSender);
+        assertEquals(TRANSFER_ID, ack.getTransferId());
+        assertEquals(0, ack.getCumulativeAck());
+        assertEquals(ReliableReceiver.MAX_WINDOW, ack.getWindow());
+    }
+
+    @Test
+    public void messageKindsAreRecognized() {
+        final byte[] segment = segment(TRANSFER_ID, 0).toByteArray();
+        final byte[] ack = mReceiver.getAck(TRANSFER_ID, mSender).toByteArray();
+        assertTrue(ReliableReceiver.isSegment(segment));
+        assertFalse(ReliableReceiver.isAck(segment));
+        assertTrue(ReliableReceiver.isAck(ack));
+        assertFalse(ReliableReceiver.isSegment(ack));
+    }
+}
@@ -0,0 +1,191 @@
+package ul.fcul.lasige.find.simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Contacts between simulated nodes over time, i.e. when two nodes are in range of each other (for instance, in
+ * the same WiFi network). A trace is either read from a text file or generated from a simple mobility model.
+ *
+ * <p>In text files, each line is a contact: {@code <start seconds> <end seconds> <node> <node>}, where nodes are
+ * numbered from 0. Empty lines and lines starting with {@code #} are ignored.</p>
+ */
+public class ContactTrace {
+    private static final String TAG = ContactTrace.class.getSimpleName();
+
+    // contacts, sorted by start time
+    private final List<Contact> mContacts;
+    // number of nodes
+    private final int mNodeCount;
+
+    /**
+     * Constructor.
+     * @param contacts Contacts.
+     */
+    public ContactTrace(List<Contact> contacts) {
+        final List<Contact> sorted = new ArrayList<>(contacts);
+        Collections.sort(sorted, new Comparator<Contact>() {
+            @Override
+            public int compare(Contact lhs, Contact rhs) {
+                return Long.valueOf(lhs.mStartMillis).compareTo(rhs.mStartMillis);
+            }
+        });
+        int nodeCount = 0;
+        for (Contact contact : sorted) {
+            nodeCount = Math.max(nodeCount, Math.max(contact.mNodeA, contact.mNodeB) + 1);
+        }
+        mContacts = Collections.unmodifiableList(sorted);
+        mNodeCount = nodeCount;
+    }
+
+    /**
+     * Reads a trace from a text file.
+     * @param reader Reader.
+     * @return Contact trace.
+     * @throws IOException If the trace could not be read or is malformed.
+     */
+    public static ContactTrace parse(Reader reader) throws IOException {
+        final BufferedReader lines = new BufferedReader(reader);
+        final List<Contact> contacts = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            final String[] fields = line.split("\\s+");
+            if (fields.length != 4) {
+                throw new IOException("Malformed contact in line " + lineNumber + ": " + line);
+            }
+            try {
+                contacts.add(new Contact(
+                        Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+                        (long) (Double.parseDouble(fields[0]) * 1000),
+                        (long) (Double.parseDouble(fields[1]) * 1000)));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed contact in line " + lineNumber + ": " + line, e);
+            }
+        }
+        return new ContactTrace(contacts);
+    }
+
+    /**
+     * Returns a trace where all nodes are in contact with each other during the whole simulation, like phones
+     * sharing a single FIND access point.
+     * @param nodeCount Number of nodes.
+     * @param durationMillis Duration, in milliseconds.
+     * @return Contact trace.
+     */
+    public static ContactTrace fullyConnected(int nodeCount, long durationMillis) {
+        final List<Contact> contacts = new ArrayList<>();
+        for (int a = 0; a < nodeCount; a++) {
+            for (int b = a + 1; b < nodeCount; b++) {
+                contacts.add(new Contact(a, b, 0, durationMillis));
+            }
+        }
+        return new ContactTrace(contacts);
+    }
+
+    /**
+     * Returns a trace where each pair of nodes alternates between being apart and in contact, for exponentially
+     * distributed durations. It is a simple model of people moving around and meeting opportunistically.
+     * @param nodeCount Number of nodes.
+     * @param durationMillis Duration, in milliseconds.
+     * @param meanContactMillis Mean duration of a contact.
+     * @param meanIntercontactMillis Mean time between contacts of the same pair.
+     * @param random Source of randomness.
+     * @return Contact trace.
+     */
+    public static ContactTrace randomContacts(int nodeCount, long durationMillis, long meanContactMillis,
+                                              long meanIntercontactMillis, Random random) {
+        final List<Contact> contacts = new ArrayList<>();
+        for (int a = 0; a < nodeCount; a++) {
+            for (int b = a + 1; b < nodeCount; b++) {
+                long time = exponential(meanIntercontactMillis, random);
+                while (time < durationMillis) {
+                    final long end = Math.min(durationMillis, time + Math.max(1000, exponential(meanContactMillis, random)));
+                    contacts.add(new Contact(a, b, time, end));
+                    time = end + exponential(meanIntercontactMillis, random);
+                }
+            }
+        }
+        return new ContactTrace(contacts);
+    }
+
+    /**
+     * Returns the contacts, sorted by start time.
+     * @return List of contacts.
+     */
+    public List<Contact> getContacts() {
+        return mContacts;
+    }
+
+    /**
+     * Returns the number of nodes in the trace, i.e. the highest node number plus one.
+     * @return Number of nodes.
+     */
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    /**
+     * Draws an exponentially distributed duration.
+     * @param meanMillis Mean duration.
+     * @param random Source of randomness.
+     * @return Duration, in milliseconds.
+     */
+    private static long exponential(long meanMillis, Random random) {
+        return (long) (-meanMillis * Math.log(1 - random.nextDouble()));
+    }
+
+    /**
+     * A contact between two nodes.
+     */
+    public static final class Contact {
+        private final int mNodeA;
+        private final int mNodeB;
+        private final long mStartMillis;
+        private final long mEndMillis;
+
+        /**
+         * Constructor.
+         * @param nodeA First node.
+         * @param nodeB Second node.
+         * @param startMillis Start of the contact, in milliseconds.
+         * @param endMillis End of the contact, in milliseconds.
+         */
+        public Contact(int nodeA, int nodeB, long startMillis, long endMillis) {
+            if (nodeA < 0 || nodeB < 0 || nodeA == nodeB || endMillis < startMillis) {
+                throw new IllegalArgumentException("Invalid contact between " + nodeA + " and " + nodeB);
+            }
+            mNodeA = nodeA;
+            mNodeB = nodeB;
+            mStartMillis = startMillis;
+            mEndMillis = endMillis;
+        }
+
+        public int getNodeA() {
+            return mNodeA;
+        }
+
+        public int getNodeB() {
+            return mNodeB;
+        }
+
+        public long getStartMillis() {
+            return mStartMillis;
+        }
+
+        public long getEndMillis() {
+            return mEndMillis;
+        }
+    }
+}
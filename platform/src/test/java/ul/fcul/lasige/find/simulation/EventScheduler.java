@@ -0,0 +1,227 @@
+package ul.fcul.lasige.find.simulation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discrete-event scheduler in simulated time. It implements {@link ScheduledExecutorService}, so that the
+ * platform's schedulers (e.g. {@link ul.fcul.lasige.find.beaconing.TrickleSenderScheduler}) run unchanged on
+ * simulated time. Tasks run on the caller's thread, in {@link #runUntil(long)}, ordered by time and then by the
+ * order they were scheduled; a simulation is therefore deterministic.
+ */
+public class EventScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+    private static final String TAG = EventScheduler.class.getSimpleName();
+
+    // pending events, by time and sequence
+    private final PriorityQueue<Event<?>> mEvents = new PriorityQueue<>();
+    // current simulated time
+    private long mNowMillis;
+    // sequence of the next event, used to break ties
+    private long mNextSequence;
+    // whether the scheduler was shut down
+    private boolean mShutdown;
+
+    /**
+     * Returns the current simulated time.
+     * @return Time, in milliseconds since the start of the simulation.
+     */
+    public long now() {
+        return mNowMillis;
+    }
+
+    /**
+     * Schedules a task at an absolute simulated time.
+     * @param task Task.
+     * @param timeMillis Time, in milliseconds; tasks in the past run at the current time.
+     * @return Future, which can be cancelled.
+     */
+    public ScheduledFuture<?> scheduleAt(Runnable task, long timeMillis) {
+        return add(new Event<Void>(task, null, Math.max(mNowMillis, timeMillis), 0));
+    }
+
+    /**
+     * Runs all events up to a given simulated time (inclusive), and advances the time to it.
+     * @param endMillis End time, in milliseconds.
+     * @return Number of events run.
+     */
+    public long runUntil(long endMillis) {
+        long count = 0;
+        while (!mEvents.isEmpty() && mEvents.peek().mTimeMillis <= endMillis) {
+            final Event<?> event = mEvents.poll();
+            if (event.isCancelled()) {
+                continue;
+            }
+            mNowMillis = event.mTimeMillis;
+            event.run();
+            count++;
+            if (event.mPeriodMillis > 0 && !event.isCancelled()) {
+                // periodic task, schedule its next run
+                event.mTimeMillis += event.mPeriodMillis;
+                event.mSequence = mNextSequence++;
+                mEvents.add(event);
+            }
+        }
+        mNowMillis = Math.max(mNowMillis, endMillis);
+        return count;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return add(new Event<Void>(command, null, mNowMillis + Math.max(0, unit.toMillis(delay)), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return add(new Event<>(null, callable, mNowMillis + Math.max(0, unit.toMillis(delay)), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return add(new Event<Void>(command, null,
+                mNowMillis + Math.max(0, unit.toMillis(initialDelay)), Math.max(1, unit.toMillis(period))));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        // tasks take no simulated time, so a fixed delay is the same as a fixed rate
+        return scheduleAtFixedRate(command, initialDelay, delay, unit);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        mShutdown = true;
+        mEvents.clear();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return mShutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return mShutdown;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return mShutdown;
+    }
+
+    /**
+     * Adds an event to the queue.
+     * @param event Event.
+     * @return The event.
+     */
+    private <V> Event<V> add(Event<V> event) {
+        if (!mShutdown) {
+            event.mSequence = mNextSequence++;
+            mEvents.add(event);
+        }
+        return event;
+    }
+
+    /**
+     * A scheduled task.
+     */
+    private final class Event<V> implements ScheduledFuture<V>, Runnable {
+        private final Runnable mRunnable;
+        private final Callable<V> mCallable;
+        private final long mPeriodMillis;
+        private long mTimeMillis;
+        private long mSequence;
+        private boolean mCancelled;
+        private boolean mDone;
+        private V mResult;
+        private Exception mFailure;
+
+        private Event(Runnable runnable, Callable<V> callable, long timeMillis, long periodMillis) {
+            mRunnable = runnable;
+            mCallable = callable;
+            mTimeMillis = timeMillis;
+            mPeriodMillis = periodMillis;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (mCallable != null) {
+                    mResult = mCallable.call();
+                } else {
+                    mRunnable.run();
+                }
+            } catch (Exception e) {
+                mFailure = e;
+                throw new IllegalStateException("Simulated task failed", e);
+            } finally {
+                mDone = (mPeriodMillis == 0);
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(mTimeMillis - mNowMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            final Event<?> o = (Event<?>) other;
+            if (mTimeMillis != o.mTimeMillis) {
+                return (mTimeMillis < o.mTimeMillis ? -1 : 1);
+            }
+            return (mSequence < o.mSequence ? -1 : (mSequence == o.mSequence ? 0 : 1));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (mDone || mCancelled) {
+                return false;
+            }
+            // the event is skipped when it is taken from the queue
+            mCancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return mDone || mCancelled;
+        }
+
+        @Override
+        public V get() throws ExecutionException {
+            if (mFailure != null) {
+                throw new ExecutionException(mFailure);
+            }
+            return mResult;
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws ExecutionException {
+            return get();
+        }
+    }
+}
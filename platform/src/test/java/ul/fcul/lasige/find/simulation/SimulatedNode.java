@@ -0,0 +1,523 @@
+package ul.fcul.lasige.find.simulation;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import ul.fcul.lasige.find.beaconing.BeaconBuilder;
+import ul.fcul.lasige.find.beaconing.BeaconDedupCache;
+import ul.fcul.lasige.find.beaconing.BeaconSenderScheduler;
+import ul.fcul.lasige.find.beaconing.BeaconingIntervalHandler;
+import ul.fcul.lasige.find.beaconing.BeaconingManager;
+import ul.fcul.lasige.find.beaconing.FixedRateSenderScheduler;
+import ul.fcul.lasige.find.beaconing.Policy;
+import ul.fcul.lasige.find.beaconing.ProtocolBloomFilter;
+import ul.fcul.lasige.find.beaconing.ReplyCoalescer;
+import ul.fcul.lasige.find.beaconing.TrickleSenderScheduler;
+import ul.fcul.lasige.find.data.FullContract.PacketQueues;
+import ul.fcul.lasige.find.lib.data.Neighbor;
+import ul.fcul.lasige.find.packetcomm.PacketReceiver;
+import ul.fcul.lasige.find.packetcomm.PacketRegistry;
+import ul.fcul.lasige.find.protocolbuffer.FindProtos;
+
+/**
+ * A simulated FIND node. Beacons are built with {@link BeaconBuilder}'s wire format (including compact pages),
+ * sent during beaconing rounds whose timing follows the configured {@link Policy.BeaconingInterval}, and
+ * scheduled by the same {@link BeaconSenderScheduler} as on a phone. Received beacons go through the same
+ * duplicate detection ({@link BeaconDedupCache}), consistency check and reply decision as in
+ * {@link BeaconingManager}, and packets are forwarded according to {@link PacketRegistry} and
+ * {@link PacketReceiver}.
+ *
+ * <p>Neighbors and packets are kept in memory instead of SQLite, since Android's database is not available
+ * on the JVM. A neighbor is current while it was seen within the same period as on a phone, and becoming
+ * current is what triggers sending packets to it, as with {@link ul.fcul.lasige.find.data.NeighborTable}.</p>
+ */
+public class SimulatedNode implements VirtualTransport.DatagramListener {
+    private static final String TAG = SimulatedNode.class.getSimpleName();
+
+    // bytes in simulated node ids (public keys)
+    private static final int NODE_ID_BYTES = 32;
+    // name of the simulated network
+    private static final String NETWORK_NAME = "FIND_SIM";
+
+    /**
+     * Beaconing state of a node, as in {@link BeaconingManager.BeaconingState}.
+     */
+    private enum State {
+        PASSIVE,
+        ACTIVE
+    }
+
+    private final int mIndex;
+    private final byte[] mNodeId;
+    private final Inet4Address mAddress;
+    // protocols implemented by applications on this node
+    private final Set<ByteBuffer> mProtocols;
+    private final SimulationConfig mConfig;
+    private final EventScheduler mScheduler;
+    private final VirtualTransport mTransport;
+    private final SimulationReport mReport;
+    private final Random mRandom;
+    private final Map<ByteBuffer, Integer> mDirectory;
+
+    // beaconing
+    private final BeaconSenderScheduler mSenderScheduler;
+    private State mState = State.PASSIVE;
+    private int mNextPage;
+    private final BeaconDedupCache mKnownBeacons = new BeaconDedupCache(4096);
+    private final BeaconDedupCache mProcessedBeacons = new BeaconDedupCache(4096);
+    // reply targets collected during the coalescing window
+    private final Set<Integer> mReplyTargets = new TreeSet<>();
+
+    // neighbors, by node id
+    private final Map<ByteBuffer, Neighbor> mNeighbors = new HashMap<>();
+    private long mNextRawId = 1;
+
+    // packets, as in PacketRegistry
+    private final Map<Long, FindProtos.TransportPacket> mPackets = new HashMap<>();
+    private final Multimap<ByteBuffer, Long> mPacketsByProtocol = HashMultimap.create();
+    private final Set<Long> mForwardingPackets = new HashSet<>();
+    private final Set<Long> mBroadcastingPackets = new HashSet<>();
+    private int mNextPacketSequence;
+
+    /**
+     * Constructor.
+     * @param index Node number, also used as its address.
+     * @param protocols Protocols implemented by applications on this node.
+     * @param config Simulation configuration.
+     * @param scheduler Event scheduler.
+     * @param transport Transport.
+     * @param report Report where metrics are collected.
+     * @param random Source of randomness for this node.
+     * @param directory Node numbers by node id, to address unicast datagrams to neighbors.
+     */
+    public SimulatedNode(int index, Set<ByteBuffer> protocols, SimulationConfig config, EventScheduler scheduler,
+                         VirtualTransport transport, SimulationReport report, Random random,
+                         Map<ByteBuffer, Integer> directory) {
+        mIndex = index;
+        mNodeId = new byte[NODE_ID_BYTES];
+        random.nextBytes(mNodeId);
+        mAddress = toAddress(index);
+        mProtocols = protocols;
+        mConfig = config;
+        mScheduler = scheduler;
+        mTransport = transport;
+        mReport = report;
+        mRandom = random;
+        mDirectory = directory;
+        mSenderScheduler = (config.isTrickleBeaconing()
+                ? new TrickleSenderScheduler(new Random(random.nextLong())) : new FixedRateSenderScheduler());
+        mDirectory.put(ByteBuffer.wrap(mNodeId), index);
+    }
+
+    /**
+     * Returns the node's id.
+     * @return Node id.
+     */
+    public byte[] getNodeId() {
+        return mNodeId;
+    }
+
+    /**
+     * Returns whether an application on this node implements a protocol.
+     * @param protocol Protocol hash.
+     * @return true if the protocol is implemented, false otherwise.
+     */
+    public boolean implementsProtocol(ByteBuffer protocol) {
+        return mProtocols.contains(protocol);
+    }
+
+    /**
+     * Starts the node: schedules its first beaconing round.
+     */
+    public void start() {
+        scheduleNextRound();
+    }
+
+    /**
+     * Creates an unencrypted broadcast packet, as an application would, and sends it to current neighbors.
+     * @param protocol Protocol hash.
+     * @param payloadBytes Payload size.
+     * @return Packet id, unique in the simulation.
+     */
+    public long createPacket(ByteBuffer protocol, int payloadBytes) {
+        final long packetId = ((long) mIndex << 32) | (mNextPacketSequence++);
+        final byte[] payload = new byte[Math.max(8, payloadBytes)];
+        ByteBuffer.wrap(payload).putLong(packetId);
+        final FindProtos.TransportPacket packet = FindProtos.TransportPacket.newBuilder()
+                .setSourceNode(ByteString.copyFrom(mNodeId))
+                .setProtocol(ByteString.copyFrom(protocol.array()))
+                .setData(ByteString.copyFrom(payload))
+                .build();
+
+        // registerOutgoingPacket
+        mPackets.put(packetId, packet);
+        mPacketsByProtocol.put(protocol, packetId);
+        mBroadcastingPackets.add(packetId);
+
+        // onOutgoingPacketAdded: untargeted, so send it to all current neighbors
+        for (Neighbor neighbor : getCurrentNeighbors()) {
+            sendPacket(neighbor, packetId);
+        }
+        return packetId;
+    }
+
+    @Override
+    public void onDatagram(int from, byte[] data, VirtualTransport.Kind kind) {
+        if (kind == VirtualTransport.Kind.BEACON) {
+            onBeaconReceived(from, data);
+        } else {
+            onPacketReceived(data);
+        }
+    }
+
+    /*
+     * BEACONING
+     */
+
+    /**
+     * Schedules the next beaconing round according to the beaconing interval, without adapting it. Fixed
+     * intervals are aligned to the clock, as in
+     * {@link ul.fcul.lasige.find.beaconing.AdaptiveBeaconingScheduler#getNextBeaconTimeMillis(Policy)}, so that
+     * nodes beacon at the same time; random intervals are aligned to a random number of minutes between 1 and 3,
+     * as well.
+     */
+    private void scheduleNextRound() {
+        final Policy.BeaconingInterval interval = mConfig.getBeaconingInterval();
+        final long now = mScheduler.now();
+        final long next;
+        if (interval.getIntervalMillis() > 0) {
+            next = ((now / interval.getIntervalMillis()) + 1) * interval.getIntervalMillis();
+        } else if (interval.getIntervalMillis() == -2) {
+            final long randomInterval = (mRandom.nextInt(3) + 1) * 60 * 1000;
+            next = ((now / randomInterval) + 1) * randomInterval;
+        } else {
+            // beaconing is off, only replies are sent
+            return;
+        }
+        mScheduler.scheduleAt(new Runnable() {
+            @Override
+            public void run() {
+                startRound();
+            }
+        }, next);
+    }
+
+    /**
+     * Starts a beaconing round, which lasts {@link BeaconingIntervalHandler#MAX_BEACONING_DURATION}.
+     */
+    private void startRound() {
+        mState = State.ACTIVE;
+        mSenderScheduler.start(mScheduler, new Runnable() {
+            @Override
+            public void run() {
+                sendBeacon(FindProtos.Beacon.BeaconType.ORIGINAL, -1);
+            }
+        });
+        mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                mSenderScheduler.stop();
+                mState = State.PASSIVE;
+                scheduleNextRound();
+            }
+        }, BeaconingIntervalHandler.MAX_BEACONING_DURATION, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Builds and sends a beacon with the current neighbors.
+     * @param type Beacon type.
+     * @param to Node to send it to, or -1 to broadcast it.
+     */
+    private void sendBeacon(FindProtos.Beacon.BeaconType type, int to) {
+        final long nowSeconds = mScheduler.now() / 1000;
+        final FindProtos.Node.Builder sender = FindProtos.Node.newBuilder()
+                .setNodeId(ByteString.copyFrom(mNodeId))
+                .setIp4Address(ByteString.copyFrom(mAddress.getAddress()));
+        for (ByteBuffer protocol : mProtocols) {
+            sender.addProtocols(ByteString.copyFrom(protocol.array()));
+        }
+
+        final byte[][] pages = BeaconBuilder.makePages(
+                sender, mProtocols, getCurrentNeighbors(), NETWORK_NAME, nowSeconds);
+        final byte[] beacon = BeaconBuilder.makeBeacon(
+                pages[mNextPage++ % pages.length], type, mRandom.nextInt(), nowSeconds);
+
+        if (to < 0) {
+            mTransport.broadcast(mIndex, beacon, VirtualTransport.Kind.BEACON);
+        } else {
+            mTransport.unicast(mIndex, to, beacon, VirtualTransport.Kind.BEACON);
+        }
+    }
+
+    /**
+     * Adds a node to reply to, sending all replies at the end of the coalescing window, as
+     * {@link ReplyCoalescer} does.
+     * @param to Node to reply to.
+     */
+    private void addReplyTarget(int to) {
+        if (mReplyTargets.isEmpty()) {
+            mScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    for (int target : mReplyTargets) {
+                        sendBeacon(FindProtos.Beacon.BeaconType.REPLY, target);
+                    }
+                    mReplyTargets.clear();
+                }
+            }, ReplyCoalescer.COALESCE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        mReplyTargets.add(to);
+    }
+
+    /**
+     * Handles a received beacon as {@link ul.fcul.lasige.find.beaconing.BeaconParser BeaconParser} and
+     * {@link BeaconingManager#onBeaconReceived} do.
+     * @param from Sending node.
+     * @param data Beacon.
+     */
+    private void onBeaconReceived(int from, byte[] data) {
+        final long now = mScheduler.now();
+        final long dedupMillis = Math.max(mConfig.getBeaconingInterval().getIntervalMillis(), 3 * 60 * 1000);
+        if (!mKnownBeacons.add(BeaconDedupCache.fingerprint(data), now, dedupMillis)) {
+            return;
+        }
+
+        final FindProtos.Beacon beacon;
+        try {
+            beacon = FindProtos.Beacon.parseFrom(data);
+        } catch (InvalidProtocolBufferException e) {
+            return;
+        }
+        if (!mProcessedBeacons.add(beacon.getBeaconId(), now, dedupMillis)) {
+            return;
+        }
+        mReport.onBeaconHeard(mIndex, from, now);
+
+        // onBeaconParsed
+        final boolean consistent = BeaconingManager.isConsistentBeacon(beacon, getCurrentNeighbors(), mNodeId);
+        mSenderScheduler.onBeaconHeard(beacon, consistent);
+        if (mState == State.PASSIVE && beacon.getBeaconType() == FindProtos.Beacon.BeaconType.ORIGINAL
+                && mSenderScheduler.shouldReply(beacon, consistent)) {
+            addReplyTarget(from);
+        }
+
+        // register sender and its neighbors
+        final long nowSeconds = now / 1000;
+        final FindProtos.Node sender = beacon.getSender();
+        final byte[] senderId = sender.getNodeId().toByteArray();
+        if (senderId.length == 0 || Arrays.equals(senderId, mNodeId)) {
+            return;
+        }
+        final Collection<ByteString> senderProtocols = (sender.hasProtocolsBloom()
+                ? ProtocolBloomFilter.decode(sender.getProtocolsBloom(), mProtocols) : sender.getProtocolsList());
+        final List<Neighbor> connected = new ArrayList<>();
+        updateNeighbor(senderId, nowSeconds, toAddress(sender), senderProtocols, connected);
+
+        for (FindProtos.Node node : beacon.getNeighborsList()) {
+            final byte[] nodeId = resolveNodeId(node);
+            if (nodeId.length == 0 || Arrays.equals(nodeId, mNodeId)) {
+                continue;
+            }
+            final long timeLastSeen = (node.hasDeltaLastseen() ? nowSeconds - node.getDeltaLastseen() : 0);
+            updateNeighbor(nodeId, timeLastSeen, toAddress(node), node.getProtocolsList(), connected);
+        }
+
+        // onNeighborConnected
+        for (Neighbor neighbor : connected) {
+            for (long packetId : PacketRegistry.selectInterestingPackets(mForwardingPackets, mBroadcastingPackets,
+                    mPacketsByProtocol, neighbor.getSupportedProtocols())) {
+                sendPacket(neighbor, packetId);
+            }
+        }
+    }
+
+    /*
+     * NEIGHBORS
+     */
+
+    /**
+     * Returns the neighbors seen within the current period.
+     * @return Set of current neighbors.
+     * @see BeaconingManager#getCurrentPeriodMillis()
+     */
+    private Set<Neighbor> getCurrentNeighbors() {
+        final long since = (mScheduler.now() - currentPeriodMillis()) / 1000;
+        final Set<Neighbor> current = new HashSet<>();
+        for (Neighbor neighbor : mNeighbors.values()) {
+            if (neighbor.getTimeLastSeen() >= since) {
+                current.add(neighbor);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns how long a neighbor stays current after it was last seen, as {@link
+     * BeaconingManager#getCurrentPeriodMillis()} does for the configured interval.
+     * @return Current period, in milliseconds.
+     */
+    private long currentPeriodMillis() {
+        return Math.max(2 * mConfig.getBeaconingInterval().getIntervalMillis(), 20 * 60 * 1000);
+    }
+
+    /**
+     * Updates a neighbor, as {@link ul.fcul.lasige.find.data.NeighborTable#update(List)} does: it is only
+     * changed when seen more recently, and protocols are only replaced when given.
+     * @param nodeId Node id.
+     * @param timeLastSeen Time last seen, in seconds.
+     * @param address IPv4 address, or null.
+     * @param protocols Protocols; may be empty.
+     * @param connected List where neighbors that became current are added.
+     */
+    private void updateNeighbor(byte[] nodeId, long timeLastSeen, Inet4Address address,
+                                Collection<ByteString> protocols, List<Neighbor> connected) {
+        final ByteBuffer key = ByteBuffer.wrap(nodeId);
+        final Neighbor current = mNeighbors.get(key);
+        if (current != null && current.getTimeLastSeen() >= timeLastSeen) {
+            return;
+        }
+
+        final HashSet<ByteBuffer> neighborProtocols = new HashSet<>();
+        for (ByteString protocol : protocols) {
+            neighborProtocols.add(ByteBuffer.wrap(protocol.toByteArray()));
+        }
+        if (neighborProtocols.isEmpty() && current != null) {
+            neighborProtocols.addAll(current.getSupportedProtocols());
+        }
+
+        final long since = (mScheduler.now() - currentPeriodMillis()) / 1000;
+        final Neighbor updated = new Neighbor(
+                (current != null ? current.getRawId() : mNextRawId++), nodeId, timeLastSeen, 0, true, NETWORK_NAME,
+                (address != null ? address : (current != null ? current.getIp4Address() : null)), null, null,
+                neighborProtocols);
+        mNeighbors.put(key, updated);
+
+        if (timeLastSeen >= since && (current == null || current.getTimeLastSeen() < since)) {
+            connected.add(updated);
+        }
+    }
+
+    /**
+     * Returns the node id of a node, resolving the prefixes of compact beacons against known neighbors.
+     * @param node Node.
+     * @return Node id, or an empty array if it is unknown.
+     */
+    private byte[] resolveNodeId(FindProtos.Node node) {
+        if (node.hasNodeId() || !node.hasNodeIdPrefix()) {
+            return node.getNodeId().toByteArray();
+        }
+        final ByteString prefix = node.getNodeIdPrefix();
+        if (prefix.equals(ByteString.copyFrom(mNodeId, 0, prefix.size()))) {
+            return mNodeId;
+        }
+        for (ByteBuffer nodeId : mNeighbors.keySet()) {
+            if (prefix.equals(ByteString.copyFrom(nodeId.array(), 0, prefix.size()))) {
+                return nodeId.array();
+            }
+        }
+        return new byte[0];
+    }
+
+    /*
+     * PACKETS
+     */
+
+    /**
+     * Sends a packet to a neighbor. The packet is transmitted even if the neighbor is out of range.
+     * @param neighbor Neighbor.
+     * @param packetId Packet id.
+     */
+    private void sendPacket(Neighbor neighbor, long packetId) {
+        final Integer to = mDirectory.get(ByteBuffer.wrap(neighbor.getNodeId()));
+        if (to != null) {
+            mTransport.unicast(mIndex, to, mPackets.get(packetId).toByteArray(), VirtualTransport.Kind.PACKET);
+        }
+    }
+
+    /**
+     * Handles a received packet, as {@link PacketReceiver} and {@link PacketRegistry} do.
+     * @param data Packet.
+     */
+    private void onPacketReceived(byte[] data) {
+        final FindProtos.TransportPacket packet;
+        try {
+            packet = FindProtos.TransportPacket.parseFrom(data);
+        } catch (InvalidProtocolBufferException e) {
+            return;
+        }
+        final long packetId = packet.getData().asReadOnlyByteBuffer().getLong();
+        if (mPackets.containsKey(packetId)) {
+            // already stored (the database rejects duplicates)
+            return;
+        }
+
+        final boolean isReceiver = (packet.hasTargetNode()
+                && Arrays.equals(packet.getTargetNode().toByteArray(), mNodeId));
+        final boolean supportedProtocol = mProtocols.contains(packet.getProtocol().asReadOnlyByteBuffer());
+        final List<PacketQueues> queues =
+                PacketReceiver.selectQueues(isReceiver, packet.hasTargetNode(), supportedProtocol);
+        if (queues.isEmpty()) {
+            return;
+        }
+
+        mPackets.put(packetId, packet);
+        if (queues.contains(PacketQueues.FORWARDING)) {
+            mForwardingPackets.add(packetId);
+        }
+        if (queues.contains(PacketQueues.INCOMING)) {
+            mReport.onPacketDelivered(packetId, mIndex, mScheduler.now());
+        }
+    }
+
+    /*
+     * ADDRESSES
+     */
+
+    /**
+     * Returns the simulated IPv4 address of a node.
+     * @param index Node number.
+     * @return Address 10.x.y.z.
+     */
+    private static Inet4Address toAddress(int index) {
+        try {
+            return (Inet4Address) InetAddress.getByAddress(
+                    new byte[] { 10, (byte) (index >> 16), (byte) (index >> 8), (byte) index });
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Returns the IPv4 address carried by a node in a beacon.
+     * @param node Node.
+     * @return Address, or null if it has none.
+     */
+    private static Inet4Address toAddress(FindProtos.Node node) {
+        if (!node.hasIp4Address()) {
+            return null;
+        }
+        try {
+            return (Inet4Address) InetAddress.getByAddress(node.getIp4Address().toByteArray());
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package ul.fcul.lasige.find.simulation;
+
+import ul.fcul.lasige.find.beaconing.Policy;
+
+/**
+ * Parameters of a simulation. Instances are immutable and built with a {@link Builder}.
+ */
+public class SimulationConfig {
+    private static final String TAG = SimulationConfig.class.getSimpleName();
+
+    private final int mNodeCount;
+    private final long mDurationMillis;
+    private final long mSeed;
+    private final ContactTrace mContactTrace;
+    private final double mLossRate;
+    private final long mLatencyMillis;
+    private final long mBytesPerSecond;
+    private final Policy.BeaconingInterval mBeaconingInterval;
+    private final boolean mTrickleBeaconing;
+    private final long mPacketIntervalMillis;
+    private final int mPacketPayloadBytes;
+    private final double mProtocolShare;
+
+    private SimulationConfig(Builder builder) {
+        mNodeCount = builder.mNodeCount;
+        mDurationMillis = builder.mDurationMillis;
+        mSeed = builder.mSeed;
+        mContactTrace = (builder.mContactTrace != null
+                ? builder.mContactTrace : ContactTrace.fullyConnected(builder.mNodeCount, builder.mDurationMillis));
+        mLossRate = builder.mLossRate;
+        mLatencyMillis = builder.mLatencyMillis;
+        mBytesPerSecond = builder.mBytesPerSecond;
+        mBeaconingInterval = builder.mBeaconingInterval;
+        mTrickleBeaconing = builder.mTrickleBeaconing;
+        mPacketIntervalMillis = builder.mPacketIntervalMillis;
+        mPacketPayloadBytes = builder.mPacketPayloadBytes;
+        mProtocolShare = builder.mProtocolShare;
+    }
+
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    public long getDurationMillis() {
+        return mDurationMillis;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    public ContactTrace getContactTrace() {
+        return mContactTrace;
+    }
+
+    public double getLossRate() {
+        return mLossRate;
+    }
+
+    public long getLatencyMillis() {
+        return mLatencyMillis;
+    }
+
+    public long getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    public Policy.BeaconingInterval getBeaconingInterval() {
+        return mBeaconingInterval;
+    }
+
+    public boolean isTrickleBeaconing() {
+        return mTrickleBeaconing;
+    }
+
+    public long getPacketIntervalMillis() {
+        return mPacketIntervalMillis;
+    }
+
+    public int getPacketPayloadBytes() {
+        return mPacketPayloadBytes;
+    }
+
+    public double getProtocolShare() {
+        return mProtocolShare;
+    }
+
+    /**
+     * Builder of {@link SimulationConfig} objects. Defaults describe 10 phones sharing one access point for an
+     * hour, with the default policy's beaconing interval, and each phone creating a broadcast packet every 5
+     * minutes on average.
+     */
+    public static final class Builder {
+        private int mNodeCount = 10;
+        private long mDurationMillis = 60 * 60 * 1000;
+        private long mSeed = 1;
+        private ContactTrace mContactTrace;
+        private double mLossRate = 0.01;
+        private long mLatencyMillis = 5;
+        private long mBytesPerSecond = 1000 * 1000;
+        private Policy.BeaconingInterval mBeaconingInterval = Policy.DEFAULT_POLICY.getBeaconingInterval();
+        private boolean mTrickleBeaconing = true;
+        private long mPacketIntervalMillis = 5 * 60 * 1000;
+        private int mPacketPayloadBytes = 256;
+        private double mProtocolShare = 1;
+
+        /**
+         * Sets the number of nodes. When a contact trace is given, it must not refer to more nodes.
+         * @param nodeCount Number of nodes.
+         * @return This builder.
+         */
+        public Builder setNodeCount(int nodeCount) {
+            mNodeCount = nodeCount;
+            return this;
+        }
+
+        /**
+         * Sets the simulated duration.
+         * @param durationMillis Duration, in milliseconds.
+         * @return This builder.
+         */
+        public Builder setDurationMillis(long durationMillis) {
+            mDurationMillis = durationMillis;
+            return this;
+        }
+
+        /**
+         * Sets the seed of all randomness; simulations with the same configuration and seed are identical.
+         * @param seed Seed.
+         * @return This builder.
+         */
+        public Builder setSeed(long seed) {
+            mSeed = seed;
+            return this;
+        }
+
+        /**
+         * Sets the contacts between nodes. By default, all nodes are in contact during the whole simulation.
+         * @param contactTrace Contact trace.
+         * @return This builder.
+         */
+        public Builder setContactTrace(ContactTrace contactTrace) {
+            mContactTrace = contactTrace;
+            return this;
+        }
+
+        /**
+         * Sets the probability of losing each datagram.
+         * @param lossRate Loss rate, between 0 and 1.
+         * @return This builder.
+         */
+        public Builder setLossRate(double lossRate) {
+            mLossRate = lossRate;
+            return this;
+        }
+
+        /**
+         * Sets the latency and speed of links.
+         * @param latencyMillis Latency of each datagram, in milliseconds.
+         * @param bytesPerSecond Link speed, in bytes per second.
+         * @return This builder.
+         */
+        public Builder setLink(long latencyMillis, long bytesPerSecond) {
+            mLatencyMillis = latencyMillis;
+            mBytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets the interval between beaconing rounds, as given by a {@link Policy}.
+         * @param beaconingInterval Beaconing interval.
+         * @return This builder.
+         */
+        public Builder setBeaconingInterval(Policy.BeaconingInterval beaconingInterval) {
+            mBeaconingInterval = beaconingInterval;
+            return this;
+        }
+
+        /**
+         * Sets whether beacons are scheduled with Trickle or at a fixed rate during beaconing rounds.
+         * @param trickleBeaconing true for Trickle, false for a fixed rate.
+         * @return This builder.
+         */
+        public Builder setTrickleBeaconing(boolean trickleBeaconing) {
+            mTrickleBeaconing = trickleBeaconing;
+            return this;
+        }
+
+        /**
+         * Sets how often each node creates a broadcast packet, and its size.
+         * @param packetIntervalMillis Mean time between packets of a node, in milliseconds; 0 for no packets.
+         * @param payloadBytes Payload size, in bytes.
+         * @return This builder.
+         */
+        public Builder setPackets(long packetIntervalMillis, int payloadBytes) {
+            mPacketIntervalMillis = packetIntervalMillis;
+            mPacketPayloadBytes = payloadBytes;
+            return this;
+        }
+
+        /**
+         * Sets the share of nodes with an application implementing the packets' protocol; the others only
+         * forward packets.
+         * @param protocolShare Share of nodes, between 0 and 1.
+         * @return This builder.
+         */
+        public Builder setProtocolShare(double protocolShare) {
+            mProtocolShare = protocolShare;
+            return this;
+        }
+
+        /**
+         * Builds the configuration.
+         * @return Simulation configuration.
+         */
+        public SimulationConfig build() {
+            if (mContactTrace != null && mContactTrace.getNodeCount() > mNodeCount) {
+                throw new IllegalArgumentException("Contact trace refers to more than " + mNodeCount + " nodes.");
+            }
+            return new SimulationConfig(this);
+        }
+    }
+}
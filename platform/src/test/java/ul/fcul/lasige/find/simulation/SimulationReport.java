@@ -0,0 +1,209 @@
+package ul.fcul.lasige.find.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Metrics collected during a simulation: discovery latency (from the start of a contact until a node hears a
+ * beacon from the other node), packet delivery ratio and latency, and bytes on air.
+ */
+public class SimulationReport {
+    private static final String TAG = SimulationReport.class.getSimpleName();
+
+    // start of ongoing contacts whose discovery is pending, by directed pair (observer, other)
+    private final Map<Long, Long> mPendingDiscoveries = new HashMap<>();
+    // latencies of discoveries, and number of contacts that ended undiscovered
+    private final List<Long> mDiscoveryLatencies = new ArrayList<>();
+    private long mUndiscoveredContacts;
+
+    // creation time and intended recipients of each packet
+    private final Map<Long, Long> mPacketCreationTimes = new HashMap<>();
+    private final Map<Long, Set<Integer>> mPendingRecipients = new HashMap<>();
+    private long mIntendedDeliveries;
+    // latencies of deliveries
+    private final List<Long> mDeliveryLatencies = new ArrayList<>();
+
+    // filled in when the simulation ends
+    private long mDurationMillis;
+    private long mBeaconBytes;
+    private long mPacketBytes;
+    private long mBeaconTransmissions;
+    private long mPacketTransmissions;
+    private long mEvents;
+
+    /**
+     * Called when two nodes come into contact.
+     * @param nodeA First node.
+     * @param nodeB Second node.
+     * @param timeMillis Simulated time.
+     */
+    public void onContactStarted(int nodeA, int nodeB, long timeMillis) {
+        mPendingDiscoveries.put(pair(nodeA, nodeB), timeMillis);
+        mPendingDiscoveries.put(pair(nodeB, nodeA), timeMillis);
+    }
+
+    /**
+     * Called when a contact between two nodes ends.
+     * @param nodeA First node.
+     * @param nodeB Second node.
+     */
+    public void onContactEnded(int nodeA, int nodeB) {
+        if (mPendingDiscoveries.remove(pair(nodeA, nodeB)) != null) {
+            mUndiscoveredContacts++;
+        }
+        if (mPendingDiscoveries.remove(pair(nodeB, nodeA)) != null) {
+            mUndiscoveredContacts++;
+        }
+    }
+
+    /**
+     * Called when a node receives a beacon directly from another node.
+     * @param observer Receiving node.
+     * @param sender Sending node.
+     * @param timeMillis Simulated time.
+     */
+    public void onBeaconHeard(int observer, int sender, long timeMillis) {
+        final Long contactStart = mPendingDiscoveries.remove(pair(observer, sender));
+        if (contactStart != null) {
+            mDiscoveryLatencies.add(timeMillis - contactStart);
+        }
+    }
+
+    /**
+     * Called when a packet is created.
+     * @param packetId Packet id.
+     * @param recipients Nodes the packet is meant for.
+     * @param timeMillis Simulated time.
+     */
+    public void onPacketCreated(long packetId, Set<Integer> recipients, long timeMillis) {
+        mPacketCreationTimes.put(packetId, timeMillis);
+        mPendingRecipients.put(packetId, new HashSet<>(recipients));
+        mIntendedDeliveries += recipients.size();
+    }
+
+    /**
+     * Called when a node delivers a packet to its applications.
+     * @param packetId Packet id.
+     * @param node Node.
+     * @param timeMillis Simulated time.
+     */
+    public void onPacketDelivered(long packetId, int node, long timeMillis) {
+        final Set<Integer> pending = mPendingRecipients.get(packetId);
+        if (pending != null && pending.remove(node)) {
+            mDeliveryLatencies.add(timeMillis - mPacketCreationTimes.get(packetId));
+        }
+    }
+
+    /**
+     * Called when the simulation ends.
+     * @param durationMillis Simulated duration.
+     * @param transport Transport, for bytes on air.
+     * @param events Number of events run.
+     */
+    public void onFinished(long durationMillis, VirtualTransport transport, long events) {
+        mDurationMillis = durationMillis;
+        mBeaconBytes = transport.getBytesOnAir(VirtualTransport.Kind.BEACON);
+        mPacketBytes = transport.getBytesOnAir(VirtualTransport.Kind.PACKET);
+        mBeaconTransmissions = transport.getTransmissions(VirtualTransport.Kind.BEACON);
+        mPacketTransmissions = transport.getTransmissions(VirtualTransport.Kind.PACKET);
+        mEvents = events;
+    }
+
+    /**
+     * Returns the ratio of discoveries over contacts that ended or were discovered.
+     * @return Discovery ratio, between 0 and 1.
+     */
+    public double getDiscoveryRatio() {
+        final long total = mDiscoveryLatencies.size() + mUndiscoveredContacts;
+        return (total == 0 ? 0 : (double) mDiscoveryLatencies.size() / total);
+    }
+
+    /**
+     * Returns a percentile of the discovery latency.
+     * @param percentile Percentile, between 0 and 100.
+     * @return Latency, in milliseconds; -1 if nothing was discovered.
+     */
+    public long getDiscoveryLatencyMillis(double percentile) {
+        return percentile(mDiscoveryLatencies, percentile);
+    }
+
+    /**
+     * Returns the ratio of packets delivered to their intended recipients.
+     * @return Delivery ratio, between 0 and 1.
+     */
+    public double getDeliveryRatio() {
+        return (mIntendedDeliveries == 0 ? 0 : (double) mDeliveryLatencies.size() / mIntendedDeliveries);
+    }
+
+    /**
+     * Returns a percentile of the delivery latency.
+     * @param percentile Percentile, between 0 and 100.
+     * @return Latency, in milliseconds; -1 if nothing was delivered.
+     */
+    public long getDeliveryLatencyMillis(double percentile) {
+        return percentile(mDeliveryLatencies, percentile);
+    }
+
+    /**
+     * Returns the number of beacon bytes transmitted.
+     * @return Number of bytes.
+     */
+    public long getBeaconBytes() {
+        return mBeaconBytes;
+    }
+
+    /**
+     * Returns the number of packet bytes transmitted.
+     * @return Number of bytes.
+     */
+    public long getPacketBytes() {
+        return mPacketBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "simulated %.1f min, %d events%n"
+                        + "discovery: ratio %.3f, latency p50 %d ms, p95 %d ms (%d discovered, %d missed)%n"
+                        + "delivery: ratio %.3f, latency p50 %d ms, p95 %d ms (%d of %d)%n"
+                        + "on air: beacons %d B in %d datagrams, packets %d B in %d datagrams",
+                mDurationMillis / 60000.0, mEvents,
+                getDiscoveryRatio(), getDiscoveryLatencyMillis(50), getDiscoveryLatencyMillis(95),
+                mDiscoveryLatencies.size(), mUndiscoveredContacts,
+                getDeliveryRatio(), getDeliveryLatencyMillis(50), getDeliveryLatencyMillis(95),
+                mDeliveryLatencies.size(), mIntendedDeliveries,
+                mBeaconBytes, mBeaconTransmissions, mPacketBytes, mPacketTransmissions);
+    }
+
+    /**
+     * Returns the key of a directed pair of nodes.
+     * @param observer Observing node.
+     * @param other Other node.
+     * @return Key.
+     */
+    private static long pair(int observer, int other) {
+        return ((long) observer << 32) | (other & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns a percentile of a list of values (nearest rank).
+     * @param values Values.
+     * @param percentile Percentile, between 0 and 100.
+     * @return Value; -1 if the list is empty.
+     */
+    private static long percentile(List<Long> values, double percentile) {
+        if (values.isEmpty()) {
+            return -1;
+        }
+        final List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        final int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+        return sorted.get(Math.min(sorted.size() - 1, Math.max(0, rank - 1)));
+    }
+}
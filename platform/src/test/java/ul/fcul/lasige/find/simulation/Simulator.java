@@ -0,0 +1,155 @@
+package ul.fcul.lasige.find.simulation;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic discrete-event simulation of FIND nodes beaconing and disseminating packets over a
+ * {@link VirtualTransport}, driven by a {@link ContactTrace}. Time is simulated, so hours of opportunistic
+ * contacts run in seconds, and runs with the same {@link SimulationConfig} (including its seed) produce the
+ * same {@link SimulationReport}.
+ *
+ * <p>Usage from the command line: {@code Simulator [nodes] [minutes] [seed] [contact trace file]}.</p>
+ */
+public class Simulator {
+    private static final String TAG = Simulator.class.getSimpleName();
+
+    // protocol of the packets created during the simulation
+    private static final ByteBuffer PROTOCOL = ByteBuffer.wrap(new byte[] {
+            0x46, 0x49, 0x4e, 0x44, 0x2d, 0x53, 0x49, 0x4d, 0x2d, 0x50, 0x52, 0x4f, 0x54, 0x4f, 0x43, 0x4f,
+            0x4c, 0x2d, 0x48, 0x41, 0x53, 0x48, 0x2d, 0x30, 0x30, 0x30, 0x30, 0x30, 0x30, 0x30, 0x30, 0x31 });
+
+    private final SimulationConfig mConfig;
+    private final EventScheduler mScheduler = new EventScheduler();
+    private final SimulationReport mReport = new SimulationReport();
+    private final Random mRandom;
+    private final VirtualTransport mTransport;
+    private final List<SimulatedNode> mNodes = new ArrayList<>();
+
+    /**
+     * Constructor.
+     * @param config Simulation configuration.
+     */
+    public Simulator(SimulationConfig config) {
+        mConfig = config;
+        mRandom = new Random(config.getSeed());
+        mTransport = new VirtualTransport(mScheduler, new Random(mRandom.nextLong()), config.getLossRate(),
+                config.getLatencyMillis(), config.getBytesPerSecond());
+
+        final Map<ByteBuffer, Integer> directory = new HashMap<>();
+        for (int i = 0; i < config.getNodeCount(); i++) {
+            final Set<ByteBuffer> protocols = new HashSet<>();
+            if (mRandom.nextDouble() < config.getProtocolShare()) {
+                protocols.add(PROTOCOL);
+            }
+            final SimulatedNode node = new SimulatedNode(i, protocols, config, mScheduler, mTransport, mReport,
+                    new Random(mRandom.nextLong()), directory);
+            mTransport.addNode(node);
+            mNodes.add(node);
+        }
+    }
+
+    /**
+     * Runs a simulation.
+     * @param config Simulation configuration.
+     * @return Report of the simulation.
+     */
+    public static SimulationReport run(SimulationConfig config) {
+        return new Simulator(config).run();
+    }
+
+    /**
+     * Runs the simulation until the configured duration.
+     * @return Report of the simulation.
+     */
+    public SimulationReport run() {
+        scheduleContacts();
+        for (SimulatedNode node : mNodes) {
+            node.start();
+            schedulePacket(node);
+        }
+        final long events = mScheduler.runUntil(mConfig.getDurationMillis());
+        mReport.onFinished(mConfig.getDurationMillis(), mTransport, events);
+        return mReport;
+    }
+
+    /**
+     * Schedules links going up and down according to the contact trace.
+     */
+    private void scheduleContacts() {
+        for (final ContactTrace.Contact contact : mConfig.getContactTrace().getContacts()) {
+            mScheduler.scheduleAt(new Runnable() {
+                @Override
+                public void run() {
+                    mTransport.setLink(contact.getNodeA(), contact.getNodeB(), true);
+                    mReport.onContactStarted(contact.getNodeA(), contact.getNodeB(), mScheduler.now());
+                }
+            }, contact.getStartMillis());
+            mScheduler.scheduleAt(new Runnable() {
+                @Override
+                public void run() {
+                    mTransport.setLink(contact.getNodeA(), contact.getNodeB(), false);
+                    mReport.onContactEnded(contact.getNodeA(), contact.getNodeB());
+                }
+            }, contact.getEndMillis());
+        }
+    }
+
+    /**
+     * Schedules the next packet created by a node, after an exponentially distributed time.
+     * @param node Node.
+     */
+    private void schedulePacket(final SimulatedNode node) {
+        final long meanMillis = mConfig.getPacketIntervalMillis();
+        if (meanMillis <= 0) {
+            return;
+        }
+        final long delay = (long) (-meanMillis * Math.log(1 - mRandom.nextDouble()));
+        mScheduler.scheduleAt(new Runnable() {
+            @Override
+            public void run() {
+                final long packetId = node.createPacket(PROTOCOL, mConfig.getPacketPayloadBytes());
+                final Set<Integer> recipients = new HashSet<>();
+                for (int i = 0; i < mNodes.size(); i++) {
+                    if (mNodes.get(i) != node && mNodes.get(i).implementsProtocol(PROTOCOL)) {
+                        recipients.add(i);
+                    }
+                }
+                mReport.onPacketCreated(packetId, recipients, mScheduler.now());
+                schedulePacket(node);
+            }
+        }, mScheduler.now() + delay);
+    }
+
+    /**
+     * Runs a simulation from the command line and prints its report.
+     * @param args Optional number of nodes, duration in minutes, seed and contact trace file.
+     * @throws IOException If the contact trace could not be read.
+     */
+    public static void main(String[] args) throws IOException {
+        final SimulationConfig.Builder builder = new SimulationConfig.Builder();
+        if (args.length > 0) {
+            builder.setNodeCount(Integer.parseInt(args[0]));
+        }
+        if (args.length > 1) {
+            builder.setDurationMillis(Long.parseLong(args[1]) * 60 * 1000);
+        }
+        if (args.length > 2) {
+            builder.setSeed(Long.parseLong(args[2]));
+        }
+        if (args.length > 3) {
+            try (FileReader reader = new FileReader(args[3])) {
+                builder.setContactTrace(ContactTrace.parse(reader));
+            }
+        }
+        System.out.println(run(builder.build()));
+    }
+}
@@ -0,0 +1,213 @@
+package ul.fcul.lasige.find.simulation;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Simulated wireless medium. Datagrams are only delivered between nodes in contact, after a fixed latency plus
+ * the time it takes to transmit them, and each delivery is lost with a given probability. A broadcast datagram
+ * is transmitted once, whatever the number of nodes receiving it.
+ */
+public class VirtualTransport {
+    private static final String TAG = VirtualTransport.class.getSimpleName();
+
+    /**
+     * What a datagram carries, to account bytes on air separately.
+     */
+    public enum Kind {
+        BEACON,
+        PACKET
+    }
+
+    /**
+     * Receiver of datagrams.
+     */
+    public interface DatagramListener {
+        /**
+         * Called when a datagram is delivered.
+         * @param from Sending node.
+         * @param data Datagram data.
+         * @param kind What the datagram carries.
+         */
+        void onDatagram(int from, byte[] data, Kind kind);
+    }
+
+    private final EventScheduler mScheduler;
+    private final Random mRandom;
+    // probability of losing each delivery
+    private final double mLossRate;
+    // propagation and processing latency of each datagram
+    private final long mLatencyMillis;
+    // link speed, used to compute transmission time
+    private final long mBytesPerSecond;
+
+    // receivers, by node
+    private final List<DatagramListener> mListeners = new ArrayList<>();
+    // nodes currently in contact, by node; sorted, so that deliveries happen in a deterministic order
+    private final List<Set<Integer>> mContacts = new ArrayList<>();
+
+    // statistics
+    private final Map<Kind, Long> mBytesOnAir = new EnumMap<>(Kind.class);
+    private final Map<Kind, Long> mTransmissions = new EnumMap<>(Kind.class);
+    private long mDeliveries;
+    private long mLosses;
+
+    /**
+     * Constructor.
+     * @param scheduler Event scheduler.
+     * @param random Source of randomness, for losses.
+     * @param lossRate Probability, between 0 and 1, of losing each delivery.
+     * @param latencyMillis Latency of each datagram, in milliseconds.
+     * @param bytesPerSecond Link speed, in bytes per second.
+     */
+    public VirtualTransport(EventScheduler scheduler, Random random, double lossRate, long latencyMillis,
+                            long bytesPerSecond) {
+        mScheduler = scheduler;
+        mRandom = random;
+        mLossRate = lossRate;
+        mLatencyMillis = latencyMillis;
+        mBytesPerSecond = bytesPerSecond;
+        for (Kind kind : Kind.values()) {
+            mBytesOnAir.put(kind, 0L);
+            mTransmissions.put(kind, 0L);
+        }
+    }
+
+    /**
+     * Adds a node to the medium.
+     * @param listener Receiver of the node's datagrams.
+     * @return Node number.
+     */
+    public int addNode(DatagramListener listener) {
+        mListeners.add(listener);
+        mContacts.add(new TreeSet<Integer>());
+        return mListeners.size() - 1;
+    }
+
+    /**
+     * Brings a link between two nodes up or down.
+     * @param nodeA First node.
+     * @param nodeB Second node.
+     * @param up Whether the nodes are in contact.
+     */
+    public void setLink(int nodeA, int nodeB, boolean up) {
+        if (up) {
+            mContacts.get(nodeA).add(nodeB);
+            mContacts.get(nodeB).add(nodeA);
+        } else {
+            mContacts.get(nodeA).remove(nodeB);
+            mContacts.get(nodeB).remove(nodeA);
+        }
+    }
+
+    /**
+     * Returns whether two nodes are in contact.
+     * @param nodeA First node.
+     * @param nodeB Second node.
+     * @return true if the nodes are in contact, false otherwise.
+     */
+    public boolean isLinkUp(int nodeA, int nodeB) {
+        return mContacts.get(nodeA).contains(nodeB);
+    }
+
+    /**
+     * Sends a datagram to all nodes in contact.
+     * @param from Sending node.
+     * @param data Datagram data.
+     * @param kind What the datagram carries.
+     */
+    public void broadcast(int from, byte[] data, Kind kind) {
+        account(data, kind);
+        for (int to : mContacts.get(from)) {
+            deliver(from, to, data, kind);
+        }
+    }
+
+    /**
+     * Sends a datagram to a single node. It is transmitted even if the node is not in contact, as a real
+     * sender does not know whether the receiver is still around.
+     * @param from Sending node.
+     * @param to Receiving node.
+     * @param data Datagram data.
+     * @param kind What the datagram carries.
+     */
+    public void unicast(int from, int to, byte[] data, Kind kind) {
+        account(data, kind);
+        if (isLinkUp(from, to)) {
+            deliver(from, to, data, kind);
+        } else {
+            mLosses++;
+        }
+    }
+
+    /**
+     * Returns the number of bytes transmitted.
+     * @param kind What the datagrams carried.
+     * @return Number of bytes.
+     */
+    public long getBytesOnAir(Kind kind) {
+        return mBytesOnAir.get(kind);
+    }
+
+    /**
+     * Returns the number of datagrams transmitted.
+     * @param kind What the datagrams carried.
+     * @return Number of datagrams.
+     */
+    public long getTransmissions(Kind kind) {
+        return mTransmissions.get(kind);
+    }
+
+    /**
+     * Returns the number of datagrams delivered.
+     * @return Number of deliveries.
+     */
+    public long getDeliveries() {
+        return mDeliveries;
+    }
+
+    /**
+     * Returns the number of datagrams lost, either randomly or because the receiver was not in contact.
+     * @return Number of losses.
+     */
+    public long getLosses() {
+        return mLosses;
+    }
+
+    /**
+     * Accounts a transmission.
+     * @param data Datagram data.
+     * @param kind What the datagram carries.
+     */
+    private void account(byte[] data, Kind kind) {
+        mBytesOnAir.put(kind, mBytesOnAir.get(kind) + data.length);
+        mTransmissions.put(kind, mTransmissions.get(kind) + 1);
+    }
+
+    /**
+     * Schedules the delivery of a datagram to a node, unless it is lost.
+     * @param from Sending node.
+     * @param to Receiving node.
+     * @param data Datagram data.
+     * @param kind What the datagram carries.
+     */
+    private void deliver(final int from, final int to, final byte[] data, final Kind kind) {
+        if (mLossRate > 0 && mRandom.nextDouble() < mLossRate) {
+            mLosses++;
+            return;
+        }
+        mDeliveries++;
+        final long delay = mLatencyMillis + (data.length * 1000L) / mBytesPerSecond;
+        mScheduler.scheduleAt(new Runnable() {
+            @Override
+            public void run() {
+                mListeners.get(to).onDatagram(from, data, kind);
+            }
+        }, mScheduler.now() + delay);
+    }
+}